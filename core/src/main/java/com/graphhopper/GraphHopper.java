@@ -32,7 +32,9 @@ import com.graphhopper.reader.osm.OSMReader;
 import com.graphhopper.reader.osm.RestrictionTagParser;
 import com.graphhopper.routing.*;
 import com.graphhopper.routing.ch.CHPreparationHandler;
+import com.graphhopper.routing.ch.CustomizableCH;
 import com.graphhopper.routing.ch.PrepareContractionHierarchies;
+import com.graphhopper.routing.ch.PrepareCustomizableCH;
 import com.graphhopper.routing.ev.*;
 import com.graphhopper.routing.lm.LMConfig;
 import com.graphhopper.routing.lm.LMPreparationHandler;
@@ -45,6 +47,8 @@ import com.graphhopper.routing.util.countryrules.CountryRuleFactory;
 import com.graphhopper.routing.util.parsers.OSMBikeNetworkTagParser;
 import com.graphhopper.routing.util.parsers.OSMFootNetworkTagParser;
 import com.graphhopper.routing.util.parsers.TagParser;
+import com.graphhopper.routing.weighting.PrecomputedDeltaWeighting;
+import com.graphhopper.routing.weighting.PrecomputedWeighting;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.routing.weighting.custom.CustomModelParser;
 import com.graphhopper.routing.weighting.custom.CustomWeighting;
@@ -67,6 +71,8 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.DateFormat;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -104,10 +110,12 @@ public class GraphHopper {
     private DAType dataAccessDefaultType = DAType.RAM_STORE;
     private final LinkedHashMap<String, String> dataAccessConfig = new LinkedHashMap<>();
     private boolean sortGraph = true;
+    private String sortOrder = "hilbert";
     private boolean elevation = false;
     private LockFactory lockFactory = new NativeFSLockFactory();
     private boolean allowWrites = true;
     private boolean fullyLoaded = false;
+    private ExecutorService batchExecutor;
     private final OSMReaderConfig osmReaderConfig = new OSMReaderConfig();
     // for routing
     private final RouterConfig routerConfig = new RouterConfig();
@@ -130,6 +138,14 @@ public class GraphHopper {
     private final CHPreparationHandler chPreparationHandler = new CHPreparationHandler();
     private Map<String, RoutingCHGraph> chGraphs = Collections.emptyMap();
     private Map<String, LandmarkStorage> landmarks = Collections.emptyMap();
+    private List<String> precomputedWeightsProfiles = Collections.emptyList();
+    private Map<String, EdgeWeightStorage> precomputedWeights = Collections.emptyMap();
+    private List<String> customizableCHProfiles = Collections.emptyList();
+    private int customizableCHCacheSize = 10;
+    private int customizableCHThreads = 2;
+    private CustomizableCH customizableCH;
+    private double[] geometryLevelTolerances = new double[0];
+    private GeometryLevelStorage geometryLevels;
 
     // for data reader
     private String osmFile;
@@ -365,6 +381,90 @@ public class GraphHopper {
         return this;
     }
 
+    /**
+     * Specifies the node order the graph is sorted in after the import (if sorting is enabled). 'hilbert' sorts the
+     * nodes along a Hilbert curve, 'bfs' sorts them by a breadth-first traversal of the graph, which keeps nodes that
+     * are adjacent in the graph close together in memory. The location index, CH and LM are built after the sorting,
+     * so they use the same order.
+     */
+    public GraphHopper setSortOrder(String sortOrder) {
+        if (!sortOrder.equals("hilbert") && !sortOrder.equals("bfs"))
+            throw new IllegalArgumentException("Unknown graph.sort_order: " + sortOrder + ", supported: hilbert, bfs");
+        this.sortOrder = sortOrder;
+        return this;
+    }
+
+    /**
+     * Calculates the edge weights of the given profiles once after the import and stores them next to the graph. The
+     * flexible and LM routing then reads these weights instead of evaluating the custom model for every edge, unless
+     * the request contains a custom model. The weights are also used for the CH and LM preparations.
+     */
+    public GraphHopper setPrecomputedWeightsProfiles(List<String> precomputedWeightsProfiles) {
+        ensureNotLoaded();
+        this.precomputedWeightsProfiles = precomputedWeightsProfiles;
+        return this;
+    }
+
+    /**
+     * Prepares a customizable contraction hierarchy after the import, which is used for requests with a custom model
+     * for the given profiles. The node order and shortcut topology do not depend on the profile, only the shortcut
+     * weights are calculated per custom model. The most recently used customizations are cached, and a custom model
+     * that is not yet cached is customized in the background while its requests use LM or the flexible mode.
+     */
+    public GraphHopper setCustomizableCHProfiles(List<String> customizableCHProfiles) {
+        ensureNotLoaded();
+        this.customizableCHProfiles = customizableCHProfiles;
+        return this;
+    }
+
+    /**
+     * The maximum number of customizations that are kept in memory
+     */
+    public GraphHopper setCustomizableCHCacheSize(int customizableCHCacheSize) {
+        this.customizableCHCacheSize = customizableCHCacheSize;
+        return this;
+    }
+
+    /**
+     * The number of threads that are used to customize the customizable contraction hierarchy
+     */
+    public GraphHopper setCustomizableCHThreads(int customizableCHThreads) {
+        this.customizableCHThreads = customizableCHThreads;
+        return this;
+    }
+
+    /**
+     * Stores the edge geometry in a simplified form for each of the given tolerances in meters, e.g. for vector tiles of
+     * low zoom levels. Edges between nodes of degree two with the same road class are merged into chains before the
+     * simplification.
+     */
+    public GraphHopper setGeometryLevelTolerances(double... tolerances) {
+        ensureNotLoaded();
+        double[] sorted = tolerances.clone();
+        Arrays.sort(sorted);
+        this.geometryLevelTolerances = sorted;
+        return this;
+    }
+
+    /**
+     * @return the simplified edge geometry or null if graph.geometry_levels is not configured. The levels are sorted by
+     * their tolerance in ascending order.
+     */
+    public GeometryLevelStorage getGeometryLevels() {
+        return geometryLevels;
+    }
+
+    public double[] getGeometryLevelTolerances() {
+        return geometryLevelTolerances;
+    }
+
+    /**
+     * @return the customizable contraction hierarchy or null if there is none
+     */
+    public CustomizableCH getCustomizableCH() {
+        return customizableCH;
+    }
+
     /**
      * The underlying graph used in algorithms.
      *
@@ -424,7 +524,9 @@ public class GraphHopper {
 
     /**
      * Specifies if it is allowed for GraphHopper to write. E.g. for read only filesystems it is not
-     * possible to create a lock file and so we can avoid write locks.
+     * possible to create a lock file and so we can avoid write locks. If writes are not allowed and the default
+     * DataAccess type is MMAP all stored data is memory mapped read only, so several processes can share the graph
+     * files via the page cache of the OS. Use the mmap preload settings to load them into memory in advance.
      */
     public GraphHopper setAllowWrites(boolean allowWrites) {
         this.allowWrites = allowWrites;
@@ -503,6 +605,7 @@ public class GraphHopper {
         customAreasDirectory = ghConfig.getString("custom_areas.directory", customAreasDirectory);
 
         defaultSegmentSize = ghConfig.getInt("graph.dataaccess.segment_size", defaultSegmentSize);
+        setAllowWrites(ghConfig.getBool("graph.allow_writes", allowWrites));
 
         String daTypeString = ghConfig.getString("graph.dataaccess.default_type", ghConfig.getString("graph.dataaccess", "RAM_STORE"));
         dataAccessDefaultType = DAType.fromString(daTypeString);
@@ -514,6 +617,15 @@ public class GraphHopper {
         }
 
         sortGraph = ghConfig.getBool("graph.sort", sortGraph);
+        setSortOrder(ghConfig.getString("graph.sort_order", sortOrder));
+        setPrecomputedWeightsProfiles(Arrays.stream(ghConfig.getString("graph.precomputed_weights", "").split(","))
+                .map(String::trim).filter(s -> !s.isEmpty()).collect(Collectors.toList()));
+        setCustomizableCHProfiles(Arrays.stream(ghConfig.getString("graph.customizable_ch", "").split(","))
+                .map(String::trim).filter(s -> !s.isEmpty()).collect(Collectors.toList()));
+        setCustomizableCHCacheSize(ghConfig.getInt("routing.customizable_ch.cache_size", customizableCHCacheSize));
+        setCustomizableCHThreads(ghConfig.getInt("routing.customizable_ch.threads", customizableCHThreads));
+        setGeometryLevelTolerances(Arrays.stream(ghConfig.getString("graph.geometry_levels", "").split(","))
+                .map(String::trim).filter(s -> !s.isEmpty()).mapToDouble(Double::parseDouble).toArray());
         if (ghConfig.getBool("max_speed_calculator.enabled", false))
             maxSpeedCalculator = new MaxSpeedCalculator(MaxSpeedCalculator.createLegalDefaultSpeeds());
 
@@ -585,6 +697,8 @@ public class GraphHopper {
         osmReaderConfig.setPreferredLanguage(ghConfig.getString("datareader.preferred_language", osmReaderConfig.getPreferredLanguage()));
         osmReaderConfig.setMaxWayPointDistance(ghConfig.getDouble(Routing.INIT_WAY_POINT_MAX_DISTANCE, osmReaderConfig.getMaxWayPointDistance()));
         osmReaderConfig.setWorkerThreads(ghConfig.getInt("datareader.worker_threads", osmReaderConfig.getWorkerThreads()));
+        osmReaderConfig.setWayThreads(ghConfig.getInt("datareader.way_threads", osmReaderConfig.getWayThreads()));
+        osmReaderConfig.setOffHeapNodeIndex(ghConfig.getBool("datareader.off_heap_node_index", osmReaderConfig.isOffHeapNodeIndex()));
 
         // index
         preciseIndexResolution = ghConfig.getInt("index.high_resolution", preciseIndexResolution);
@@ -603,6 +717,10 @@ public class GraphHopper {
         routerConfig.setMaxRoundTripRetries(ghConfig.getInt(RoundTrip.INIT_MAX_RETRIES, routerConfig.getMaxRoundTripRetries()));
         routerConfig.setNonChMaxWaypointDistance(ghConfig.getInt(Parameters.NON_CH.MAX_NON_CH_POINT_DISTANCE, routerConfig.getNonChMaxWaypointDistance()));
         routerConfig.setInstructionsEnabled(ghConfig.getBool(Routing.INIT_INSTRUCTIONS, routerConfig.isInstructionsEnabled()));
+        if (ghConfig.getBool(Routing.INIT_POOLED_SEARCH, false))
+            routerConfig.setSearchStatePool(new SearchStatePool());
+        routerConfig.setBatchThreads(ghConfig.getInt(Routing.INIT_BATCH_THREADS, routerConfig.getBatchThreads()));
+        routerConfig.setIsochroneMaxRasterCells(ghConfig.getLong(Routing.INIT_ISOCHRONE_MAX_RASTER_CELLS, routerConfig.getIsochroneMaxRasterCells()));
         int activeLandmarkCount = ghConfig.getInt(Landmark.ACTIVE_COUNT_DEFAULT, Math.min(8, lmPreparationHandler.getLandmarks()));
         if (activeLandmarkCount > lmPreparationHandler.getLandmarks())
             throw new IllegalArgumentException("Default value for active landmarks " + activeLandmarkCount
@@ -760,6 +878,8 @@ public class GraphHopper {
                     .setDAType(elevationDAType);
             if (!baseURL.isEmpty())
                 provider.setBaseURL(baseURL);
+            if (ghConfig.has("graph.elevation.cache_max_mb"))
+                provider.setCacheMaxBytes(ghConfig.getLong("graph.elevation.cache_max_mb", 0) * MB);
         }
         return elevationProvider;
     }
@@ -927,8 +1047,12 @@ public class GraphHopper {
         if (hasElevation())
             interpolateBridgesTunnelsAndFerries();
 
-        if (sortGraph)
-            sortGraphAlongHilbertCurve(baseGraph);
+        if (sortGraph) {
+            if (sortOrder.equals("bfs"))
+                sortGraphAlongBreadthFirstOrder(baseGraph);
+            else
+                sortGraphAlongHilbertCurve(baseGraph);
+        }
     }
 
     protected void importOSM() {
@@ -982,12 +1106,59 @@ public class GraphHopper {
     public static void sortGraphAlongHilbertCurve(BaseGraph graph) {
         logger.info("sorting graph along Hilbert curve...");
         StopWatch sw = StopWatch.started();
+        int[] nodeOrder = calcHilbertNodeOrder(graph);
+        logger.info("calculating sort order took: " + sw.stop().getTimeString());
+        sortGraphForGivenNodeOrder(graph, nodeOrder);
+    }
+
+    /**
+     * Sorts the nodes in breadth-first order, i.e. the neighbors of a node get the ids next to it. Every connected
+     * component is traversed starting from its first node along the Hilbert curve, and the components are sorted along
+     * the curve as well.
+     */
+    public static void sortGraphAlongBreadthFirstOrder(BaseGraph graph) {
+        logger.info("sorting graph in breadth-first order...");
+        StopWatch sw = StopWatch.started();
+        int[] hilbertOrder = calcHilbertNodeOrder(graph);
+        int[] nodeOrder = new int[graph.getNodes()];
+        BitSet visited = new BitSet(graph.getNodes());
+        EdgeExplorer explorer = graph.createEdgeExplorer();
+        int size = 0;
+        for (int start : hilbertOrder) {
+            if (visited.get(start))
+                continue;
+            visited.set(start);
+            // the part of nodeOrder behind index serves as the queue of the search
+            int index = size;
+            nodeOrder[size++] = start;
+            while (index < size) {
+                EdgeIterator iter = explorer.setBaseNode(nodeOrder[index++]);
+                while (iter.next()) {
+                    if (!visited.get(iter.getAdjNode())) {
+                        visited.set(iter.getAdjNode());
+                        nodeOrder[size++] = iter.getAdjNode();
+                    }
+                }
+            }
+        }
+        logger.info("calculating sort order took: " + sw.stop().getTimeString());
+        sortGraphForGivenNodeOrder(graph, nodeOrder);
+    }
+
+    private static int[] calcHilbertNodeOrder(BaseGraph graph) {
         NodeAccess na = graph.getNodeAccess();
         final int order = 31; // using 15 would allow us to use ints for sortIndices, but this would result in (marginally) slower routing
         LongArrayList sortIndices = new LongArrayList();
         for (int node = 0; node < graph.getNodes(); node++)
             sortIndices.add(latLonToHilbertIndex(na.getLat(node), na.getLon(node), order));
-        int[] nodeOrder = IndirectSort.mergesort(0, graph.getNodes(), (nodeA, nodeB) -> Long.compare(sortIndices.get(nodeA), sortIndices.get(nodeB)));
+        return IndirectSort.mergesort(0, graph.getNodes(), (nodeA, nodeB) -> Long.compare(sortIndices.get(nodeA), sortIndices.get(nodeB)));
+    }
+
+    /**
+     * Sorts the graph such that the given nodes come first and the edges are ordered by the first of their nodes in
+     * this order.
+     */
+    private static void sortGraphForGivenNodeOrder(BaseGraph graph, int[] nodeOrder) {
         EdgeExplorer explorer = graph.createEdgeExplorer();
         int edges = graph.getEdges();
         IntArrayList edgeOrder = new IntArrayList();
@@ -1003,7 +1174,6 @@ public class GraphHopper {
         }
         IntArrayList newEdgesByOldEdges = ArrayUtil.invert(edgeOrder);
         IntArrayList newNodesByOldNodes = IntArrayList.from(ArrayUtil.invert(nodeOrder));
-        logger.info("calculating sort order took: " + sw.stop().getTimeString());
         sortGraphForGivenOrdering(graph, newNodesByOldNodes, newEdgesByOldEdges);
     }
 
@@ -1132,6 +1302,7 @@ public class GraphHopper {
 
         GHDirectory directory = new GHDirectory(ghLocation, dataAccessDefaultType);
         directory.configure(dataAccessConfig);
+        directory.setReadOnly(dataAccessDefaultType == DAType.MMAP_RO);
         GHLock lock = null;
         try {
             // create locks only if writes are allowed, if they are not allowed a lock cannot be created
@@ -1212,6 +1383,17 @@ public class GraphHopper {
                         "weighting=" + profile.getWeighting() + " was defined");
         }
 
+        for (String profile : precomputedWeightsProfiles)
+            if (!profilesByName.containsKey(profile))
+                throw new IllegalArgumentException("graph.precomputed_weights references unknown profile '" + profile + "'");
+
+        for (String profile : customizableCHProfiles) {
+            if (!profilesByName.containsKey(profile))
+                throw new IllegalArgumentException("graph.customizable_ch references unknown profile '" + profile + "'");
+            if (profilesByName.get(profile).hasTurnCosts())
+                throw new IllegalArgumentException("graph.customizable_ch does not support profiles with turn costs, but '" + profile + "' has turn costs");
+        }
+
         Set<String> chProfileSet = new LinkedHashSet<>(chPreparationHandler.getCHProfiles().size());
         for (CHProfile chProfile : chPreparationHandler.getCHProfiles()) {
             boolean added = chProfileSet.add(chProfile.getProfile());
@@ -1292,6 +1474,9 @@ public class GraphHopper {
         calcChecksums();
         initLocationIndex();
         importPublicTransit();
+        loadOrPreparePrecomputedWeights();
+        loadOrPrepareCustomizableCH();
+        loadOrPrepareGeometryLevels();
 
         if (closeEarly) {
             boolean includesCustomProfiles = profilesByName.values().stream().anyMatch(p -> CustomWeighting.NAME.equals(p.getWeighting()));
@@ -1341,13 +1526,61 @@ public class GraphHopper {
     }
 
     protected WeightingFactory createWeightingFactory() {
-        return new DefaultWeightingFactory(baseGraph.getBaseGraph(), getEncodingManager());
+        WeightingFactory weightingFactory = new DefaultWeightingFactory(baseGraph.getBaseGraph(), getEncodingManager());
+        if (precomputedWeights.isEmpty())
+            return weightingFactory;
+        return (profile, requestHints, disableTurnCosts) -> {
+            Weighting weighting = weightingFactory.createWeighting(profile, requestHints, disableTurnCosts);
+            EdgeWeightStorage storage = precomputedWeights.get(profile.getName());
+            if (storage == null)
+                return weighting;
+            CustomModel queryModel = requestHints.getObject(CustomModel.KEY, null);
+            if (queryModel == null)
+                return new PrecomputedWeighting(weighting, storage);
+            // a custom model in the request changes the edge weights, but if it only multiplies priority and speed
+            // we can still start from the precomputed ones
+            CustomModel baseModel = profile.getCustomModel();
+            CustomWeighting.Parameters deltaParameters = CustomModelParser.createDeltaParameters(baseModel, queryModel, getEncodingManager());
+            if (deltaParameters == null)
+                return weighting;
+            double baseDistanceInfluence = baseModel.getDistanceInfluence() == null ? 0 : baseModel.getDistanceInfluence();
+            return new PrecomputedDeltaWeighting(weighting, storage, baseDistanceInfluence, deltaParameters);
+        };
     }
 
     public GHResponse route(GHRequest request) {
         return createRouter().route(request);
     }
 
+    /**
+     * Calculates the routes of many independent requests at once, see {@link Router#routeBatch}. The routes are
+     * calculated on a thread pool of routing.batch.threads threads.
+     *
+     * @return one response per request in the order of the requests
+     */
+    public List<GHResponse> routeBatch(List<GHRequest> requests) {
+        return createRouter().routeBatch(requests, getBatchExecutor());
+    }
+
+    private synchronized ExecutorService getBatchExecutor() {
+        if (batchExecutor == null)
+            // daemon threads, so the pool does not prevent the JVM from exiting if close is not called
+            batchExecutor = Executors.newFixedThreadPool(routerConfig.getBatchThreads(), r -> {
+                Thread thread = new Thread(r, "route-batch");
+                thread.setDaemon(true);
+                return thread;
+            });
+        return batchExecutor;
+    }
+
+    /**
+     * Calculates the weights, times and distances between many points. This requires a CH preparation for the
+     * requested profile.
+     */
+    public GHMatrixResponse calcMatrix(GHMatrixRequest request) {
+        return createRouter().calcMatrix(request);
+    }
+
     private Router createRouter() {
         if (baseGraph == null || !fullyLoaded)
             throw new IllegalStateException("Do a successful call to load or importOrLoad before routing");
@@ -1364,7 +1597,7 @@ public class GraphHopper {
                                     PathDetailsBuilderFactory pathBuilderFactory, TranslationMap trMap, RouterConfig routerConfig,
                                     WeightingFactory weightingFactory, Map<String, RoutingCHGraph> chGraphs, Map<String, LandmarkStorage> landmarks) {
         return new Router(baseGraph, encodingManager, locationIndex, profilesByName, pathBuilderFactory,
-                trMap, routerConfig, weightingFactory, chGraphs, landmarks
+                trMap, routerConfig, weightingFactory, chGraphs, landmarks, customizableCH
         );
     }
 
@@ -1402,6 +1635,12 @@ public class GraphHopper {
         }
         int index = 0;
         for (Profile profile : profilesByName.values()) {
+            if (!allowWrites) {
+                // the properties cannot be stored anyway, so instead we check the graph files against the checksums
+                // that were calculated during the import
+                verifyChecksum("checksum.fwd." + profile.getName(), checksums_fwd[index]);
+                verifyChecksum("checksum.bwd." + profile.getName(), checksums_bwd[index]);
+            }
             properties.put("checksum.fwd." + profile.getName(), checksums_fwd[index]);
             properties.put("checksum.bwd." + profile.getName(), checksums_bwd[index]);
             logger.info("checksum.fwd." + profile.getName() + ": " + checksums_fwd[index]);
@@ -1411,6 +1650,17 @@ public class GraphHopper {
         logger.info("Calculating checksums took: " + sw.stop().getTimeString());
     }
 
+    /**
+     * Throws an exception if the given checksum differs from the one stored in the properties under the given key.
+     * Graphs that were imported without checksums are accepted.
+     */
+    private void verifyChecksum(String key, double checksum) {
+        String stored = properties.get(key);
+        if (!stored.isEmpty() && Double.parseDouble(stored) != checksum)
+            throw new IllegalStateException("The graph in " + ghLocation + " is corrupt. Checksum " + key
+                    + " does not match. Stored: " + stored + ", calculated: " + checksum);
+    }
+
     /**
      * Initializes the location index after the import is done.
      */
@@ -1429,6 +1679,14 @@ public class GraphHopper {
         properties.put("graph.profiles.ch." + profile + ".version", version);
     }
 
+    private String getPrecomputedWeightsVersion(String profile) {
+        return properties.get("graph.profiles.precomputed_weights." + profile + ".version");
+    }
+
+    private void setPrecomputedWeightsVersion(String profile, int version) {
+        properties.put("graph.profiles.precomputed_weights." + profile + ".version", version);
+    }
+
     private String getLMProfileVersion(String profile) {
         return properties.get("graph.profiles.lm." + profile + ".version");
     }
@@ -1477,6 +1735,67 @@ public class GraphHopper {
         return chPreparationHandler.prepare(baseGraph, properties, configsToPrepare, closeEarly);
     }
 
+    protected void loadOrPreparePrecomputedWeights() {
+        Map<String, EdgeWeightStorage> storages = new LinkedHashMap<>();
+        for (String profileName : precomputedWeightsProfiles) {
+            Profile profile = profilesByName.get(profileName);
+            String version = getPrecomputedWeightsVersion(profileName);
+            if (!version.isEmpty() && !version.equals("" + getProfileHash(profile)))
+                throw new IllegalArgumentException("Precomputed weights of " + profileName + " already exist in storage and don't match configuration");
+
+            EdgeWeightStorage storage = new EdgeWeightStorage(baseGraph.getDirectory(), profileName, baseGraph.getSegmentSize());
+            if (!storage.loadExisting()) {
+                ensureWriteAccess();
+                StopWatch sw = new StopWatch().start();
+                PrecomputedWeighting.calcWeights(baseGraph, createWeighting(profile, new PMap()), storage);
+                storage.flush();
+                setPrecomputedWeightsVersion(profileName, getProfileHash(profile));
+                logger.info("Calculated weights of {} edges for profile {} in {}s", Helper.nf(storage.getEdges()), profileName, sw.stop().getSeconds());
+            }
+            if (storage.getEdges() != baseGraph.getEdges())
+                throw new IllegalStateException("Precomputed weights of " + profileName + " were calculated for " + storage.getEdges() + " edges, but the graph has " + baseGraph.getEdges());
+            storages.put(profileName, storage);
+        }
+        precomputedWeights = storages;
+    }
+
+    protected void loadOrPrepareCustomizableCH() {
+        if (customizableCHProfiles.isEmpty())
+            return;
+        // the node order and arcs do not depend on the profiles, so there is only one storage for all of them
+        CCHStorage storage = new CCHStorage(baseGraph.getDirectory(), baseGraph.getSegmentSize());
+        if (!storage.loadExisting()) {
+            ensureWriteAccess();
+            new PrepareCustomizableCH(baseGraph, storage).doWork();
+            storage.flush();
+        }
+        customizableCH = new CustomizableCH(baseGraph, storage, customizableCHProfiles, createWeightingFactory(), customizableCHCacheSize).
+                setThreads(customizableCHThreads);
+        // the customization works on arrays, so we do not need the storage anymore
+        storage.close();
+    }
+
+    protected void loadOrPrepareGeometryLevels() {
+        if (geometryLevelTolerances.length == 0)
+            return;
+        String tolerances = Arrays.toString(geometryLevelTolerances);
+        String stored = properties.get("graph.geometry_levels");
+        if (!stored.isEmpty() && !stored.equals(tolerances))
+            throw new IllegalArgumentException("Geometry levels " + stored + " already exist in storage and don't match configuration " + tolerances);
+        GeometryLevelStorage storage = new GeometryLevelStorage(baseGraph.getDirectory(), geometryLevelTolerances.length, baseGraph.getSegmentSize());
+        if (!storage.loadExisting()) {
+            ensureWriteAccess();
+            EnumEncodedValue<RoadClass> roadClassEnc = encodingManager.hasEncodedValue(RoadClass.KEY)
+                    ? encodingManager.getEnumEncodedValue(RoadClass.KEY, RoadClass.class) : null;
+            new PrepareGeometryLevels(baseGraph, roadClassEnc, storage, geometryLevelTolerances).doWork();
+            storage.flush();
+            properties.put("graph.geometry_levels", tolerances);
+        }
+        if (storage.getEdges() != baseGraph.getEdges())
+            throw new IllegalStateException("Geometry levels were created for " + storage.getEdges() + " edges, but the graph has " + baseGraph.getEdges());
+        geometryLevels = storage;
+    }
+
     /**
      * For landmarks it is required to always call this method: either it creates the landmark data or it loads it.
      */
@@ -1553,6 +1872,11 @@ public class GraphHopper {
      * remove the files created in graphhopperLocation you have to call clean().
      */
     public void close() {
+        synchronized (this) {
+            if (batchExecutor != null)
+                batchExecutor.shutdownNow();
+            batchExecutor = null;
+        }
         if (baseGraph != null)
             baseGraph.close();
         if (properties != null)
@@ -1560,6 +1884,11 @@ public class GraphHopper {
 
         chGraphs.values().forEach(RoutingCHGraph::close);
         landmarks.values().forEach(LandmarkStorage::close);
+        precomputedWeights.values().forEach(EdgeWeightStorage::close);
+        if (customizableCH != null)
+            customizableCH.close();
+        if (geometryLevels != null)
+            geometryLevels.close();
 
         if (locationIndex != null)
             locationIndex.close();
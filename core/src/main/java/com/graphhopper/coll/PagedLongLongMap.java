@@ -0,0 +1,202 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.util.Helper;
+
+/**
+ * A {@link LongLongMap} that stores the values in pages of a {@link DataAccess}, so depending on the {@link Directory}
+ * the data lives in RAM or in a memory mapped file and not on the Java heap. Each page holds the values for a
+ * consecutive range of 2^pageBits keys, so this map is very compact if the keys are dense, like the IDs of the OSM nodes
+ * used by the ways of an OSM file. Only the small page table is stored on the heap.
+ * <p>
+ * The values are stored as difference to the empty value, so the zero bytes of a new page represent missing keys.
+ * Delete is not supported. Concurrent calls of get are safe as long as no other thread modifies the map.
+ */
+public class PagedLongLongMap implements LongLongMap {
+    // the page table is split into blocks of 2^TABLE_BITS entries that are created on demand
+    private static final int TABLE_BITS = 10;
+    private final Directory dir;
+    private final String name;
+    private final int pageBits;
+    private final int pageSize;
+    private final int bytesPerValue;
+    private final long pageBytes;
+    private final long emptyValue;
+    private final long minStoredValue;
+    private final long maxStoredValue;
+    // maps key >> (pageBits + TABLE_BITS) to a block of page numbers. page number 0 means there is no such page
+    private final GHLongObjectHashMap<int[]> pageTable = new GHLongObjectHashMap<>();
+    private DataAccess da;
+    private int pages;
+    private long size;
+    // the keys are often put in ascending order, so we remember the last block of the page table that was written
+    private long lastTableKey = Long.MIN_VALUE;
+    private int[] lastTable;
+
+    /**
+     * @param name          the name of the DataAccess that is created in the given directory
+     * @param pageBits      every page holds the values of 2^pageBits consecutive keys
+     * @param bytesPerValue the number of bytes used for every value, 4-8
+     * @param emptyValue    the value that is returned for missing keys
+     */
+    public PagedLongLongMap(Directory dir, String name, int pageBits, int bytesPerValue, long emptyValue) {
+        if (bytesPerValue < 4 || bytesPerValue > 8)
+            throw new IllegalArgumentException("bytesPerValue must be in [4, 8], but was " + bytesPerValue);
+        if (pageBits < 2 || pageBits > 20)
+            throw new IllegalArgumentException("pageBits must be in [2, 20], but was " + pageBits);
+        this.dir = dir;
+        this.name = name;
+        this.pageBits = pageBits;
+        this.pageSize = 1 << pageBits;
+        this.bytesPerValue = bytesPerValue;
+        // the lower four bytes of all values come first, so the ints are aligned and never cross a segment border.
+        // they are followed by one block for each additional byte
+        this.pageBytes = (long) pageSize * bytesPerValue;
+        this.emptyValue = emptyValue;
+        this.maxStoredValue = (1L << (bytesPerValue * 8 - 1)) - 1;
+        this.minStoredValue = -maxStoredValue - 1;
+    }
+
+    @Override
+    public long put(long key, long value) {
+        if (value == emptyValue)
+            throw new IllegalArgumentException("Value cannot be the 'empty value' " + emptyValue);
+        long stored = value - emptyValue;
+        if (stored > maxStoredValue || stored < minStoredValue || (value > emptyValue) != (stored > 0))
+            throw new IllegalArgumentException("Value " + value + " is out of range [" + (minStoredValue + emptyValue)
+                    + ", " + getMaxValue() + "]. Increase bytesPerValue (" + bytesPerValue + ")");
+
+        long pointer = getPagePointer(key, true);
+        int index = (int) (key & (pageSize - 1));
+        long old = read(pointer, index);
+        write(pointer, index, stored);
+        if (old == 0) {
+            size++;
+            return emptyValue;
+        }
+        return old + emptyValue;
+    }
+
+    @Override
+    public long get(long key) {
+        long pointer = getPagePointer(key, false);
+        if (pointer < 0)
+            return emptyValue;
+        return read(pointer, (int) (key & (pageSize - 1))) + emptyValue;
+    }
+
+    private long getPagePointer(long key, boolean create) {
+        long page = key >> pageBits;
+        long tableKey = page >> TABLE_BITS;
+        int[] table;
+        if (!create) {
+            // get can be called from several threads concurrently, so it must not modify the cached block
+            table = pageTable.get(tableKey);
+            if (table == null)
+                return -1;
+        } else if (tableKey == lastTableKey) {
+            table = lastTable;
+        } else {
+            table = pageTable.get(tableKey);
+            if (table == null) {
+                table = new int[1 << TABLE_BITS];
+                pageTable.put(tableKey, table);
+            }
+            lastTableKey = tableKey;
+            lastTable = table;
+        }
+        int tableIndex = (int) (page & ((1 << TABLE_BITS) - 1));
+        int pageNumber = table[tableIndex];
+        if (pageNumber == 0) {
+            if (!create)
+                return -1;
+            if (pages == Integer.MAX_VALUE - 1)
+                throw new IllegalStateException("Too many pages in " + name);
+            pageNumber = ++pages;
+            table[tableIndex] = pageNumber;
+            if (da == null)
+                da = dir.create(name).create(Math.max(1024, pageBytes));
+            da.ensureCapacity(pageNumber * pageBytes);
+        }
+        return (pageNumber - 1) * pageBytes;
+    }
+
+    private long read(long pointer, int index) {
+        int low = da.getInt(pointer + 4L * index);
+        if (bytesPerValue == 4)
+            return low;
+        long high = 0;
+        long bytePointer = pointer + 4L * pageSize + index;
+        for (int i = bytesPerValue - 5; i >= 0; i--) {
+            byte b = da.getByte(bytePointer + (long) i * pageSize);
+            // the highest byte carries the sign
+            high = i == bytesPerValue - 5 ? b : (high << 8) | (b & 0xFF);
+        }
+        return (high << 32) | (low & 0xFFFF_FFFFL);
+    }
+
+    private void write(long pointer, int index, long value) {
+        da.setInt(pointer + 4L * index, (int) value);
+        long bytePointer = pointer + 4L * pageSize + index;
+        for (int i = 0; i < bytesPerValue - 4; i++)
+            da.setByte(bytePointer + (long) i * pageSize, (byte) (value >> (32 + 8 * i)));
+    }
+
+    @Override
+    public long getSize() {
+        return size;
+    }
+
+    @Override
+    public long getMaxValue() {
+        return maxStoredValue + emptyValue;
+    }
+
+    @Override
+    public void optimize() {
+    }
+
+    /**
+     * @return memory usage in MB
+     */
+    @Override
+    public int getMemoryUsage() {
+        long bytes = (long) pageTable.size() * (4 << TABLE_BITS) + (da == null ? 0 : da.getCapacity());
+        return Math.round(bytes / Helper.MB);
+    }
+
+    @Override
+    public void clear() {
+        if (da != null)
+            dir.remove(name);
+        da = null;
+        pageTable.clear();
+        lastTableKey = Long.MIN_VALUE;
+        lastTable = null;
+        pages = 0;
+        size = 0;
+    }
+
+    @Override
+    public String toString() {
+        return name + ", size: " + size + ", pages: " + pages;
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import com.carrotsearch.hppc.LongArrayList;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.util.Helper;
+
+/**
+ * A {@link LongLongMap} for keys that are mostly inserted in ascending order, like the IDs of the OSM nodes in an OSM
+ * file. Such keys are appended to a {@link DataAccess} together with their values, so depending on the
+ * {@link Directory} the data lives in RAM or in a memory mapped file and not on the Java heap. Lookups do a binary
+ * search over the first keys of blocks of entries, which are kept on the heap, and then within the block. The few
+ * keys that are not inserted in ascending order are stored in an on-heap {@link GHLongLongBTree}.
+ * <p>
+ * Unlike {@link PagedLongLongMap} this map does not waste space for missing keys, so it should be used for sparse
+ * keys. Delete is not supported.
+ */
+public class SortedLongLongMap implements LongLongMap {
+    private static final int BLOCK_BITS = 7;
+    private final Directory dir;
+    private final String name;
+    private final int bytesPerValue;
+    private final int entryBytes;
+    private final long emptyValue;
+    private final long maxValue;
+    // the first key of every block of 2^BLOCK_BITS entries
+    private final LongArrayList blockKeys = new LongArrayList();
+    private DataAccess da;
+    private long sortedSize;
+    private long lastKey;
+    private GHLongLongBTree unsorted;
+
+    /**
+     * @param name          the name of the DataAccess that is created in the given directory
+     * @param bytesPerValue the number of bytes used for every value, 1-8
+     * @param emptyValue    the value that is returned for missing keys
+     */
+    public SortedLongLongMap(Directory dir, String name, int bytesPerValue, long emptyValue) {
+        if (bytesPerValue < 1 || bytesPerValue > 8)
+            throw new IllegalArgumentException("bytesPerValue must be in [1, 8], but was " + bytesPerValue);
+        this.dir = dir;
+        this.name = name;
+        this.bytesPerValue = bytesPerValue;
+        // every entry consists of the key and either an int or a long value, so all ints are aligned
+        this.entryBytes = bytesPerValue <= 4 ? 12 : 16;
+        this.emptyValue = emptyValue;
+        // reserve one bit for negative values, like GHLongLongBTree
+        this.maxValue = (1L << (bytesPerValue * 8 - 1)) - 1;
+    }
+
+    @Override
+    public long put(long key, long value) {
+        if (value > maxValue)
+            throw new IllegalArgumentException("Value " + value + " exceeded max value: " + maxValue
+                    + ". Increase bytesPerValue (" + bytesPerValue + ")");
+        if (value == emptyValue)
+            throw new IllegalArgumentException("Value cannot be the 'empty value' " + emptyValue);
+
+        if (sortedSize == 0 || key > lastKey) {
+            if (da == null)
+                da = dir.create(name).create(1024L * entryBytes);
+            long pointer = sortedSize * entryBytes;
+            da.ensureCapacity(pointer + entryBytes);
+            da.setInt(pointer, (int) key);
+            da.setInt(pointer + 4, (int) (key >>> 32));
+            writeValue(pointer, value);
+            if ((sortedSize & ((1 << BLOCK_BITS) - 1)) == 0)
+                blockKeys.add(key);
+            sortedSize++;
+            lastKey = key;
+            return emptyValue;
+        }
+
+        long index = findSorted(key);
+        if (index >= 0) {
+            long pointer = index * entryBytes;
+            long old = readValue(pointer);
+            writeValue(pointer, value);
+            return old;
+        }
+        if (unsorted == null)
+            unsorted = new GHLongLongBTree(200, bytesPerValue, emptyValue);
+        return unsorted.put(key, value);
+    }
+
+    @Override
+    public long get(long key) {
+        if (key <= lastKey) {
+            long index = findSorted(key);
+            if (index >= 0)
+                return readValue(index * entryBytes);
+        }
+        return unsorted == null ? emptyValue : unsorted.get(key);
+    }
+
+    /**
+     * @return the index of the given key in the sorted entries or -1 if it is not contained
+     */
+    private long findSorted(long key) {
+        if (sortedSize == 0 || key < blockKeys.get(0))
+            return -1;
+        // find the last block whose first key is not larger than the key
+        int low = 0, high = blockKeys.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (blockKeys.get(mid) <= key)
+                low = mid;
+            else
+                high = mid - 1;
+        }
+        long lowIndex = (long) low << BLOCK_BITS;
+        long highIndex = Math.min(sortedSize, lowIndex + (1 << BLOCK_BITS)) - 1;
+        while (lowIndex <= highIndex) {
+            long mid = (lowIndex + highIndex) >>> 1;
+            long midKey = readKey(mid * entryBytes);
+            if (midKey < key)
+                lowIndex = mid + 1;
+            else if (midKey > key)
+                highIndex = mid - 1;
+            else
+                return mid;
+        }
+        return -1;
+    }
+
+    private long readKey(long pointer) {
+        return (da.getInt(pointer) & 0xFFFF_FFFFL) | ((long) da.getInt(pointer + 4) << 32);
+    }
+
+    private long readValue(long pointer) {
+        if (entryBytes == 12)
+            return da.getInt(pointer + 8);
+        return (da.getInt(pointer + 8) & 0xFFFF_FFFFL) | ((long) da.getInt(pointer + 12) << 32);
+    }
+
+    private void writeValue(long pointer, long value) {
+        da.setInt(pointer + 8, (int) value);
+        if (entryBytes == 16)
+            da.setInt(pointer + 12, (int) (value >>> 32));
+    }
+
+    @Override
+    public long getSize() {
+        return sortedSize + (unsorted == null ? 0 : unsorted.getSize());
+    }
+
+    @Override
+    public long getMaxValue() {
+        return maxValue;
+    }
+
+    @Override
+    public void optimize() {
+        if (unsorted != null)
+            unsorted.optimize();
+    }
+
+    /**
+     * @return memory usage in MB
+     */
+    @Override
+    public int getMemoryUsage() {
+        long bytes = blockKeys.buffer.length * 8L + (da == null ? 0 : da.getCapacity());
+        return Math.round(bytes / Helper.MB) + (unsorted == null ? 0 : unsorted.getMemoryUsage());
+    }
+
+    @Override
+    public void clear() {
+        if (da != null)
+            dir.remove(name);
+        da = null;
+        blockKeys.release();
+        sortedSize = 0;
+        unsorted = null;
+    }
+
+    @Override
+    public String toString() {
+        return name + ", sorted: " + sortedSize + ", unsorted: " + (unsorted == null ? 0 : unsorted.getSize());
+    }
+}
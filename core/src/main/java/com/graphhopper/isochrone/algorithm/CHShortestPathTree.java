@@ -0,0 +1,243 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.isochrone.algorithm;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntIntHashMap;
+import com.carrotsearch.hppc.sorting.IndirectSort;
+import com.graphhopper.routing.SearchState;
+import com.graphhopper.routing.SearchStatePool;
+import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.querygraph.QueryRoutingCHGraph;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.storage.RoutingCHEdgeExplorer;
+import com.graphhopper.storage.RoutingCHEdgeIterator;
+import com.graphhopper.storage.RoutingCHGraph;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Computes the same shortest path tree as {@link ShortestPathTree}, but uses a node-based CH preparation to find
+ * the weights of all nodes (PHAST): first we run an upward search from the source node and then we do a single sweep
+ * over all nodes in descending CH level, where each node pulls its weight from its neighbors with higher levels. The
+ * cost of this does not depend on the limit and it does not need a priority queue for the sweep, so it is much faster
+ * than Dijkstra for large limits, but slower for small ones.
+ * <p>
+ * The tree itself (and the times and distances) is then derived from the weights using the original edges of the
+ * query graph, so the labels only refer to original edges like the ones of {@link ShortestPathTree}.
+ */
+public class CHShortestPathTree extends ShortestPathTree {
+    // the levels do not change once the preparation is done, so the order of the sweep is computed once per CH graph
+    private static final Map<RoutingCHGraph, int[]> NODES_BY_LEVEL = Collections.synchronizedMap(new WeakHashMap<>());
+    private final QueryGraph queryGraph;
+    private final RoutingCHGraph chGraph;
+    private SearchStatePool searchStatePool;
+    private IsoLabel[] labels = new IsoLabel[0];
+    private int visitedNodes;
+
+    public CHShortestPathTree(QueryGraph queryGraph, RoutingCHGraph chGraph, boolean reverseFlow) {
+        super(queryGraph, queryGraph.wrapWeighting(chGraph.getWeighting()), reverseFlow, TraversalMode.NODE_BASED);
+        if (chGraph.isEdgeBased())
+            throw new IllegalArgumentException("The CH-based shortest path tree requires a node-based CH preparation");
+        this.queryGraph = queryGraph;
+        this.chGraph = chGraph;
+    }
+
+    /**
+     * Sets the pool the state of the upward search is taken from. Without a pool a new search state, which is as large
+     * as the graph, is allocated for every search.
+     */
+    public CHShortestPathTree setSearchStatePool(SearchStatePool searchStatePool) {
+        this.searchStatePool = searchStatePool;
+        return this;
+    }
+
+    @Override
+    public void search(int from, Consumer<IsoLabel> consumer) {
+        checkAlreadyRun();
+        double[] chWeights = new double[queryGraph.getNodes()];
+        Arrays.fill(chWeights, Double.POSITIVE_INFINITY);
+        searchUpward(from, chWeights);
+        IntArrayList reachable = new IntArrayList();
+        sweepDownward(chWeights, reachable);
+        // the virtual nodes are not part of the sweep, they can only be reached by the upward search
+        for (int node = chGraph.getNodes(); node < chWeights.length; node++)
+            if (Double.isFinite(chWeights[node]))
+                reachable.add(node);
+
+        // the CH weights are rounded, so we only use them to find the order in which we build the tree. we only sort
+        // the reachable nodes and the arrays below are indexed by the position of the node in this order
+        int[] order = IndirectSort.mergesort(0, reachable.size(),
+                (a, b) -> Double.compare(chWeights[reachable.get(a)], chWeights[reachable.get(b)]));
+        int[] nodes = new int[order.length];
+        IntIntHashMap positions = new IntIntHashMap(order.length);
+        for (int i = 0; i < order.length; i++) {
+            nodes[i] = reachable.get(order[i]);
+            positions.put(nodes[i], i);
+        }
+        double[] weights = new double[nodes.length];
+        long[] times = new long[nodes.length];
+        double[] distances = new double[nodes.length];
+        Arrays.fill(weights, Double.POSITIVE_INFINITY);
+        labels = new IsoLabel[nodes.length];
+        int fromPos = positions.get(from);
+        weights[fromPos] = 0;
+        labels[fromPos] = new IsoLabel(from, EdgeIterator.NO_EDGE, 0, 0, 0, null);
+        consumer.accept(labels[fromPos]);
+        EdgeExplorer explorer = queryGraph.createEdgeExplorer();
+        for (int pos = 0; pos < nodes.length; pos++) {
+            if (pos == fromPos)
+                continue;
+            int node = nodes[pos];
+            // we arrive at node from one of its neighbors, or we leave it to one of them for reverse flow
+            EdgeIterator iter = explorer.setBaseNode(node);
+            int bestEdge = EdgeIterator.NO_EDGE;
+            int bestParent = -1;
+            while (iter.next()) {
+                int adjPos = positions.getOrDefault(iter.getAdjNode(), -1);
+                if (adjPos < 0 || Double.isInfinite(weights[adjPos]))
+                    continue;
+                double weight = weights[adjPos] + weighting.calcEdgeWeight(iter, !reverseFlow);
+                if (weight < weights[pos]) {
+                    weights[pos] = weight;
+                    bestEdge = iter.getEdge();
+                    bestParent = adjPos;
+                }
+            }
+            if (bestParent < 0)
+                continue;
+            EdgeIteratorState edge = queryGraph.getEdgeIteratorState(bestEdge, node);
+            times[pos] = times[bestParent] + weighting.calcEdgeMillis(edge, reverseFlow);
+            distances[pos] = distances[bestParent] + edge.getDistance();
+            IsoLabel parent = labels[bestParent];
+            // like ShortestPathTree we only create the labels of nodes that can be reached from nodes below the limit
+            if (parent == null || getExploreValue(parent) >= limit)
+                continue;
+            labels[pos] = new IsoLabel(node, bestEdge, weights[pos], times[pos], distances[pos], parent);
+            if (getExploreValue(labels[pos]) <= limit)
+                consumer.accept(labels[pos]);
+        }
+    }
+
+    private void searchUpward(int from, double[] chWeights) {
+        RoutingCHGraph queryCHGraph = new QueryRoutingCHGraph(chGraph, queryGraph);
+        RoutingCHEdgeExplorer explorer = reverseFlow ? queryCHGraph.createInEdgeExplorer() : queryCHGraph.createOutEdgeExplorer();
+        int capacity = queryGraph.getNodes();
+        SearchState state = searchStatePool == null ? new SearchState(capacity) : searchStatePool.acquire(capacity);
+        try {
+            searchUpward(from, chWeights, queryCHGraph, explorer, state);
+        } finally {
+            if (searchStatePool != null)
+                searchStatePool.release(state);
+        }
+    }
+
+    private void searchUpward(int from, double[] chWeights, RoutingCHGraph queryCHGraph, RoutingCHEdgeExplorer explorer, SearchState state) {
+        int baseNodes = chGraph.getNodes();
+        state.set(from, EdgeIterator.NO_EDGE, from, 0, SearchState.NO_PARENT);
+        state.push(from, 0);
+        while (!state.isHeapEmpty()) {
+            int curr = state.poll();
+            visitedNodes++;
+            chWeights[curr] = state.getWeight(curr);
+            RoutingCHEdgeIterator iter = explorer.setBaseNode(curr);
+            while (iter.next()) {
+                int adj = iter.getAdjNode();
+                if (iter.getEdge() == state.getEdge(curr))
+                    continue;
+                // always accept virtual edges, see AbstractBidirCHAlgo
+                if (curr < baseNodes && adj < baseNodes && queryCHGraph.getLevel(curr) > queryCHGraph.getLevel(adj))
+                    continue;
+                double weight = state.getWeight(curr) + iter.getWeight(reverseFlow);
+                if (Double.isInfinite(weight) || (state.contains(adj) && state.getWeight(adj) <= weight))
+                    continue;
+                state.set(adj, iter.getEdge(), adj, weight, curr);
+                state.push(adj, weight);
+            }
+        }
+    }
+
+    private void sweepDownward(double[] chWeights, IntArrayList reachable) {
+        int nodes = chGraph.getNodes();
+        int[] byLevel = NODES_BY_LEVEL.computeIfAbsent(chGraph, CHShortestPathTree::sortByLevel);
+        // the shortcuts are only stored at their lower level node, so each node pulls the weights from above. for reverse
+        // flow we need the edges that leave the node, otherwise the ones that arrive at it.
+        RoutingCHEdgeExplorer explorer = reverseFlow ? chGraph.createOutEdgeExplorer() : chGraph.createInEdgeExplorer();
+        for (int i = nodes - 1; i >= 0; i--) {
+            int node = byLevel[i];
+            int level = chGraph.getLevel(node);
+            double best = chWeights[node];
+            RoutingCHEdgeIterator iter = explorer.setBaseNode(node);
+            while (iter.next()) {
+                int adj = iter.getAdjNode();
+                if (chGraph.getLevel(adj) <= level || Double.isInfinite(chWeights[adj]))
+                    continue;
+                best = Math.min(best, chWeights[adj] + iter.getWeight(!reverseFlow));
+            }
+            if (Double.isFinite(best)) {
+                visitedNodes++;
+                reachable.add(node);
+            }
+            chWeights[node] = best;
+        }
+    }
+
+    private static int[] sortByLevel(RoutingCHGraph chGraph) {
+        int nodes = chGraph.getNodes();
+        // the levels are at most the number of nodes, so we can use counting sort to order the nodes by level
+        int[] counts = new int[nodes + 2];
+        for (int node = 0; node < nodes; node++)
+            counts[Math.min(chGraph.getLevel(node), nodes) + 1]++;
+        for (int i = 1; i < counts.length; i++)
+            counts[i] += counts[i - 1];
+        int[] byLevel = new int[nodes];
+        for (int node = 0; node < nodes; node++)
+            byLevel[counts[Math.min(chGraph.getLevel(node), nodes)]++] = node;
+        return byLevel;
+    }
+
+    @Override
+    public ArrayList<IsoLabel> getIsochroneEdges(double z) {
+        ArrayList<IsoLabel> result = new ArrayList<>();
+        for (IsoLabel label : labels) {
+            if (label != null && label.parent != null &&
+                    (getExploreValue(label) > z ^ getExploreValue(label.parent) > z)) {
+                result.add(label);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String getName() {
+        return "reachability|ch";
+    }
+
+    @Override
+    public int getVisitedNodes() {
+        return visitedNodes;
+    }
+}
@@ -0,0 +1,345 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.isochrone.algorithm;
+
+import com.carrotsearch.hppc.LongArrayList;
+import com.carrotsearch.hppc.LongDoubleHashMap;
+import com.carrotsearch.hppc.LongLongHashMap;
+import com.carrotsearch.hppc.cursors.LongCursor;
+import com.carrotsearch.hppc.cursors.LongDoubleCursor;
+import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.storage.index.Snap;
+import com.graphhopper.util.DistanceCalcEarth;
+import com.graphhopper.util.FetchMode;
+import com.graphhopper.util.PointList;
+import org.locationtech.jts.geom.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Builds isochrones from a raster of the shortest path tree instead of a triangulation of the visited nodes. Every cell
+ * of the raster stores the minimum value (time, distance or weight) of the roads that pass through it, where the
+ * values along an edge are interpolated between its nodes. Then the isolines of all requested values are traced in a
+ * single pass over the raster (marching squares).
+ * <p>
+ * The memory depends on the covered area and the resolution instead of the number of visited nodes, so this also
+ * works for limits that are too large for a triangulation. The isolines follow the roads more closely than the
+ * triangulation, the space between the roads is only included if it is enclosed by reachable roads.
+ */
+public class RasterIsochroneBuilder {
+    // a frame of cells that are never reached, so that all isolines are closed
+    private static final int FRAME = 2;
+    private final double cellLat;
+    private final double cellLon;
+    // the minimum value for every cell that was reached so far. the cells are the ones of a global grid
+    private final LongDoubleHashMap cells = new LongDoubleHashMap();
+    private int minRow = Integer.MAX_VALUE, maxRow = Integer.MIN_VALUE;
+    private int minCol = Integer.MAX_VALUE, maxCol = Integer.MIN_VALUE;
+    private long maxCells = 1_000_000;
+    private final GeometryFactory geometryFactory = new GeometryFactory(new PrecisionModel(1E8));
+    // the grid edges where the isoline crosses the boundary of the current square
+    private final long[] gridEdges = new long[4];
+    private final boolean[] exits = new boolean[4];
+
+    /**
+     * @param lat                the latitude where the cells are roughly square, e.g. the start of the isochrone
+     * @param resolutionInMeters the size of the cells
+     */
+    public RasterIsochroneBuilder(double lat, double resolutionInMeters) {
+        if (resolutionInMeters <= 0)
+            throw new IllegalArgumentException("The resolution must be positive but was " + resolutionInMeters);
+        cellLat = resolutionInMeters / DistanceCalcEarth.METERS_PER_DEGREE;
+        cellLon = cellLat / Math.cos(Math.toRadians(lat));
+    }
+
+    /**
+     * The maximum number of cells of the raster, which is the area of the bounding box of the reached cells divided
+     * by the area of a cell
+     */
+    public RasterIsochroneBuilder setMaxCells(long maxCells) {
+        this.maxCells = maxCells;
+        return this;
+    }
+
+    /**
+     * Runs the search of the given shortest path tree and adds the geometry of every edge of the tree.
+     */
+    public void add(Snap snap, QueryGraph queryGraph, ShortestPathTree shortestPathTree, ToDoubleFunction<ShortestPathTree.IsoLabel> fz) {
+        NodeAccess na = queryGraph.getNodeAccess();
+        shortestPathTree.search(snap.getClosestNode(), label -> {
+            if (label.parent == null) {
+                add(na.getLat(label.node), na.getLon(label.node), fz.applyAsDouble(label));
+            } else {
+                // the geometry goes from the parent to the node
+                PointList points = queryGraph.getEdgeIteratorState(label.edge, label.node).fetchWayGeometry(FetchMode.ALL);
+                add(points, fz.applyAsDouble(label.parent), fz.applyAsDouble(label));
+            }
+        });
+    }
+
+    public void add(double lat, double lon, double z) {
+        addCell((int) Math.round(lat / cellLat), (int) Math.round(lon / cellLon), z);
+    }
+
+    /**
+     * Adds a line with the value fromZ at the first point and toZ at the last point. The values in between are
+     * interpolated along the line.
+     */
+    public void add(PointList points, double fromZ, double toZ) {
+        double length = 0;
+        for (int i = 1; i < points.size(); i++)
+            length += cellDistance(points, i - 1, i);
+        double dist = 0;
+        add(points.getLat(0), points.getLon(0), fromZ);
+        for (int i = 1; i < points.size(); i++) {
+            double segmentLength = cellDistance(points, i - 1, i);
+            // at least two samples per cell, so that the cells of the line are connected
+            int steps = (int) Math.ceil(segmentLength * 2);
+            for (int step = 1; step <= steps; step++) {
+                double f = (double) step / steps;
+                double lat = points.getLat(i - 1) + f * (points.getLat(i) - points.getLat(i - 1));
+                double lon = points.getLon(i - 1) + f * (points.getLon(i) - points.getLon(i - 1));
+                double z = length == 0 ? toZ : fromZ + (toZ - fromZ) * (dist + f * segmentLength) / length;
+                add(lat, lon, z);
+            }
+            dist += segmentLength;
+        }
+    }
+
+    private double cellDistance(PointList points, int from, int to) {
+        double dRow = (points.getLat(to) - points.getLat(from)) / cellLat;
+        double dCol = (points.getLon(to) - points.getLon(from)) / cellLon;
+        return Math.sqrt(dRow * dRow + dCol * dCol);
+    }
+
+    private void addCell(int row, int col, double z) {
+        long key = ((long) row << 32) | (col & 0xFFFFFFFFL);
+        int index = cells.indexOf(key);
+        if (index >= 0) {
+            if (z < cells.indexGet(index))
+                cells.indexReplace(index, z);
+            return;
+        }
+        cells.indexInsert(index, key, z);
+        if (cells.size() > maxCells)
+            throw new IllegalArgumentException("Too many raster cells (" + cells.size() + "). Use a larger resolution.");
+        minRow = Math.min(minRow, row);
+        maxRow = Math.max(maxRow, row);
+        minCol = Math.min(minCol, col);
+        maxCol = Math.max(maxCol, col);
+    }
+
+    /**
+     * @return the number of cells that were reached
+     */
+    public int getCells() {
+        return cells.size();
+    }
+
+    /**
+     * Calculates the isolines of all given values in a single pass over the raster.
+     *
+     * @param zs the values of the isolines in ascending order
+     * @return the area with a value of at most z for every given z
+     */
+    public List<MultiPolygon> computeIsolines(double... zs) {
+        for (int i = 1; i < zs.length; i++)
+            if (zs[i] <= zs[i - 1])
+                throw new IllegalArgumentException("The values of the isolines must be ascending: " + Arrays.toString(zs));
+        List<MultiPolygon> result = new ArrayList<>(zs.length);
+        if (cells.isEmpty()) {
+            for (int i = 0; i < zs.length; i++)
+                result.add(geometryFactory.createMultiPolygon());
+            return result;
+        }
+        Grid grid = createGrid();
+        // for every isoline we map the grid edge where a segment starts to the grid edge where it ends
+        LongLongHashMap[] segments = new LongLongHashMap[zs.length];
+        for (int i = 0; i < zs.length; i++)
+            segments[i] = new LongLongHashMap();
+        int width = grid.width;
+        float[] values = grid.values;
+        for (int row = 0; row < grid.height - 1; row++) {
+            for (int col = 0; col < width - 1; col++) {
+                int index = row * width + col;
+                float v0 = values[index], v1 = values[index + 1], v2 = values[index + width + 1], v3 = values[index + width];
+                float min = Math.min(Math.min(v0, v1), Math.min(v2, v3));
+                if (min == Float.POSITIVE_INFINITY)
+                    continue;
+                float max = Math.max(Math.max(v0, v1), Math.max(v2, v3));
+                // only the isolines with min <= z < max cross this square
+                for (int i = lowerBound(zs, min); i < zs.length && zs[i] < max; i++)
+                    addSegments(segments[i], zs[i], row, col, width, v0, v1, v2, v3);
+            }
+        }
+        for (int i = 0; i < zs.length; i++)
+            result.add(createPolygons(grid, segments[i], zs[i]));
+        return result;
+    }
+
+    private static int lowerBound(double[] zs, double value) {
+        int low = 0, high = zs.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (zs[mid] < value)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    private Grid createGrid() {
+        int width = maxCol - minCol + 1 + 2 * FRAME;
+        int height = maxRow - minRow + 1 + 2 * FRAME;
+        if ((long) width * height > maxCells)
+            throw new IllegalArgumentException("Too many raster cells (" + width + "x" + height + "). Use a larger resolution.");
+        float[] values = new float[width * height];
+        Arrays.fill(values, Float.POSITIVE_INFINITY);
+        for (LongDoubleCursor cursor : cells) {
+            int row = (int) (cursor.key >> 32) - minRow + FRAME;
+            int col = (int) cursor.key - minCol + FRAME;
+            values[row * width + col] = (float) cursor.value;
+        }
+        // every cell takes the minimum of its neighbors, which closes the gaps between diagonal cells and gives the
+        // roads a width of three cells. the frame stays unreached, because it is wider than one cell.
+        float[] tmp = new float[values.length];
+        for (int row = 0; row < height; row++)
+            for (int col = 0; col < width; col++) {
+                int index = row * width + col;
+                float v = values[index];
+                if (col > 0) v = Math.min(v, values[index - 1]);
+                if (col < width - 1) v = Math.min(v, values[index + 1]);
+                tmp[index] = v;
+            }
+        for (int row = 0; row < height; row++)
+            for (int col = 0; col < width; col++) {
+                int index = row * width + col;
+                float v = tmp[index];
+                if (row > 0) v = Math.min(v, tmp[index - width]);
+                if (row < height - 1) v = Math.min(v, tmp[index + width]);
+                values[index] = v;
+            }
+        return new Grid(width, height, minRow - FRAME, minCol - FRAME, values);
+    }
+
+    /**
+     * Adds the isoline segments of the square whose lower left corner is at the given row and column. The corners are
+     * numbered counter-clockwise starting at the lower left one and the edges of the square go from corner k to k + 1.
+     * The segments go from an edge where the square boundary leaves the area to an edge where it enters the area, so
+     * that the area is to the left of the segments.
+     */
+    private void addSegments(LongLongHashMap segments, double z, int row, int col, int width,
+                             float v0, float v1, float v2, float v3) {
+        boolean in0 = v0 <= z, in1 = v1 <= z, in2 = v2 <= z, in3 = v3 <= z;
+        int crossings = 0;
+        int index = row * width + col;
+        if (in0 != in1) {
+            gridEdges[crossings] = horizontalEdge(index);
+            exits[crossings++] = in0;
+        }
+        if (in1 != in2) {
+            gridEdges[crossings] = verticalEdge(index + 1);
+            exits[crossings++] = in1;
+        }
+        if (in2 != in3) {
+            gridEdges[crossings] = horizontalEdge(index + width);
+            exits[crossings++] = in2;
+        }
+        if (in3 != in0) {
+            gridEdges[crossings] = verticalEdge(index);
+            exits[crossings++] = in3;
+        }
+        if (crossings == 2) {
+            int exit = exits[0] ? 0 : 1;
+            segments.put(gridEdges[exit], gridEdges[1 - exit]);
+        } else if (crossings == 4) {
+            // for a saddle the value at the center decides if the inside corners are connected
+            boolean connected = (v0 + v1 + v2 + v3) / 4 <= z;
+            for (int i = 0; i < 4; i++)
+                if (exits[i])
+                    segments.put(gridEdges[i], gridEdges[connected ? (i + 1) % 4 : (i + 3) % 4]);
+        }
+    }
+
+    private static long horizontalEdge(int index) {
+        return (long) index << 1;
+    }
+
+    private static long verticalEdge(int index) {
+        return ((long) index << 1) | 1;
+    }
+
+    private MultiPolygon createPolygons(Grid grid, LongLongHashMap segments, double z) {
+        LongArrayList starts = new LongArrayList(segments.size());
+        for (LongCursor cursor : segments.keys())
+            starts.add(cursor.value);
+        List<LinearRing> rings = new ArrayList<>();
+        List<Coordinate> coordinates = new ArrayList<>();
+        for (int i = 0; i < starts.size(); i++) {
+            long start = starts.get(i);
+            if (!segments.containsKey(start))
+                continue;
+            coordinates.clear();
+            long gridEdge = start;
+            do {
+                coordinates.add(grid.getCoordinate(gridEdge, z));
+                gridEdge = segments.remove(gridEdge);
+            } while (gridEdge != start);
+            coordinates.add(coordinates.get(0));
+            if (coordinates.size() >= 4)
+                rings.add(geometryFactory.createLinearRing(coordinates.toArray(new Coordinate[0])));
+        }
+        List<Polygon> polygons = ContourBuilder.punchHoles(geometryFactory, rings);
+        return geometryFactory.createMultiPolygon(polygons.toArray(new Polygon[0]));
+    }
+
+    private class Grid {
+        final int width;
+        final int height;
+        final int row0;
+        final int col0;
+        final float[] values;
+
+        Grid(int width, int height, int row0, int col0, float[] values) {
+            this.width = width;
+            this.height = height;
+            this.row0 = row0;
+            this.col0 = col0;
+            this.values = values;
+        }
+
+        /**
+         * @return the point on the given grid edge where the value is z, interpolated between both ends of the edge
+         */
+        Coordinate getCoordinate(long gridEdge, double z) {
+            int index = (int) (gridEdge >> 1);
+            boolean vertical = (gridEdge & 1) == 1;
+            int other = vertical ? index + width : index + 1;
+            double from = values[index], to = values[other];
+            double f = Double.isInfinite(from) || Double.isInfinite(to) ? 0.5 : Math.max(0, Math.min(1, (z - from) / (to - from)));
+            double row = row0 + index / width + (vertical ? f : 0);
+            double col = col0 + index % width + (vertical ? 0 : f);
+            return new Coordinate(col * cellLon, row * cellLat);
+        }
+    }
+}
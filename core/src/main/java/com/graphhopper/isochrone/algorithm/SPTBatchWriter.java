@@ -0,0 +1,165 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.isochrone.algorithm;
+
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.util.Helper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Writes the labels of a shortest path tree in a compact binary format while the search is running. The labels are
+ * collected in batches of a fixed number of rows and every batch is written and flushed as soon as it is full, so the
+ * memory does not depend on the number of labels. A slow reader blocks the search until it has consumed the previous
+ * batches. Every batch is encoded into a buffer first and written to the stream at once.
+ * <p>
+ * All numbers are big-endian. The stream starts with the magic bytes "GHSP", the format version (int), the number of
+ * columns (short) and the column names (modified UTF-8 as in DataOutput.writeUTF). Then the batches follow, each
+ * starting with the number of rows (int) followed by the values of one column after another, one int per row. A batch
+ * with zero rows marks the end of the stream. Latitude and longitude are stored in 1e-7 degrees like in
+ * Helper.degreeToInt, time in milliseconds and distance in meters. The start label has -1 in the previous node and
+ * edge columns.
+ */
+public class SPTBatchWriter implements Consumer<ShortestPathTree.IsoLabel> {
+    public static final int VERSION = 1;
+    public static final List<String> COLUMNS = List.of("node_id", "prev_node_id", "edge_id", "prev_edge_id", "time", "distance", "latitude", "longitude");
+    private static final int NODE_ID = 0, PREV_NODE_ID = 1, EDGE_ID = 2, PREV_EDGE_ID = 3, TIME = 4, DISTANCE = 5, LATITUDE = 6, LONGITUDE = 7;
+
+    private OutputStream out;
+    private final NodeAccess nodeAccess;
+    private final List<String> columns;
+    private final int[] columnTypes;
+    private final int[][] batch;
+    // the encoded batch, with room for the end of the stream after the last batch
+    private final ByteBuffer buffer;
+    private int rows;
+    private long totalRows;
+
+    public SPTBatchWriter(NodeAccess nodeAccess, List<String> columns, int batchSize) {
+        if (columns.isEmpty())
+            throw new IllegalArgumentException("At least one column is required");
+        if (batchSize < 1)
+            throw new IllegalArgumentException("batch size must be positive but was " + batchSize);
+        this.nodeAccess = nodeAccess;
+        this.columns = columns;
+        this.columnTypes = new int[columns.size()];
+        for (int i = 0; i < columns.size(); i++) {
+            columnTypes[i] = COLUMNS.indexOf(columns.get(i));
+            if (columnTypes[i] < 0)
+                throw new IllegalArgumentException("Unknown column " + columns.get(i) + " for the binary output, supported are " + COLUMNS);
+        }
+        this.batch = new int[columns.size()][batchSize];
+        this.buffer = ByteBuffer.allocate(Math.addExact(8, Math.multiplyExact(4 * columns.size(), batchSize)));
+    }
+
+    /**
+     * Writes the header to the specified stream. All following labels are written to this stream.
+     */
+    public void start(OutputStream outputStream) throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream dataOut = new DataOutputStream(header);
+        dataOut.writeBytes("GHSP");
+        dataOut.writeInt(VERSION);
+        dataOut.writeShort(columns.size());
+        for (String column : columns)
+            dataOut.writeUTF(column);
+        out = outputStream;
+        header.writeTo(out);
+    }
+
+    @Override
+    public void accept(ShortestPathTree.IsoLabel label) {
+        for (int i = 0; i < columnTypes.length; i++)
+            batch[i][rows] = getValue(columnTypes[i], label);
+        rows++;
+        if (rows == batch[0].length) {
+            try {
+                writeBatch();
+            } catch (IOException ex) {
+                // e.g. the client closed the connection, this stops the search
+                throw new UncheckedIOException(ex);
+            }
+        }
+    }
+
+    private int getValue(int columnType, ShortestPathTree.IsoLabel label) {
+        switch (columnType) {
+            case NODE_ID:
+                return label.node;
+            case PREV_NODE_ID:
+                return label.parent == null ? -1 : label.parent.node;
+            case EDGE_ID:
+                return label.edge;
+            case PREV_EDGE_ID:
+                return label.parent == null ? -1 : label.parent.edge;
+            case TIME:
+                return (int) label.time;
+            case DISTANCE:
+                return (int) Math.round(label.distance);
+            case LATITUDE:
+                return Helper.degreeToInt(nodeAccess.getLat(label.node));
+            case LONGITUDE:
+                return Helper.degreeToInt(nodeAccess.getLon(label.node));
+            default:
+                throw new IllegalStateException("Unknown column type " + columnType);
+        }
+    }
+
+    private void writeBatch() throws IOException {
+        buffer.clear();
+        encodeBatch();
+        writeBuffer();
+    }
+
+    private void encodeBatch() {
+        buffer.putInt(rows);
+        for (int[] values : batch) {
+            for (int row = 0; row < rows; row++)
+                buffer.putInt(values[row]);
+        }
+        totalRows += rows;
+        rows = 0;
+    }
+
+    private void writeBuffer() throws IOException {
+        out.write(buffer.array(), 0, buffer.position());
+        out.flush();
+    }
+
+    /**
+     * Writes the labels of the last batch and the end of the stream.
+     */
+    public void finish() throws IOException {
+        buffer.clear();
+        if (rows > 0)
+            encodeBatch();
+        buffer.putInt(0);
+        writeBuffer();
+    }
+
+    public long getTotalRows() {
+        return totalRows;
+    }
+}
@@ -17,7 +17,6 @@
  */
 package com.graphhopper.reader.dem;
 
-import com.graphhopper.coll.GHIntObjectHashMap;
 import com.graphhopper.storage.DataAccess;
 import com.graphhopper.util.Downloader;
 import com.graphhopper.util.Helper;
@@ -39,7 +38,7 @@ public abstract class AbstractSRTMElevationProvider extends TileBasedElevationPr
     private final int WIDTH_BYTE_INDEX = 0;
     private final int DEGREE = 1;
     // use a map as an array is not quite useful if we want to hold only parts of the world
-    private final GHIntObjectHashMap<HeightTile> cacheData = new GHIntObjectHashMap<>();
+    private final HeightTileCache<Integer> cacheData = new HeightTileCache<>(this);
     private final double precision = 1e7;
     private final double invPrecision = 1 / precision;
 
@@ -60,6 +59,8 @@ public abstract class AbstractSRTMElevationProvider extends TileBasedElevationPr
 
     @Override
     public void release() {
+        if (cacheData.getEvictions() > 0)
+            logger.info("closed " + cacheData.getEvictions() + " elevation tiles to stay below " + cacheMaxBytes + " bytes");
         cacheData.clear();
         if (dir != null) {
             // for memory mapped type we remove temporary files
@@ -112,12 +113,12 @@ public abstract class AbstractSRTMElevationProvider extends TileBasedElevationPr
                     updateHeightsFromFile(lat, lon, heights);
                 } catch (FileNotFoundException ex) {
                     demProvider = new HeightTile(minLat, minLon, DEFAULT_WIDTH, DEFAULT_WIDTH, precision, DEGREE, DEGREE);
-                    cacheData.put(intKey, demProvider);
                     demProvider.setHeights(heights);
-                    demProvider.setSeaLevel(true);
                     // use small size on disc and in-memory
-                    heights.create(10)
-                            .flush();
+                    heights.create(10);
+                    demProvider.setSeaLevel(true);
+                    heights.flush();
+                    cacheData.put(intKey, demProvider);
                     return 0;
                 }
             }
@@ -127,9 +128,11 @@ public abstract class AbstractSRTMElevationProvider extends TileBasedElevationPr
                 width = DEFAULT_WIDTH;
 
             demProvider = new HeightTile(minLat, minLon, width, width, precision, DEGREE, DEGREE);
-            cacheData.put(intKey, demProvider);
             demProvider.setInterpolate(interpolate);
             demProvider.setHeights(heights);
+            if (loadExisting)
+                demProvider.loadSeaLevel();
+            cacheData.put(intKey, demProvider);
         }
 
         if (demProvider.isSeaLevel())
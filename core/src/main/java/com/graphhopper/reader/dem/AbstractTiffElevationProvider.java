@@ -25,8 +25,6 @@ import java.awt.image.Raster;
 import java.io.File;
 import java.io.IOException;
 import java.net.SocketTimeoutException;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * Provides basic methods that are usually used in an ElevationProvider that reads tiff files.
@@ -34,7 +32,7 @@ import java.util.Map;
  * @author Robin Boldt
  */
 public abstract class AbstractTiffElevationProvider extends TileBasedElevationProvider {
-    private final Map<String, HeightTile> cacheData = new HashMap<>();
+    private final HeightTileCache<String> cacheData = new HeightTileCache<>(this);
     final double precision = 1e7;
 
     private final int WIDTH;
@@ -57,6 +55,8 @@ public abstract class AbstractTiffElevationProvider extends TileBasedElevationPr
 
     @Override
     public void release() {
+        if (cacheData.getEvictions() > 0)
+            logger.info("closed " + cacheData.getEvictions() + " elevation tiles to stay below " + cacheMaxBytes + " bytes");
         cacheData.clear();
         if (dir != null) {
             // for memory mapped type we remove temporary files
@@ -117,7 +117,6 @@ public abstract class AbstractTiffElevationProvider extends TileBasedElevationPr
             demProvider = new HeightTile(minLat, minLon, WIDTH, HEIGHT, LON_DEGREE * precision, LON_DEGREE, LAT_DEGREE);
             demProvider.setInterpolate(interpolate);
 
-            cacheData.put(name, demProvider);
             DataAccess heights = getDirectory().create(name + ".gh");
             demProvider.setHeights(heights);
             boolean loadExisting = false;
@@ -136,9 +135,11 @@ public abstract class AbstractTiffElevationProvider extends TileBasedElevationPr
                     } catch (SSLException ex) {
                         throw new IllegalStateException("SSL problem with elevation provider " + getClass().getSimpleName(), ex);
                     } catch (IOException ex) {
-                        demProvider.setSeaLevel(true);
                         // use small size on disc and in-memory
-                        heights.create(10).flush();
+                        heights.create(10);
+                        demProvider.setSeaLevel(true);
+                        heights.flush();
+                        cacheData.put(name, demProvider);
                         return 0;
                     }
 
@@ -148,7 +149,10 @@ public abstract class AbstractTiffElevationProvider extends TileBasedElevationPr
                 Raster raster = readFile(zipFile, name + ".tif");
                 fillDataAccessWithElevationData(raster, heights, WIDTH);
 
-            } // loadExisting
+            } else {
+                demProvider.loadSeaLevel();
+            }
+            cacheData.put(name, demProvider);
         }
 
         if (demProvider.isSeaLevel())
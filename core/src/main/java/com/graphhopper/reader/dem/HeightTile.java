@@ -32,6 +32,8 @@ import java.io.IOException;
  * @author Peter Karich
  */
 public class HeightTile {
+    // the other header slots can be used by the providers, e.g. for the width
+    private static final int SEA_LEVEL_BYTE_INDEX = 4;
     private final int minLat;
     private final int minLon;
     private final int width;
@@ -43,6 +45,7 @@ public class HeightTile {
     private final double latHigherBound;
     private DataAccess heights;
     private boolean interpolate;
+    private boolean seaLevel;
     private final double MIN_ELEVATION_METERS = -12_000;
     private final double MAX_ELEVATION_METERS = 9_000;
 
@@ -66,18 +69,34 @@ public class HeightTile {
     }
 
     public boolean isSeaLevel() {
-        return heights.getHeader(0) == 1;
+        return seaLevel;
     }
 
+    /**
+     * Marks this tile as sea level, which is also stored in the header of the heights, see {@link #loadSeaLevel}.
+     */
     public HeightTile setSeaLevel(boolean b) {
-        heights.setHeader(0, b ? 1 : 0);
+        seaLevel = b;
+        heights.setHeader(SEA_LEVEL_BYTE_INDEX, b ? 1 : 0);
         return this;
     }
 
+    /**
+     * Restores the sea level flag after the heights were loaded from an existing file. Heights that are too small
+     * for a full tile, like the ones of sea level tiles written by older versions, are treated as sea level too.
+     */
+    void loadSeaLevel() {
+        seaLevel = heights.getHeader(SEA_LEVEL_BYTE_INDEX) == 1 || heights.getCapacity() < 2L * width * height;
+    }
+
     void setHeights(DataAccess da) {
         this.heights = da;
     }
 
+    DataAccess getHeights() {
+        return heights;
+    }
+
     private short getHeightSample(int x, int y) {
         // always keep in mind factor 2 because of short value
         return heights.getShort(2L * ((long) y * width + x));
@@ -0,0 +1,75 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader.dem;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the recently used height tiles of a {@link TileBasedElevationProvider} open. If the open tiles need more
+ * than {@link TileBasedElevationProvider#setCacheMaxBytes} the least recently used tiles are closed. The DataAccess
+ * files of closed tiles are kept in the cache directory so that loading them again is cheap.
+ *
+ * @param <K> the key of a tile
+ */
+class HeightTileCache<K> {
+    private final TileBasedElevationProvider provider;
+    private final LinkedHashMap<K, HeightTile> tiles = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private long evictions;
+
+    HeightTileCache(TileBasedElevationProvider provider) {
+        this.provider = provider;
+    }
+
+    HeightTile get(K key) {
+        return tiles.get(key);
+    }
+
+    /**
+     * Adds the given tile, whose heights have to be loaded already, and closes the least recently used tiles if the
+     * cache exceeds its size limit. The new tile is never closed.
+     */
+    void put(K key, HeightTile tile) {
+        HeightTile old = tiles.put(key, tile);
+        if (old != null)
+            throw new IllegalStateException("Tile " + key + " was already cached");
+        bytes += tile.getHeights().getCapacity();
+        Iterator<Map.Entry<K, HeightTile>> iter = tiles.entrySet().iterator();
+        while (bytes > provider.cacheMaxBytes && tiles.size() > 1) {
+            HeightTile eldest = iter.next().getValue();
+            iter.remove();
+            bytes -= eldest.getHeights().getCapacity();
+            provider.getDirectory().close(eldest.getHeights().getName());
+            evictions++;
+        }
+    }
+
+    long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Forgets all tiles without closing them, which is up to the directory of the provider.
+     */
+    void clear() {
+        tiles.clear();
+        bytes = 0;
+    }
+}
@@ -91,6 +91,14 @@ public class MultiSource3ElevationProvider extends TileBasedElevationProvider {
         return this;
     }
 
+    @Override
+    public MultiSource3ElevationProvider setCacheMaxBytes(long cacheMaxBytes) {
+        srtmProvider.setCacheMaxBytes(cacheMaxBytes);
+        globalProvider.setCacheMaxBytes(cacheMaxBytes);
+        sonnyProvider.setCacheMaxBytes(cacheMaxBytes);
+        return this;
+    }
+
     @Override
     public MultiSource3ElevationProvider setInterpolate(boolean interpolate) {
         srtmProvider.setInterpolate(interpolate);
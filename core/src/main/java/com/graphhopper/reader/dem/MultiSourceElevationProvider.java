@@ -82,6 +82,13 @@ public class MultiSourceElevationProvider extends TileBasedElevationProvider {
         return this;
     }
 
+    @Override
+    public MultiSourceElevationProvider setCacheMaxBytes(long cacheMaxBytes) {
+        srtmProvider.setCacheMaxBytes(cacheMaxBytes);
+        globalProvider.setCacheMaxBytes(cacheMaxBytes);
+        return this;
+    }
+
     @Override
     public MultiSourceElevationProvider setInterpolate(boolean interpolate) {
         srtmProvider.setInterpolate(interpolate);
@@ -42,6 +42,7 @@ public abstract class TileBasedElevationProvider implements ElevationProvider {
     boolean interpolate = false;
     boolean autoRemoveTemporary = true;
     long sleep = 2000;
+    long cacheMaxBytes = Long.MAX_VALUE;
 
     protected TileBasedElevationProvider(String cacheDirString) {
         File cacheDir = new File(cacheDirString);
@@ -103,6 +104,18 @@ public abstract class TileBasedElevationProvider implements ElevationProvider {
         return this;
     }
 
+    /**
+     * Limits the size of the height tiles that are kept open. If more tiles are needed, the least recently used
+     * tiles are closed. Their files are kept, so they can be loaded again without decoding them again. This keeps
+     * the memory usage bounded when importing large areas with high resolution data. Default is no limit.
+     */
+    public TileBasedElevationProvider setCacheMaxBytes(long cacheMaxBytes) {
+        if (cacheMaxBytes <= 0)
+            throw new IllegalArgumentException("cacheMaxBytes must be positive but was " + cacheMaxBytes);
+        this.cacheMaxBytes = cacheMaxBytes;
+        return this;
+    }
+
     public TileBasedElevationProvider setDownloader(Downloader downloader) {
         this.downloader = downloader;
         return this;
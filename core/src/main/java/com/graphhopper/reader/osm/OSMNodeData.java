@@ -22,6 +22,8 @@ import com.carrotsearch.hppc.LongScatterSet;
 import com.carrotsearch.hppc.LongSet;
 import com.graphhopper.coll.GHLongLongBTree;
 import com.graphhopper.coll.LongLongMap;
+import com.graphhopper.coll.PagedLongLongMap;
+import com.graphhopper.coll.SortedLongLongMap;
 import com.graphhopper.reader.ReaderNode;
 import com.graphhopper.search.KVStorage;
 import com.graphhopper.storage.Directory;
@@ -80,14 +82,29 @@ class OSMNodeData {
     private long nextArtificialOSMNodeId = -Long.MAX_VALUE;
 
     public OSMNodeData(PointAccess nodeAccess, Directory directory) {
-        // We use a b-tree that can store as many entries as there are longs. A tree is also more
-        // memory efficient, because there is no waste for empty entries, and it also avoids
-        // allocating big arrays when growing the size.
-        idsByOsmNodeIds = new GHLongLongBTree(200, 5, EMPTY_NODE);
+        this(nodeAccess, directory, false);
+    }
+
+    /**
+     * @param offHeapNodeIndex if true the maps from OSM node IDs to our internal IDs and node tag indices are stored
+     *                         in DataAccess objects of the given directory instead of on the heap
+     */
+    public OSMNodeData(PointAccess nodeAccess, Directory directory, boolean offHeapNodeIndex) {
+        if (offHeapNodeIndex) {
+            // Most OSM nodes are used by ways, so the OSM node IDs we store are dense enough for a paged array. The
+            // tagged nodes are sparse, but they are added in the order of the OSM file, i.e. with ascending IDs.
+            idsByOsmNodeIds = new PagedLongLongMap(directory, "tmp_osm_node_ids", 8, 5, EMPTY_NODE);
+            nodeTagIndicesByOsmNodeIds = new SortedLongLongMap(directory, "tmp_osm_node_tag_indices", 4, -1);
+        } else {
+            // We use a b-tree that can store as many entries as there are longs. A tree is also more
+            // memory efficient, because there is no waste for empty entries, and it also avoids
+            // allocating big arrays when growing the size.
+            idsByOsmNodeIds = new GHLongLongBTree(200, 5, EMPTY_NODE);
+            nodeTagIndicesByOsmNodeIds = new GHLongLongBTree(200, 4, -1);
+        }
         towerNodes = nodeAccess;
         pillarNodes = new PillarInfo(towerNodes.is3D(), directory);
 
-        nodeTagIndicesByOsmNodeIds = new GHLongLongBTree(200, 4, -1);
         nodesToBeSplit = new LongScatterSet();
         nodeKVStorage = new KVStorage(directory, false).create(100);
     }
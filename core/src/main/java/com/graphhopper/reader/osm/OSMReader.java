@@ -31,6 +31,7 @@ import com.graphhopper.reader.dem.ElevationProvider;
 import com.graphhopper.routing.OSMReaderConfig;
 import com.graphhopper.routing.ev.Country;
 import com.graphhopper.routing.ev.EdgeIntAccess;
+import com.graphhopper.routing.ev.IntsRefEdgeIntAccess;
 import com.graphhopper.routing.ev.State;
 import com.graphhopper.routing.util.AreaIndex;
 import com.graphhopper.routing.util.CustomArea;
@@ -53,6 +54,8 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.LongToIntFunction;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -90,10 +93,10 @@ public class OSMReader {
     private CountryRuleFactory countryRuleFactory = null;
     private File osmFile;
     private final RamerDouglasPeucker simplifyAlgo = new RamerDouglasPeucker();
-    private int bugCounter = 0;
+    private final AtomicInteger bugCounter = new AtomicInteger();
     private final IntsRef tempRelFlags;
     private Date osmDataDate;
-    private long zeroCounter = 0;
+    private final AtomicLong zeroCounter = new AtomicLong();
 
     private GHLongLongHashMap osmWayIdToRelationFlagsMap = new GHLongLongHashMap(200, .5f);
     private WayToEdgesMap restrictedWaysToEdgesMap = new WayToEdgesMap();
@@ -162,16 +165,20 @@ public class OSMReader {
         if (!baseGraph.isInitialized())
             throw new IllegalStateException("BaseGraph must be initialize before we can read OSM");
 
-        WaySegmentParser waySegmentParser = new WaySegmentParser.Builder(baseGraph.getNodeAccess(), baseGraph.getDirectory())
+        WaySegmentParser.Builder builder = new WaySegmentParser.Builder(baseGraph.getNodeAccess(), baseGraph.getDirectory(), config.isOffHeapNodeIndex())
                 .setElevationProvider(this::getElevation)
                 .setWayFilter(this::acceptWay)
                 .setSplitNodeFilter(this::isBarrierNode)
                 .setWayPreprocessor(this::preprocessWay)
                 .setRelationPreprocessor(this::preprocessRelations)
                 .setRelationProcessor(this::processRelation)
-                .setEdgeHandler(this::addEdge)
                 .setWorkerThreads(config.getWorkerThreads())
-                .build();
+                .setWayThreads(config.getWayThreads());
+        if (config.getWayThreads() > 1)
+            builder.setConcurrentEdgeHandler(this::prepareEdge);
+        else
+            builder.setEdgeHandler(this::addEdge);
+        WaySegmentParser waySegmentParser = builder.build();
         waySegmentParser.readOSM(osmFile);
         osmDataDate = waySegmentParser.getTimestamp();
         if (baseGraph.getNodes() == 0)
@@ -180,7 +187,7 @@ public class OSMReader {
         addRestrictionsToGraph();
         releaseRestrictionData();
         LOGGER.info("Finished reading OSM file: {}, nodes: {}, edges: {}, zero distance edges: {}",
-                osmFile.getAbsolutePath(), nf(baseGraph.getNodes()), nf(baseGraph.getEdges()), nf(zeroCounter));
+                osmFile.getAbsolutePath(), nf(baseGraph.getNodes()), nf(baseGraph.getEdges()), nf(zeroCounter.get()));
     }
 
     /**
@@ -316,6 +323,19 @@ public class OSMReader {
      * @param nodeTags  node tags of this segment. there is one map of tags for each point.
      */
     protected void addEdge(int fromIndex, int toIndex, PointList pointList, ReaderWay way, List<Map<String, Object>> nodeTags) {
+        prepareEdge(fromIndex, toIndex, pointList, way, nodeTags).run();
+    }
+
+    /**
+     * Does everything {@link #addEdge} does except for modifying the graph, i.e. it processes the geometry, calculates
+     * the distance and sets the artificial way tags. This is used when the ways are handled with multiple threads, see
+     * {@link OSMReaderConfig#setWayThreads}, so this method can be called concurrently for different ways. In this
+     * case the edge flags of all {@link com.graphhopper.routing.util.parsers.TagParser#isEdgeLocal() edge local} tag
+     * parsers are calculated here as well.
+     *
+     * @return the runnable that creates the edge and runs the tag parsers. It must be called in the order of the OSM file.
+     */
+    protected Runnable prepareEdge(int fromIndex, int toIndex, PointList pointList, ReaderWay way, List<Map<String, Object>> nodeTags) {
         // sanity checks
         if (fromIndex < 0 || toIndex < 0)
             throw new AssertionError("to or from index is invalid for this edge " + fromIndex + "->" + toIndex + ", points:" + pointList);
@@ -332,7 +352,10 @@ public class OSMReader {
         if (pointList.is3D()) {
             // sample points along long edges
             if (config.getLongEdgeSamplingDistance() < Double.MAX_VALUE && !isFerry(way))
-                pointList = EdgeSampling.sample(pointList, config.getLongEdgeSamplingDistance(), distCalc, eleProvider);
+                // the elevation providers are not thread-safe
+                synchronized (eleProvider) {
+                    pointList = EdgeSampling.sample(pointList, config.getLongEdgeSamplingDistance(), distCalc, eleProvider);
+                }
 
             // smooth the elevation before calculating the distance because the distance will be incorrect if calculated afterwards
             if (config.getElevationSmoothing().equals("ramer"))
@@ -351,13 +374,13 @@ public class OSMReader {
         if (distance < 0.001) {
             // As investigation shows often two paths should have crossed via one identical point
             // but end up in two very close points.
-            zeroCounter++;
+            zeroCounter.incrementAndGet();
             distance = 0.001;
         }
 
         double maxDistance = (Integer.MAX_VALUE - 1) / 1000d;
         if (Double.isNaN(distance)) {
-            LOGGER.warn("Bug in OSM or GraphHopper (" + bugCounter++ + "). Illegal tower node distance " + distance + " reset to 1m, osm way " + way.getId());
+            LOGGER.warn("Bug in OSM or GraphHopper (" + bugCounter.getAndIncrement() + "). Illegal tower node distance " + distance + " reset to 1m, osm way " + way.getId());
             distance = 1;
         }
 
@@ -365,17 +388,39 @@ public class OSMReader {
             // Too large is very rare and often the wrong tagging. See #435
             // so we can avoid the complexity of splitting the way for now (new towernodes would be required, splitting up geometry etc)
             // For example this happens here: https://www.openstreetmap.org/way/672506453 (Cape Town - Tristan da Cunha ferry)
-            LOGGER.warn("Bug in OSM or GraphHopper (" + bugCounter++ + "). Too big tower node distance " + distance + " reset to large value, osm way " + way.getId());
+            LOGGER.warn("Bug in OSM or GraphHopper (" + bugCounter.getAndIncrement() + "). Too big tower node distance " + distance + " reset to large value, osm way " + way.getId());
             distance = maxDistance;
         }
 
-        if (bugCounter > 30)
+        if (bugCounter.get() > 30)
             throw new IllegalStateException("Too many bugs in OSM or GraphHopper encountered " + bugCounter);
 
         setArtificialWayTags(pointList, way, distance, nodeTags);
+        final IntsRef edgeFlags;
+        if (config.getWayThreads() > 1) {
+            edgeFlags = baseGraph.createEdgeFlags();
+            IntsRef relationFlags = getRelFlagsMap(way.getId(), osmParsers.createRelationFlags());
+            osmParsers.handleEdgeLocalWayTags(new IntsRefEdgeIntAccess(edgeFlags), way, relationFlags);
+        } else {
+            edgeFlags = null;
+        }
+        final PointList edgePointList = pointList;
+        final double edgeDistance = distance;
+        return () -> createEdge(fromIndex, toIndex, edgePointList, way, edgeDistance, edgeFlags);
+    }
+
+    /**
+     * @param edgeFlags the flags calculated by the edge local tag parsers or null if no tag parser was run yet
+     */
+    private void createEdge(int fromIndex, int toIndex, PointList pointList, ReaderWay way, double distance, IntsRef edgeFlags) {
         IntsRef relationFlags = getRelFlagsMap(way.getId());
         EdgeIteratorState edge = baseGraph.edge(fromIndex, toIndex).setDistance(distance);
-        osmParsers.handleWayTags(edge.getEdge(), edgeIntAccess, way, relationFlags);
+        if (edgeFlags == null) {
+            osmParsers.handleWayTags(edge.getEdge(), edgeIntAccess, way, relationFlags);
+        } else {
+            edge.setFlags(edgeFlags);
+            osmParsers.handleRemainingWayTags(edge.getEdge(), edgeIntAccess, way, relationFlags);
+        }
         Map<String, KValue> map = way.getTag("key_values", Collections.emptyMap());
         if (!map.isEmpty())
             edge.setKeyValues(map);
@@ -676,10 +721,17 @@ public class OSMReader {
     }
 
     IntsRef getRelFlagsMap(long osmId) {
+        return getRelFlagsMap(osmId, tempRelFlags);
+    }
+
+    /**
+     * Same as {@link #getRelFlagsMap(long)}, but writes to the given relation flags, so this can be called concurrently.
+     */
+    private IntsRef getRelFlagsMap(long osmId, IntsRef relFlags) {
         long relFlagsAsLong = osmWayIdToRelationFlagsMap.get(osmId);
-        tempRelFlags.ints[0] = (int) relFlagsAsLong;
-        tempRelFlags.ints[1] = (int) (relFlagsAsLong >> 32);
-        return tempRelFlags;
+        relFlags.ints[0] = (int) relFlagsAsLong;
+        relFlags.ints[1] = (int) (relFlagsAsLong >> 32);
+        return relFlags;
     }
 
     void putRelFlagsMap(long osmId, IntsRef relFlags) {
@@ -37,6 +37,10 @@ import java.io.File;
 import java.io.IOException;
 import java.text.ParseException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.*;
 
 import static com.graphhopper.reader.osm.OSMNodeData.*;
@@ -57,9 +61,15 @@ import static com.graphhopper.util.Helper.nf;
  * The main difficulty is that the OSM ID range is very large (64bit integers) and to be able to provide the full
  * node information for each segment we have to efficiently store the node data temporarily. This is addressed by
  * {@link OSMNodeData}.
+ * <p>
+ * With more than one way thread the ways of the second pass are handled in batches: the way preprocessing and the
+ * {@link ConcurrentEdgeHandler#prepareEdge} calls run concurrently, while the splitting of the ways (which modifies the
+ * node data) and the creation of the edges are done sequentially in the order of the OSM file. Therefore the result
+ * does not depend on the number of threads.
  */
 public class WaySegmentParser {
     private static final Logger LOGGER = LoggerFactory.getLogger(WaySegmentParser.class);
+    private static final int WAY_BATCH_SIZE = 10_000;
     private static final Set<String> INCLUDE_IF_NODE_TAGS = new HashSet<>(Arrays.asList("barrier", "highway", "railway", "crossing", "ford"));
 
     private ToDoubleFunction<ReaderNode> elevationProvider = node -> 0d;
@@ -74,6 +84,7 @@ public class WaySegmentParser {
     private EdgeHandler edgeHandler = (from, to, pointList, way, nodeTags) ->
             System.out.println("edge " + from + "->" + to + " (" + pointList.size() + " points)");
     private int workerThreads = 2;
+    private int wayThreads = 1;
 
     private final OSMNodeData nodeData;
     private Date timestamp;
@@ -101,7 +112,13 @@ public class WaySegmentParser {
 
         LOGGER.info("pass2 - start");
         StopWatch sw2 = new StopWatch().start();
-        readOSM(osmFile, new Pass2Handler(), SkipOptions.none());
+        ExecutorService executor = wayThreads > 1 ? Executors.newFixedThreadPool(wayThreads) : null;
+        try {
+            readOSM(osmFile, new Pass2Handler(executor), SkipOptions.none());
+        } finally {
+            if (executor != null)
+                executor.shutdown();
+        }
         LOGGER.info("pass2 - finished, took: {}", sw2.stop().getTimeString());
 
         nodeData.release();
@@ -180,6 +197,10 @@ public class WaySegmentParser {
     }
 
     private class Pass2Handler implements ReaderElementHandler {
+        private final ExecutorService executor;
+        // only used when the ways are handled in batches, see handleWayBatch
+        private final List<ReaderWay> wayBatch = new ArrayList<>();
+        private final List<PendingEdge> pendingEdges = new ArrayList<>();
         private boolean handledNodes;
         private boolean handledWays;
         private boolean handledRelations;
@@ -188,6 +209,10 @@ public class WaySegmentParser {
         private long ignoredSplitNodes = 0;
         private long wayCounter = 0;
 
+        Pass2Handler(ExecutorService executor) {
+            this.executor = executor;
+        }
+
         @Override
         public void handleNode(ReaderNode node) {
             if (!handledNodes) {
@@ -246,13 +271,80 @@ public class WaySegmentParser {
 
             if (!wayFilter.test(way))
                 return;
+            if (executor != null) {
+                wayBatch.add(way);
+                if (wayBatch.size() >= WAY_BATCH_SIZE)
+                    handleWayBatch();
+                return;
+            }
+            preprocessWay(way);
+            splitWay(way);
+        }
+
+        private void preprocessWay(ReaderWay way) {
+            wayPreprocessor.preprocessWay(way, osmNodeId -> nodeData.getCoordinates(nodeData.getId(osmNodeId)), osmNodeId -> nodeData.getTags(osmNodeId));
+        }
+
+        private void splitWay(ReaderWay way) {
             List<SegmentNode> segment = new ArrayList<>(way.getNodes().size());
             for (LongCursor node : way.getNodes())
                 segment.add(new SegmentNode(node.value, nodeData.getId(node.value), nodeData.getTags(node.value)));
-            wayPreprocessor.preprocessWay(way, osmNodeId -> nodeData.getCoordinates(nodeData.getId(osmNodeId)), osmNodeId -> nodeData.getTags(osmNodeId));
             splitWayAtJunctionsAndEmptySections(segment, way);
         }
 
+        /**
+         * Handles the collected ways in four steps. The way preprocessing only reads the node data, so it is done
+         * concurrently. Splitting the ways converts pillar nodes to tower nodes and copies barrier nodes, so it is done
+         * sequentially and in the original order. Then the edges are prepared concurrently (if the edge handler supports
+         * this) and finally created sequentially, again in the original order.
+         */
+        private void handleWayBatch() {
+            runConcurrently(wayBatch.size(), i -> preprocessWay(wayBatch.get(i)));
+            for (ReaderWay way : wayBatch)
+                splitWay(way);
+            wayBatch.clear();
+
+            if (edgeHandler instanceof ConcurrentEdgeHandler concurrentEdgeHandler)
+                runConcurrently(pendingEdges.size(), i -> {
+                    PendingEdge e = pendingEdges.get(i);
+                    e.creator = concurrentEdgeHandler.prepareEdge(e.from, e.to, e.pointList, e.way, e.nodeTags);
+                });
+            for (PendingEdge e : pendingEdges) {
+                if (e.creator == null)
+                    edgeHandler.handleEdge(e.from, e.to, e.pointList, e.way, e.nodeTags);
+                else
+                    e.creator.run();
+            }
+            pendingEdges.clear();
+        }
+
+        /**
+         * Calls the given consumer for all indices in [0, size[ using the way threads. Every thread gets a consecutive
+         * range of indices.
+         */
+        private void runConcurrently(int size, IntConsumer consumer) {
+            int chunkSize = Math.max(1, (size + wayThreads - 1) / wayThreads);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int start = 0; start < size; start += chunkSize) {
+                final int from = start, to = Math.min(size, start + chunkSize);
+                futures.add(executor.submit(() -> {
+                    for (int i = from; i < to; i++)
+                        consumer.accept(i);
+                }));
+            }
+            try {
+                for (Future<?> future : futures)
+                    future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) e.getCause();
+                throw new RuntimeException(e.getCause());
+            }
+        }
+
         private void splitWayAtJunctionsAndEmptySections(List<SegmentNode> fullSegment, ReaderWay way) {
             List<SegmentNode> segment = new ArrayList<>();
             for (SegmentNode node : fullSegment) {
@@ -364,7 +456,12 @@ public class WaySegmentParser {
             }
             if (from < 0 || to < 0)
                 throw new IllegalStateException("The first and last nodes of a segment must be tower nodes, way: " + way.getId());
-            edgeHandler.handleEdge(from, to, pointList, way, nodeTags);
+            if (executor == null)
+                edgeHandler.handleEdge(from, to, pointList, way, nodeTags);
+            else
+                // the way is modified while it is split (barrier edges) and the edge handler might modify it as well,
+                // so every pending edge needs its own copy
+                pendingEdges.add(new PendingEdge(from, to, pointList, copyWay(way), nodeTags));
         }
 
         @Override
@@ -372,6 +469,9 @@ public class WaySegmentParser {
             if (!handledRelations) {
                 LOGGER.info("pass2 - start reading OSM relations");
                 handledRelations = true;
+                // the relation processor needs the final node ids, so we have to finish the ways first
+                if (!wayBatch.isEmpty())
+                    handleWayBatch();
             }
 
             relationProcessor.processRelation(relation, this::getInternalNodeIdOfOSMNode);
@@ -379,6 +479,8 @@ public class WaySegmentParser {
 
         @Override
         public void onFinish() {
+            if (!wayBatch.isEmpty())
+                handleWayBatch();
             LOGGER.info("pass2 - finished, processed ways: {}, way nodes: {}, nodes with tags: {}, node tag capacity: {}, ignored barriers at junctions: {}",
                     nf(wayCounter), nf(acceptedNodes), nf(nodeData.getTaggedNodeCount()), nf(nodeData.getNodeTagCapacity()), nf(ignoredSplitNodes));
         }
@@ -391,6 +493,30 @@ public class WaySegmentParser {
         }
     }
 
+    private static ReaderWay copyWay(ReaderWay way) {
+        ReaderWay copy = new ReaderWay(way.getId());
+        copy.getNodes().addAll(way.getNodes());
+        copy.setTags(way.getTags());
+        return copy;
+    }
+
+    private static class PendingEdge {
+        final int from;
+        final int to;
+        final PointList pointList;
+        final ReaderWay way;
+        final List<Map<String, Object>> nodeTags;
+        Runnable creator;
+
+        PendingEdge(int from, int to, PointList pointList, ReaderWay way, List<Map<String, Object>> nodeTags) {
+            this.from = from;
+            this.to = to;
+            this.pointList = pointList;
+            this.way = way;
+            this.nodeTags = nodeTags;
+        }
+    }
+
     private void readOSM(File file, ReaderElementHandler handler, SkipOptions skipOptions) {
         try (OSMInput osmInput = openOsmInputFile(file, skipOptions)) {
             ReaderElement elem;
@@ -416,7 +542,17 @@ public class WaySegmentParser {
          * @param directory   the directory to be used to store temporary data
          */
         public Builder(PointAccess pointAccess, Directory directory) {
-            waySegmentParser = new WaySegmentParser(new OSMNodeData(pointAccess, directory));
+            this(pointAccess, directory, false);
+        }
+
+        /**
+         * @param pointAccess      used to store tower node coordinates while parsing the ways
+         * @param directory        the directory to be used to store temporary data
+         * @param offHeapNodeIndex if true the OSM node IDs are indexed in DataAccess objects of the given directory
+         *                         instead of on the heap, see {@link OSMNodeData}
+         */
+        public Builder(PointAccess pointAccess, Directory directory, boolean offHeapNodeIndex) {
+            waySegmentParser = new WaySegmentParser(new OSMNodeData(pointAccess, directory, offHeapNodeIndex));
         }
 
         /**
@@ -475,6 +611,15 @@ public class WaySegmentParser {
             return this;
         }
 
+        /**
+         * @param edgeHandler callback function that is called for each edge (way segment). Unlike with
+         *                    {@link #setEdgeHandler} the expensive part of the edge handling can run in the way threads.
+         */
+        public Builder setConcurrentEdgeHandler(ConcurrentEdgeHandler edgeHandler) {
+            waySegmentParser.edgeHandler = edgeHandler;
+            return this;
+        }
+
         /**
          * @param workerThreads the number of threads used for the low level reading of the OSM file
          */
@@ -483,6 +628,17 @@ public class WaySegmentParser {
             return this;
         }
 
+        /**
+         * @param wayThreads the number of threads used to preprocess the ways and to prepare the edges during the
+         *                   second pass. The created edges are the same for any number of threads.
+         */
+        public Builder setWayThreads(int wayThreads) {
+            if (wayThreads < 1)
+                throw new IllegalArgumentException("way threads must be positive, but was: " + wayThreads);
+            waySegmentParser.wayThreads = wayThreads;
+            return this;
+        }
+
         public WaySegmentParser build() {
             return waySegmentParser;
         }
@@ -528,6 +684,20 @@ public class WaySegmentParser {
         void handleEdge(int from, int to, PointList pointList, ReaderWay way, List<Map<String, Object>> nodeTags);
     }
 
+    /**
+     * An edge handler that splits the handling of an edge into two steps. {@link #prepareEdge} might be called
+     * concurrently for different edges and must not modify the graph. The returned runnable is called afterwards
+     * in the order of the OSM file and creates the edge.
+     */
+    public interface ConcurrentEdgeHandler extends EdgeHandler {
+        Runnable prepareEdge(int from, int to, PointList pointList, ReaderWay way, List<Map<String, Object>> nodeTags);
+
+        @Override
+        default void handleEdge(int from, int to, PointList pointList, ReaderWay way, List<Map<String, Object>> nodeTags) {
+            prepareEdge(from, to, pointList, way, nodeTags).run();
+        }
+    }
+
     public interface RelationProcessor {
         void processRelation(ReaderRelation relation, LongToIntFunction getNodeIdForOSMNodeId);
     }
@@ -39,11 +39,12 @@ import static com.graphhopper.util.Helper.createFormatter;
  * @author Robin Boldt
  */
 public class DateRangeParser implements ConditionalValueParser {
-    private static final DateFormat YEAR_MONTH_DAY_DF = create3CharMonthFormatter("yyyy MMM dd");
-    private static final DateFormat MONTH_DAY_DF = create3CharMonthFormatter("MMM dd");
-    private static final DateFormat MONTH_DAY2_DF = createFormatter("dd.MM");
-    private static final DateFormat YEAR_MONTH_DF = create3CharMonthFormatter("yyyy MMM");
-    private static final DateFormat MONTH_DF = create3CharMonthFormatter("MMM");
+    // DateFormat is not thread-safe and the tag parsers can run concurrently during the import, see TagParser#isEdgeLocal
+    private static final ThreadLocal<DateFormat> YEAR_MONTH_DAY_DF = ThreadLocal.withInitial(() -> create3CharMonthFormatter("yyyy MMM dd"));
+    private static final ThreadLocal<DateFormat> MONTH_DAY_DF = ThreadLocal.withInitial(() -> create3CharMonthFormatter("MMM dd"));
+    private static final ThreadLocal<DateFormat> MONTH_DAY2_DF = ThreadLocal.withInitial(() -> createFormatter("dd.MM"));
+    private static final ThreadLocal<DateFormat> YEAR_MONTH_DF = ThreadLocal.withInitial(() -> create3CharMonthFormatter("yyyy MMM"));
+    private static final ThreadLocal<DateFormat> MONTH_DF = ThreadLocal.withInitial(() -> create3CharMonthFormatter("MMM"));
     private static final List<String> DAY_NAMES = Arrays.asList("Su", "Mo", "Tu", "We", "Th", "Fr", "Sa");
 
     private Calendar date;
@@ -69,23 +70,23 @@ public class DateRangeParser implements ConditionalValueParser {
         Calendar calendar = createCalendar();
         ParsedCalendar parsedCalendar;
         try {
-            calendar.setTime(YEAR_MONTH_DAY_DF.parse(dateString));
+            calendar.setTime(YEAR_MONTH_DAY_DF.get().parse(dateString));
             parsedCalendar = new ParsedCalendar(ParsedCalendar.ParseType.YEAR_MONTH_DAY, calendar);
         } catch (ParseException e1) {
             try {
-                calendar.setTime(MONTH_DAY_DF.parse(dateString));
+                calendar.setTime(MONTH_DAY_DF.get().parse(dateString));
                 parsedCalendar = new ParsedCalendar(ParsedCalendar.ParseType.MONTH_DAY, calendar);
             } catch (ParseException e2) {
                 try {
-                    calendar.setTime(MONTH_DAY2_DF.parse(dateString));
+                    calendar.setTime(MONTH_DAY2_DF.get().parse(dateString));
                     parsedCalendar = new ParsedCalendar(ParsedCalendar.ParseType.MONTH_DAY, calendar);
                 } catch (ParseException e3) {
                     try {
-                        calendar.setTime(YEAR_MONTH_DF.parse(dateString));
+                        calendar.setTime(YEAR_MONTH_DF.get().parse(dateString));
                         parsedCalendar = new ParsedCalendar(ParsedCalendar.ParseType.YEAR_MONTH, calendar);
                     } catch (ParseException e4) {
                         try {
-                            calendar.setTime(MONTH_DF.parse(dateString));
+                            calendar.setTime(MONTH_DF.get().parse(dateString));
                             parsedCalendar = new ParsedCalendar(ParsedCalendar.ParseType.MONTH, calendar);
                         } catch (ParseException e5) {
                             int index = DAY_NAMES.indexOf(dateString);
@@ -0,0 +1,302 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.BalancedWeightApproximator;
+import com.graphhopper.routing.weighting.WeightApproximator;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.*;
+
+import java.util.Collections;
+import java.util.List;
+
+import static com.graphhopper.util.EdgeIterator.ANY_EDGE;
+
+/**
+ * Bidirectional A* (or bidirectional Dijkstra if no approximation is set) that does the same as
+ * {@link AStarBidirection} and {@link DijkstraBidirectionRef}, but stores the forward and backward shortest path
+ * trees in two {@link SearchState}s borrowed from a {@link SearchStatePool}. This way a query does not create any
+ * objects per relaxed edge and the large arrays are reused between queries of the same thread.
+ * <p>
+ * Unlike {@link AbstractNonCHBidirAlgo} the entries are updated in place when a shorter path is found, so there is
+ * no need for 'deleted' entries in the heap.
+ *
+ * @see AbstractNonCHBidirAlgo
+ */
+public class AStarBidirectionPooled implements EdgeToEdgeRoutingAlgorithm {
+    private final Graph graph;
+    private final Weighting weighting;
+    private final TraversalMode traversalMode;
+    private final EdgeExplorer edgeExplorer;
+    private final SearchStatePool pool;
+    private BalancedWeightApproximator weightApprox;
+    private double stoppingCriterionOffset;
+    private SearchState fwd;
+    private SearchState bwd;
+    private int capacity;
+    private int fromOutEdge = ANY_EDGE;
+    private int toInEdge = ANY_EDGE;
+    private int currFrom;
+    private int currTo;
+    private double currFromKey;
+    private double currToKey;
+    private int bestFwdId = -1;
+    private int bestBwdId = -1;
+    private double bestWeight = Double.MAX_VALUE;
+    private boolean finishedFrom;
+    private boolean finishedTo;
+    private int visitedCountFrom;
+    private int visitedCountTo;
+    private int maxVisitedNodes = Integer.MAX_VALUE;
+    private long timeoutMillis = Long.MAX_VALUE;
+    private long finishTimeMillis = Long.MAX_VALUE;
+    private boolean alreadyRun;
+
+    public AStarBidirectionPooled(Graph graph, Weighting weighting, TraversalMode tMode, SearchStatePool pool) {
+        if (weighting.hasTurnCosts() && !tMode.isEdgeBased())
+            throw new IllegalStateException("Weightings supporting turn costs cannot be used with node-based traversal mode");
+        this.graph = graph;
+        this.weighting = weighting;
+        this.traversalMode = tMode;
+        this.pool = pool;
+        this.edgeExplorer = graph.createEdgeExplorer();
+    }
+
+    /**
+     * @param approx the approximation used to direct the search, or null to run a bidirectional Dijkstra
+     */
+    public AStarBidirectionPooled setApproximation(WeightApproximator approx) {
+        weightApprox = approx == null ? null : new BalancedWeightApproximator(approx);
+        return this;
+    }
+
+    public WeightApproximator getApproximation() {
+        return weightApprox == null ? null : weightApprox.getApproximation();
+    }
+
+    @Override
+    public List<Path> calcPaths(int from, int to) {
+        return Collections.singletonList(calcPath(from, to));
+    }
+
+    @Override
+    public Path calcPath(int from, int to) {
+        return calcPath(from, to, ANY_EDGE, ANY_EDGE);
+    }
+
+    @Override
+    public Path calcPath(int from, int to, int fromOutEdge, int toInEdge) {
+        if ((fromOutEdge != ANY_EDGE || toInEdge != ANY_EDGE) && !traversalMode.isEdgeBased())
+            throw new IllegalArgumentException("Restricting the start/target edges is only possible for edge-based graph traversal");
+        if (alreadyRun)
+            throw new IllegalStateException("Create a new instance per call");
+        alreadyRun = true;
+        this.fromOutEdge = fromOutEdge;
+        this.toInEdge = toInEdge;
+        setupFinishTime();
+        capacity = SearchStatePool.getRequiredCapacity(graph, traversalMode);
+        fwd = pool.acquire(capacity);
+        bwd = pool.acquire(capacity);
+        try {
+            init(from, to);
+            runAlgo();
+            return extractPath();
+        } finally {
+            pool.release(fwd);
+            pool.release(bwd);
+            fwd = null;
+            bwd = null;
+        }
+    }
+
+    private void init(int from, int to) {
+        if (weightApprox != null) {
+            weightApprox.setFromTo(from, to);
+            stoppingCriterionOffset = weightApprox.approximate(to, true) + weightApprox.getSlack();
+        }
+        currFrom = rootId(from);
+        currFromKey = approximate(from, false);
+        fwd.set(currFrom, EdgeIterator.NO_EDGE, from, 0, SearchState.NO_PARENT);
+        fwd.push(currFrom, currFromKey);
+        currTo = rootId(to);
+        currToKey = approximate(to, true);
+        bwd.set(currTo, EdgeIterator.NO_EDGE, to, 0, SearchState.NO_PARENT);
+        bwd.push(currTo, currToKey);
+
+        if (!traversalMode.isEdgeBased()) {
+            if (from == to) {
+                bestFwdId = currFrom;
+                bestBwdId = currTo;
+                bestWeight = 0;
+            }
+        } else if (from == to && fromOutEdge == ANY_EDGE && toInEdge == ANY_EDGE) {
+            // special handling if start and end are the same and no directions are restricted
+            bestFwdId = currFrom;
+            bestBwdId = currTo;
+            bestWeight = 0;
+            finishedFrom = true;
+            finishedTo = true;
+            return;
+        }
+        finishedFrom = !fillEdges(false, fromOutEdge);
+        finishedTo = !fillEdges(true, toInEdge);
+    }
+
+    private int rootId(int node) {
+        // for edge-based traversal the traversal ids are edge keys and the root gets the last (reserved) slot
+        return traversalMode.isEdgeBased() ? capacity - 1 : node;
+    }
+
+    private double approximate(int node, boolean reverse) {
+        return weightApprox == null ? 0 : weightApprox.approximate(node, reverse);
+    }
+
+    private void runAlgo() {
+        while (!finished() && !isMaxVisitedNodesExceeded() && !isTimeoutExceeded()) {
+            if (!finishedFrom)
+                finishedFrom = !fillEdges(false, ANY_EDGE);
+
+            if (!finishedTo)
+                finishedTo = !fillEdges(true, ANY_EDGE);
+        }
+    }
+
+    private boolean finished() {
+        if (finishedFrom || finishedTo)
+            return true;
+
+        return currFromKey + currToKey >= bestWeight + stoppingCriterionOffset;
+    }
+
+    /**
+     * Polls the next entry of the forward or backward search and relaxes its edges.
+     *
+     * @param restrictedEdge if not {@link EdgeIterator#ANY_EDGE} only this edge is relaxed
+     * @return false if the heap was empty
+     */
+    private boolean fillEdges(boolean reverse, int restrictedEdge) {
+        SearchState state = reverse ? bwd : fwd;
+        SearchState other = reverse ? fwd : bwd;
+        if (state.isHeapEmpty())
+            return false;
+        double currKey = state.peekKey();
+        int curr = state.poll();
+        if (reverse) {
+            currTo = curr;
+            currToKey = currKey;
+            visitedCountTo++;
+        } else {
+            currFrom = curr;
+            currFromKey = currKey;
+            visitedCountFrom++;
+        }
+
+        int currEdge = state.getEdge(curr);
+        double currWeight = state.getWeight(curr);
+        EdgeIterator iter = edgeExplorer.setBaseNode(state.getAdjNode(curr));
+        while (iter.next()) {
+            if (!traversalMode.isEdgeBased() && iter.getEdge() == currEdge)
+                continue;
+            if (restrictedEdge != ANY_EDGE && iter.getEdge() != restrictedEdge)
+                continue;
+
+            // note that for node-based routing the weights will be wrong in case the weighting is returning non-zero
+            // turn weights, see discussion in #1960
+            final double weight = GHUtility.calcWeightWithTurnWeight(weighting, iter, reverse, currEdge) + currWeight;
+            if (Double.isInfinite(weight))
+                continue;
+            final int traversalId = traversalMode.createTraversalId(iter, reverse);
+            if (state.contains(traversalId) && state.getWeight(traversalId) <= weight)
+                continue;
+            int adjNode = iter.getAdjNode();
+            state.set(traversalId, iter.getEdge(), adjNode, weight, curr);
+            state.push(traversalId, weight + approximate(adjNode, reverse));
+
+            if (other.contains(traversalId))
+                updateBestPath(iter, traversalId, state, other, reverse);
+        }
+        return true;
+    }
+
+    private void updateBestPath(EdgeIteratorState edgeState, int traversalId, SearchState state, SearchState other, boolean reverse) {
+        double weight = state.getWeight(traversalId) + other.getWeight(traversalId);
+        int entry = traversalId;
+        if (traversalMode.isEdgeBased()) {
+            if (state.getEdge(traversalId) != other.getEdge(traversalId))
+                throw new IllegalStateException("cannot happen for edge based execution of " + getName());
+            // prevents the path to contain the edge at the meeting point twice and subtracts the weight (excluding turn weight => no previous edge)
+            entry = state.getParent(traversalId);
+            weight -= weighting.calcEdgeWeight(edgeState, reverse);
+        }
+
+        if (weight < bestWeight) {
+            bestFwdId = reverse ? traversalId : entry;
+            bestBwdId = reverse ? entry : traversalId;
+            bestWeight = weight;
+        }
+    }
+
+    private Path extractPath() {
+        if (finished() && bestFwdId >= 0)
+            return SearchStatePathExtractor.extractPath(graph, weighting, fwd, bestFwdId, bwd, bestBwdId, bestWeight);
+        return new Path(graph);
+    }
+
+    @Override
+    public void setMaxVisitedNodes(int numberOfNodes) {
+        this.maxVisitedNodes = numberOfNodes;
+    }
+
+    @Override
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    private void setupFinishTime() {
+        try {
+            this.finishTimeMillis = Math.addExact(System.currentTimeMillis(), timeoutMillis);
+        } catch (ArithmeticException e) {
+            this.finishTimeMillis = Long.MAX_VALUE;
+        }
+    }
+
+    private boolean isMaxVisitedNodesExceeded() {
+        return maxVisitedNodes < getVisitedNodes();
+    }
+
+    private boolean isTimeoutExceeded() {
+        return finishTimeMillis < Long.MAX_VALUE && System.currentTimeMillis() > finishTimeMillis;
+    }
+
+    @Override
+    public int getVisitedNodes() {
+        return visitedCountFrom + visitedCountTo;
+    }
+
+    @Override
+    public String getName() {
+        return weightApprox == null ? Parameters.Algorithms.DIJKSTRA_BI : Parameters.Algorithms.ASTAR_BI + "|" + weightApprox;
+    }
+
+    @Override
+    public String toString() {
+        return getName() + "|" + weighting;
+    }
+}
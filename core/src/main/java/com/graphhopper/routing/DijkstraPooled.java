@@ -0,0 +1,107 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.Parameters;
+
+/**
+ * Same as {@link Dijkstra}, but the shortest path tree is stored in a {@link SearchState} borrowed from a
+ * {@link SearchStatePool} for the duration of {@link #calcPath}, so no objects are created per relaxed edge.
+ */
+public class DijkstraPooled extends AbstractRoutingAlgorithm {
+    private final SearchStatePool pool;
+    private SearchState state;
+    private int curr = -1;
+    private int visitedNodes;
+    private int to = -1;
+
+    public DijkstraPooled(Graph graph, Weighting weighting, TraversalMode tMode, SearchStatePool pool) {
+        super(graph, weighting, tMode);
+        this.pool = pool;
+    }
+
+    @Override
+    public Path calcPath(int from, int to) {
+        checkAlreadyRun();
+        setupFinishTime();
+        this.to = to;
+        int capacity = SearchStatePool.getRequiredCapacity(graph, traversalMode);
+        state = pool.acquire(capacity);
+        try {
+            int root = traversalMode.isEdgeBased() ? capacity - 1 : from;
+            state.set(root, EdgeIterator.NO_EDGE, from, 0, SearchState.NO_PARENT);
+            state.push(root, 0);
+            runAlgo();
+            return extractPath();
+        } finally {
+            pool.release(state);
+            state = null;
+        }
+    }
+
+    private void runAlgo() {
+        while (!state.isHeapEmpty()) {
+            curr = state.poll();
+            visitedNodes++;
+            if (isMaxVisitedNodesExceeded() || finished() || isTimeoutExceeded())
+                break;
+
+            int currEdge = state.getEdge(curr);
+            double currWeight = state.getWeight(curr);
+            EdgeIterator iter = edgeExplorer.setBaseNode(state.getAdjNode(curr));
+            while (iter.next()) {
+                if (!accept(iter, currEdge))
+                    continue;
+
+                double tmpWeight = GHUtility.calcWeightWithTurnWeight(weighting, iter, false, currEdge) + currWeight;
+                if (Double.isInfinite(tmpWeight))
+                    continue;
+                int traversalId = traversalMode.createTraversalId(iter, false);
+                if (state.contains(traversalId) && state.getWeight(traversalId) <= tmpWeight)
+                    continue;
+                state.set(traversalId, iter.getEdge(), iter.getAdjNode(), tmpWeight, curr);
+                state.push(traversalId, tmpWeight);
+            }
+        }
+    }
+
+    private boolean finished() {
+        return state.getAdjNode(curr) == to;
+    }
+
+    private Path extractPath() {
+        if (curr < 0 || !finished())
+            return createEmptyPath();
+        return SearchStatePathExtractor.extractPath(graph, weighting, state, curr, state.getWeight(curr));
+    }
+
+    @Override
+    public int getVisitedNodes() {
+        return visitedNodes;
+    }
+
+    @Override
+    public String getName() {
+        return Parameters.Algorithms.DIJKSTRA;
+    }
+}
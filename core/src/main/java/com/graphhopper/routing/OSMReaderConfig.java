@@ -33,6 +33,8 @@ public class OSMReaderConfig {
     private int ramerElevationSmoothingMax = 5;
     private double longEdgeSamplingDistance = Double.MAX_VALUE;
     private int workerThreads = 2;
+    private int wayThreads = 1;
+    private boolean offHeapNodeIndex = false;
     private double defaultElevation = 0;
 
     public List<String> getIgnoredHighways() {
@@ -157,6 +159,33 @@ public class OSMReaderConfig {
         return this;
     }
 
+    public int getWayThreads() {
+        return wayThreads;
+    }
+
+    /**
+     * Sets the number of threads used to process the OSM ways in the second pass of the import. The resulting graph
+     * is the same for any number of threads.
+     */
+    public OSMReaderConfig setWayThreads(int wayThreads) {
+        this.wayThreads = wayThreads;
+        return this;
+    }
+
+    public boolean isOffHeapNodeIndex() {
+        return offHeapNodeIndex;
+    }
+
+    /**
+     * Stores the maps from OSM node IDs to internal node IDs and node tags that are needed during the import in
+     * DataAccess objects of the graph directory instead of on the heap. Use e.g. graph.dataaccess.type.tmp_osm_.*=MMAP
+     * to keep them in memory mapped files.
+     */
+    public OSMReaderConfig setOffHeapNodeIndex(boolean offHeapNodeIndex) {
+        this.offHeapNodeIndex = offHeapNodeIndex;
+        return this;
+    }
+
     public double getDefaultElevation() {
         return defaultElevation;
     }
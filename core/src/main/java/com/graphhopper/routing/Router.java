@@ -18,18 +18,24 @@
 
 package com.graphhopper.routing;
 
+import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.cursors.IntCursor;
+import com.graphhopper.GHMatrixRequest;
+import com.graphhopper.GHMatrixResponse;
 import com.graphhopper.GHRequest;
 import com.graphhopper.GHResponse;
 import com.graphhopper.ResponsePath;
 import com.graphhopper.config.Profile;
 import com.graphhopper.routing.ch.CHRoutingAlgorithmFactory;
+import com.graphhopper.routing.ch.CustomizableCH;
+import com.graphhopper.routing.ch.ManyToManyCH;
 import com.graphhopper.routing.ev.BooleanEncodedValue;
 import com.graphhopper.routing.ev.EncodedValueLookup;
 import com.graphhopper.routing.ev.Subnetwork;
 import com.graphhopper.routing.lm.LMRoutingAlgorithmFactory;
 import com.graphhopper.routing.lm.LandmarkStorage;
 import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.querygraph.QueryRoutingCHGraph;
 import com.graphhopper.routing.util.*;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.routing.weighting.custom.CustomWeighting;
@@ -41,6 +47,7 @@ import com.graphhopper.storage.index.LocationIndex;
 import com.graphhopper.storage.index.Snap;
 import com.graphhopper.util.*;
 import com.graphhopper.util.details.PathDetailsBuilderFactory;
+import com.graphhopper.util.exceptions.ConnectionNotFoundException;
 import com.graphhopper.util.exceptions.PointDistanceExceededException;
 import com.graphhopper.util.exceptions.PointNotFoundException;
 import com.graphhopper.util.exceptions.PointOutOfBoundsException;
@@ -48,6 +55,9 @@ import com.graphhopper.util.shapes.BBox;
 import com.graphhopper.util.shapes.GHPoint;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import static com.graphhopper.util.DistanceCalcEarth.DIST_EARTH;
 import static com.graphhopper.util.Parameters.Algorithms.ALT_ROUTE;
@@ -66,11 +76,23 @@ public class Router {
     protected final WeightingFactory weightingFactory;
     protected final Map<String, RoutingCHGraph> chGraphs;
     protected final Map<String, LandmarkStorage> landmarks;
+    protected final CustomizableCH customizableCH;
 
     public Router(BaseGraph graph, EncodingManager encodingManager, LocationIndex locationIndex,
                   Map<String, Profile> profilesByName, PathDetailsBuilderFactory pathDetailsBuilderFactory,
                   TranslationMap translationMap, RouterConfig routerConfig, WeightingFactory weightingFactory,
                   Map<String, RoutingCHGraph> chGraphs, Map<String, LandmarkStorage> landmarks) {
+        this(graph, encodingManager, locationIndex, profilesByName, pathDetailsBuilderFactory, translationMap, routerConfig,
+                weightingFactory, chGraphs, landmarks, null);
+    }
+
+    /**
+     * @param customizableCH used for requests with a custom model or null if there is no customizable CH
+     */
+    public Router(BaseGraph graph, EncodingManager encodingManager, LocationIndex locationIndex,
+                  Map<String, Profile> profilesByName, PathDetailsBuilderFactory pathDetailsBuilderFactory,
+                  TranslationMap translationMap, RouterConfig routerConfig, WeightingFactory weightingFactory,
+                  Map<String, RoutingCHGraph> chGraphs, Map<String, LandmarkStorage> landmarks, CustomizableCH customizableCH) {
         this.graph = graph;
         this.encodingManager = encodingManager;
         this.locationIndex = locationIndex;
@@ -81,6 +103,7 @@ public class Router {
         this.weightingFactory = weightingFactory;
         this.chGraphs = chGraphs;
         this.landmarks = landmarks;
+        this.customizableCH = customizableCH;
 
         for (String profile : profilesByName.keySet()) {
             if (!encodingManager.hasEncodedValue(Subnetwork.key(profile)))
@@ -125,6 +148,248 @@ public class Router {
         }
     }
 
+    /**
+     * Calculates the routes of many independent requests. Requests with two points and without headings, curbsides
+     * or a custom model are grouped by their profile, algorithm, hints and snap preventions. The points of such a
+     * group are snapped in one pass, the weighting is created only once and all its routes are calculated on a single
+     * query graph, split into chunks that reuse their path calculator. All other requests are calculated like in
+     * {@link #route}. The routes are calculated on the given executor using {@link RouterConfig#getBatchThreads()}
+     * chunks per group.
+     *
+     * @return one response per request in the order of the requests. Every response contains its own errors.
+     */
+    public List<GHResponse> routeBatch(List<GHRequest> requests, ExecutorService executor) {
+        GHResponse[] responses = new GHResponse[requests.size()];
+        List<Runnable> tasks = new ArrayList<>();
+        Map<String, IntArrayList> groups = new LinkedHashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            GHRequest request = requests.get(i);
+            if (isBatchable(request)) {
+                groups.computeIfAbsent(getBatchKey(request), k -> new IntArrayList()).add(i);
+            } else {
+                final int index = i;
+                tasks.add(() -> responses[index] = route(request));
+            }
+        }
+        for (IntArrayList group : groups.values())
+            addBatchTasks(requests, group, responses, tasks);
+
+        List<Future<?>> futures = new ArrayList<>(tasks.size());
+        for (Runnable task : tasks)
+            futures.add(executor.submit(task));
+        try {
+            for (Future<?> future : futures)
+                future.get();
+        } catch (InterruptedException ex) {
+            futures.forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        } catch (ExecutionException ex) {
+            futures.forEach(f -> f.cancel(true));
+            throw ex.getCause() instanceof RuntimeException ? (RuntimeException) ex.getCause() : new RuntimeException(ex.getCause());
+        }
+        return Arrays.asList(responses);
+    }
+
+    private static boolean isBatchable(GHRequest request) {
+        return request.getPoints().size() == 2 && request.getHeadings().isEmpty() && request.getCurbsides().isEmpty()
+                && request.getCustomModel() == null && !ROUND_TRIP.equalsIgnoreCase(request.getAlgorithm())
+                && !ALT_ROUTE.equalsIgnoreCase(request.getAlgorithm());
+    }
+
+    private static String getBatchKey(GHRequest request) {
+        // requests with the same key can share the solver and snap filter
+        return request.getProfile() + "|" + request.getAlgorithm() + "|" + request.getSnapPreventions() + "|" + request.getHints().toMap();
+    }
+
+    private void addBatchTasks(List<GHRequest> requests, IntArrayList group, GHResponse[] responses, List<Runnable> tasks) {
+        IntArrayList valid = new IntArrayList(group.size());
+        for (IntCursor c : group) {
+            GHRequest request = requests.get(c.value);
+            try {
+                checkNoLegacyParameters(request);
+                checkIfPointsAreInBoundsAndNotNull(request.getPoints());
+                checkPointHints(request);
+                checkNoBlockArea(request);
+                createSolver(request).checkRequest();
+                valid.add(c.value);
+            } catch (IllegalArgumentException ex) {
+                responses[c.value] = new GHResponse().addError(ex);
+            }
+        }
+        if (valid.isEmpty())
+            return;
+
+        GHRequest first = requests.get(valid.get(0));
+        Solver solver = createSolver(first);
+        try {
+            solver.init();
+        } catch (IllegalArgumentException ex) {
+            for (IntCursor c : valid)
+                responses[c.value] = new GHResponse().addError(ex);
+            return;
+        }
+        List<Snap> snaps = null;
+        while (snaps == null) {
+            List<GHPoint> points = new ArrayList<>(2 * valid.size());
+            List<String> pointHints = new ArrayList<>();
+            for (IntCursor c : valid) {
+                GHRequest request = requests.get(c.value);
+                points.addAll(request.getPoints());
+                pointHints.addAll(request.getPointHints().isEmpty() ? List.of("", "") : request.getPointHints());
+            }
+            // an empty point hint matches every edge, so we only need to pass them if there are any
+            if (pointHints.stream().allMatch(String::isEmpty))
+                pointHints.clear();
+            try {
+                snaps = ViaRouting.lookup(encodingManager, points, solver.createSnapFilter(), locationIndex,
+                        first.getSnapPreventions(), pointHints, null, Collections.emptyList());
+            } catch (MultiplePointsNotFoundException ex) {
+                // report the missing points and snap the remaining requests again
+                for (IntCursor p : ex.getPointsNotFound()) {
+                    int index = valid.get(p.value / 2);
+                    if (responses[index] == null)
+                        responses[index] = new GHResponse();
+                    responses[index].addError(new PointNotFoundException("Cannot find point " + p.value % 2 + ": " + points.get(p.value), p.value % 2));
+                }
+                IntArrayList remaining = new IntArrayList(valid.size());
+                for (IntCursor c : valid)
+                    if (responses[c.value] == null)
+                        remaining.add(c.value);
+                valid = remaining;
+                if (valid.isEmpty())
+                    return;
+            }
+        }
+
+        QueryGraph queryGraph = QueryGraph.create(graph, snaps);
+        DirectedEdgeFilter directedEdgeFilter = solver.createDirectedEdgeFilter();
+        final IntArrayList batch = valid;
+        final List<Snap> batchSnaps = snaps;
+        int chunkSize = (batch.size() + routerConfig.getBatchThreads() - 1) / routerConfig.getBatchThreads();
+        for (int start = 0; start < batch.size(); start += chunkSize) {
+            final int from = start, to = Math.min(batch.size(), start + chunkSize);
+            tasks.add(() -> {
+                PathCalculator pathCalculator = solver.createPathCalculator(queryGraph);
+                for (int i = from; i < to; i++) {
+                    GHRequest request = requests.get(batch.get(i));
+                    try {
+                        responses[batch.get(i)] = routeBatchItem(request, solver.weighting, queryGraph,
+                                batchSnaps.subList(2 * i, 2 * i + 2), directedEdgeFilter, pathCalculator);
+                    } catch (IllegalArgumentException ex) {
+                        responses[batch.get(i)] = new GHResponse().addError(ex);
+                    }
+                }
+            });
+        }
+    }
+
+    private GHResponse routeBatchItem(GHRequest request, Weighting weighting, QueryGraph queryGraph, List<Snap> snaps,
+                                      DirectedEdgeFilter directedEdgeFilter, PathCalculator pathCalculator) {
+        GHResponse ghRsp = new GHResponse();
+        ViaRouting.Result result = ViaRouting.calcPaths(request.getPoints(), queryGraph, snaps, directedEdgeFilter,
+                pathCalculator, request.getCurbsides(), getCurbsideStrictness(request.getHints()), request.getHeadings(), false);
+        ResponsePath responsePath = concatenatePaths(request, weighting, queryGraph, result.paths, getWaypoints(snaps));
+        responsePath.addDebugInfo(result.debug);
+        ghRsp.add(responsePath);
+        ghRsp.getHints().putObject("visited_nodes.sum", result.visitedNodes);
+        ghRsp.getHints().putObject("visited_nodes.average", (float) result.visitedNodes);
+        return ghRsp;
+    }
+
+    /**
+     * Calculates the weights, times and distances between all from and to points of the given request. This is
+     * only possible for profiles with a CH preparation, see {@link ManyToManyCH}.
+     */
+    public GHMatrixResponse calcMatrix(GHMatrixRequest request) {
+        List<GHPoint> fromPoints = request.getFromPoints();
+        List<GHPoint> toPoints = request.getToPoints();
+        try {
+            if (fromPoints.isEmpty() || toPoints.isEmpty())
+                throw new IllegalArgumentException("You have to pass at least one from_point and one to_point, or the points parameter");
+            checkIfPointsAreInBoundsAndNotNull(fromPoints);
+            checkIfPointsAreInBoundsAndNotNull(toPoints);
+            checkMatrixPointHints(request.getFromPointHints(), fromPoints, "from_point_hints");
+            checkMatrixPointHints(request.getToPointHints(), toPoints, "to_point_hints");
+            // for a symmetric request we only need to snap the points once
+            List<GHPoint> points = new ArrayList<>(fromPoints);
+            List<String> pointHints = new ArrayList<>(request.getFromPointHints());
+            if (!request.isSymmetric()) {
+                points.addAll(toPoints);
+                if (!request.getFromPointHints().isEmpty() || !request.getToPointHints().isEmpty()) {
+                    pointHints.clear();
+                    pointHints.addAll(request.getFromPointHints().isEmpty() ? Collections.nCopies(fromPoints.size(), "") : request.getFromPointHints());
+                    pointHints.addAll(request.getToPointHints().isEmpty() ? Collections.nCopies(toPoints.size(), "") : request.getToPointHints());
+                }
+            }
+            // ViaRouting.lookup requires at least two points even though a 1x1 matrix is fine
+            if (points.size() == 1) {
+                points.add(points.get(0));
+                if (!pointHints.isEmpty())
+                    pointHints.add(pointHints.get(0));
+            }
+            if (Helper.isEmpty(request.getProfile()))
+                throw new IllegalArgumentException("You need to specify a profile to calculate a matrix, see docs/core/profiles.md");
+            Profile profile = profilesByName.get(request.getProfile());
+            if (profile == null)
+                throw new IllegalArgumentException("The requested profile '" + request.getProfile() + "' does not exist.\nAvailable profiles: " + profilesByName.keySet());
+            RoutingCHGraph chGraph = chGraphs.get(profile.getName());
+            if (chGraph == null)
+                throw new IllegalArgumentException("The matrix calculation requires a CH preparation, but there is none for the requested profile: '" + profile.getName() + "'" +
+                        "\navailable CH profiles: " + chGraphs.keySet());
+
+            StopWatch sw = new StopWatch().start();
+            EdgeFilter snapFilter = new DefaultSnapFilter(chGraph.getWeighting(), encodingManager.getBooleanEncodedValue(Subnetwork.key(profile.getName())));
+            // there are no headings, so we do not need the directed snap filter
+            List<Snap> snaps = ViaRouting.lookup(encodingManager, points, snapFilter, locationIndex,
+                    request.getSnapPreventions(), pointHints, null, Collections.emptyList());
+            QueryGraph queryGraph = QueryGraph.create(graph, snaps);
+            int[] sources = new int[fromPoints.size()];
+            for (int i = 0; i < sources.length; i++)
+                sources[i] = snaps.get(i).getClosestNode();
+            int[] targets = new int[toPoints.size()];
+            int offset = request.isSymmetric() ? 0 : fromPoints.size();
+            for (int i = 0; i < targets.length; i++)
+                targets[i] = snaps.get(offset + i).getClosestNode();
+            String debug = "matrix lookup: " + sw.stop().getSeconds() + "s";
+
+            sw = new StopWatch().start();
+            ManyToManyCH manyToMany = new ManyToManyCH(new QueryRoutingCHGraph(chGraph, queryGraph))
+                    .setSearchStatePool(routerConfig.getSearchStatePool());
+            ManyToManyCH.Matrix matrix = manyToMany.calcMatrix(sources, targets);
+            GHMatrixResponse rsp = new GHMatrixResponse(matrix.getWeights(), matrix.getTimes(), matrix.getDistances());
+            rsp.addDebugInfo(debug);
+            rsp.addDebugInfo("matrix calculation: " + sw.stop().getSeconds() + "s, visited nodes: " + manyToMany.getVisitedNodes());
+            if (request.getFailFast()) {
+                List<List<Integer>> pointPairs = new ArrayList<>();
+                for (int from = 0; from < sources.length; from++)
+                    for (int to = 0; to < targets.length; to++)
+                        if (!matrix.isConnected(from, to))
+                            pointPairs.add(Arrays.asList(from, to));
+                if (!pointPairs.isEmpty())
+                    rsp.addError(new ConnectionNotFoundException("Connection between locations not found",
+                            Collections.singletonMap("point_pairs", pointPairs)));
+            }
+            return rsp;
+        } catch (MultiplePointsNotFoundException ex) {
+            GHMatrixResponse rsp = new GHMatrixResponse();
+            for (IntCursor p : ex.getPointsNotFound()) {
+                if (p.value < fromPoints.size())
+                    rsp.addError(new PointNotFoundException("Cannot find " + (request.isSymmetric() ? "point " : "from_point ") + p.value + ": " + fromPoints.get(p.value), p.value));
+                else if (!request.isSymmetric())
+                    rsp.addError(new PointNotFoundException("Cannot find to_point " + (p.value - fromPoints.size()) + ": " + toPoints.get(p.value - fromPoints.size()), p.value - fromPoints.size()));
+            }
+            return rsp;
+        } catch (IllegalArgumentException ex) {
+            return new GHMatrixResponse().addError(ex);
+        }
+    }
+
+    private static void checkMatrixPointHints(List<String> pointHints, List<GHPoint> points, String name) {
+        if (!pointHints.isEmpty() && pointHints.size() != points.size())
+            throw new IllegalArgumentException("If you pass " + name + ", you need to pass exactly one hint for every point, empty hints will be ignored");
+    }
+
     private void checkNoLegacyParameters(GHRequest request) {
         if (request.getHints().has("vehicle"))
             throw new IllegalArgumentException("GHRequest may no longer contain a vehicle, use the profile parameter instead, see docs/core/profiles.md");
@@ -182,9 +447,17 @@ public class Router {
     }
 
     protected Solver createSolver(GHRequest request) {
-        if (chGraphs.containsKey(request.getProfile()) && !getDisableCH(request.getHints())) {
+        if (request.getCustomModel() != null && customizableCH != null && customizableCH.hasProfile(request.getProfile())
+                && !getDisableCH(request.getHints()) && request.getHeadings().isEmpty() && !getPassThrough(request.getHints())
+                && !ROUND_TRIP.equalsIgnoreCase(request.getAlgorithm())) {
+            RoutingCHGraph chGraph = customizableCH.getOrCustomize(profilesByName.get(request.getProfile()), request.getCustomModel());
+            if (chGraph != null)
+                return new CHSolver(request, profilesByName, routerConfig, encodingManager, Collections.singletonMap(request.getProfile(), chGraph), true);
+            // the custom model is not customized yet, so we use LM or the flexible mode for now
+        } else if (chGraphs.containsKey(request.getProfile()) && !getDisableCH(request.getHints())) {
             return createCHSolver(request, profilesByName, routerConfig, encodingManager, chGraphs);
-        } else if (landmarks.containsKey(request.getProfile()) && !getDisableLM(request.getHints())) {
+        }
+        if (landmarks.containsKey(request.getProfile()) && !getDisableLM(request.getHints())) {
             return createLMSolver(request, profilesByName, routerConfig, encodingManager, weightingFactory, graph, locationIndex, landmarks);
         } else {
             return createFlexSolver(request, profilesByName, routerConfig, encodingManager, weightingFactory, graph, locationIndex);
@@ -193,7 +466,7 @@ public class Router {
 
     protected Solver createCHSolver(GHRequest request, Map<String, Profile> profilesByName, RouterConfig routerConfig,
                                     EncodingManager encodingManager, Map<String, RoutingCHGraph> chGraphs) {
-        return new CHSolver(request, profilesByName, routerConfig, encodingManager, chGraphs);
+        return new CHSolver(request, profilesByName, routerConfig, encodingManager, chGraphs, false);
     }
 
     protected Solver createLMSolver(GHRequest request, Map<String, Profile> profilesByName, RouterConfig routerConfig,
@@ -439,10 +712,14 @@ public class Router {
 
     private static class CHSolver extends Solver {
         private final Map<String, RoutingCHGraph> chGraphs;
+        // true if the CH graphs were customized for the custom model of the request
+        private final boolean customized;
 
-        CHSolver(GHRequest request, Map<String, Profile> profilesByName, RouterConfig routerConfig, EncodedValueLookup lookup, Map<String, RoutingCHGraph> chGraphs) {
+        CHSolver(GHRequest request, Map<String, Profile> profilesByName, RouterConfig routerConfig, EncodedValueLookup lookup,
+                 Map<String, RoutingCHGraph> chGraphs, boolean customized) {
             super(request, profilesByName, routerConfig, lookup);
             this.chGraphs = chGraphs;
+            this.customized = customized;
         }
 
         @Override
@@ -454,7 +731,7 @@ public class Router {
             if (getPassThrough(request.getHints()))
                 throw new IllegalArgumentException("The '" + Parameters.Routing.PASS_THROUGH + "' parameter is currently not supported for speed mode, you need to disable speed mode with `ch.disable=true`. See issue #1765");
 
-            if (request.getCustomModel() != null)
+            if (request.getCustomModel() != null && !customized)
                 throw new IllegalArgumentException("The 'custom_model' parameter is currently not supported for speed mode, you need to disable speed mode with `ch.disable=true`.");
 
             if (ROUND_TRIP.equalsIgnoreCase(request.getAlgorithm()))
@@ -521,7 +798,7 @@ public class Router {
 
         @Override
         protected FlexiblePathCalculator createPathCalculator(QueryGraph queryGraph) {
-            RoutingAlgorithmFactory algorithmFactory = new RoutingAlgorithmFactorySimple();
+            RoutingAlgorithmFactory algorithmFactory = new RoutingAlgorithmFactorySimple().setSearchStatePool(routerConfig.getSearchStatePool());
             return new FlexiblePathCalculator(queryGraph, algorithmFactory, weighting, getAlgoOpts());
         }
 
@@ -581,7 +858,8 @@ public class Router {
                         "\navailable LM profiles: " + landmarks.keySet());
             if (request.getCustomModel() != null)
                 FindMinMax.checkLMConstraints(profile.getCustomModel(), request.getCustomModel(), lookup);
-            RoutingAlgorithmFactory routingAlgorithmFactory = new LMRoutingAlgorithmFactory(landmarkStorage).setDefaultActiveLandmarks(routerConfig.getActiveLandmarkCount());
+            RoutingAlgorithmFactory routingAlgorithmFactory = new LMRoutingAlgorithmFactory(landmarkStorage).setDefaultActiveLandmarks(routerConfig.getActiveLandmarkCount())
+                    .setSearchStatePool(routerConfig.getSearchStatePool());
             return new FlexiblePathCalculator(queryGraph, routingAlgorithmFactory, weighting, getAlgoOpts());
         }
     }
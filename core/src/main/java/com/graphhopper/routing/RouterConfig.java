@@ -31,6 +31,9 @@ public class RouterConfig {
     private boolean simplifyResponse = true;
     private double elevationWayPointMaxDistance = Double.MAX_VALUE;
     private int activeLandmarkCount = 8;
+    private SearchStatePool searchStatePool;
+    private int batchThreads = 1;
+    private long isochroneMaxRasterCells = 1_000_000;
 
     public int getMaxVisitedNodes() {
         return maxVisitedNodes;
@@ -119,4 +122,41 @@ public class RouterConfig {
     public void setElevationWayPointMaxDistance(double elevationWayPointMaxDistance) {
         this.elevationWayPointMaxDistance = elevationWayPointMaxDistance;
     }
+
+    public SearchStatePool getSearchStatePool() {
+        return searchStatePool;
+    }
+
+    /**
+     * Sets the pool the flexible and LM algorithms and the matrix calculation borrow their search state from. Using null (the default) means
+     * the algorithms allocate new data structures for every query.
+     */
+    public void setSearchStatePool(SearchStatePool searchStatePool) {
+        this.searchStatePool = searchStatePool;
+    }
+
+    public int getBatchThreads() {
+        return batchThreads;
+    }
+
+    /**
+     * Sets the number of threads that calculate the routes of a batch request, see {@link Router#routeBatch}.
+     */
+    public void setBatchThreads(int batchThreads) {
+        if (batchThreads < 1)
+            throw new IllegalArgumentException("batch threads must be at least 1 but was " + batchThreads);
+        this.batchThreads = batchThreads;
+    }
+
+    public long getIsochroneMaxRasterCells() {
+        return isochroneMaxRasterCells;
+    }
+
+    /**
+     * Limits the number of cells of the raster that is used for isochrones with a raster resolution. Every cell needs
+     * roughly 40 bytes.
+     */
+    public void setIsochroneMaxRasterCells(long isochroneMaxRasterCells) {
+        this.isochroneMaxRasterCells = isochroneMaxRasterCells;
+    }
 }
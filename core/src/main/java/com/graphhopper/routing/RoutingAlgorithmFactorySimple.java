@@ -36,21 +36,43 @@ import static com.graphhopper.util.Parameters.Algorithms.*;
  * @author Peter Karich
  */
 public class RoutingAlgorithmFactorySimple implements RoutingAlgorithmFactory {
+    private SearchStatePool searchStatePool;
+
+    /**
+     * If a pool is set the Dijkstra and bidirectional Dijkstra/A* algorithms reuse the search state of the current
+     * thread instead of allocating new data structures for every query.
+     */
+    public RoutingAlgorithmFactorySimple setSearchStatePool(SearchStatePool searchStatePool) {
+        this.searchStatePool = searchStatePool;
+        return this;
+    }
+
     @Override
     public RoutingAlgorithm createAlgo(Graph g, Weighting w, AlgorithmOptions opts) {
         RoutingAlgorithm ra;
         String algoStr = opts.getAlgorithm();
         Weighting weighting = g.wrapWeighting(w);
         if (DIJKSTRA_BI.equalsIgnoreCase(algoStr)) {
-            ra = new DijkstraBidirectionRef(g, weighting, opts.getTraversalMode());
+            if (searchStatePool != null)
+                ra = new AStarBidirectionPooled(g, weighting, opts.getTraversalMode(), searchStatePool);
+            else
+                ra = new DijkstraBidirectionRef(g, weighting, opts.getTraversalMode());
         } else if (DIJKSTRA.equalsIgnoreCase(algoStr)) {
-            ra = new Dijkstra(g, weighting, opts.getTraversalMode());
+            if (searchStatePool != null)
+                ra = new DijkstraPooled(g, weighting, opts.getTraversalMode(), searchStatePool);
+            else
+                ra = new Dijkstra(g, weighting, opts.getTraversalMode());
 
         } else if (ASTAR_BI.equalsIgnoreCase(algoStr) || Helper.isEmpty(algoStr)) {
-            AStarBidirection aStarBi = new AStarBidirection(g, weighting,
-                    opts.getTraversalMode());
-            aStarBi.setApproximation(getApproximation(ASTAR_BI, opts.getHints(), weighting, g.getNodeAccess()));
-            ra = aStarBi;
+            WeightApproximator approx = getApproximation(ASTAR_BI, opts.getHints(), weighting, g.getNodeAccess());
+            if (searchStatePool != null) {
+                ra = new AStarBidirectionPooled(g, weighting, opts.getTraversalMode(), searchStatePool).setApproximation(approx);
+            } else {
+                AStarBidirection aStarBi = new AStarBidirection(g, weighting,
+                        opts.getTraversalMode());
+                aStarBi.setApproximation(approx);
+                ra = aStarBi;
+            }
 
         } else if (DIJKSTRA_ONE_TO_MANY.equalsIgnoreCase(algoStr)) {
             ra = new DijkstraOneToMany(g, weighting, opts.getTraversalMode());
@@ -0,0 +1,232 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.coll.MinHeapWithUpdate;
+
+import java.util.Arrays;
+
+/**
+ * The shortest path tree and the priority queue of a single search direction, stored in primitive arrays indexed by
+ * traversal id instead of a map of {@link SPTEntry} objects. Every slot carries a generation stamp so that
+ * {@link #reset(int)} is O(1) and the same instance can be reused for many queries without any allocations, see
+ * {@link SearchStatePool}.
+ * <p>
+ * The heap is an indexed binary min-heap similar to {@link MinHeapWithUpdate}, but with double keys and the
+ * positions stored in this class such that they are invalidated by the generation stamp as well.
+ */
+public class SearchState {
+    public static final int NO_PARENT = -1;
+    private static final int NOT_IN_HEAP = 0;
+    private int[] stamps;
+    private int generation;
+    private double[] weights;
+    private int[] parents;
+    private int[] edges;
+    private int[] adjNodes;
+    // the position of each id in the heap, the heap arrays are 1-based such that 0 means 'not in heap'
+    private int[] heapPositions;
+    private int[] heapIds;
+    private double[] heapKeys;
+    private int heapSize;
+    private int capacity;
+
+    public SearchState(int capacity) {
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        this.capacity = capacity;
+        stamps = new int[capacity];
+        weights = new double[capacity];
+        parents = new int[capacity];
+        edges = new int[capacity];
+        adjNodes = new int[capacity];
+        heapPositions = new int[capacity];
+        heapIds = new int[capacity + 1];
+        heapKeys = new double[capacity + 1];
+        heapKeys[0] = Double.NEGATIVE_INFINITY;
+        generation = 1;
+        heapSize = 0;
+    }
+
+    /**
+     * Invalidates all entries and ensures that ids in [0, capacity[ can be stored. The arrays are only re-allocated
+     * when they are too small.
+     */
+    public void reset(int capacity) {
+        if (capacity > this.capacity) {
+            allocate(Math.max(capacity, this.capacity + (this.capacity >> 1)));
+            return;
+        }
+        heapSize = 0;
+        generation++;
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill(stamps, 0);
+            generation = 1;
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return true if the given id was reached (it is either still in the heap or was already polled) since the last
+     * {@link #reset(int)}
+     */
+    public boolean contains(int id) {
+        return stamps[id] == generation;
+    }
+
+    /**
+     * Adds or replaces the shortest path tree entry with the given id. Does not touch the heap.
+     */
+    public void set(int id, int edge, int adjNode, double weight, int parent) {
+        if (stamps[id] != generation) {
+            stamps[id] = generation;
+            heapPositions[id] = NOT_IN_HEAP;
+        }
+        edges[id] = edge;
+        adjNodes[id] = adjNode;
+        weights[id] = weight;
+        parents[id] = parent;
+    }
+
+    /**
+     * @return the weight of the path from the root of the tree to the entry with the given id
+     */
+    public double getWeight(int id) {
+        return weights[id];
+    }
+
+    public int getEdge(int id) {
+        return edges[id];
+    }
+
+    public int getAdjNode(int id) {
+        return adjNodes[id];
+    }
+
+    /**
+     * @return the id of the parent entry or {@link #NO_PARENT} for the root of the tree
+     */
+    public int getParent(int id) {
+        return parents[id];
+    }
+
+    public boolean isHeapEmpty() {
+        return heapSize == 0;
+    }
+
+    public int getHeapSize() {
+        return heapSize;
+    }
+
+    /**
+     * Pushes the given id to the heap or changes its key if it is already contained. The entry must have been
+     * {@link #set} before.
+     */
+    public void push(int id, double key) {
+        assert stamps[id] == generation : "id " + id + " must be set before it can be pushed";
+        int index = heapPositions[id];
+        if (index == NOT_IN_HEAP) {
+            heapSize++;
+            heapIds[heapSize] = id;
+            heapKeys[heapSize] = key;
+            heapPositions[id] = heapSize;
+            percolateUp(heapSize);
+        } else {
+            double prev = heapKeys[index];
+            heapKeys[index] = key;
+            if (key > prev)
+                percolateDown(index);
+            else if (key < prev)
+                percolateUp(index);
+        }
+    }
+
+    /**
+     * @return the key of the element that would be polled next
+     */
+    public double peekKey() {
+        return heapKeys[1];
+    }
+
+    public int peekId() {
+        return heapIds[1];
+    }
+
+    /**
+     * Removes the element with the smallest key from the heap. Its shortest path tree entry is kept.
+     */
+    public int poll() {
+        int id = heapIds[1];
+        heapIds[1] = heapIds[heapSize];
+        heapKeys[1] = heapKeys[heapSize];
+        heapPositions[heapIds[1]] = 1;
+        heapPositions[id] = NOT_IN_HEAP;
+        heapSize--;
+        percolateDown(1);
+        return id;
+    }
+
+    private void percolateUp(int index) {
+        final int el = heapIds[index];
+        final double key = heapKeys[index];
+        // the finish condition (index==0) is covered here automatically because we set heapKeys[0]=-inf
+        while (key < heapKeys[index >> 1]) {
+            int parent = index >> 1;
+            heapIds[index] = heapIds[parent];
+            heapKeys[index] = heapKeys[parent];
+            heapPositions[heapIds[index]] = index;
+            index = parent;
+        }
+        heapIds[index] = el;
+        heapKeys[index] = key;
+        heapPositions[el] = index;
+    }
+
+    private void percolateDown(int index) {
+        if (heapSize == 0)
+            return;
+        final int el = heapIds[index];
+        final double key = heapKeys[index];
+        while (index << 1 <= heapSize) {
+            int child = index << 1;
+            if (child != heapSize && heapKeys[child + 1] < heapKeys[child])
+                child++;
+            if (heapKeys[child] >= key)
+                break;
+            heapIds[index] = heapIds[child];
+            heapKeys[index] = heapKeys[child];
+            heapPositions[heapIds[index]] = index;
+            index = child;
+        }
+        heapIds[index] = el;
+        heapKeys[index] = key;
+        heapPositions[el] = index;
+    }
+
+    /**
+     * @return the approximate memory usage in bytes
+     */
+    public long getMemoryUsage() {
+        return (long) capacity * (4 + 8 + 4 + 4 + 4 + 4 + 4 + 8);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.*;
+
+/**
+ * Builds a {@link Path} from the shortest path trees stored in {@link SearchState}s. This is the equivalent of
+ * {@link PathExtractor} and {@link DefaultBidirPathExtractor}, but follows the parent ids in the arrays instead of
+ * the {@link SPTEntry} parent references.
+ */
+public class SearchStatePathExtractor {
+    private final Graph graph;
+    private final Weighting weighting;
+    private final Path path;
+
+    public static Path extractPath(Graph graph, Weighting weighting, SearchState state, int id, double weight) {
+        return new SearchStatePathExtractor(graph, weighting).extract(state, id, weight);
+    }
+
+    public static Path extractPath(Graph graph, Weighting weighting, SearchState fwdState, int fwdId,
+                                   SearchState bwdState, int bwdId, double weight) {
+        return new SearchStatePathExtractor(graph, weighting).extract(fwdState, fwdId, bwdState, bwdId, weight);
+    }
+
+    private SearchStatePathExtractor(Graph graph, Weighting weighting) {
+        this.graph = graph;
+        this.weighting = weighting;
+        this.path = new Path(graph);
+    }
+
+    private Path extract(SearchState state, int id, double weight) {
+        StopWatch sw = new StopWatch().start();
+        int root = followParentsUntilRoot(state, id, false);
+        ArrayUtil.reverse(path.getEdges());
+        path.setFromNode(state.getAdjNode(root));
+        path.setEndNode(state.getAdjNode(id));
+        path.setFound(true);
+        path.setWeight(weight);
+        setExtractionTime(sw.stop().getNanos());
+        return path;
+    }
+
+    private Path extract(SearchState fwdState, int fwdId, SearchState bwdState, int bwdId, double weight) {
+        if (fwdState.getAdjNode(fwdId) != bwdState.getAdjNode(bwdId))
+            throw new IllegalStateException("forward and backward entries must have same adjacent nodes, fwd: "
+                    + fwdState.getAdjNode(fwdId) + ", bwd:" + bwdState.getAdjNode(bwdId));
+
+        StopWatch sw = new StopWatch().start();
+        int fwdRoot = followParentsUntilRoot(fwdState, fwdId, false);
+        path.setFromNode(fwdState.getAdjNode(fwdRoot));
+        // since we followed the fwd path in backward direction we need to reverse the edge ids
+        ArrayUtil.reverse(path.getEdges());
+
+        int inEdge = fwdState.getEdge(fwdId);
+        int outEdge = bwdState.getEdge(bwdId);
+        if (EdgeIterator.Edge.isValid(inEdge) && EdgeIterator.Edge.isValid(outEdge))
+            path.addTime(weighting.calcTurnMillis(inEdge, fwdState.getAdjNode(fwdId), outEdge));
+
+        int bwdRoot = followParentsUntilRoot(bwdState, bwdId, true);
+        path.setEndNode(bwdState.getAdjNode(bwdRoot));
+        setExtractionTime(sw.stop().getNanos());
+        path.setFound(true);
+        path.setWeight(weight);
+        return path;
+    }
+
+    private int followParentsUntilRoot(SearchState state, int id, boolean reverse) {
+        int curr = id;
+        int edge = state.getEdge(curr);
+        while (EdgeIterator.Edge.isValid(edge)) {
+            int parent = state.getParent(curr);
+            int prevOrNextEdge = state.getEdge(parent);
+            EdgeIteratorState edgeState = graph.getEdgeIteratorState(edge, state.getAdjNode(curr));
+            path.addDistance(edgeState.getDistance());
+            path.addTime(GHUtility.calcMillisWithTurnMillis(weighting, edgeState, reverse, prevOrNextEdge));
+            path.addEdge(edge);
+            curr = parent;
+            edge = state.getEdge(curr);
+        }
+        return curr;
+    }
+
+    private void setExtractionTime(long nanos) {
+        path.setDebugInfo("path extraction: " + nanos / 1000 + " μs");
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.storage.Graph;
+
+import java.util.ArrayDeque;
+
+/**
+ * Hands out {@link SearchState}s that are kept per thread, such that the (large as the graph) arrays are allocated
+ * only once per thread and not for every query. Every state that was acquired must be released after the search
+ * (including path extraction) is done.
+ */
+public class SearchStatePool {
+    private final ThreadLocal<ArrayDeque<SearchState>> states = ThreadLocal.withInitial(ArrayDeque::new);
+    private final int maxStatesPerThread;
+
+    public SearchStatePool() {
+        // bidirectional algorithms need two states, round trips and alternative routes do not nest searches so far
+        this(4);
+    }
+
+    public SearchStatePool(int maxStatesPerThread) {
+        this.maxStatesPerThread = maxStatesPerThread;
+    }
+
+    /**
+     * @return the number of ids that need to be stored to run a search on the given graph, i.e. the maximum traversal
+     * id plus one. One additional slot is reserved for the root of edge-based searches.
+     */
+    public static int getRequiredCapacity(Graph graph, TraversalMode traversalMode) {
+        return traversalMode.isEdgeBased() ? 2 * graph.getEdges() + 1 : graph.getNodes();
+    }
+
+    public SearchState acquire(int capacity) {
+        SearchState state = states.get().pollLast();
+        if (state == null)
+            return new SearchState(capacity);
+        state.reset(capacity);
+        return state;
+    }
+
+    public void release(SearchState state) {
+        ArrayDeque<SearchState> deque = states.get();
+        if (deque.size() < maxStatesPerThread)
+            deque.addLast(state);
+    }
+
+    /**
+     * Drops the states of the current thread
+     */
+    public void clear() {
+        states.remove();
+    }
+}
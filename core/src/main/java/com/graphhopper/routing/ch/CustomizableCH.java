@@ -0,0 +1,364 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.config.Profile;
+import com.graphhopper.routing.WeightingFactory;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.*;
+import com.graphhopper.util.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.IntStream;
+
+/**
+ * The customization phase of a customizable contraction hierarchy (CCH). The node order and the arcs are fixed by
+ * {@link PrepareCustomizableCH} and only the weights of the arcs are calculated for a given weighting: first the
+ * weights of the base graph edges and then the weights of the shortcuts by relaxing the lower triangles of every arc.
+ * The arcs are processed level by level, such that all arcs of the nodes of one level can be customized in parallel.
+ * The result is an ordinary {@link CHStorage} that only contains the shortcuts that are shorter than the base graph
+ * edges between their nodes, so it can be used with all the CH algorithms.
+ * <p>
+ * Customized graphs are cached per profile and custom model, so that requests with a custom model that is used
+ * frequently get the query speed of CH. A custom model that is not yet cached is customized in the background. At
+ * most as many customizations as the cache can hold are waiting, when there are more the requests just use another
+ * algorithm. Only node-based CH is supported.
+ */
+public class CustomizableCH {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomizableCH.class);
+    // levels with fewer nodes are not worth to be customized in parallel
+    private static final int MIN_PARALLEL_LEVEL_SIZE = 1_000;
+    private final BaseGraph graph;
+    private final int nodes;
+    private final int arcs;
+    private final int[] rank;
+    private final int[] nodeByRank;
+    private final int[] firstArc;
+    private final int[] arcEnd;
+    private final int[] arcHead;
+    // the arcs whose head is a node, sorted by their tail
+    private final int[] downStart;
+    private final int[] downTail;
+    private final int[] downArc;
+    // the nodes per level, the level of a node is larger than the levels of its lower ranked neighbors
+    private final int[][] nodesByLevel;
+    private final Set<String> profiles;
+    private final WeightingFactory weightingFactory;
+    private final Map<String, RoutingCHGraph> cache;
+    private final int cacheSize;
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private int threads = 1;
+    private ExecutorService executor;
+
+    public CustomizableCH(BaseGraph graph, CCHStorage storage, Collection<String> profiles, WeightingFactory weightingFactory, int cacheSize) {
+        if (storage.getNodes() != graph.getNodes())
+            throw new IllegalStateException("CCH was prepared for " + storage.getNodes() + " nodes, but the graph has " + graph.getNodes());
+        this.graph = graph;
+        this.profiles = new LinkedHashSet<>(profiles);
+        this.weightingFactory = weightingFactory;
+        this.cacheSize = cacheSize;
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, RoutingCHGraph> eldest) {
+                return size() > cacheSize;
+            }
+        });
+        nodes = storage.getNodes();
+        arcs = storage.getArcs();
+        rank = new int[nodes];
+        nodeByRank = new int[nodes];
+        firstArc = new int[nodes];
+        arcEnd = new int[nodes];
+        arcHead = new int[arcs];
+        for (int node = 0; node < nodes; node++) {
+            rank[node] = storage.getRank(node);
+            nodeByRank[rank[node]] = node;
+            firstArc[node] = storage.getFirstArc(node);
+            arcEnd[node] = firstArc[node] + storage.getArcCount(node);
+        }
+        for (int arc = 0; arc < arcs; arc++)
+            arcHead[arc] = storage.getHead(arc);
+
+        downStart = new int[nodes + 1];
+        for (int arc = 0; arc < arcs; arc++)
+            downStart[arcHead[arc] + 1]++;
+        for (int node = 0; node < nodes; node++)
+            downStart[node + 1] += downStart[node];
+        downTail = new int[arcs];
+        downArc = new int[arcs];
+        int[] pos = Arrays.copyOf(downStart, nodes);
+        for (int tail = 0; tail < nodes; tail++) {
+            for (int arc = firstArc[tail]; arc < arcEnd[tail]; arc++) {
+                int i = pos[arcHead[arc]]++;
+                downTail[i] = tail;
+                downArc[i] = arc;
+            }
+        }
+
+        int[] level = new int[nodes];
+        int maxLevel = 0;
+        for (int r = 0; r < nodes; r++) {
+            int node = nodeByRank[r];
+            for (int i = downStart[node]; i < downStart[node + 1]; i++)
+                level[node] = Math.max(level[node], level[downTail[i]] + 1);
+            maxLevel = Math.max(maxLevel, level[node]);
+        }
+        int[] levelSizes = new int[maxLevel + 1];
+        for (int node = 0; node < nodes; node++)
+            levelSizes[level[node]]++;
+        nodesByLevel = new int[maxLevel + 1][];
+        for (int l = 0; l <= maxLevel; l++)
+            nodesByLevel[l] = new int[levelSizes[l]];
+        Arrays.fill(levelSizes, 0);
+        for (int node = 0; node < nodes; node++)
+            nodesByLevel[level[node]][levelSizes[level[node]]++] = node;
+    }
+
+    /**
+     * The number of threads used for the customization
+     */
+    public CustomizableCH setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+        return this;
+    }
+
+    public boolean hasProfile(String profile) {
+        return profiles.contains(profile);
+    }
+
+    /**
+     * Returns the customized graph for the given profile and custom model of a request if it is cached. Otherwise,
+     * the customization is started in the background and null is returned, such that the request has to fall back to
+     * another algorithm. The customization is skipped if too many others are waiting already.
+     */
+    public RoutingCHGraph getOrCustomize(Profile profile, CustomModel customModel) {
+        String key = profile.getName() + "|" + customModel;
+        RoutingCHGraph chGraph = cache.get(key);
+        if (chGraph != null || !pending.add(key))
+            return chGraph;
+        synchronized (this) {
+            // more waiting customizations than the cache can hold would only evict each other
+            if (executor == null)
+                executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(Math.max(1, cacheSize)), r -> {
+                    Thread thread = new Thread(r, "cch-customization");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            try {
+                executor.submit(() -> {
+                    try {
+                        PMap hints = new PMap().putObject(CustomModel.KEY, customModel);
+                        cache.put(key, customize(weightingFactory.createWeighting(profile, hints, false)));
+                    } catch (Exception ex) {
+                        LOGGER.warn("Customization failed for profile " + profile.getName(), ex);
+                    } finally {
+                        pending.remove(key);
+                    }
+                });
+            } catch (RejectedExecutionException ex) {
+                // the queue is full, a later request with this custom model can try again
+                pending.remove(key);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Calculates the shortcuts of this CCH for the given weighting
+     */
+    public RoutingCHGraph customize(Weighting weighting) {
+        if (weighting.hasTurnCosts())
+            throw new IllegalArgumentException("Customizable CH does not support turn costs");
+        StopWatch sw = new StopWatch().start();
+        Customization customization = new Customization(weighting);
+        customization.initBaseEdges();
+        customization.relaxTriangles();
+        CHStorage chStorage = customization.createCHStorage();
+        LOGGER.info("Customized CCH with {} shortcuts for {} in {}s", Helper.nf(chStorage.getShortcuts()), weighting, sw.stop().getSeconds());
+        return new RoutingCHGraphImpl(graph, chStorage, weighting);
+    }
+
+    public void close() {
+        synchronized (this) {
+            if (executor != null)
+                executor.shutdownNow();
+        }
+        cache.clear();
+    }
+
+    private int findArc(int tail, int head) {
+        int arc = Arrays.binarySearch(arcHead, firstArc[tail], arcEnd[tail], head);
+        if (arc < 0)
+            throw new IllegalStateException("There is no arc " + tail + "->" + head);
+        return arc;
+    }
+
+    private class Customization {
+        private final Weighting weighting;
+        // the weights from the tail to the head (up) and from the head to the tail (down) of every arc
+        private final double[] up;
+        private final double[] down;
+        // the lowest weight base graph edge or the two arcs of the lowest weight triangle: first the arc
+        // between the tail and the middle node, then the arc between the middle node and the head
+        private final int[] upEdge, upSkip1, upSkip2;
+        private final int[] downEdge, downSkip1, downSkip2;
+
+        Customization(Weighting weighting) {
+            this.weighting = weighting;
+            up = new double[arcs];
+            down = new double[arcs];
+            Arrays.fill(up, Double.POSITIVE_INFINITY);
+            Arrays.fill(down, Double.POSITIVE_INFINITY);
+            upEdge = new int[arcs];
+            downEdge = new int[arcs];
+            Arrays.fill(upEdge, -1);
+            Arrays.fill(downEdge, -1);
+            upSkip1 = new int[arcs];
+            upSkip2 = new int[arcs];
+            downSkip1 = new int[arcs];
+            downSkip2 = new int[arcs];
+            Arrays.fill(upSkip1, -1);
+            Arrays.fill(downSkip1, -1);
+        }
+
+        void initBaseEdges() {
+            int chunkSize = 10_000;
+            GHUtility.runConcurrently(IntStream.range(0, (nodes + chunkSize - 1) / chunkSize).mapToObj(chunk -> () -> {
+                EdgeExplorer explorer = graph.createEdgeExplorer();
+                for (int node = chunk * chunkSize; node < Math.min(nodes, (chunk + 1) * chunkSize); node++) {
+                    // every thread only writes the arcs of its own nodes
+                    EdgeIterator iter = explorer.setBaseNode(node);
+                    while (iter.next()) {
+                        if (rank[iter.getAdjNode()] <= rank[node])
+                            continue;
+                        int arc = findArc(node, iter.getAdjNode());
+                        double weight = weighting.calcEdgeWeight(iter, false);
+                        if (weight < up[arc]) {
+                            up[arc] = weight;
+                            upEdge[arc] = iter.getEdge();
+                        }
+                        weight = weighting.calcEdgeWeight(iter, true);
+                        if (weight < down[arc]) {
+                            down[arc] = weight;
+                            downEdge[arc] = iter.getEdge();
+                        }
+                    }
+                }
+            }), threads);
+        }
+
+        void relaxTriangles() {
+            ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads) : null;
+            try {
+                for (int[] levelNodes : nodesByLevel) {
+                    if (pool == null || levelNodes.length < MIN_PARALLEL_LEVEL_SIZE) {
+                        for (int node : levelNodes)
+                            relaxTriangles(node);
+                    } else {
+                        pool.submit(() -> Arrays.stream(levelNodes).parallel().forEach(this::relaxTriangles)).get();
+                    }
+                }
+            } catch (InterruptedException | ExecutionException e) {
+                throw new RuntimeException(e);
+            } finally {
+                if (pool != null)
+                    pool.shutdown();
+            }
+        }
+
+        /**
+         * Relaxes the lower triangles of all arcs whose tail is the given node. The other two arcs of these triangles
+         * have lower levels and are therefore already final.
+         */
+        private void relaxTriangles(int tail) {
+            for (int arc = firstArc[tail]; arc < arcEnd[tail]; arc++) {
+                int head = arcHead[arc];
+                int i = downStart[tail], j = downStart[head];
+                while (i < downStart[tail + 1] && j < downStart[head + 1]) {
+                    if (downTail[i] < downTail[j]) {
+                        i++;
+                    } else if (downTail[i] > downTail[j]) {
+                        j++;
+                    } else {
+                        // arc1: middle-tail, arc2: middle-head
+                        int arc1 = downArc[i++], arc2 = downArc[j++];
+                        double weight = down[arc1] + up[arc2];
+                        if (weight < up[arc]) {
+                            up[arc] = weight;
+                            upSkip1[arc] = arc1;
+                            upSkip2[arc] = arc2;
+                        }
+                        weight = down[arc2] + up[arc1];
+                        if (weight < down[arc]) {
+                            down[arc] = weight;
+                            downSkip1[arc] = arc1;
+                            downSkip2[arc] = arc2;
+                        }
+                    }
+                }
+            }
+        }
+
+        CHStorage createCHStorage() {
+            int shortcuts = 0;
+            for (int arc = 0; arc < arcs; arc++) {
+                if (upSkip1[arc] >= 0 && Double.isFinite(up[arc])) shortcuts++;
+                if (downSkip1[arc] >= 0 && Double.isFinite(down[arc])) shortcuts++;
+            }
+            CHStorage chStorage = new CHStorage(new RAMDirectory(), "cch", -1, false);
+            chStorage.create(nodes, shortcuts);
+            CHStorageBuilder builder = new CHStorageBuilder(chStorage);
+            for (int node = 0; node < nodes; node++)
+                builder.setLevel(node, rank[node]);
+            // the CH edge for every arc and direction, i.e. the lowest weight base graph edge or a shortcut
+            int[] chUp = upEdge, chDown = downEdge;
+            int baseEdges = graph.getEdges();
+            for (int r = 0; r < nodes; r++) {
+                int tail = nodeByRank[r];
+                for (int arc = firstArc[tail]; arc < arcEnd[tail]; arc++) {
+                    int head = arcHead[arc];
+                    boolean upShortcut = upSkip1[arc] >= 0 && Double.isFinite(up[arc]);
+                    boolean downShortcut = downSkip1[arc] >= 0 && Double.isFinite(down[arc]);
+                    int upSkipped1 = upShortcut ? chDown[upSkip1[arc]] : -1, upSkipped2 = upShortcut ? chUp[upSkip2[arc]] : -1;
+                    int downSkipped1 = downShortcut ? chUp[downSkip1[arc]] : -1, downSkipped2 = downShortcut ? chDown[downSkip2[arc]] : -1;
+                    if (upShortcut && downShortcut && up[arc] == down[arc] && upSkipped1 == downSkipped1 && upSkipped2 == downSkipped2) {
+                        int shortcut = builder.addShortcutNodeBased(tail, head, PrepareEncoder.getScDirMask(), up[arc], upSkipped1, upSkipped2);
+                        chUp[arc] = chDown[arc] = baseEdges + shortcut;
+                        continue;
+                    }
+                    if (upShortcut) {
+                        int shortcut = builder.addShortcutNodeBased(tail, head, PrepareEncoder.getScFwdDir(), up[arc], upSkipped1, upSkipped2);
+                        chUp[arc] = baseEdges + shortcut;
+                    } else if (upSkip1[arc] >= 0) {
+                        chUp[arc] = -1;
+                    }
+                    if (downShortcut) {
+                        int shortcut = builder.addShortcutNodeBased(tail, head, PrepareEncoder.getScBwdDir(), down[arc], downSkipped1, downSkipped2);
+                        chDown[arc] = baseEdges + shortcut;
+                    } else if (downSkip1[arc] >= 0) {
+                        chDown[arc] = -1;
+                    }
+                }
+            }
+            return chStorage;
+        }
+    }
+}
@@ -0,0 +1,367 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.carrotsearch.hppc.*;
+import com.carrotsearch.hppc.cursors.IntCursor;
+import com.graphhopper.routing.SearchState;
+import com.graphhopper.routing.SearchStatePool;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.RoutingCHEdgeExplorer;
+import com.graphhopper.storage.RoutingCHEdgeIterator;
+import com.graphhopper.storage.RoutingCHEdgeIteratorState;
+import com.graphhopper.storage.RoutingCHGraph;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.GHUtility;
+
+import java.util.Arrays;
+
+/**
+ * Calculates the weights, times and distances between all pairs of a list of source and a list of target nodes using
+ * the bucket-based many-to-many algorithm for contraction hierarchies: first we run an upward search in backward
+ * direction from every target and store the settled entries in a 'bucket' at the corresponding node. Then we run an
+ * upward search in forward direction from every source and scan the buckets of all settled nodes to find the
+ * shortest connection to every target. This way we only need |sources| + |targets| searches instead of
+ * |sources| * |targets|.
+ * <p>
+ * The searches only find the weights. The times and distances are accumulated along the way, the ones of the
+ * shortcuts are found by unpacking them once per calculation.
+ * <p>
+ * This works for node- and edge-based CH graphs. In the latter case the turn costs at the node where the forward and
+ * backward searches meet are taken into account.
+ *
+ * @see PrepareContractionHierarchies
+ */
+public class ManyToManyCH {
+    private final RoutingCHGraph graph;
+    private final Weighting weighting;
+    private final boolean edgeBased;
+    private final TraversalMode traversalMode;
+    private final int maxNodes;
+    private final RoutingCHEdgeExplorer outEdgeExplorer;
+    private final RoutingCHEdgeExplorer inEdgeExplorer;
+    private final ShortcutUnpacker fwdUnpacker;
+    private final ShortcutUnpacker bwdUnpacker;
+    // the times and distances of the edges/shortcuts we already unpacked, keyed by edge and adjacent node
+    private final LongLongHashMap fwdMillisCache = new LongLongHashMap();
+    private final LongDoubleHashMap fwdDistanceCache = new LongDoubleHashMap();
+    private final LongLongHashMap bwdMillisCache = new LongLongHashMap();
+    private final LongDoubleHashMap bwdDistanceCache = new LongDoubleHashMap();
+    private long unpackedMillis;
+    private double unpackedDistance;
+    private SearchStatePool searchStatePool;
+    private SearchState state;
+    // the times and distances of the entries reached by the current search. the searches are small compared to the
+    // graph, so we do not use arrays here
+    private final IntLongHashMap times = new IntLongHashMap();
+    private final IntDoubleHashMap distances = new IntDoubleHashMap();
+    private int capacity;
+    private final IntArrayList settled = new IntArrayList();
+    // the buckets are stored as linked lists: bucketHeads maps a node to the index of its first entry and
+    // bucketNext points to the next entry of the same node or -1
+    private final IntIntHashMap bucketHeads = new IntIntHashMap();
+    private final IntArrayList bucketNext = new IntArrayList();
+    private final IntArrayList bucketTargets = new IntArrayList();
+    private final IntArrayList bucketEdges = new IntArrayList();
+    private final DoubleArrayList bucketWeights = new DoubleArrayList();
+    private final LongArrayList bucketTimes = new LongArrayList();
+    private final DoubleArrayList bucketDistances = new DoubleArrayList();
+    private int visitedNodes;
+
+    public ManyToManyCH(RoutingCHGraph graph) {
+        this.graph = graph;
+        // it is important to use the wrapped weighting, otherwise turn times involving virtual edges will be wrong
+        this.weighting = graph.getBaseGraph().wrapWeighting(graph.getWeighting());
+        this.edgeBased = graph.isEdgeBased();
+        this.traversalMode = edgeBased ? TraversalMode.EDGE_BASED : TraversalMode.NODE_BASED;
+        this.maxNodes = graph.getBaseGraph().getBaseGraph().getNodes();
+        this.outEdgeExplorer = graph.createOutEdgeExplorer();
+        this.inEdgeExplorer = graph.createInEdgeExplorer();
+        ShortcutUnpacker.Visitor visitor = (edge, reverse, prevOrNextEdgeId) -> {
+            unpackedMillis += GHUtility.calcMillisWithTurnMillis(weighting, edge, reverse, prevOrNextEdgeId);
+            unpackedDistance += edge.getDistance();
+        };
+        this.fwdUnpacker = new ShortcutUnpacker(graph, visitor, edgeBased);
+        this.bwdUnpacker = new ShortcutUnpacker(graph, visitor, edgeBased);
+    }
+
+    /**
+     * Sets the pool the search state is taken from. Without a pool a new search state, which is as large as the graph,
+     * is allocated for every calculation.
+     */
+    public ManyToManyCH setSearchStatePool(SearchStatePool searchStatePool) {
+        this.searchStatePool = searchStatePool;
+        return this;
+    }
+
+    /**
+     * @param sources the nodes of the (query) graph the routes start at
+     * @param targets the nodes of the (query) graph the routes end at
+     */
+    public Matrix calcMatrix(int[] sources, int[] targets) {
+        capacity = edgeBased ? 2 * graph.getBaseGraph().getEdges() + 1 : graph.getNodes();
+        state = searchStatePool == null ? new SearchState(capacity) : searchStatePool.acquire(capacity);
+        try {
+            return calcMatrixWithState(sources, targets);
+        } finally {
+            if (searchStatePool != null)
+                searchStatePool.release(state);
+            state = null;
+            times.clear();
+            distances.clear();
+        }
+    }
+
+    private Matrix calcMatrixWithState(int[] sources, int[] targets) {
+        visitedNodes = 0;
+        bucketHeads.clear();
+        bucketNext.clear();
+        bucketTargets.clear();
+        bucketEdges.clear();
+        bucketWeights.clear();
+        bucketTimes.clear();
+        bucketDistances.clear();
+        Matrix matrix = new Matrix(sources.length, targets.length);
+        for (int target = 0; target < targets.length; target++) {
+            search(targets[target], true);
+            fillBucket(target);
+        }
+        for (int source = 0; source < sources.length; source++) {
+            search(sources[source], false);
+            scanBuckets(matrix, source);
+        }
+        return matrix;
+    }
+
+    /**
+     * @return the number of nodes that were settled by all searches of the last calculation
+     */
+    public int getVisitedNodes() {
+        return visitedNodes;
+    }
+
+    /**
+     * Runs a full upward search starting at the given node. Afterwards all settled entries are stored in the search
+     * state, but no longer in its heap.
+     */
+    private void search(int node, boolean reverse) {
+        state.reset(capacity);
+        settled.elementsCount = 0;
+        times.clear();
+        distances.clear();
+        int root = edgeBased ? capacity - 1 : node;
+        state.set(root, EdgeIterator.NO_EDGE, node, 0, SearchState.NO_PARENT);
+        times.put(root, 0);
+        distances.put(root, 0);
+        state.push(root, 0);
+        RoutingCHEdgeExplorer explorer = reverse ? inEdgeExplorer : outEdgeExplorer;
+        while (!state.isHeapEmpty()) {
+            int curr = state.poll();
+            settled.add(curr);
+            visitedNodes++;
+            int currEdge = state.getEdge(curr);
+            int incEdge = getIncEdge(curr);
+            double currWeight = state.getWeight(curr);
+            RoutingCHEdgeIterator iter = explorer.setBaseNode(state.getAdjNode(curr));
+            while (iter.next()) {
+                // for edge-based CH we need all edges for the first step, see AbstractBidirectionEdgeCHNoSOD
+                if (!(edgeBased && curr == root) && !acceptUpward(iter))
+                    continue;
+                if (!edgeBased && iter.getEdge() == currEdge)
+                    continue;
+                double weight = calcWeight(iter, reverse, incEdge) + currWeight;
+                if (Double.isInfinite(weight))
+                    continue;
+                int traversalId = traversalMode.createTraversalId(iter, reverse);
+                if (state.contains(traversalId) && state.getWeight(traversalId) <= weight)
+                    continue;
+                state.set(traversalId, iter.getEdge(), iter.getAdjNode(), weight, curr);
+                state.push(traversalId, weight);
+                times.put(traversalId, times.get(curr) + calcMillis(iter, reverse, incEdge));
+                distances.put(traversalId, distances.get(curr) + unpackedDistance);
+            }
+        }
+    }
+
+    private void fillBucket(int target) {
+        for (IntCursor c : settled) {
+            int id = c.value;
+            int node = state.getAdjNode(id);
+            int index = bucketTargets.size();
+            bucketTargets.add(target);
+            bucketEdges.add(getIncEdge(id));
+            bucketWeights.add(state.getWeight(id));
+            bucketTimes.add(times.get(id));
+            bucketDistances.add(distances.get(id));
+            int head = bucketHeads.indexOf(node);
+            bucketNext.add(bucketHeads.indexExists(head) ? bucketHeads.indexGet(head) : -1);
+            if (bucketHeads.indexExists(head))
+                bucketHeads.indexReplace(head, index);
+            else
+                bucketHeads.indexInsert(head, node, index);
+        }
+    }
+
+    private void scanBuckets(Matrix matrix, int source) {
+        double[] weightRow = matrix.weights[source];
+        long[] timeRow = matrix.times[source];
+        double[] distanceRow = matrix.distances[source];
+        for (IntCursor c : settled) {
+            int id = c.value;
+            int node = state.getAdjNode(id);
+            int index = bucketHeads.getOrDefault(node, -1);
+            if (index < 0)
+                continue;
+            int inEdge = getIncEdge(id);
+            double fwdWeight = state.getWeight(id);
+            for (; index >= 0; index = bucketNext.get(index)) {
+                int outEdge = bucketEdges.get(index);
+                double weight = fwdWeight + bucketWeights.get(index);
+                long turnMillis = 0;
+                if (edgeBased && EdgeIterator.Edge.isValid(inEdge) && EdgeIterator.Edge.isValid(outEdge)) {
+                    weight += graph.getTurnWeight(inEdge, node, outEdge);
+                    turnMillis = weighting.calcTurnMillis(inEdge, node, outEdge);
+                }
+                int target = bucketTargets.get(index);
+                if (weight < weightRow[target]) {
+                    weightRow[target] = weight;
+                    timeRow[target] = times.get(id) + bucketTimes.get(index) + turnMillis;
+                    distanceRow[target] = distances.get(id) + bucketDistances.get(index);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the original edge the given entry was reached with (or left with for the backward search), or
+     * {@link EdgeIterator#NO_EDGE} for the root
+     */
+    private int getIncEdge(int id) {
+        if (!EdgeIterator.Edge.isValid(state.getEdge(id)))
+            return EdgeIterator.NO_EDGE;
+        return edgeBased ? GHUtility.getEdgeFromEdgeKey(id) : state.getEdge(id);
+    }
+
+    private double calcWeight(RoutingCHEdgeIteratorState iter, boolean reverse, int prevOrNextEdge) {
+        double edgeWeight = iter.getWeight(reverse);
+        if (!edgeBased)
+            return edgeWeight;
+        int origEdge = GHUtility.getEdgeFromEdgeKey(reverse ? iter.getOrigEdgeKeyLast() : iter.getOrigEdgeKeyFirst());
+        return edgeWeight + (reverse
+                ? graph.getTurnWeight(origEdge, iter.getBaseNode(), prevOrNextEdge)
+                : graph.getTurnWeight(prevOrNextEdge, iter.getBaseNode(), origEdge));
+    }
+
+    /**
+     * @return the time it takes to travel along the given edge/shortcut including the turn time at the base node.
+     * The distance of the edge is stored in unpackedDistance.
+     */
+    private long calcMillis(RoutingCHEdgeIteratorState iter, boolean reverse, int prevOrNextEdge) {
+        LongLongHashMap millisCache = reverse ? bwdMillisCache : fwdMillisCache;
+        LongDoubleHashMap distanceCache = reverse ? bwdDistanceCache : fwdDistanceCache;
+        long cacheKey = ((long) iter.getEdge() << 32) | iter.getAdjNode();
+        int index = millisCache.indexOf(cacheKey);
+        if (millisCache.indexExists(index)) {
+            unpackedMillis = millisCache.indexGet(index);
+            unpackedDistance = distanceCache.get(cacheKey);
+        } else {
+            unpackedMillis = 0;
+            unpackedDistance = 0;
+            if (reverse)
+                bwdUnpacker.visitOriginalEdgesBwd(iter.getEdge(), iter.getAdjNode(), false, EdgeIterator.NO_EDGE);
+            else
+                fwdUnpacker.visitOriginalEdgesFwd(iter.getEdge(), iter.getAdjNode(), false, EdgeIterator.NO_EDGE);
+            millisCache.indexInsert(index, cacheKey, unpackedMillis);
+            distanceCache.put(cacheKey, unpackedDistance);
+        }
+        if (!edgeBased || !EdgeIterator.Edge.isValid(prevOrNextEdge))
+            return unpackedMillis;
+        int origEdge = GHUtility.getEdgeFromEdgeKey(reverse ? iter.getOrigEdgeKeyLast() : iter.getOrigEdgeKeyFirst());
+        return unpackedMillis + (reverse
+                ? weighting.calcTurnMillis(origEdge, iter.getBaseNode(), prevOrNextEdge)
+                : weighting.calcTurnMillis(prevOrNextEdge, iter.getBaseNode(), origEdge));
+    }
+
+    private boolean acceptUpward(RoutingCHEdgeIteratorState edgeState) {
+        int base = edgeState.getBaseNode();
+        int adj = edgeState.getAdjNode();
+        // always accept virtual edges, see #288
+        if (base >= maxNodes || adj >= maxNodes)
+            return true;
+        return graph.getLevel(base) <= graph.getLevel(adj);
+    }
+
+    public static class Matrix {
+        private final double[][] weights;
+        private final long[][] times;
+        private final double[][] distances;
+
+        Matrix(int sources, int targets) {
+            weights = new double[sources][targets];
+            times = new long[sources][targets];
+            distances = new double[sources][targets];
+            for (int i = 0; i < sources; i++) {
+                Arrays.fill(weights[i], Double.POSITIVE_INFINITY);
+                Arrays.fill(times[i], Long.MAX_VALUE);
+                Arrays.fill(distances[i], Double.POSITIVE_INFINITY);
+            }
+        }
+
+        /**
+         * @return the weights indexed by source first and target second
+         */
+        public double[][] getWeights() {
+            return weights;
+        }
+
+        public long[][] getTimes() {
+            return times;
+        }
+
+        public double[][] getDistances() {
+            return distances;
+        }
+
+        public boolean isConnected(int source, int target) {
+            return Double.isFinite(weights[source][target]);
+        }
+
+        /**
+         * @return the weight of the shortest path from the given source to the given target or
+         * {@link Double#POSITIVE_INFINITY} if there is no such path
+         */
+        public double getWeight(int source, int target) {
+            return weights[source][target];
+        }
+
+        /**
+         * @return the time in milliseconds or {@link Long#MAX_VALUE} if there is no path
+         */
+        public long getTime(int source, int target) {
+            return times[source][target];
+        }
+
+        /**
+         * @return the distance in meters or {@link Double#POSITIVE_INFINITY} if there is no path
+         */
+        public double getDistance(int source, int target) {
+            return distances[source][target];
+        }
+    }
+}
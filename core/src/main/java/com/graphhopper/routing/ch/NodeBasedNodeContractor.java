@@ -17,7 +17,10 @@
  */
 package com.graphhopper.routing.ch;
 
+import com.carrotsearch.hppc.DoubleArrayList;
+import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.IntContainer;
+import com.graphhopper.coll.GHBitSet;
 import com.graphhopper.storage.CHStorageBuilder;
 import com.graphhopper.util.PMap;
 import com.graphhopper.util.StopWatch;
@@ -31,7 +34,10 @@ import static com.graphhopper.util.Helper.nf;
 
 class NodeBasedNodeContractor implements NodeContractor {
     private final CHPreparationGraph prepareGraph;
-    private final Params params = new Params();
+    private final Params params;
+    // the contractor this worker was created from, or null if this is not a worker, see createWorker()
+    private final NodeBasedNodeContractor parent;
+    private final List<NodeBasedNodeContractor> workers = new ArrayList<>();
     // todo: maybe use a set to prevent duplicates instead?
     private List<Shortcut> shortcuts = new ArrayList<>();
     private CHStorageBuilder chBuilder;
@@ -51,10 +57,31 @@ class NodeBasedNodeContractor implements NodeContractor {
 
     NodeBasedNodeContractor(CHPreparationGraph prepareGraph, CHStorageBuilder chBuilder, PMap pMap) {
         this.prepareGraph = prepareGraph;
+        this.params = new Params();
+        this.parent = null;
         extractParams(pMap);
         this.chBuilder = chBuilder;
     }
 
+    private NodeBasedNodeContractor(NodeBasedNodeContractor parent) {
+        this.prepareGraph = parent.prepareGraph;
+        this.params = parent.params;
+        this.parent = parent;
+        initFromGraph();
+    }
+
+    /**
+     * Creates a contractor that shares the prepare graph (and the mean degree) with this one, but has its own edge
+     * explorers and witness path searcher. Workers only support the read-only methods {@link #calculatePriority} and
+     * {@link #findShortcuts}, so several of them can be used concurrently as long as this contractor does not change
+     * the graph at the same time.
+     */
+    NodeBasedNodeContractor createWorker() {
+        NodeBasedNodeContractor worker = new NodeBasedNodeContractor(this);
+        workers.add(worker);
+        return worker;
+    }
+
     private void extractParams(PMap pMap) {
         params.edgeDifferenceWeight = pMap.getFloat(EDGE_DIFFERENCE_WEIGHT, params.edgeDifferenceWeight);
         params.originalEdgesCountWeight = pMap.getFloat(ORIGINAL_EDGE_COUNT_WEIGHT, params.originalEdgesCountWeight);
@@ -80,6 +107,7 @@ class NodeBasedNodeContractor implements NodeContractor {
         outEdgeExplorer = null;
         existingShortcutExplorer = null;
         witnessPathSearcher = null;
+        workers.clear();
     }
 
     /**
@@ -97,7 +125,7 @@ class NodeBasedNodeContractor implements NodeContractor {
         // originalEdgesCount = σ(v) := sum_{ (u,w) ∈ shortcuts(v) } of r(u, w)
         shortcutsCount = 0;
         originalEdgesCount = 0;
-        findAndHandleShortcuts(node, this::countShortcuts, (int) (meanDegree * params.maxPollFactorHeuristic));
+        findAndHandleShortcuts(node, this::countShortcuts, (int) (getMeanDegree() * params.maxPollFactorHeuristic));
 
         // from shortcuts we can compute the edgeDifference
         // # low influence: with it the shortcut creation is slightly faster
@@ -117,6 +145,40 @@ class NodeBasedNodeContractor implements NodeContractor {
     @Override
     public IntContainer contractNode(int node) {
         long degree = findAndHandleShortcuts(node, this::addOrUpdateShortcut, (int) (meanDegree * params.maxPollFactorContraction));
+        return finishContractNode(node, degree);
+    }
+
+    /**
+     * Searches the shortcuts that are needed to contract the given node without changing the graph. Witness paths
+     * via one of the given batch nodes are not accepted, because these nodes will be contracted in the same step.
+     * The result needs to be passed to {@link #contractNode(int, PendingShortcuts)} of the parent contractor.
+     */
+    PendingShortcuts findShortcuts(int node, GHBitSet batchNodes) {
+        PendingShortcuts pendingShortcuts = new PendingShortcuts();
+        witnessPathSearcher.setIgnoredNodes(batchNodes);
+        try {
+            pendingShortcuts.degree = findAndHandleShortcuts(node, pendingShortcuts, (int) (getMeanDegree() * params.maxPollFactorContraction));
+        } finally {
+            witnessPathSearcher.setIgnoredNodes(null);
+        }
+        return pendingShortcuts;
+    }
+
+    /**
+     * Contracts the given node like {@link #contractNode(int)}, but uses the shortcuts that were found by
+     * {@link #findShortcuts} before instead of running the witness searches again.
+     */
+    IntContainer contractNode(int node, PendingShortcuts pendingShortcuts) {
+        for (int i = 0; i < pendingShortcuts.weights.size(); i++) {
+            int offset = 6 * i;
+            IntArrayList ints = pendingShortcuts.ints;
+            addOrUpdateShortcut(ints.get(offset), ints.get(offset + 1), pendingShortcuts.weights.get(i),
+                    ints.get(offset + 2), ints.get(offset + 3), ints.get(offset + 4), ints.get(offset + 5));
+        }
+        return finishContractNode(node, pendingShortcuts.degree);
+    }
+
+    private IntContainer finishContractNode(int node, long degree) {
         insertShortcuts(node);
         // put weight factor on meanDegree instead of taking the average => meanDegree is more stable
         meanDegree = (meanDegree * 2 + degree) / 3;
@@ -196,8 +258,15 @@ class NodeBasedNodeContractor implements NodeContractor {
 
     @Override
     public String getStatisticsString() {
+        long dijkstras = dijkstraCount;
+        for (NodeBasedNodeContractor worker : workers)
+            dijkstras += worker.dijkstraCount;
         return String.format(Locale.ROOT, "meanDegree: %.2f, dijkstras: %10s, mem: %10s",
-                meanDegree, nf(dijkstraCount), witnessPathSearcher.getMemoryUsageAsString());
+                meanDegree, nf(dijkstras), witnessPathSearcher.getMemoryUsageAsString());
+    }
+
+    private double getMeanDegree() {
+        return parent == null ? meanDegree : parent.meanDegree;
     }
 
     /**
@@ -299,6 +368,26 @@ class NodeBasedNodeContractor implements NodeContractor {
                             int incomingEdge, int inOrigEdgeCount);
     }
 
+    /**
+     * The shortcuts found for a node by {@link #findShortcuts}, stored as six ints (from, to, outgoing edge,
+     * outgoing original edge count, incoming edge, incoming original edge count) and one weight per shortcut.
+     */
+    static class PendingShortcuts implements PrepareShortcutHandler {
+        private final IntArrayList ints = new IntArrayList();
+        private final DoubleArrayList weights = new DoubleArrayList();
+        private long degree;
+
+        @Override
+        public void handleShortcut(int fromNode, int toNode, double existingDirectWeight,
+                                   int outgoingEdge, int outOrigEdgeCount,
+                                   int incomingEdge, int inOrigEdgeCount) {
+            ints.add(fromNode, toNode);
+            ints.add(outgoingEdge, outOrigEdgeCount);
+            ints.add(incomingEdge, inOrigEdgeCount);
+            weights.add(existingDirectWeight);
+        }
+    }
+
     public static class Params {
         // default values were optimized for Unterfranken
         private float edgeDifferenceWeight = 10;
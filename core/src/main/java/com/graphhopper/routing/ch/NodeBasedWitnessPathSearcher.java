@@ -20,6 +20,7 @@ package com.graphhopper.routing.ch;
 import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.cursors.IntCursor;
 import com.graphhopper.apache.commons.collections.IntFloatBinaryHeap;
+import com.graphhopper.coll.GHBitSet;
 import com.graphhopper.util.Helper;
 
 import java.util.Arrays;
@@ -34,6 +35,7 @@ public class NodeBasedWitnessPathSearcher {
     private final IntArrayList changedNodes;
     private final IntFloatBinaryHeap heap;
     private int ignoreNode = -1;
+    private GHBitSet ignoredNodes;
     private int settledNodes = 0;
 
     public NodeBasedWitnessPathSearcher(CHPreparationGraph graph) {
@@ -56,6 +58,15 @@ public class NodeBasedWitnessPathSearcher {
         heap.insert(0, startNode);
     }
 
+    /**
+     * Nodes in this set are skipped by all following searches in addition to the ignoreNode given in init(). This is
+     * used when multiple independent nodes are contracted at the same time: a witness path must not lead via a node
+     * that is removed from the graph in the same step. Use null to disable this again.
+     */
+    public void setIgnoredNodes(GHBitSet ignoredNodes) {
+        this.ignoredNodes = ignoredNodes;
+    }
+
     /**
      * Runs or continues a Dijkstra search starting at the startNode and ignoring the ignoreNode given in init().
      * If the shortest path is found we return its weight. However, this method also returns early if any path was
@@ -85,7 +96,7 @@ public class NodeBasedWitnessPathSearcher {
             PrepareGraphEdgeIterator iter = outEdgeExplorer.setBaseNode(node);
             while (iter.next()) {
                 int adjNode = iter.getAdjNode();
-                if (adjNode == ignoreNode)
+                if (adjNode == ignoreNode || (ignoredNodes != null && ignoredNodes.contains(adjNode)))
                     continue;
                 double weight = weights[node] + iter.getWeight();
                 if (Double.isInfinite(weight))
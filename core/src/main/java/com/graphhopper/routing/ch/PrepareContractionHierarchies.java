@@ -17,8 +17,12 @@
  */
 package com.graphhopper.routing.ch;
 
+import com.carrotsearch.hppc.FloatArrayList;
+import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.IntContainer;
 import com.carrotsearch.hppc.cursors.IntCursor;
+import com.graphhopper.coll.GHBitSet;
+import com.graphhopper.coll.GHBitSetImpl;
 import com.graphhopper.coll.MinHeapWithUpdate;
 import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.storage.*;
@@ -28,8 +32,11 @@ import com.graphhopper.util.StopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 import java.util.Random;
+import java.util.concurrent.*;
 
 import static com.graphhopper.routing.ch.CHParameters.*;
 import static com.graphhopper.util.Helper.getMemInfo;
@@ -62,6 +69,11 @@ public class PrepareContractionHierarchies {
     private final Params params;
     private final BaseGraph graph;
     private NodeContractor nodeContractor;
+    // only used for the parallel contraction, see contractIndependentNodeSets
+    private CHPreparationGraph prepareGraph;
+    private NodeBasedNodeContractor nodeBasedContractor;
+    private NodeBasedNodeContractor[] workers;
+    private ExecutorService executor;
     private final int nodes;
     private NodeOrderingProvider nodeOrderingProvider;
     private int maxLevel;
@@ -69,6 +81,7 @@ public class PrepareContractionHierarchies {
     private MinHeapWithUpdate sortedNodes;
     private PMap pMap = new PMap();
     private int checkCounter;
+    private int updateCounter;
     private boolean prepared = false;
 
     public static PrepareContractionHierarchies fromGraph(BaseGraph graph, CHConfig chConfig) {
@@ -100,6 +113,8 @@ public class PrepareContractionHierarchies {
         params.setMaxNeighborUpdates(pMap.getInt(NEIGHBOR_UPDATES_MAX, params.getMaxNeighborUpdates()));
         params.setNodesContractedPercentage(pMap.getInt(CONTRACTED_NODES, params.getNodesContractedPercentage()));
         params.setLogMessagesPercentage(pMap.getInt(LOG_MESSAGES, params.getLogMessagesPercentage()));
+        params.setContractionThreads(pMap.getInt(CONTRACTION_THREADS, params.getContractionThreads()));
+        params.setIndependentSetSize(pMap.getInt(INDEPENDENT_SET_SIZE, params.getIndependentSetSize()));
         return this;
     }
 
@@ -161,6 +176,14 @@ public class PrepareContractionHierarchies {
         setMaxLevelOnAllNodes();
         if (nodeOrderingProvider != null) {
             contractNodesUsingFixedNodeOrdering();
+        } else if (workers != null) {
+            executor = Executors.newFixedThreadPool(workers.length);
+            try {
+                contractNodesUsingHeuristicNodeOrdering();
+            } finally {
+                executor.shutdownNow();
+                executor = null;
+            }
         } else {
             contractNodesUsingHeuristicNodeOrdering();
         }
@@ -172,7 +195,6 @@ public class PrepareContractionHierarchies {
 
     private void initFromGraph() {
         logger.info("Creating CH prepare graph, {}", getMemInfo());
-        CHPreparationGraph prepareGraph;
         if (chConfig.getTraversalMode().isEdgeBased()) {
             TurnCostStorage turnCostStorage = graph.getTurnCostStorage();
             if (turnCostStorage == null)
@@ -182,7 +204,8 @@ public class PrepareContractionHierarchies {
             nodeContractor = new EdgeBasedNodeContractor(prepareGraph, chBuilder, pMap);
         } else {
             prepareGraph = CHPreparationGraph.nodeBased(graph.getNodes(), graph.getEdges());
-            nodeContractor = new NodeBasedNodeContractor(prepareGraph, chBuilder, pMap);
+            nodeBasedContractor = new NodeBasedNodeContractor(prepareGraph, chBuilder, pMap);
+            nodeContractor = nodeBasedContractor;
         }
         maxLevel = nodes;
         // we need a memory-efficient priority queue with an efficient update method
@@ -194,6 +217,16 @@ public class PrepareContractionHierarchies {
         CHPreparationGraph.buildFromGraph(prepareGraph, graph, chConfig.getWeighting());
         logger.info("Finished building CH prepare graph, took: {}s, {}", sw.stop().getSeconds(), getMemInfo());
         nodeContractor.initFromGraph();
+        if (params.getContractionThreads() > 1) {
+            if (nodeBasedContractor == null) {
+                logger.warn("{} is only supported for node-based CH, the edge-based preparation for {} uses a single thread",
+                        CONTRACTION_THREADS, chConfig.getName());
+            } else {
+                workers = new NodeBasedNodeContractor[params.getContractionThreads()];
+                for (int i = 0; i < workers.length; i++)
+                    workers[i] = nodeBasedContractor.createWorker();
+            }
+        }
     }
 
     private void setMaxLevelOnAllNodes() {
@@ -203,11 +236,22 @@ public class PrepareContractionHierarchies {
     private void updatePrioritiesOfRemainingNodes() {
         periodicUpdateSW.start();
         sortedNodes.clear();
-        for (int node = 0; node < nodes; node++) {
-            if (isContracted(node))
-                continue;
-            float priority = calculatePriority(node);
-            sortedNodes.push(node, priority);
+        if (workers != null) {
+            IntArrayList remainingNodes = new IntArrayList();
+            for (int node = 0; node < nodes; node++) {
+                if (!isContracted(node))
+                    remainingNodes.add(node);
+            }
+            float[] priorities = calculatePrioritiesConcurrently(remainingNodes);
+            for (int i = 0; i < remainingNodes.size(); i++)
+                sortedNodes.push(remainingNodes.get(i), priorities[i]);
+        } else {
+            for (int node = 0; node < nodes; node++) {
+                if (isContracted(node))
+                    continue;
+                float priority = calculatePriority(node);
+                sortedNodes.push(node, priority);
+            }
         }
         periodicUpdateSW.stop();
     }
@@ -222,6 +266,7 @@ public class PrepareContractionHierarchies {
         final int initSize = sortedNodes.size();
         int level = 0;
         checkCounter = 0;
+        updateCounter = 0;
         final long logSize = params.getLogMessagesPercentage() == 0
                 ? Long.MAX_VALUE
                 : Math.round(Math.max(10, initSize * (params.getLogMessagesPercentage() / 100d)));
@@ -233,7 +278,6 @@ public class PrepareContractionHierarchies {
         final long periodicUpdatesCount = params.getPeriodicUpdatesPercentage() == 0
                 ? Long.MAX_VALUE
                 : Math.round(Math.max(10, initSize * (params.getPeriodicUpdatesPercentage() / 100d)));
-        int updateCounter = 0;
 
         // enable lazy updates for last x percentage of nodes. lazy updates make preparation slower but potentially
         // keep node priorities more up to date, possibly resulting in a better preparation.
@@ -248,6 +292,9 @@ public class PrepareContractionHierarchies {
         // reduces number of shortcuts.
         final boolean neighborUpdate = (params.getNeighborUpdatePercentage() != 0);
 
+        if (workers != null)
+            level = contractIndependentNodeSets(level, logSize, periodicUpdatesCount, lastNodesLazyUpdates, nodesToAvoidContract, neighborUpdate);
+
         while (!sortedNodes.isEmpty()) {
             stopIfInterrupted();
             // periodically update priorities of ALL nodes
@@ -318,6 +365,190 @@ public class PrepareContractionHierarchies {
         _close();
     }
 
+    /**
+     * Contracts the nodes in rounds of independent node sets: in every round we poll up to independentSetSize nodes
+     * with the lowest priorities and keep the ones that are neither adjacent to nor share a neighbor with a node that
+     * was already selected in this round. The (expensive) witness searches for the selected nodes are run
+     * concurrently using the worker contractors and afterwards the shortcuts are inserted sequentially, so the
+     * result does not depend on the number of threads. The lazy, neighbor and periodic updates work like in the
+     * sequential contraction, but the priorities are also calculated concurrently.
+     * <p>
+     * Once an independent set consists of a single node, which happens for the last and most important nodes, we stop
+     * and the remaining nodes are contracted one by one.
+     *
+     * @return the next level to be assigned
+     */
+    private int contractIndependentNodeSets(int level, long logSize, long periodicUpdatesCount, long lastNodesLazyUpdates,
+                                            long nodesToAvoidContract, boolean neighborUpdate) {
+        GHBitSet blockedNodes = new GHBitSetImpl(nodes);
+        GHBitSet batchNodes = new GHBitSetImpl(nodes);
+        IntArrayList blocked = new IntArrayList();
+        IntArrayList batch = new IntArrayList();
+        IntArrayList skipped = new IntArrayList();
+        FloatArrayList skippedPriorities = new FloatArrayList();
+        IntArrayList neighborsToUpdate = new IntArrayList();
+        PrepareGraphEdgeExplorer outExplorer = prepareGraph.createOutEdgeExplorer();
+        PrepareGraphEdgeExplorer inExplorer = prepareGraph.createInEdgeExplorer();
+        long nextPeriodicUpdate = periodicUpdatesCount;
+        long nextLog = logSize;
+        logHeuristicStats(updateCounter);
+        while (sortedNodes.size() > nodesToAvoidContract) {
+            stopIfInterrupted();
+            if (checkCounter >= nextPeriodicUpdate) {
+                updatePrioritiesOfRemainingNodes();
+                updateCounter++;
+                nextPeriodicUpdate = checkCounter + periodicUpdatesCount;
+            }
+            if (checkCounter >= nextLog) {
+                logHeuristicStats(updateCounter);
+                nextLog = checkCounter + logSize;
+            }
+
+            // select the nodes to be contracted in this round
+            batch.clear();
+            skipped.clear();
+            skippedPriorities.clear();
+            long polls = Math.min(params.getIndependentSetSize(), sortedNodes.size() - nodesToAvoidContract);
+            for (long i = 0; i < polls; i++) {
+                float priority = sortedNodes.peekValue();
+                int node = sortedNodes.poll();
+                if (isBlocked(node, blockedNodes, outExplorer) || isBlocked(node, blockedNodes, inExplorer)) {
+                    skipped.add(node);
+                    skippedPriorities.add(priority);
+                    continue;
+                }
+                batch.add(node);
+                batchNodes.add(node);
+                blockedNodes.add(node);
+                blocked.add(node);
+                block(node, blockedNodes, blocked, outExplorer);
+                block(node, blockedNodes, blocked, inExplorer);
+            }
+
+            int selected = batch.size();
+            if (!sortedNodes.isEmpty() && sortedNodes.size() < lastNodesLazyUpdates) {
+                lazyUpdateSW.start();
+                float minRemainingPriority = sortedNodes.peekValue();
+                for (int i = 0; i < skippedPriorities.size(); i++)
+                    minRemainingPriority = Math.min(minRemainingPriority, skippedPriorities.get(i));
+                float[] priorities = calculatePrioritiesConcurrently(batch);
+                int kept = 0;
+                for (int i = 0; i < batch.size(); i++) {
+                    int node = batch.get(i);
+                    if (priorities[i] > minRemainingPriority) {
+                        // node got more important => insert as new value and contract it later
+                        sortedNodes.push(node, priorities[i]);
+                        batchNodes.remove(node);
+                        checkCounter++;
+                    } else {
+                        batch.set(kept++, node);
+                    }
+                }
+                batch.elementsCount = kept;
+                lazyUpdateSW.stop();
+            }
+            for (int i = 0; i < skipped.size(); i++)
+                sortedNodes.push(skipped.get(i), skippedPriorities.get(i));
+            for (int i = 0; i < blocked.size(); i++)
+                blockedNodes.remove(blocked.get(i));
+            blocked.clear();
+
+            // contract the selected nodes
+            contractionSW.start();
+            NodeBasedNodeContractor.PendingShortcuts[] pendingShortcuts = new NodeBasedNodeContractor.PendingShortcuts[batch.size()];
+            runOnWorkers(batch.size(), (worker, i) -> pendingShortcuts[i] = worker.findShortcuts(batch.get(i), batchNodes));
+            neighborsToUpdate.clear();
+            for (int i = 0; i < batch.size(); i++) {
+                int node = batch.get(i);
+                chBuilder.setLevel(node, level);
+                level++;
+                IntContainer neighbors = nodeBasedContractor.contractNode(node, pendingShortcuts[i]);
+                batchNodes.remove(node);
+                int neighborCount = 0;
+                for (IntCursor neighbor : neighbors) {
+                    if (neighborUpdate && (params.getMaxNeighborUpdates() < 0 || neighborCount < params.getMaxNeighborUpdates()) && rand.nextInt(100) < params.getNeighborUpdatePercentage()) {
+                        neighborCount++;
+                        // the neighbors of different nodes of the batch are distinct, see isBlocked
+                        neighborsToUpdate.add(neighbor.value);
+                    }
+                }
+            }
+            checkCounter += batch.size();
+            contractionSW.stop();
+
+            if (!neighborsToUpdate.isEmpty()) {
+                neighborUpdateSW.start();
+                float[] priorities = calculatePrioritiesConcurrently(neighborsToUpdate);
+                for (int i = 0; i < neighborsToUpdate.size(); i++)
+                    sortedNodes.update(neighborsToUpdate.get(i), priorities[i]);
+                neighborUpdateSW.stop();
+            }
+
+            if (selected < 2)
+                break;
+        }
+        return level;
+    }
+
+    private static boolean isBlocked(int node, GHBitSet blockedNodes, PrepareGraphEdgeExplorer explorer) {
+        if (blockedNodes.contains(node))
+            return true;
+        PrepareGraphEdgeIterator iter = explorer.setBaseNode(node);
+        while (iter.next()) {
+            if (blockedNodes.contains(iter.getAdjNode()))
+                return true;
+        }
+        return false;
+    }
+
+    private static void block(int node, GHBitSet blockedNodes, IntArrayList blocked, PrepareGraphEdgeExplorer explorer) {
+        PrepareGraphEdgeIterator iter = explorer.setBaseNode(node);
+        while (iter.next()) {
+            blockedNodes.add(iter.getAdjNode());
+            blocked.add(iter.getAdjNode());
+        }
+    }
+
+    private float[] calculatePrioritiesConcurrently(IntArrayList nodes) {
+        float[] priorities = new float[nodes.size()];
+        runOnWorkers(nodes.size(), (worker, i) -> priorities[i] = worker.calculatePriority(nodes.get(i)));
+        return priorities;
+    }
+
+    /**
+     * Runs the given task for the indices 0..size-1, such that every worker handles every workers.length-th index.
+     * The graph must not be changed while this method is running.
+     */
+    private void runOnWorkers(int size, WorkerTask task) {
+        if (size == 1) {
+            task.run(workers[0], 0);
+            return;
+        }
+        List<Callable<Object>> callables = new ArrayList<>(workers.length);
+        for (int w = 0; w < workers.length && w < size; w++) {
+            NodeBasedNodeContractor worker = workers[w];
+            int offset = w;
+            callables.add(Executors.callable(() -> {
+                for (int i = offset; i < size; i += workers.length)
+                    task.run(worker, i);
+            }));
+        }
+        try {
+            for (Future<Object> future : executor.invokeAll(callables))
+                future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Thread was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    @FunctionalInterface
+    private interface WorkerTask {
+        void run(NodeBasedNodeContractor worker, int index);
+    }
+
     private void contractNodesUsingFixedNodeOrdering() {
         final int nodesToContract = nodeOrderingProvider.getNumNodes();
         final int logSize = Math.max(10, (int) (params.getLogMessagesPercentage() / 100.0 * nodesToContract));
@@ -418,6 +649,9 @@ public class PrepareContractionHierarchies {
     private void _close() {
         nodeContractor.close();
         sortedNodes = null;
+        prepareGraph = null;
+        nodeBasedContractor = null;
+        workers = null;
     }
 
     void flush() {
@@ -516,6 +750,18 @@ public class PrepareContractionHierarchies {
          * @see #periodicUpdatesPercentage
          */
         private int logMessagesPercentage;
+        /**
+         * The number of threads used to contract the nodes. If this is larger than one the nodes are contracted in
+         * rounds of independent node sets, see {@link #contractIndependentNodeSets}. This is only supported for
+         * node-based CH. Note that the result differs from the one obtained with a single thread, but it does not
+         * depend on the number of threads otherwise.
+         */
+        private int contractionThreads = 1;
+        /**
+         * The maximum number of nodes that are polled from the queue to build one independent node set. Larger values
+         * mean more parallelism, but nodes with a higher priority might be contracted too early.
+         */
+        private int independentSetSize = 1000;
 
         static Params forTraversalMode(TraversalMode traversalMode) {
             // Lower values for the neighbor update percentage (and/or max neighbor updates) yield a slower
@@ -590,6 +836,26 @@ public class PrepareContractionHierarchies {
             this.logMessagesPercentage = logMessagesPercentage;
         }
 
+        int getContractionThreads() {
+            return contractionThreads;
+        }
+
+        void setContractionThreads(int contractionThreads) {
+            if (contractionThreads < 1)
+                throw new IllegalArgumentException(CONTRACTION_THREADS + " has to be at least 1");
+            this.contractionThreads = contractionThreads;
+        }
+
+        int getIndependentSetSize() {
+            return independentSetSize;
+        }
+
+        void setIndependentSetSize(int independentSetSize) {
+            if (independentSetSize < 1)
+                throw new IllegalArgumentException(INDEPENDENT_SET_SIZE + " has to be at least 1");
+            this.independentSetSize = independentSetSize;
+        }
+
         private void checkPercentage(String name, int value) {
             if (value < 0 || value > 100) {
                 throw new IllegalArgumentException(name + " has to be in [0, 100], to disable it use 0");
@@ -0,0 +1,252 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.CCHStorage;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.StopWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+
+/**
+ * Prepares the metric-independent part of a customizable contraction hierarchy (CCH), see 'Customizable Contraction
+ * Hierarchies' by Dibbelt, Strasser and Wagner. The node order is determined by a geometric nested dissection of the
+ * graph: every cell is split along the median of one of four directions and the nodes at the cut get a higher rank
+ * than the nodes of both halves. Then all nodes are contracted in this order without witness searches, which yields
+ * the arcs of the chordal supergraph. Neither the order nor the arcs depend on the weighting, so the same topology can
+ * be used for all weightings, see {@link CustomizableCH}.
+ */
+public class PrepareCustomizableCH {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PrepareCustomizableCH.class);
+    private final BaseGraph graph;
+    private final CCHStorage storage;
+    private final int nodes;
+    private int leafSize = 16;
+    // the undirected adjacency of the base graph without loops
+    private int[] adjStart;
+    private int[] adj;
+    // -1 for all nodes except the ones of the cell that is currently split
+    private byte[] side;
+    private int[] rank;
+    private int nextRank;
+
+    public PrepareCustomizableCH(BaseGraph graph, CCHStorage storage) {
+        this.graph = graph;
+        this.storage = storage;
+        this.nodes = graph.getNodes();
+    }
+
+    /**
+     * Cells with at most this many nodes are not split further
+     */
+    public PrepareCustomizableCH setLeafSize(int leafSize) {
+        this.leafSize = Math.max(2, leafSize);
+        return this;
+    }
+
+    public void doWork() {
+        StopWatch sw = new StopWatch().start();
+        createAdjacency();
+        rank = new int[nodes];
+        side = new byte[nodes];
+        Arrays.fill(side, (byte) -1);
+        int[] all = new int[nodes];
+        for (int node = 0; node < nodes; node++)
+            all[node] = node;
+        nextRank = 0;
+        dissect(all);
+        side = null;
+        if (nextRank != nodes)
+            throw new IllegalStateException("Not all nodes were ranked: " + nextRank + " vs. " + nodes);
+        float orderSeconds = sw.stop().getCurrentSeconds();
+        sw = new StopWatch().start();
+        contract();
+        LOGGER.info("Prepared CCH for {} nodes with {} arcs, order: {}s, contraction: {}s, {}",
+                Helper.nf(nodes), Helper.nf(storage.getArcs()), orderSeconds, sw.stop().getSeconds(), Helper.getMemInfo());
+        adjStart = null;
+        adj = null;
+        rank = null;
+    }
+
+    private void createAdjacency() {
+        adjStart = new int[nodes + 1];
+        AllEdgesIterator iter = graph.getAllEdges();
+        while (iter.next()) {
+            if (iter.getBaseNode() == iter.getAdjNode())
+                continue;
+            adjStart[iter.getBaseNode() + 1]++;
+            adjStart[iter.getAdjNode() + 1]++;
+        }
+        for (int node = 0; node < nodes; node++)
+            adjStart[node + 1] += adjStart[node];
+        adj = new int[adjStart[nodes]];
+        int[] pos = Arrays.copyOf(adjStart, nodes);
+        iter = graph.getAllEdges();
+        while (iter.next()) {
+            if (iter.getBaseNode() == iter.getAdjNode())
+                continue;
+            adj[pos[iter.getBaseNode()]++] = iter.getAdjNode();
+            adj[pos[iter.getAdjNode()]++] = iter.getBaseNode();
+        }
+    }
+
+    /**
+     * Assigns the ranks nextRank, nextRank + 1, ... to the nodes of the given cell such that the nodes of the separator
+     * get the highest ranks
+     */
+    private void dissect(int[] cell) {
+        if (cell.length <= leafSize) {
+            // within small cells the nodes with a small degree come first, which keeps the fill-in low
+            long[] sorted = new long[cell.length];
+            for (int i = 0; i < cell.length; i++)
+                sorted[i] = (long) (adjStart[cell[i] + 1] - adjStart[cell[i]]) << 32 | cell[i];
+            Arrays.sort(sorted);
+            for (long s : sorted)
+                rank[(int) s] = nextRank++;
+            return;
+        }
+        int bestDirection = 0;
+        int bestSeparator = Integer.MAX_VALUE;
+        for (int direction = 0; direction < 4; direction++) {
+            long[] sorted = sortAlong(cell, direction);
+            markSides(sorted);
+            int separator = Math.min(countBoundary(cell, (byte) 0), countBoundary(cell, (byte) 1));
+            clearSides(cell);
+            if (separator < bestSeparator) {
+                bestSeparator = separator;
+                bestDirection = direction;
+            }
+        }
+        markSides(sortAlong(cell, bestDirection));
+        // the separator consists of the boundary nodes of the side with the smaller boundary
+        byte separatorSide = countBoundary(cell, (byte) 0) <= countBoundary(cell, (byte) 1) ? (byte) 0 : (byte) 1;
+        IntArrayList first = new IntArrayList(), second = new IntArrayList(), separator = new IntArrayList();
+        for (int node : cell) {
+            if (side[node] != separatorSide)
+                second.add(node);
+            else if (isBoundary(node))
+                separator.add(node);
+            else
+                first.add(node);
+        }
+        clearSides(cell);
+        dissect(first.toArray());
+        dissect(second.toArray());
+        for (int i = 0; i < separator.size(); i++)
+            rank[separator.get(i)] = nextRank++;
+    }
+
+    private long[] sortAlong(int[] cell, int direction) {
+        NodeAccess na = graph.getNodeAccess();
+        long[] sorted = new long[cell.length];
+        for (int i = 0; i < cell.length; i++) {
+            int node = cell[i];
+            double lat = na.getLat(node), lon = na.getLon(node);
+            double key = direction == 0 ? lat : direction == 1 ? lon : direction == 2 ? lat + lon : lat - lon;
+            sorted[i] = Math.round(key * 1e6) << 32 | node;
+        }
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private void markSides(long[] sorted) {
+        int half = sorted.length / 2;
+        for (int i = 0; i < sorted.length; i++)
+            side[(int) sorted[i]] = i < half ? (byte) 0 : (byte) 1;
+    }
+
+    private void clearSides(int[] cell) {
+        for (int node : cell)
+            side[node] = -1;
+    }
+
+    private int countBoundary(int[] cell, byte s) {
+        int count = 0;
+        for (int node : cell)
+            if (side[node] == s && isBoundary(node))
+                count++;
+        return count;
+    }
+
+    private boolean isBoundary(int node) {
+        for (int i = adjStart[node]; i < adjStart[node + 1]; i++) {
+            byte adjSide = side[adj[i]];
+            if (adjSide >= 0 && adjSide != side[node])
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Contracts the nodes in the order of their rank without witness searches. The arcs of a contracted node are all
+     * pairs of its higher ranked neighbors. It is sufficient to add these arcs at the lowest ranked of these
+     * neighbors, because it will connect the remaining ones once it is contracted itself.
+     */
+    private void contract() {
+        int[] nodeByRank = new int[nodes];
+        IntArrayList[] upper = new IntArrayList[nodes];
+        for (int node = 0; node < nodes; node++) {
+            nodeByRank[rank[node]] = node;
+            upper[node] = new IntArrayList(adjStart[node + 1] - adjStart[node]);
+            for (int i = adjStart[node]; i < adjStart[node + 1]; i++)
+                if (rank[adj[i]] > rank[node])
+                    upper[node].add(adj[i]);
+        }
+
+        int[][] heads = new int[nodes][];
+        int arcs = 0;
+        for (int r = 0; r < nodes; r++) {
+            int node = nodeByRank[r];
+            int[] neighbors = upper[node].toArray();
+            upper[node] = null;
+            Arrays.sort(neighbors);
+            int count = 0;
+            for (int i = 0; i < neighbors.length; i++)
+                if (i == 0 || neighbors[i] != neighbors[i - 1])
+                    neighbors[count++] = neighbors[i];
+            neighbors = Arrays.copyOf(neighbors, count);
+            heads[node] = neighbors;
+            arcs += count;
+            if (count < 2)
+                continue;
+            int parent = neighbors[0];
+            for (int neighbor : neighbors)
+                if (rank[neighbor] < rank[parent])
+                    parent = neighbor;
+            for (int neighbor : neighbors)
+                if (neighbor != parent)
+                    upper[parent].add(neighbor);
+        }
+
+        storage.create(nodes, arcs);
+        int arc = 0;
+        for (int r = 0; r < nodes; r++) {
+            int node = nodeByRank[r];
+            storage.setRank(node, r);
+            storage.setArcs(node, arc, heads[node].length);
+            for (int head : heads[node])
+                storage.setHead(arc++, head);
+        }
+    }
+}
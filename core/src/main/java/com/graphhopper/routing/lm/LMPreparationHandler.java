@@ -110,7 +110,9 @@ public class LMPreparationHandler {
 
     /**
      * This method changes the number of threads used for preparation on import. Default is 1. Make
-     * sure that you have enough memory when increasing this number!
+     * sure that you have enough memory when increasing this number! If there are fewer LM profiles
+     * than threads the remaining threads are used to calculate the landmarks of a single profile
+     * concurrently.
      */
     public void setPreparationThreads(int preparationThreads) {
         this.preparationThreads = preparationThreads;
@@ -177,6 +179,10 @@ public class LMPreparationHandler {
             return Collections.emptyList();
         }
         List<PrepareLandmarks> preparations = createPreparations(lmConfigs, baseGraph, encodingManager, locationIndex);
+        // the profiles are prepared concurrently, threads that are not needed for this are used within the profiles
+        int threadsPerPreparation = Math.max(1, preparationThreads / Math.min(preparationThreads, preparations.size()));
+        for (PrepareLandmarks prepare : preparations)
+            prepare.setPreparationThreads(threadsPerPreparation);
         List<Runnable> prepareRunnables = new ArrayList<>();
         for (int i = 0; i < preparations.size(); i++) {
             PrepareLandmarks prepare = preparations.get(i);
@@ -50,6 +50,7 @@ import org.slf4j.LoggerFactory;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 /**
  * This class stores the landmark nodes and the weights from and to all other nodes in every
@@ -94,6 +95,7 @@ public class LandmarkStorage {
     private List<LandmarkSuggestion> landmarkSuggestions = Collections.emptyList();
     private AreaIndex<SplitArea> areaIndex;
     private boolean logDetails = false;
+    private int preparationThreads = 1;
     /**
      * 'to' and 'from' fit into 32 bit => 16 bit for each of them => 65536
      */
@@ -169,6 +171,20 @@ public class LandmarkStorage {
         this.logDetails = logDetails;
     }
 
+    /**
+     * Sets the number of threads used to explore the landmarks of a single subnetwork and to search the landmarks of
+     * different subnetworks concurrently. Every thread needs memory for a full exploration of the graph.
+     */
+    public void setPreparationThreads(int preparationThreads) {
+        if (preparationThreads < 1)
+            throw new IllegalArgumentException("preparation threads must be at least 1, but was " + preparationThreads);
+        this.preparationThreads = preparationThreads;
+    }
+
+    public int getPreparationThreads() {
+        return preparationThreads;
+    }
+
     /**
      * This method forces the landmark preparation to skip the landmark search and uses the specified landmark list instead.
      * Useful for manual tuning of larger areas to safe import time or improve quality.
@@ -292,6 +308,7 @@ public class LandmarkStorage {
         if (logDetails)
             LOGGER.info("init landmarks for subnetworks with node count greater than " + minimumNodes + " with factor:" + factor + additionalInfo);
 
+        Map<IntArrayList, int[]> precalculatedLandmarks = findLandmarksConcurrently(graphComponents.getComponents(), accessFilter);
         int nodes = 0;
         for (IntArrayList subnetworkIds : graphComponents.getComponents()) {
             nodes += subnetworkIds.size();
@@ -312,7 +329,9 @@ public class LandmarkStorage {
                                 + ", " + Helper.getMemInfo() + ((areaIndex == null) ? "" : " area:" + areaIndex.query(p.lat, p.lon)));
                     }
 
-                    if (createLandmarksForSubnetwork(nextStartNode, subnetworks, accessFilter))
+                    // the landmarks searched in advance can only be used for the start node they were searched for
+                    int[] precalculated = index == subnetworkIds.size() - 1 ? precalculatedLandmarks.get(subnetworkIds) : null;
+                    if (createLandmarksForSubnetwork(nextStartNode, subnetworks, accessFilter, precalculated))
                         break;
                 }
             }
@@ -398,15 +417,48 @@ public class LandmarkStorage {
         return maxWeight * 1.008;
     }
 
+    /**
+     * If multiple threads are used this method searches the landmarks of all big enough subnetworks concurrently,
+     * starting from the same node that {@link #createLandmarks()} picks first for each subnetwork.
+     *
+     * @return the landmark node ids per subnetwork, subnetworks whose search was not successful are not included
+     */
+    private Map<IntArrayList, int[]> findLandmarksConcurrently(List<IntArrayList> graphComponents, EdgeFilter accessFilter) {
+        Map<IntArrayList, int[]> result = new IdentityHashMap<>();
+        if (preparationThreads < 2 || !landmarkSuggestions.isEmpty())
+            return result;
+        List<Runnable> runnables = new ArrayList<>();
+        for (IntArrayList subnetworkIds : graphComponents) {
+            if (subnetworkIds.size() < minimumNodes)
+                continue;
+            int startNode = subnetworkIds.get(subnetworkIds.size() - 1);
+            runnables.add(() -> {
+                int[] landmarkNodeIds = new int[landmarks];
+                LandmarkExplorer explorer = findLandmarks(landmarkNodeIds, startNode, accessFilter, "create");
+                if (explorer.getFromCount() >= minimumNodes)
+                    synchronized (result) {
+                        result.put(subnetworkIds, landmarkNodeIds);
+                    }
+            });
+        }
+        if (runnables.size() > 1) {
+            StopWatch sw = new StopWatch().start();
+            GHUtility.runConcurrently(runnables.stream(), preparationThreads);
+            if (logDetails)
+                LOGGER.info("Searched landmarks for " + runnables.size() + " subnetworks with " + preparationThreads + " threads in " + sw.stop().getSeconds() + "s, " + Helper.getMemInfo());
+        }
+        return result;
+    }
+
     /**
      * This method creates landmarks for the specified subnetwork (integer list)
      *
+     * @param precalculatedLandmarks the landmarks found for the given start node or null if they still need to be searched
      * @return landmark mapping
      */
-    private boolean createLandmarksForSubnetwork(final int startNode, final byte[] subnetworks, EdgeFilter accessFilter) {
+    private boolean createLandmarksForSubnetwork(final int startNode, final byte[] subnetworks, EdgeFilter accessFilter, int[] precalculatedLandmarks) {
         final int subnetworkId = landmarkIDs.size();
         int[] tmpLandmarkNodeIds = new int[landmarks];
-        int logOffset = Math.max(1, landmarks / 2);
         boolean pickedPrecalculatedLandmarks = false;
 
         if (!landmarkSuggestions.isEmpty()) {
@@ -433,6 +485,8 @@ public class LandmarkStorage {
 
         if (pickedPrecalculatedLandmarks) {
             LOGGER.info("Picked " + tmpLandmarkNodeIds.length + " landmark suggestions, skip finding landmarks");
+        } else if (precalculatedLandmarks != null) {
+            System.arraycopy(precalculatedLandmarks, 0, tmpLandmarkNodeIds, 0, tmpLandmarkNodeIds.length);
         } else {
             LandmarkExplorer explorer = findLandmarks(tmpLandmarkNodeIds, startNode, accessFilter, "create");
             if (explorer.getFromCount() < minimumNodes) {
@@ -445,36 +499,55 @@ public class LandmarkStorage {
         }
 
         // 2) calculate weights for all landmarks -> 'from' and 'to' weight
-        for (int lmIdx = 0; lmIdx < tmpLandmarkNodeIds.length; lmIdx++) {
-            if (Thread.currentThread().isInterrupted()) {
-                throw new RuntimeException("Thread was interrupted for landmark " + lmIdx);
-            }
-            int lmNodeId = tmpLandmarkNodeIds[lmIdx];
-            LandmarkExplorer explorer = new LandmarkExplorer(graph, this, weighting, traversalMode, accessFilter, false);
-            explorer.setStartNode(lmNodeId);
-            explorer.runAlgo();
-            explorer.initLandmarkWeights(lmIdx, lmNodeId, LM_ROW_LENGTH, FROM_OFFSET);
-
-            // set subnetwork id to all explored nodes, but do this only for the first landmark
-            if (lmIdx == 0) {
-                if (explorer.setSubnetworks(subnetworks, subnetworkId))
-                    return false;
-            }
-
-            explorer = new LandmarkExplorer(graph, this, weighting, traversalMode, accessFilter, true);
-            explorer.setStartNode(lmNodeId);
-            explorer.runAlgo();
-            explorer.initLandmarkWeights(lmIdx, lmNodeId, LM_ROW_LENGTH, TO_OFFSET);
-
-            if (lmIdx == 0) {
-                if (explorer.setSubnetworks(subnetworks, subnetworkId))
-                    return false;
-            }
+        // the first landmark determines the subnetwork of all explored nodes, the subnetwork might turn out to be
+        // invalid so we handle it before we calculate the weights of the other landmarks
+        int firstLmNodeId = tmpLandmarkNodeIds[0];
+        LandmarkExplorer fwdExplorer, bwdExplorer;
+        if (preparationThreads > 1) {
+            LandmarkExplorer[] explorers = new LandmarkExplorer[2];
+            GHUtility.runConcurrently(Stream.of(
+                    () -> explorers[0] = exploreLandmark(firstLmNodeId, accessFilter, false),
+                    () -> explorers[1] = exploreLandmark(firstLmNodeId, accessFilter, true)), 2);
+            fwdExplorer = explorers[0];
+            bwdExplorer = explorers[1];
+        } else {
+            fwdExplorer = exploreLandmark(firstLmNodeId, accessFilter, false);
+            bwdExplorer = null;
+        }
+        fwdExplorer.initLandmarkWeights(0, firstLmNodeId, LM_ROW_LENGTH, FROM_OFFSET);
+        // set subnetwork id to all explored nodes, but do this only for the first landmark
+        if (fwdExplorer.setSubnetworks(subnetworks, subnetworkId))
+            return false;
+        if (bwdExplorer == null)
+            bwdExplorer = exploreLandmark(firstLmNodeId, accessFilter, true);
+        bwdExplorer.initLandmarkWeights(0, firstLmNodeId, LM_ROW_LENGTH, TO_OFFSET);
+        if (bwdExplorer.setSubnetworks(subnetworks, subnetworkId))
+            return false;
 
-            if (logDetails && lmIdx % logOffset == 0)
-                LOGGER.info("Set landmarks weights [" + weighting + "]. "
-                        + "Progress " + (int) (100.0 * lmIdx / tmpLandmarkNodeIds.length) + "%");
+        // the other landmarks write into their own columns of the landmark weights and can be explored concurrently
+        final AtomicInteger finishedLandmarks = new AtomicInteger(1);
+        final int logOffset = Math.max(1, landmarks / 2);
+        List<Runnable> runnables = new ArrayList<>(tmpLandmarkNodeIds.length);
+        for (int lmIdx = 1; lmIdx < tmpLandmarkNodeIds.length; lmIdx++) {
+            final int idx = lmIdx;
+            runnables.add(() -> {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new RuntimeException("Thread was interrupted for landmark " + idx);
+                }
+                int lmNodeId = tmpLandmarkNodeIds[idx];
+                exploreLandmark(lmNodeId, accessFilter, false).initLandmarkWeights(idx, lmNodeId, LM_ROW_LENGTH, FROM_OFFSET);
+                exploreLandmark(lmNodeId, accessFilter, true).initLandmarkWeights(idx, lmNodeId, LM_ROW_LENGTH, TO_OFFSET);
+
+                int finished = finishedLandmarks.incrementAndGet();
+                if (logDetails && finished % logOffset == 0)
+                    LOGGER.info("Set landmarks weights [" + weighting + "]. "
+                            + "Progress " + (int) (100.0 * finished / tmpLandmarkNodeIds.length) + "%");
+            });
         }
+        if (preparationThreads > 1)
+            GHUtility.runConcurrently(runnables.stream(), preparationThreads);
+        else
+            runnables.forEach(Runnable::run);
 
         // TODO set weight to SHORT_MAX if entry has either no 'from' or no 'to' entry
         landmarkIDs.add(tmpLandmarkNodeIds);
@@ -731,6 +804,13 @@ public class LandmarkStorage {
         return graph.getNodes();
     }
 
+    private LandmarkExplorer exploreLandmark(int lmNodeId, EdgeFilter accessFilter, boolean reverse) {
+        LandmarkExplorer explorer = new LandmarkExplorer(graph, this, weighting, traversalMode, accessFilter, reverse);
+        explorer.setStartNode(lmNodeId);
+        explorer.runAlgo();
+        return explorer;
+    }
+
     private LandmarkExplorer findLandmarks(int[] landmarkNodeIdsToReturn, int startNode, EdgeFilter accessFilter, String info) {
         int logOffset = Math.max(1, landmarkNodeIdsToReturn.length / 2);
         // 1a) pick landmarks via special weighting for a better geographical spreading
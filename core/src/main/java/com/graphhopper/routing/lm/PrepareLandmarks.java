@@ -91,6 +91,14 @@ public class PrepareLandmarks {
         lms.setMinimumNodes(nodes);
     }
 
+    /**
+     * @see LandmarkStorage#setPreparationThreads(int)
+     */
+    public PrepareLandmarks setPreparationThreads(int threads) {
+        lms.setPreparationThreads(threads);
+        return this;
+    }
+
     public PrepareLandmarks setLogDetails(boolean logDetails) {
         lms.setLogDetails(logDetails);
         return this;
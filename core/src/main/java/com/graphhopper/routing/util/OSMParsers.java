@@ -101,6 +101,43 @@ public class OSMParsers {
             parser.handleWayTags(edgeId, edgeIntAccess, way, relationFlags);
     }
 
+    /**
+     * Runs the relation and way tag parsers for an edge that does not exist yet, as long as they are
+     * {@link TagParser#isEdgeLocal() edge local}. The first parser that is not edge local and all parsers after it are
+     * skipped, because they might depend on each other. The edgeIntAccess only needs to hold the flags of a single edge.
+     * This method can be called concurrently for different ways, but {@link #handleRemainingWayTags} must be called
+     * afterwards.
+     */
+    public void handleEdgeLocalWayTags(EdgeIntAccess edgeIntAccess, ReaderWay way, IntsRef relationFlags) {
+        for (RelationTagParser relParser : relationTagParsers) {
+            if (!relParser.isEdgeLocal())
+                return;
+            relParser.handleWayTags(0, edgeIntAccess, way, relationFlags);
+        }
+        for (TagParser parser : wayTagParsers) {
+            if (!parser.isEdgeLocal())
+                return;
+            parser.handleWayTags(0, edgeIntAccess, way, relationFlags);
+        }
+    }
+
+    /**
+     * Runs the relation and way tag parsers that were skipped by {@link #handleEdgeLocalWayTags} for the created edge.
+     */
+    public void handleRemainingWayTags(int edgeId, EdgeIntAccess edgeIntAccess, ReaderWay way, IntsRef relationFlags) {
+        boolean skip = true;
+        for (RelationTagParser relParser : relationTagParsers) {
+            skip &= relParser.isEdgeLocal();
+            if (!skip)
+                relParser.handleWayTags(edgeId, edgeIntAccess, way, relationFlags);
+        }
+        for (TagParser parser : wayTagParsers) {
+            skip &= parser.isEdgeLocal();
+            if (!skip)
+                parser.handleWayTags(edgeId, edgeIntAccess, way, relationFlags);
+        }
+    }
+
     public IntsRef createRelationFlags() {
         int requiredInts = relConfig.getRequiredInts();
         if (requiredInts > 2)
@@ -127,4 +127,9 @@ public abstract class AbstractAccessParser implements TagParser {
     public String toString() {
         return getName();
     }
+
+    @Override
+    public boolean isEdgeLocal() {
+        return true;
+    }
 }
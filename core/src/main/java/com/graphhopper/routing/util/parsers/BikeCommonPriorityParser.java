@@ -195,4 +195,9 @@ public abstract class BikeCommonPriorityParser implements TagParser {
     public final DecimalEncodedValue getPriorityEnc() {
         return priorityEnc;
     }
+
+    @Override
+    public boolean isEdgeLocal() {
+        return true;
+    }
 }
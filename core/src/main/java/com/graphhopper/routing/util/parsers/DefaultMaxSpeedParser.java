@@ -29,6 +29,14 @@ public class DefaultMaxSpeedParser implements TagParser {
         this.externalAccess = externalAccess;
     }
 
+    /**
+     * This parser writes to an external storage using the edge ID and caches its results.
+     */
+    @Override
+    public boolean isEdgeLocal() {
+        return false;
+    }
+
     @Override
     public void handleWayTags(int edgeId, EdgeIntAccess _ignoreAccess, ReaderWay way, IntsRef relationFlags) {
         if (externalAccess == null)
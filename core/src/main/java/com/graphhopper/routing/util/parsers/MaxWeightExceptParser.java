@@ -56,4 +56,9 @@ public class MaxWeightExceptParser implements TagParser {
             }
         }
     }
+
+    @Override
+    public boolean isEdgeLocal() {
+        return true;
+    }
 }
@@ -64,4 +64,9 @@ public class OSMBikeNetworkTagParser implements RelationTagParser {
     public EnumEncodedValue<RouteNetwork> getTransformerRouteRelEnc() {
         return transformerRouteRelEnc;
     }
+
+    @Override
+    public boolean isEdgeLocal() {
+        return true;
+    }
 }
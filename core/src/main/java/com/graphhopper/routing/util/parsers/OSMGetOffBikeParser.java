@@ -52,4 +52,9 @@ public class OSMGetOffBikeParser implements TagParser {
             if (!bwd) getOffBikeEnc.setBool(true, edgeId, edgeIntAccess, true);
         }
     }
+
+    @Override
+    public boolean isEdgeLocal() {
+        return true;
+    }
 }
@@ -53,4 +53,9 @@ public class OSMMtbRatingParser implements TagParser {
         if (rating > 0 && rating < 8)
             mtbRatingEnc.setInt(false, edgeId, edgeIntAccess, rating);
     }
+
+    @Override
+    public boolean isEdgeLocal() {
+        return true;
+    }
 }
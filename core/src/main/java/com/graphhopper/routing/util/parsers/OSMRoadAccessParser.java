@@ -104,4 +104,9 @@ public class OSMRoadAccessParser<T extends Enum> implements TagParser {
                 throw new IllegalArgumentException("Cannot convert TransportationMode " + mode + " to list of restrictions");
         }
     }
+
+    @Override
+    public boolean isEdgeLocal() {
+        return true;
+    }
 }
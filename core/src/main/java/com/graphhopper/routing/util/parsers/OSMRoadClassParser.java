@@ -45,4 +45,9 @@ public class OSMRoadClassParser implements TagParser {
         if (roadClass != OTHER)
             roadClassEnc.setEnum(false, edgeId, edgeIntAccess, roadClass);
     }
+
+    @Override
+    public boolean isEdgeLocal() {
+        return true;
+    }
 }
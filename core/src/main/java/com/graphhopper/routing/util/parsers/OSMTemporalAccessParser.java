@@ -128,4 +128,12 @@ public class OSMTemporalAccessParser implements TagParser {
             }
         return false;
     }
+
+    /**
+     * The date of the DateRangeParser is only read, so this parser can run concurrently.
+     */
+    @Override
+    public boolean isEdgeLocal() {
+        return true;
+    }
 }
@@ -48,5 +48,9 @@ public class OrientationCalculator implements TagParser {
             orientationEnc.setDecimal(true, edgeId, edgeIntAccess, revAzimuth);
         }
     }
-}
 
+    @Override
+    public boolean isEdgeLocal() {
+        return true;
+    }
+}
@@ -28,4 +28,13 @@ import com.graphhopper.storage.IntsRef;
 public interface TagParser {
 
     void handleWayTags(int edgeId, EdgeIntAccess edgeIntAccess, ReaderWay way, IntsRef relationFlags);
+
+    /**
+     * @return true if this parser only writes to the given EdgeIntAccess, does not modify any other state and is
+     * thread-safe. Such parsers can handle the way tags concurrently for different ways and before the edge is created,
+     * using a temporary EdgeIntAccess for a single edge. Only return true for parsers that were checked for this.
+     */
+    default boolean isEdgeLocal() {
+        return false;
+    }
 }
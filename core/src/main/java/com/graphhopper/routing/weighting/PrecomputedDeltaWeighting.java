@@ -0,0 +1,76 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.weighting;
+
+import com.graphhopper.routing.weighting.custom.CustomWeighting;
+import com.graphhopper.storage.EdgeWeightStorage;
+import com.graphhopper.util.EdgeIteratorState;
+
+/**
+ * Calculates the weights of a custom model that is merged into the custom model of a profile from the precomputed
+ * weights of this profile, see {@link com.graphhopper.routing.weighting.custom.CustomModelParser#createDeltaParameters}.
+ * Only the priority and speed factors of the query model are evaluated for every edge. Virtual edges, the turn costs
+ * and the travel times are calculated by the wrapped weighting of the merged custom model.
+ */
+public class PrecomputedDeltaWeighting extends AbstractAdjustedWeighting {
+    private final EdgeWeightStorage storage;
+    private final int edges;
+    private final CustomWeighting.EdgeToDoubleMapping priorityMapping;
+    private final CustomWeighting.EdgeToDoubleMapping speedMapping;
+    private final double baseDistanceInfluence;
+    private final double distanceInfluence;
+
+    /**
+     * @param baseDistanceInfluence the distance influence in s/km the storage was filled with
+     * @param deltaParameters       the parameters of the query model, with the distance influence of the merged model
+     */
+    public PrecomputedDeltaWeighting(Weighting weighting, EdgeWeightStorage storage, double baseDistanceInfluence,
+                                     CustomWeighting.Parameters deltaParameters) {
+        super(weighting);
+        this.storage = storage;
+        this.edges = storage.getEdges();
+        this.priorityMapping = deltaParameters.getEdgeToPriorityMapping();
+        this.speedMapping = deltaParameters.getEdgeToSpeedMapping();
+        // given unit is s/km -> convert to s/m
+        this.baseDistanceInfluence = baseDistanceInfluence / 1000.0;
+        this.distanceInfluence = deltaParameters.getDistanceInfluence() / 1000.0;
+    }
+
+    @Override
+    public double calcEdgeWeight(EdgeIteratorState edgeState, boolean reverse) {
+        if (edgeState.getEdge() >= edges)
+            // virtual edge
+            return superWeighting.calcEdgeWeight(edgeState, reverse);
+        double weight = storage.getWeight(PrecomputedWeighting.getIndex(edgeState, reverse));
+        if (Double.isInfinite(weight))
+            return weight;
+        double factor = priorityMapping.get(edgeState, reverse) * speedMapping.get(edgeState, reverse);
+        if (factor == 0)
+            return Double.POSITIVE_INFINITY;
+        double distance = edgeState.getDistance();
+        // the weight without the distance costs is seconds / priority of the base model, which we divide by the
+        // additional factors. max(0, ...) because the stored weight is a float
+        double secondsPerPriority = Math.max(0, weight - distance * baseDistanceInfluence);
+        return secondsPerPriority / factor + distance * distanceInfluence;
+    }
+
+    @Override
+    public String getName() {
+        return "precomputed_delta";
+    }
+}
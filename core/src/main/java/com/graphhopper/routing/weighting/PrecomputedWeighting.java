@@ -0,0 +1,72 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.weighting;
+
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.EdgeWeightStorage;
+import com.graphhopper.util.EdgeIteratorState;
+
+/**
+ * Reads the weights of the base graph edges from an {@link EdgeWeightStorage} instead of calculating them, which
+ * avoids the evaluation of the (custom) weighting for every edge that is explored. The weights of virtual edges,
+ * the turn costs and the travel times are still calculated by the wrapped weighting, which must be the one the
+ * storage was filled with. Therefore this can only be used as long as the edge weights do not change per request,
+ * i.e. if the request does not contain a custom model. See {@link PrecomputedDeltaWeighting} for custom models that
+ * only multiply priority and speed.
+ */
+public class PrecomputedWeighting extends AbstractAdjustedWeighting {
+    private final EdgeWeightStorage storage;
+    private final int edges;
+
+    public PrecomputedWeighting(Weighting weighting, EdgeWeightStorage storage) {
+        super(weighting);
+        this.storage = storage;
+        this.edges = storage.getEdges();
+    }
+
+    /**
+     * Creates the given storage and fills it with the weights of all edges of the graph.
+     */
+    public static void calcWeights(BaseGraph graph, Weighting weighting, EdgeWeightStorage storage) {
+        storage.create(graph.getEdges());
+        AllEdgesIterator iter = graph.getAllEdges();
+        while (iter.next()) {
+            storage.setWeight(getIndex(iter, false), weighting.calcEdgeWeight(iter, false));
+            storage.setWeight(getIndex(iter, true), weighting.calcEdgeWeight(iter, true));
+        }
+    }
+
+    static int getIndex(EdgeIteratorState edgeState, boolean reverse) {
+        // the storage uses the direction in which the edge is stored in the graph
+        return 2 * edgeState.getEdge() + (reverse != edgeState.get(EdgeIteratorState.REVERSE_STATE) ? 1 : 0);
+    }
+
+    @Override
+    public double calcEdgeWeight(EdgeIteratorState edgeState, boolean reverse) {
+        if (edgeState.getEdge() >= edges)
+            // virtual edge
+            return superWeighting.calcEdgeWeight(edgeState, reverse);
+        return storage.getWeight(getIndex(edgeState, reverse));
+    }
+
+    @Override
+    public String getName() {
+        return "precomputed";
+    }
+}
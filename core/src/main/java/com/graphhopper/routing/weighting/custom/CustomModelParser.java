@@ -123,6 +123,36 @@ public class CustomModelParser {
         }
     }
 
+    /**
+     * Creates the parameters for only the statements of a query model that is merged into the given base model. This
+     * is possible if the query model only multiplies the priority and the speed, because then the weight of the merged
+     * model is the weight of the base model where the time part is divided by the product of these factors.
+     *
+     * @return the parameters whose speed and priority are the factors of the query model and whose distance influence
+     * is the one of the merged model, or null if the query model does not only multiply priority and speed
+     */
+    public static CustomWeighting.Parameters createDeltaParameters(CustomModel baseModel, CustomModel queryModel, EncodedValueLookup lookup) {
+        if (!isMultiplyOnly(queryModel.getPriority()) || !isMultiplyOnly(queryModel.getSpeed()))
+            return null;
+        CustomModel mergedModel = CustomModel.merge(baseModel, queryModel);
+        CustomModel deltaModel = new CustomModel();
+        deltaModel.addAreas(mergedModel.getAreas());
+        deltaModel.setDistanceInfluence(mergedModel.getDistanceInfluence());
+        queryModel.getPriority().forEach(deltaModel::addToPriority);
+        // the speed must be limited and the limit of 1 makes the speed the product of the factors
+        deltaModel.addToSpeed(Statement.If("true", Statement.Op.LIMIT, "1"));
+        queryModel.getSpeed().forEach(deltaModel::addToSpeed);
+        return createWeightingParameters(deltaModel, lookup);
+    }
+
+    private static boolean isMultiplyOnly(List<Statement> statements) {
+        for (Statement statement : statements) {
+            if (statement.isBlock() || statement.operation() != Statement.Op.MULTIPLY)
+                return false;
+        }
+        return true;
+    }
+
     /**
      * This method does the following:
      * <ul>
@@ -222,10 +222,11 @@ public class BaseGraph implements Graph, Closeable {
         if (!edgeKVStorage.isClosed())
             edgeKVStorage.flush();
 
-        store.flush();
+        // the turn cost storage is flushed first, because sorting its entries changes the turn cost index of the nodes
         if (supportsTurnCosts()) {
             turnCostStorage.flush();
         }
+        store.flush();
     }
 
     @Override
@@ -489,6 +490,10 @@ public class BaseGraph implements Graph, Closeable {
         return store;
     }
 
+    public IntsRef createEdgeFlags() {
+        return store.createEdgeFlags();
+    }
+
     private void setWayGeometryAtGeoRef(PointList pillarNodes, long edgePointer, boolean reverse, long geoRef) {
         byte[] wayGeometryBytes = createWayGeometryBytes(pillarNodes, reverse);
         wayGeometry.ensureCapacity(geoRef + wayGeometryBytes.length);
@@ -0,0 +1,127 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.util.Constants;
+import com.graphhopper.util.GHUtility;
+
+/**
+ * DataAccess-based storage for the metric-independent part of a customizable contraction hierarchy: the rank of every
+ * node and the arcs of the chordal supergraph of the base graph that results from contracting the nodes in this
+ * order without witness searches. Every arc is stored once at its lower ranked node (the tail) and the arcs of a node
+ * are sorted by the node id of their higher ranked node (the head).
+ *
+ * @see com.graphhopper.routing.ch.PrepareCustomizableCH
+ * @see com.graphhopper.routing.ch.CustomizableCH
+ */
+public class CCHStorage {
+    private final DataAccess nodes;
+    private final DataAccess arcs;
+    // nodes are stored consecutively using this layout:
+    // RANK | FIRST_ARC | ARC_COUNT
+    private static final int N_RANK = 0, N_FIRST_ARC = 4, N_ARC_COUNT = 8;
+    private static final int NODE_ENTRY_BYTES = 12;
+    private int nodeCount = -1;
+    private int arcCount = -1;
+
+    public CCHStorage(Directory dir, int segmentSize) {
+        this.nodes = dir.create("cch_nodes", dir.getDefaultType("cch_nodes", true), segmentSize);
+        this.arcs = dir.create("cch_arcs", dir.getDefaultType("cch_arcs", true), segmentSize);
+    }
+
+    public void create(int nodes, int arcs) {
+        if (nodeCount >= 0)
+            throw new IllegalStateException("CCHStorage can only be created once");
+        this.nodes.create((long) nodes * NODE_ENTRY_BYTES);
+        this.arcs.create(4L * arcs);
+        nodeCount = nodes;
+        arcCount = arcs;
+    }
+
+    public void flush() {
+        nodes.setHeader(0, Constants.VERSION_CCH);
+        nodes.setHeader(4, nodeCount);
+        nodes.flush();
+        arcs.setHeader(0, Constants.VERSION_CCH);
+        arcs.setHeader(4, arcCount);
+        arcs.flush();
+    }
+
+    public boolean loadExisting() {
+        if (!nodes.loadExisting() || !arcs.loadExisting())
+            return false;
+        GHUtility.checkDAVersion(nodes.getName(), Constants.VERSION_CCH, nodes.getHeader(0));
+        GHUtility.checkDAVersion(arcs.getName(), Constants.VERSION_CCH, arcs.getHeader(0));
+        nodeCount = nodes.getHeader(4);
+        arcCount = arcs.getHeader(4);
+        return true;
+    }
+
+    public void close() {
+        nodes.close();
+        arcs.close();
+    }
+
+    public boolean isClosed() {
+        return nodes.isClosed();
+    }
+
+    public void setRank(int node, int rank) {
+        nodes.setInt((long) node * NODE_ENTRY_BYTES + N_RANK, rank);
+    }
+
+    public int getRank(int node) {
+        return nodes.getInt((long) node * NODE_ENTRY_BYTES + N_RANK);
+    }
+
+    /**
+     * Sets the arcs whose tail is the given node, i.e. the arcs firstArc, firstArc + 1, ... firstArc + arcCount - 1
+     */
+    public void setArcs(int node, int firstArc, int arcCount) {
+        nodes.setInt((long) node * NODE_ENTRY_BYTES + N_FIRST_ARC, firstArc);
+        nodes.setInt((long) node * NODE_ENTRY_BYTES + N_ARC_COUNT, arcCount);
+    }
+
+    public int getFirstArc(int node) {
+        return nodes.getInt((long) node * NODE_ENTRY_BYTES + N_FIRST_ARC);
+    }
+
+    public int getArcCount(int node) {
+        return nodes.getInt((long) node * NODE_ENTRY_BYTES + N_ARC_COUNT);
+    }
+
+    public void setHead(int arc, int node) {
+        arcs.setInt(4L * arc, node);
+    }
+
+    public int getHead(int arc) {
+        return arcs.getInt(4L * arc);
+    }
+
+    public int getNodes() {
+        return nodeCount;
+    }
+
+    public int getArcs() {
+        return arcCount;
+    }
+
+    public long getCapacity() {
+        return nodes.getCapacity() + arcs.getCapacity();
+    }
+}
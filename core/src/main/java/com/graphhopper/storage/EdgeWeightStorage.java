@@ -0,0 +1,88 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.util.Constants;
+import com.graphhopper.util.GHUtility;
+
+/**
+ * DataAccess-based storage for the weights of all base graph edges in both directions. The weights are calculated
+ * for a fixed profile and stored as floats. The weight of an edge in its storage direction is at index 2 * edge and
+ * the weight of the opposite direction at 2 * edge + 1.
+ *
+ * @see com.graphhopper.routing.weighting.PrecomputedWeighting
+ */
+public class EdgeWeightStorage {
+    private final DataAccess weights;
+    private int edgeCount = -1;
+
+    public EdgeWeightStorage(Directory dir, String name, int segmentSize) {
+        this.weights = dir.create("edge_weights_" + name, dir.getDefaultType("edge_weights_" + name, true), segmentSize);
+    }
+
+    public void create(int edges) {
+        if (edgeCount >= 0)
+            throw new IllegalStateException("EdgeWeightStorage can only be created once");
+        weights.create(8L * edges);
+        edgeCount = edges;
+    }
+
+    public void flush() {
+        weights.setHeader(0, Constants.VERSION_EDGE_WEIGHTS);
+        weights.setHeader(4, edgeCount);
+        weights.flush();
+    }
+
+    public boolean loadExisting() {
+        if (!weights.loadExisting())
+            return false;
+        GHUtility.checkDAVersion(weights.getName(), Constants.VERSION_EDGE_WEIGHTS, weights.getHeader(0));
+        edgeCount = weights.getHeader(4);
+        return true;
+    }
+
+    public void close() {
+        weights.close();
+    }
+
+    public boolean isClosed() {
+        return weights.isClosed();
+    }
+
+    /**
+     * @param index 2 * edge for the storage direction of the edge and 2 * edge + 1 for the opposite direction
+     */
+    public void setWeight(int index, double weight) {
+        weights.setInt(4L * index, Float.floatToRawIntBits((float) weight));
+    }
+
+    public double getWeight(int index) {
+        return Float.intBitsToFloat(weights.getInt(4L * index));
+    }
+
+    /**
+     * The number of edges whose weights are stored
+     */
+    public int getEdges() {
+        return edgeCount;
+    }
+
+    public long getCapacity() {
+        return weights.getCapacity();
+    }
+}
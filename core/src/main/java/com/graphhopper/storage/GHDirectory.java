@@ -36,6 +36,7 @@ public class GHDirectory implements Directory {
     private final Map<String, DAType> defaultTypes = new LinkedHashMap<>();
     private final Map<String, Integer> mmapPreloads = new LinkedHashMap<>();
     private final Map<String, DataAccess> map = Collections.synchronizedMap(new HashMap<>());
+    private boolean readOnly;
 
     public GHDirectory(String _location, DAType defaultType) {
         this.typeFallback = defaultType;
@@ -75,6 +76,20 @@ public class GHDirectory implements Directory {
         return this;
     }
 
+    /**
+     * In read only mode every stored DataAccess is memory mapped read only (MMAP_RO), regardless of its configured
+     * type. This way several processes can serve the same graph files and share a single copy of the data via the
+     * page cache of the OS. Creating new stored DataAccess objects, flushing them or removing files is not possible.
+     */
+    public GHDirectory setReadOnly(boolean readOnly) {
+        this.readOnly = readOnly;
+        return this;
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
     /**
      * Returns the preload value or 0 if no patterns match.
      * See {@link #configure(LinkedHashMap)}
@@ -126,6 +141,9 @@ public class GHDirectory implements Directory {
             // per file name
             throw new IllegalStateException("DataAccess " + name + " has already been created");
 
+        if (readOnly && type.isStoring())
+            type = DAType.MMAP_RO;
+
         DataAccess da;
         if (type.isInMemory()) {
             if (type.isInteg()) {
@@ -157,6 +175,7 @@ public class GHDirectory implements Directory {
 
     @Override
     public void clear() {
+        ensureWritable("clear directory");
         for (DataAccess da : map.values()) {
             da.close();
             removeBackingFile(da, da.getName());
@@ -164,8 +183,18 @@ public class GHDirectory implements Directory {
         map.clear();
     }
 
+    @Override
+    public void close(String name) {
+        DataAccess old = map.remove(name);
+        if (old == null)
+            throw new IllegalStateException("Couldn't close DataAccess: " + name);
+
+        old.close();
+    }
+
     @Override
     public void remove(String name) {
+        ensureWritable("remove DataAccess " + name);
         DataAccess old = map.remove(name);
         if (old == null)
             throw new IllegalStateException("Couldn't remove DataAccess: " + name);
@@ -174,6 +203,11 @@ public class GHDirectory implements Directory {
         removeBackingFile(old, name);
     }
 
+    private void ensureWritable(String action) {
+        if (readOnly)
+            throw new IllegalStateException("Cannot " + action + ", the directory " + location + " is read only");
+    }
+
     private void removeBackingFile(DataAccess da, String name) {
         if (da.getType().isStoring())
             removeDir(new File(location + name));
@@ -201,7 +235,7 @@ public class GHDirectory implements Directory {
 
     @Override
     public Directory create() {
-        if (isStoring())
+        if (isStoring() && !readOnly)
             new File(location).mkdirs();
         return this;
     }
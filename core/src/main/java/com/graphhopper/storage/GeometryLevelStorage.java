@@ -0,0 +1,183 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.util.BitUtil;
+import com.graphhopper.util.Constants;
+import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.PointList;
+
+/**
+ * DataAccess-based storage for generalized edge geometry at a few levels of detail, e.g. for vector tiles of low zoom
+ * levels. Edges that are connected by nodes of degree two and have the same road class are merged into chains, and
+ * the geometry of every chain is simplified with a different tolerance for every level.
+ * <p>
+ * The chain of every edge is stored at index 4 * edge, followed by the chain entries. A chain entry holds the key of
+ * the first edge of the chain and a pointer into the points for every level. The points of a chain start with their count,
+ * followed by the latitude and longitude of every point.
+ *
+ * @see PrepareGeometryLevels
+ */
+public class GeometryLevelStorage {
+    private static final BitUtil bitUtil = BitUtil.LITTLE;
+    private final DataAccess chains;
+    private final DataAccess points;
+    private final int levels;
+    // chains are stored consecutively after the chain ids of the edges using this layout:
+    // FIRST_EDGE_KEY | POINTER_LEVEL_0 | POINTER_LEVEL_1 | ...
+    private static final int C_FIRST_EDGE_KEY = 0, C_POINTERS = 4;
+    private final int chainEntryBytes;
+    private int edgeCount = -1;
+    private int chainCount = -1;
+    private long pointsBytes;
+
+    public GeometryLevelStorage(Directory dir, int levels, int segmentSize) {
+        if (levels <= 0)
+            throw new IllegalArgumentException("At least one geometry level is required");
+        this.levels = levels;
+        this.chainEntryBytes = C_POINTERS + 8 * levels;
+        this.chains = dir.create("geometry_levels", dir.getDefaultType("geometry_levels", true), segmentSize);
+        this.points = dir.create("geometry_levels_points", dir.getDefaultType("geometry_levels_points", true), segmentSize);
+    }
+
+    public void create(int edges) {
+        if (edgeCount >= 0)
+            throw new IllegalStateException("GeometryLevelStorage can only be created once");
+        chains.create(4L * edges);
+        points.create(1024);
+        edgeCount = edges;
+        chainCount = 0;
+        pointsBytes = 0;
+    }
+
+    public void flush() {
+        chains.setHeader(0, Constants.VERSION_GEOMETRY_LEVELS);
+        chains.setHeader(4, edgeCount);
+        chains.setHeader(8, chainCount);
+        chains.setHeader(12, levels);
+        chains.flush();
+        points.setHeader(0, Constants.VERSION_GEOMETRY_LEVELS);
+        points.setHeader(4, bitUtil.getIntLow(pointsBytes));
+        points.setHeader(8, bitUtil.getIntHigh(pointsBytes));
+        points.flush();
+    }
+
+    public boolean loadExisting() {
+        if (!chains.loadExisting() || !points.loadExisting())
+            return false;
+        GHUtility.checkDAVersion(chains.getName(), Constants.VERSION_GEOMETRY_LEVELS, chains.getHeader(0));
+        GHUtility.checkDAVersion(points.getName(), Constants.VERSION_GEOMETRY_LEVELS, points.getHeader(0));
+        if (chains.getHeader(12) != levels)
+            throw new IllegalStateException("Geometry levels were stored for " + chains.getHeader(12) + " levels, but " + levels + " are configured");
+        edgeCount = chains.getHeader(4);
+        chainCount = chains.getHeader(8);
+        pointsBytes = bitUtil.toLong(points.getHeader(4), points.getHeader(8));
+        return true;
+    }
+
+    public void close() {
+        chains.close();
+        points.close();
+    }
+
+    public boolean isClosed() {
+        return chains.isClosed();
+    }
+
+    public void setChain(int edge, int chain) {
+        chains.setInt(4L * edge, chain);
+    }
+
+    /**
+     * @return the chain that contains the given edge
+     */
+    public int getChain(int edge) {
+        return chains.getInt(4L * edge);
+    }
+
+    /**
+     * Adds a new chain that starts with the given edge key and returns its id. Its points need to be set for every
+     * level.
+     */
+    public int addChain(int firstEdgeKey) {
+        int chain = chainCount++;
+        long pointer = chainPointer(chain);
+        chains.ensureCapacity(pointer + chainEntryBytes);
+        chains.setInt(pointer + C_FIRST_EDGE_KEY, firstEdgeKey);
+        return chain;
+    }
+
+    /**
+     * @return the key of the edge at the start of the given chain. The points of the chain start at the base node of
+     * this edge key and continue in its direction, which is not necessarily the stored direction of the edge.
+     */
+    public int getFirstEdgeKey(int chain) {
+        return chains.getInt(chainPointer(chain) + C_FIRST_EDGE_KEY);
+    }
+
+    public void setPoints(int chain, int level, PointList pointList) {
+        long pointer = pointsBytes;
+        pointsBytes += 4 + 8L * pointList.size();
+        points.ensureCapacity(pointsBytes);
+        points.setInt(pointer, pointList.size());
+        for (int i = 0; i < pointList.size(); i++) {
+            points.setInt(pointer + 4 + 8L * i, Helper.degreeToInt(pointList.getLat(i)));
+            points.setInt(pointer + 8 + 8L * i, Helper.degreeToInt(pointList.getLon(i)));
+        }
+        long levelPointer = chainPointer(chain) + C_POINTERS + 8L * level;
+        chains.setInt(levelPointer, bitUtil.getIntLow(pointer));
+        chains.setInt(levelPointer + 4, bitUtil.getIntHigh(pointer));
+    }
+
+    /**
+     * Clears the given point list and fills it with the points of the chain at the given level.
+     */
+    public void fetchPoints(int chain, int level, PointList pointList) {
+        long levelPointer = chainPointer(chain) + C_POINTERS + 8L * level;
+        long pointer = bitUtil.toLong(chains.getInt(levelPointer), chains.getInt(levelPointer + 4));
+        int count = points.getInt(pointer);
+        pointList.clear();
+        for (int i = 0; i < count; i++)
+            pointList.add(Helper.intToDegree(points.getInt(pointer + 4 + 8L * i)),
+                    Helper.intToDegree(points.getInt(pointer + 8 + 8L * i)));
+    }
+
+    private long chainPointer(int chain) {
+        return 4L * edgeCount + (long) chain * chainEntryBytes;
+    }
+
+    public int getLevels() {
+        return levels;
+    }
+
+    /**
+     * The number of edges whose chains are stored
+     */
+    public int getEdges() {
+        return edgeCount;
+    }
+
+    public int getChains() {
+        return chainCount;
+    }
+
+    public long getCapacity() {
+        return chains.getCapacity() + points.getCapacity();
+    }
+}
@@ -22,13 +22,14 @@ import com.graphhopper.util.Helper;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
-import java.lang.reflect.Method;
 import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 /**
  * A DataAccess implementation using a memory-mapped file, i.e. a facility of the
@@ -50,7 +51,8 @@ public final class MMapDataAccess extends AbstractDataAccess {
 
     private final boolean allowWrites;
     private RandomAccessFile raFile;
-    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    // an array instead of a list avoids the additional range check and cast of List.get for every access
+    private MappedByteBuffer[] segments = new MappedByteBuffer[0];
 
     MMapDataAccess(String name, String location, boolean allowWrites, int segmentSize) {
         super(name, location, segmentSize);
@@ -58,22 +60,41 @@ public final class MMapDataAccess extends AbstractDataAccess {
     }
 
     public static void cleanMappedByteBuffer(final ByteBuffer buffer) {
-        // TODO avoid reflection on every call
+        if (BufferCleaner.INVOKE_CLEANER == null)
+            throw new RuntimeException("Unable to unmap the mapped buffer", BufferCleaner.LOOKUP_EXCEPTION);
         try {
-            // >=JDK9 class sun.misc.Unsafe { void invokeCleaner(ByteBuffer buf) }
-            final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
-            // fetch the unsafe instance and bind it to the virtual MethodHandle
-            final Field f = unsafeClass.getDeclaredField("theUnsafe");
-            f.setAccessible(true);
-            final Object theUnsafe = f.get(null);
-            final Method method = unsafeClass.getDeclaredMethod("invokeCleaner", ByteBuffer.class);
+            BufferCleaner.INVOKE_CLEANER.invokeExact(buffer);
+        } catch (Throwable t) {
+            throw new RuntimeException("Unable to unmap the mapped buffer", t);
+        }
+    }
+
+    /**
+     * Looks up sun.misc.Unsafe.invokeCleaner only once (and only if a buffer is unmapped at all) instead of using
+     * reflection for every unmapped buffer.
+     */
+    private static final class BufferCleaner {
+        private static final MethodHandle INVOKE_CLEANER;
+        private static final Exception LOOKUP_EXCEPTION;
+
+        static {
+            MethodHandle invokeCleaner = null;
+            Exception lookupException = null;
             try {
-                method.invoke(theUnsafe, buffer);
-            } catch (Throwable t) {
-                throw new RuntimeException(t);
+                // >=JDK9 class sun.misc.Unsafe { void invokeCleaner(ByteBuffer buf) }
+                final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                // fetch the unsafe instance and bind it to the virtual MethodHandle
+                final Field f = unsafeClass.getDeclaredField("theUnsafe");
+                f.setAccessible(true);
+                final Object theUnsafe = f.get(null);
+                invokeCleaner = MethodHandles.lookup()
+                        .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                        .bindTo(theUnsafe);
+            } catch (Exception ex) {
+                lookupException = ex;
             }
-        } catch (Exception ex) {
-            throw new RuntimeException("Unable to unmap the mapped buffer", ex);
+            INVOKE_CLEANER = invokeCleaner;
+            LOOKUP_EXCEPTION = lookupException;
         }
     }
 
@@ -91,9 +112,11 @@ public final class MMapDataAccess extends AbstractDataAccess {
 
     @Override
     public MMapDataAccess create(long bytes) {
-        if (!segments.isEmpty()) {
+        if (segments.length > 0) {
             throw new IllegalThreadStateException("already created");
         }
+        if (!allowWrites)
+            throw new IllegalStateException("Cannot create read only DataAccess " + getFullName());
         initRandomAccessFile();
         bytes = Math.max(10 * 4, bytes);
         ensureCapacity(bytes);
@@ -133,12 +156,14 @@ public final class MMapDataAccess extends AbstractDataAccess {
             // This approach is probably problematic but a bit faster if done often.
             // Here we rely on the OS+file system that increasing the file
             // size has no effect on the old mappings!
-            bufferStart += segments.size() * longSegmentSize;
-            newSegments = segmentsToMap - segments.size();
+            bufferStart += segments.length * longSegmentSize;
+            newSegments = segmentsToMap - segments.length;
             // rely on automatically increasing when mapping
             // raFile.setLength(newFileLength);
             for (; i < newSegments; i++) {
-                segments.add(newByteBuffer(bufferStart, longSegmentSize));
+                MappedByteBuffer buffer = newByteBuffer(bufferStart, longSegmentSize);
+                segments = Arrays.copyOf(segments, segments.length + 1);
+                segments[segments.length - 1] = buffer;
                 bufferStart += longSegmentSize;
             }
             return true;
@@ -187,7 +212,7 @@ public final class MMapDataAccess extends AbstractDataAccess {
 
     @Override
     public boolean loadExisting() {
-        if (segments.size() > 0)
+        if (segments.length > 0)
             throw new IllegalStateException("already initialized");
 
         if (isClosed())
@@ -214,6 +239,8 @@ public final class MMapDataAccess extends AbstractDataAccess {
     public void flush() {
         if (isClosed())
             throw new IllegalStateException("already closed");
+        if (!allowWrites)
+            throw new IllegalStateException("Cannot flush read only DataAccess " + getFullName());
 
         try {
             for (MappedByteBuffer bb : segments) {
@@ -236,17 +263,18 @@ public final class MMapDataAccess extends AbstractDataAccess {
     public void load(int percentage) {
         if (percentage < 0 || percentage > 100)
             throw new IllegalArgumentException("Percentage for MMapDataAccess.load for " + getName() + " must be in [0,100] but was " + percentage);
-        int max = Math.round(segments.size() * percentage / 100f);
+        int max = Math.round(segments.length * percentage / 100f);
         for (int i = 0; i < max; i++) {
-            segments.get(i).load();
+            segments[i].load();
         }
     }
 
     @Override
     public void close() {
         super.close();
-        clean(0, segments.size());
-        segments.clear();
+        clean(0, segments.length);
+        // after unmapping every access must fail instead of crashing the JVM
+        segments = new MappedByteBuffer[0];
         Helper.close(raFile);
     }
 
@@ -254,10 +282,10 @@ public final class MMapDataAccess extends AbstractDataAccess {
     public void setInt(long bytePos, int value) {
         int bufferIndex = (int) (bytePos >> segmentSizePower);
         int index = (int) (bytePos & indexDivisor);
-        ByteBuffer b1 = segments.get(bufferIndex);
+        ByteBuffer b1 = segments[bufferIndex];
         if (index + 3 >= segmentSizeInBytes) {
             // seldom and special case if int has to be written into two separate segments
-            ByteBuffer b2 = segments.get(bufferIndex + 1);
+            ByteBuffer b2 = segments[bufferIndex + 1];
             if (index + 1 >= segmentSizeInBytes) {
                 b2.putShort(1, (short) (value >>> 16));
                 b2.put(0, (byte) (value >>> 8));
@@ -280,9 +308,9 @@ public final class MMapDataAccess extends AbstractDataAccess {
     public int getInt(long bytePos) {
         int bufferIndex = (int) (bytePos >> segmentSizePower);
         int index = (int) (bytePos & indexDivisor);
-        ByteBuffer b1 = segments.get(bufferIndex);
+        ByteBuffer b1 = segments[bufferIndex];
         if (index + 3 >= segmentSizeInBytes) {
-            ByteBuffer b2 = segments.get(bufferIndex + 1);
+            ByteBuffer b2 = segments[bufferIndex + 1];
             if (index + 1 >= segmentSizeInBytes)
                 return (b2.getShort(1) & 0xFFFF) << 16 | (b2.get(0) & 0xFF) << 8 | (b1.get(index) & 0xFF);
             if (index + 2 >= segmentSizeInBytes)
@@ -297,9 +325,9 @@ public final class MMapDataAccess extends AbstractDataAccess {
     public void setShort(long bytePos, short value) {
         int bufferIndex = (int) (bytePos >>> segmentSizePower);
         int index = (int) (bytePos & indexDivisor);
-        ByteBuffer byteBuffer = segments.get(bufferIndex);
+        ByteBuffer byteBuffer = segments[bufferIndex];
         if (index + 1 >= segmentSizeInBytes) {
-            ByteBuffer byteBufferNext = segments.get(bufferIndex + 1);
+            ByteBuffer byteBufferNext = segments[bufferIndex + 1];
             // seldom and special case if short has to be written into two separate segments
             byteBuffer.put(index, (byte) value);
             byteBufferNext.put(0, (byte) (value >>> 8));
@@ -312,9 +340,9 @@ public final class MMapDataAccess extends AbstractDataAccess {
     public short getShort(long bytePos) {
         int bufferIndex = (int) (bytePos >>> segmentSizePower);
         int index = (int) (bytePos & indexDivisor);
-        ByteBuffer byteBuffer = segments.get(bufferIndex);
+        ByteBuffer byteBuffer = segments[bufferIndex];
         if (index + 1 >= segmentSizeInBytes) {
-            ByteBuffer byteBufferNext = segments.get(bufferIndex + 1);
+            ByteBuffer byteBufferNext = segments[bufferIndex + 1];
             return (short) ((byteBufferNext.get(0) & 0xFF) << 8 | byteBuffer.get(index) & 0xFF);
         }
         return byteBuffer.getShort(index);
@@ -326,7 +354,7 @@ public final class MMapDataAccess extends AbstractDataAccess {
         final int bufferIndex = (int) (bytePos >>> segmentSizePower);
         final int index = (int) (bytePos & indexDivisor);
         final int delta = index + length - segmentSizeInBytes;
-        final ByteBuffer bb1 = segments.get(bufferIndex);
+        final ByteBuffer bb1 = segments[bufferIndex];
         if (delta > 0) {
             length -= delta;
             bb1.put(index, values, 0, length);
@@ -334,7 +362,7 @@ public final class MMapDataAccess extends AbstractDataAccess {
             bb1.put(index, values, 0, length);
         }
         if (delta > 0) {
-            final ByteBuffer bb2 = segments.get(bufferIndex + 1);
+            final ByteBuffer bb2 = segments[bufferIndex + 1];
             bb2.put(0, values, length, delta);
         }
     }
@@ -345,12 +373,12 @@ public final class MMapDataAccess extends AbstractDataAccess {
         int bufferIndex = (int) (bytePos >>> segmentSizePower);
         int index = (int) (bytePos & indexDivisor);
         int delta = index + length - segmentSizeInBytes;
-        final ByteBuffer bb1 = segments.get(bufferIndex);
+        final ByteBuffer bb1 = segments[bufferIndex];
         if (delta > 0) {
             length -= delta;
             bb1.get(index, values, 0, length);
 
-            final ByteBuffer bb2 = segments.get(bufferIndex + 1);
+            final ByteBuffer bb2 = segments[bufferIndex + 1];
             bb2.get(0, values, length, delta);
         } else {
             bb1.get(index, values, 0, length);
@@ -361,7 +389,7 @@ public final class MMapDataAccess extends AbstractDataAccess {
     public void setByte(long bytePos, byte value) {
         int bufferIndex = (int) (bytePos >>> segmentSizePower);
         int index = (int) (bytePos & indexDivisor);
-        final ByteBuffer bb1 = segments.get(bufferIndex);
+        final ByteBuffer bb1 = segments[bufferIndex];
         bb1.put(index, value);
     }
 
@@ -369,26 +397,23 @@ public final class MMapDataAccess extends AbstractDataAccess {
     public byte getByte(long bytePos) {
         int bufferIndex = (int) (bytePos >>> segmentSizePower);
         int index = (int) (bytePos & indexDivisor);
-        final ByteBuffer bb1 = segments.get(bufferIndex);
+        final ByteBuffer bb1 = segments[bufferIndex];
         return bb1.get(index);
     }
 
     @Override
     public long getCapacity() {
-        long cap = 0;
-        for (ByteBuffer bb : segments) {
-            cap += bb.capacity();
-        }
-        return cap;
+        // all segments have the same size
+        return (long) segments.length * segmentSizeInBytes;
     }
 
     @Override
     public int getSegments() {
-        return segments.size();
+        return segments.length;
     }
 
     /**
-     * Cleans up MappedByteBuffers. Be sure you bring the segments list in a consistent state
+     * Cleans up MappedByteBuffers. Be sure you bring the segments array in a consistent state
      * afterwards.
      * <p>
      *
@@ -397,14 +422,14 @@ public final class MMapDataAccess extends AbstractDataAccess {
      */
     private void clean(int from, int to) {
         for (int i = from; i < to; i++) {
-            ByteBuffer bb = segments.get(i);
+            ByteBuffer bb = segments[i];
             cleanMappedByteBuffer(bb);
-            segments.set(i, null);
+            segments[i] = null;
         }
     }
 
     @Override
     public DAType getType() {
-        return DAType.MMAP;
+        return allowWrites ? DAType.MMAP : DAType.MMAP_RO;
     }
 }
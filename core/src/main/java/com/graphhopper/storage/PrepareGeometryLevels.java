@@ -0,0 +1,157 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.routing.ev.EnumEncodedValue;
+import com.graphhopper.routing.ev.RoadClass;
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.util.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+
+/**
+ * Fills a {@link GeometryLevelStorage}: edges are merged into chains as long as the node between them has degree two
+ * and both edges have the same road class. The geometry of every chain is then simplified via
+ * {@link RamerDouglasPeucker} once per tolerance. The nodes inside a chain are not kept, so the simplification of a
+ * long road with many short edges removes much more points than the simplification of the single edges.
+ */
+public class PrepareGeometryLevels {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PrepareGeometryLevels.class);
+    private final BaseGraph graph;
+    private final EnumEncodedValue<RoadClass> roadClassEnc;
+    private final GeometryLevelStorage storage;
+    private final double[] tolerances;
+    // the first two edges of every node, only relevant for nodes of degree two
+    private int[] firstEdges;
+    private int[] secondEdges;
+    private byte[] degrees;
+
+    /**
+     * @param roadClassEnc the road class that the edges of a chain must have in common, or null to merge edges
+     *                     regardless of their road class
+     * @param tolerances   the maximum distance in meters of the simplified geometry, one for every level of the storage
+     */
+    public PrepareGeometryLevels(BaseGraph graph, EnumEncodedValue<RoadClass> roadClassEnc, GeometryLevelStorage storage, double[] tolerances) {
+        if (tolerances.length != storage.getLevels())
+            throw new IllegalArgumentException("The storage has " + storage.getLevels() + " levels, but " + tolerances.length + " tolerances were given");
+        this.graph = graph;
+        this.roadClassEnc = roadClassEnc;
+        this.storage = storage;
+        this.tolerances = tolerances;
+    }
+
+    public void doWork() {
+        StopWatch sw = new StopWatch().start();
+        findDegrees();
+        int edges = graph.getEdges();
+        storage.create(edges);
+        int[] chains = new int[edges];
+        Arrays.fill(chains, -1);
+        RamerDouglasPeucker[] simplifications = new RamerDouglasPeucker[tolerances.length];
+        for (int level = 0; level < tolerances.length; level++)
+            simplifications[level] = new RamerDouglasPeucker().setMaxDistance(tolerances[level]);
+        PointList points = new PointList(100, false);
+        long fullPoints = 0;
+        long[] levelPoints = new long[tolerances.length];
+        for (int edge = 0; edge < edges; edge++) {
+            if (chains[edge] >= 0)
+                continue;
+            // go backward to the start of the chain, unless the chain is a cycle
+            int node = graph.getEdgeIteratorState(edge, Integer.MIN_VALUE).getBaseNode();
+            int first = edge;
+            while (isInner(node)) {
+                int other = getOtherEdge(node, first);
+                if (other == edge)
+                    break;
+                first = other;
+                node = graph.getOtherNode(first, node);
+            }
+
+            // the chain is stored in the direction of the walk, which can be against the stored direction of first
+            int chain = storage.addChain(graph.getEdgeIteratorState(first, graph.getOtherNode(first, node)).getEdgeKey());
+            points.clear();
+            int curr = first;
+            while (true) {
+                EdgeIteratorState state = graph.getEdgeIteratorState(curr, graph.getOtherNode(curr, node));
+                PointList pl = state.fetchWayGeometry(FetchMode.ALL);
+                // the first point equals the last point of the previous edge
+                for (int i = points.isEmpty() ? 0 : 1; i < pl.size(); i++)
+                    points.add(pl.getLat(i), pl.getLon(i));
+                chains[curr] = chain;
+                storage.setChain(curr, chain);
+                node = state.getAdjNode();
+                if (!isInner(node))
+                    break;
+                curr = getOtherEdge(node, curr);
+                if (chains[curr] >= 0)
+                    break;
+            }
+
+            fullPoints += points.size();
+            for (int level = 0; level < tolerances.length; level++) {
+                PointList simplified = points.clone(false);
+                simplifications[level].simplify(simplified);
+                storage.setPoints(chain, level, simplified);
+                levelPoints[level] += simplified.size();
+            }
+        }
+        firstEdges = secondEdges = null;
+        degrees = null;
+        LOGGER.info("Merged " + Helper.nf(edges) + " edges into " + Helper.nf(storage.getChains()) + " chains with "
+                + Helper.nf(fullPoints) + " points, simplified to " + Arrays.toString(levelPoints) + " points for the tolerances "
+                + Arrays.toString(tolerances) + ", took: " + sw.stop().getSeconds() + "s, " + Helper.getMemInfo());
+    }
+
+    private void findDegrees() {
+        int nodes = graph.getNodes();
+        firstEdges = new int[nodes];
+        secondEdges = new int[nodes];
+        degrees = new byte[nodes];
+        AllEdgesIterator iter = graph.getAllEdges();
+        while (iter.next()) {
+            addEdge(iter.getBaseNode(), iter.getEdge());
+            addEdge(iter.getAdjNode(), iter.getEdge());
+        }
+    }
+
+    private void addEdge(int node, int edge) {
+        if (degrees[node] == 0)
+            firstEdges[node] = edge;
+        else if (degrees[node] == 1)
+            secondEdges[node] = edge;
+        if (degrees[node] < 3)
+            degrees[node]++;
+    }
+
+    /**
+     * @return true if the chain continues at this node, i.e. it connects exactly two different edges of the same road
+     * class
+     */
+    private boolean isInner(int node) {
+        if (degrees[node] != 2 || firstEdges[node] == secondEdges[node])
+            return false;
+        return roadClassEnc == null || graph.getEdgeIteratorState(firstEdges[node], Integer.MIN_VALUE).get(roadClassEnc)
+                == graph.getEdgeIteratorState(secondEdges[node], Integer.MIN_VALUE).get(roadClassEnc);
+    }
+
+    private int getOtherEdge(int node, int edge) {
+        return firstEdges[node] == edge ? secondEdges[node] : firstEdges[node];
+    }
+}
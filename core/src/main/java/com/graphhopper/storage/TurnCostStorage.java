@@ -18,6 +18,7 @@
 package com.graphhopper.storage;
 
 import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.sorting.IndirectSort;
 import com.graphhopper.routing.ev.BooleanEncodedValue;
 import com.graphhopper.routing.ev.DecimalEncodedValue;
 import com.graphhopper.routing.ev.EdgeIntAccess;
@@ -39,6 +40,10 @@ import java.util.function.IntUnaryOperator;
 public class TurnCostStorage {
     static final int NO_TURN_ENTRY = -1;
     // we store each turn cost entry in the format |from_edge|to_edge|flags|next|. each entry has 4 bytes -> 16 bytes total
+    // There are two layouts: while entries are added, the entries of a node form a singly linked list and next is the
+    // index of the next entry of the same node. In the sorted layout (see sortNodes) the entries of a node are stored
+    // contiguously, ordered by (from_edge, to_edge), and next is the index after the last entry of the node. This
+    // allows a binary search in findIndex, which matters for nodes with many turn restrictions.
     private static final int TC_FROM = 0;
     private static final int TC_TO = 4;
     private static final int TC_FLAGS = 8;
@@ -49,6 +54,7 @@ public class TurnCostStorage {
     private final DataAccess turnCosts;
     private final EdgeIntAccess edgeIntAccess = createEdgeIntAccess();
     private int turnCostsCount;
+    private boolean sorted;
 
     public TurnCostStorage(BaseGraph baseGraph, DataAccess turnCosts) {
         this.baseGraph = baseGraph;
@@ -61,9 +67,12 @@ public class TurnCostStorage {
     }
 
     public void flush() {
+        if (!sorted)
+            sortNodes();
         turnCosts.setHeader(0, Constants.VERSION_TURN_COSTS);
         turnCosts.setHeader(4, BYTES_PER_ENTRY);
         turnCosts.setHeader(2 * 4, turnCostsCount);
+        turnCosts.setHeader(3 * 4, sorted ? 1 : 0);
         turnCosts.flush();
     }
 
@@ -84,6 +93,7 @@ public class TurnCostStorage {
             throw new IllegalStateException("Number of bytes per turn cost entry does not match the current configuration: " + turnCosts.getHeader(0) + " vs. " + BYTES_PER_ENTRY);
         }
         turnCostsCount = turnCosts.getHeader(8);
+        sorted = turnCosts.getHeader(3 * 4) == 1;
         return true;
     }
 
@@ -107,6 +117,9 @@ public class TurnCostStorage {
     private int findOrCreateTurnCostEntry(int fromEdge, int viaNode, int toEdge) {
         int index = findIndex(fromEdge, viaNode, toEdge);
         if (index < 0) {
+            // new entries are prepended to the linked list of the node
+            if (sorted)
+                toLinkedLayout();
             // create a new entry
             index = turnCostsCount;
             ensureTurnCostIndex(index);
@@ -159,8 +172,11 @@ public class TurnCostStorage {
         if (viaNode < 0)
             throw new IllegalArgumentException("via node cannot be negative");
 
-        final int maxEntries = 1000;
         int index = baseGraph.getNodeAccess().getTurnCostIndex(viaNode);
+        if (sorted)
+            return index == NO_TURN_ENTRY ? -1 : binarySearch(index, turnCosts.getInt(toPointer(index) + TC_NEXT), fromEdge, toEdge);
+
+        final int maxEntries = 1000;
         for (int i = 0; i < maxEntries; ++i) {
             if (index == NO_TURN_ENTRY) return -1;
             long pointer = toPointer(index);
@@ -171,7 +187,47 @@ public class TurnCostStorage {
         throw new IllegalStateException("Turn cost list for node: " + viaNode + " is longer than expected, max: " + maxEntries);
     }
 
+    private int binarySearch(int low, int high, int fromEdge, int toEdge) {
+        high--;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long pointer = toPointer(mid);
+            int cmp = Integer.compare(turnCosts.getInt(pointer + TC_FROM), fromEdge);
+            if (cmp == 0)
+                cmp = Integer.compare(turnCosts.getInt(pointer + TC_TO), toEdge);
+            if (cmp < 0)
+                low = mid + 1;
+            else if (cmp > 0)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the index of the entry that follows the given one for the same node or NO_TURN_ENTRY
+     */
+    private int getNext(int index) {
+        int next = turnCosts.getInt(toPointer(index) + TC_NEXT);
+        if (!sorted)
+            return next;
+        return index + 1 < next ? index + 1 : NO_TURN_ENTRY;
+    }
+
+    private void toLinkedLayout() {
+        for (int i = 0; i < turnCostsCount; i++) {
+            long pointer = toPointer(i);
+            int end = turnCosts.getInt(pointer + TC_NEXT);
+            turnCosts.setInt(pointer + TC_NEXT, i + 1 < end ? i + 1 : NO_TURN_ENTRY);
+        }
+        sorted = false;
+    }
+
     public void sortEdges(IntUnaryOperator getNewEdgeForOldEdge) {
+        // the entries are sorted by edge, so we need to sort them again afterwards
+        if (sorted)
+            toLinkedLayout();
         for (int i = 0; i < turnCostsCount; i++) {
             long pointer = toPointer(i);
             turnCosts.setInt(pointer + TC_FROM, getNewEdgeForOldEdge.applyAsInt(turnCosts.getInt(pointer + TC_FROM)));
@@ -190,9 +246,10 @@ public class TurnCostStorage {
     public int getTurnCostsCount(int node) {
         int index = baseGraph.getNodeAccess().getTurnCostIndex(node);
         int count = 0;
+        if (sorted)
+            return index == NO_TURN_ENTRY ? 0 : turnCosts.getInt(toPointer(index) + TC_NEXT) - index;
         while (index != NO_TURN_ENTRY) {
-            long pointer = toPointer(index);
-            index = turnCosts.getInt(pointer + TC_NEXT);
+            index = getNext(index);
             count++;
         }
         return count;
@@ -219,40 +276,52 @@ public class TurnCostStorage {
         return new Itr();
     }
 
+    /**
+     * Rearranges the entries such that the entries of every node are stored contiguously, in the order of the nodes
+     * and sorted by (fromEdge, toEdge). Lookups use a binary search afterwards. This must be called after the nodes
+     * were relabeled and is also done by {@link #flush()}. Adding new entries undoes it.
+     */
     public void sortNodes() {
-        IntArrayList tcFroms = new IntArrayList();
-        IntArrayList tcTos = new IntArrayList();
-        IntArrayList tcFlags = new IntArrayList();
-        IntArrayList tcNexts = new IntArrayList();
+        IntArrayList tcFroms = new IntArrayList(turnCostsCount);
+        IntArrayList tcTos = new IntArrayList(turnCostsCount);
+        IntArrayList tcFlags = new IntArrayList(turnCostsCount);
+        IntArrayList tcNexts = new IntArrayList(turnCostsCount);
         for (int i = 0; i < turnCostsCount; i++) {
             long pointer = toPointer(i);
             tcFroms.add(turnCosts.getInt(pointer + TC_FROM));
             tcTos.add(turnCosts.getInt(pointer + TC_TO));
             tcFlags.add(turnCosts.getInt(pointer + TC_FLAGS));
-            tcNexts.add(turnCosts.getInt(pointer + TC_NEXT));
+            tcNexts.add(getNext(i));
         }
         long turnCostsCountBefore = turnCostsCount;
         turnCostsCount = 0;
+        IntArrayList nodeEntries = new IntArrayList();
         for (int node = 0; node < baseGraph.getNodes(); node++) {
-            boolean firstForNode = true;
             int turnCostIndex = baseGraph.getNodeAccess().getTurnCostIndex(node);
+            if (turnCostIndex == NO_TURN_ENTRY)
+                continue;
+            nodeEntries.clear();
             while (turnCostIndex != NO_TURN_ENTRY) {
-                if (firstForNode) {
-                    baseGraph.getNodeAccess().setTurnCostIndex(node, turnCostsCount);
-                } else {
-                    long prevPointer = toPointer(turnCostsCount - 1);
-                    turnCosts.setInt(prevPointer + TC_NEXT, turnCostsCount);
-                }
+                nodeEntries.add(turnCostIndex);
+                turnCostIndex = tcNexts.get(turnCostIndex);
+            }
+            int[] order = IndirectSort.mergesort(0, nodeEntries.size(), (a, b) -> {
+                int cmp = Integer.compare(tcFroms.get(nodeEntries.get(a)), tcFroms.get(nodeEntries.get(b)));
+                return cmp != 0 ? cmp : Integer.compare(tcTos.get(nodeEntries.get(a)), tcTos.get(nodeEntries.get(b)));
+            });
+            int end = turnCostsCount + nodeEntries.size();
+            baseGraph.getNodeAccess().setTurnCostIndex(node, turnCostsCount);
+            for (int o : order) {
+                int entry = nodeEntries.get(o);
                 long pointer = toPointer(turnCostsCount);
-                turnCosts.setInt(pointer + TC_FROM, tcFroms.get(turnCostIndex));
-                turnCosts.setInt(pointer + TC_TO, tcTos.get(turnCostIndex));
-                turnCosts.setInt(pointer + TC_FLAGS, tcFlags.get(turnCostIndex));
-                turnCosts.setInt(pointer + TC_NEXT, NO_TURN_ENTRY);
+                turnCosts.setInt(pointer + TC_FROM, tcFroms.get(entry));
+                turnCosts.setInt(pointer + TC_TO, tcTos.get(entry));
+                turnCosts.setInt(pointer + TC_FLAGS, tcFlags.get(entry));
+                turnCosts.setInt(pointer + TC_NEXT, end);
                 turnCostsCount++;
-                firstForNode = false;
-                turnCostIndex = tcNexts.get(turnCostIndex);
             }
         }
+        sorted = true;
         if (turnCostsCountBefore != turnCostsCount)
             throw new IllegalStateException("Turn cost count changed unexpectedly: " + turnCostsCountBefore + " -> " + turnCostsCount);
     }
@@ -337,7 +406,7 @@ public class TurnCostStorage {
             if (turnCostIndex == NO_TURN_ENTRY) {
                 return false;
             }
-            turnCostIndex = turnCosts.getInt(turnCostPtr() + TC_NEXT);
+            turnCostIndex = getNext(turnCostIndex);
             if (turnCostIndex == NO_TURN_ENTRY) {
                 return false;
             }
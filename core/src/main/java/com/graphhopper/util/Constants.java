@@ -65,9 +65,12 @@ public class Constants {
     public static final int VERSION_SHORTCUT = 10;
     public static final int VERSION_NODE_CH = 0;
     public static final int VERSION_GEOMETRY = 7;
-    public static final int VERSION_TURN_COSTS = 0;
+    public static final int VERSION_TURN_COSTS = 1;
     public static final int VERSION_LOCATION_IDX = 5;
     public static final int VERSION_KV_STORAGE = 2;
+    public static final int VERSION_EDGE_WEIGHTS = 0;
+    public static final int VERSION_CCH = 0;
+    public static final int VERSION_GEOMETRY_LEVELS = 0;
     /**
      * The version without the snapshot string
      */
@@ -30,7 +30,13 @@ import com.graphhopper.routing.util.DefaultSnapFilter;
 import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.routing.util.countryrules.CountryRuleFactory;
 import com.graphhopper.routing.util.parsers.OSMRoadEnvironmentParser;
+import com.graphhopper.routing.weighting.PrecomputedDeltaWeighting;
+import com.graphhopper.routing.weighting.PrecomputedWeighting;
 import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.routing.weighting.custom.CustomWeighting;
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.GeometryLevelStorage;
 import com.graphhopper.storage.IntsRef;
 import com.graphhopper.storage.index.LocationIndexTree;
 import com.graphhopper.storage.index.Snap;
@@ -42,6 +48,7 @@ import com.graphhopper.util.details.PathDetail;
 import com.graphhopper.util.exceptions.ConnectionNotFoundException;
 import com.graphhopper.util.exceptions.MaximumNodesExceededException;
 import com.graphhopper.util.exceptions.PointDistanceExceededException;
+import com.graphhopper.util.exceptions.PointOutOfBoundsException;
 import com.graphhopper.util.shapes.BBox;
 import com.graphhopper.util.shapes.GHPoint;
 import com.graphhopper.util.shapes.GHPoint3D;
@@ -141,6 +148,205 @@ public class GraphHopperTest {
         assertTrue(rsp.getErrors().toString().contains("ConnectionNotFoundException"), rsp.getErrors().toString());
     }
 
+    @ParameterizedTest
+    @ValueSource(strings = {"hilbert", "bfs"})
+    public void testMonacoSortOrder(String sortOrder) {
+        GraphHopper hopper = new GraphHopper().
+                setGraphHopperLocation(GH_LOCATION).
+                setOSMFile(MONACO).
+                setEncodedValuesString("car_access, car_average_speed").
+                setProfiles(TestProfiles.accessAndSpeed("profile", "car")).
+                setSortOrder(sortOrder).
+                setStoreOnFlush(true);
+        hopper.getCHPreparationHandler().setCHProfiles(new CHProfile("profile"));
+        hopper.setMinNetworkSize(0);
+        hopper.importOrLoad();
+        for (boolean withCH : new boolean[]{false, true}) {
+            GHRequest req = new GHRequest(43.727687, 7.418737, 43.74958, 7.436566).setProfile("profile");
+            req.putHint(CH.DISABLE, !withCH);
+            GHResponse rsp = hopper.route(req);
+            assertFalse(rsp.hasErrors(), rsp.getErrors().toString());
+            assertEquals(3587.6, rsp.getBest().getDistance(), .1);
+            assertEquals(274255, rsp.getBest().getTime(), 10);
+            assertEquals(105, rsp.getBest().getPoints().size());
+        }
+        assertThrows(IllegalArgumentException.class, () -> hopper.setSortOrder("random"));
+    }
+
+    @Test
+    public void testMonacoPrecomputedWeights() {
+        for (int run = 0; run < 2; run++) {
+            // the first run calculates the weights, the second one loads them
+            GraphHopper hopper = new GraphHopper().
+                    setGraphHopperLocation(GH_LOCATION).
+                    setOSMFile(MONACO).
+                    setEncodedValuesString("car_access, car_average_speed").
+                    setProfiles(TestProfiles.accessAndSpeed("profile", "car")).
+                    setPrecomputedWeightsProfiles(List.of("profile")).
+                    setStoreOnFlush(true);
+            hopper.getLMPreparationHandler().setLMProfiles(new LMProfile("profile"));
+            hopper.setMinNetworkSize(0);
+            hopper.importOrLoad();
+            assertInstanceOf(PrecomputedWeighting.class, hopper.createWeighting(hopper.getProfile("profile"), new PMap()));
+            for (boolean withLM : new boolean[]{false, true}) {
+                GHRequest req = new GHRequest(43.727687, 7.418737, 43.74958, 7.436566).setProfile("profile");
+                req.putHint(Landmark.DISABLE, !withLM);
+                GHResponse rsp = hopper.route(req);
+                assertFalse(rsp.hasErrors(), rsp.getErrors().toString());
+                assertEquals(3587.6, rsp.getBest().getDistance(), .1);
+                assertEquals(274255, rsp.getBest().getTime(), 10);
+
+                // a custom model in the request that only multiplies the priority is applied on top of the weights
+                req.setCustomModel(new CustomModel().addToPriority(If("car_average_speed > 40", MULTIPLY, "0.1")));
+                rsp = hopper.route(req);
+                assertFalse(rsp.hasErrors(), rsp.getErrors().toString());
+                assertEquals(4207.8, rsp.getBest().getDistance(), .1);
+            }
+            CustomModel queryModel = new CustomModel().addToPriority(If("car_average_speed > 40", MULTIPLY, "0.1"));
+            assertInstanceOf(PrecomputedDeltaWeighting.class, hopper.createWeighting(hopper.getProfile("profile"), new PMap().putObject(CustomModel.KEY, queryModel)));
+            // other custom models fall back to calculating the weights
+            queryModel = new CustomModel().addToSpeed(If("true", LIMIT, "30"));
+            assertInstanceOf(CustomWeighting.class, hopper.createWeighting(hopper.getProfile("profile"), new PMap().putObject(CustomModel.KEY, queryModel)));
+            hopper.close();
+        }
+    }
+
+    @Test
+    public void testMonacoGeometryLevels() {
+        GraphHopper hopper = new GraphHopper().
+                setGraphHopperLocation(GH_LOCATION).
+                setOSMFile(MONACO).
+                setEncodedValuesString("car_access, car_average_speed, road_class").
+                setProfiles(TestProfiles.accessAndSpeed("profile", "car")).
+                setGeometryLevelTolerances(50, 5).
+                setStoreOnFlush(true);
+        hopper.importAndClose();
+
+        hopper = new GraphHopper().
+                setGraphHopperLocation(GH_LOCATION).
+                setEncodedValuesString("car_access, car_average_speed, road_class").
+                setProfiles(TestProfiles.accessAndSpeed("profile", "car")).
+                setGeometryLevelTolerances(5, 50).
+                setStoreOnFlush(true);
+        assertTrue(hopper.load());
+        GeometryLevelStorage levels = hopper.getGeometryLevels();
+        assertEquals(hopper.getBaseGraph().getEdges(), levels.getEdges());
+        // most edges already end at junctions, but ways that are split without a junction are merged again
+        assertTrue(levels.getChains() < levels.getEdges() * 0.9, "chains: " + levels.getChains() + ", edges: " + levels.getEdges());
+        long[] points = new long[2];
+        PointList pointList = new PointList();
+        for (int chain = 0; chain < levels.getChains(); chain++)
+            for (int level = 0; level < 2; level++) {
+                levels.fetchPoints(chain, level, pointList);
+                points[level] += pointList.size();
+            }
+        assertTrue(points[1] < points[0], Arrays.toString(points));
+        hopper.close();
+
+        GraphHopper otherTolerances = new GraphHopper().
+                setGraphHopperLocation(GH_LOCATION).
+                setEncodedValuesString("car_access, car_average_speed, road_class").
+                setProfiles(TestProfiles.accessAndSpeed("profile", "car")).
+                setGeometryLevelTolerances(5, 20).
+                setStoreOnFlush(true);
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, otherTolerances::load);
+        assertTrue(ex.getMessage().contains("don't match configuration"), ex.getMessage());
+        otherTolerances.close();
+    }
+
+    @Test
+    public void testMonacoCustomizableCH() throws InterruptedException {
+        GraphHopper hopper = new GraphHopper().
+                setGraphHopperLocation(GH_LOCATION).
+                setOSMFile(MONACO).
+                setEncodedValuesString("car_access, car_average_speed").
+                setProfiles(TestProfiles.accessAndSpeed("profile", "car")).
+                setCustomizableCHProfiles(List.of("profile")).
+                setStoreOnFlush(true);
+        hopper.getCHPreparationHandler().setCHProfiles(new CHProfile("profile"));
+        hopper.setMinNetworkSize(0);
+        hopper.importOrLoad();
+
+        CustomModel customModel = new CustomModel().addToPriority(If("car_average_speed > 40", MULTIPLY, "0.1"));
+        GHRequest req = new GHRequest(43.727687, 7.418737, 43.74958, 7.436566).setProfile("profile").setCustomModel(customModel);
+        req.putHint(CH.DISABLE, true);
+        GHResponse expected = hopper.route(req);
+        assertFalse(expected.hasErrors(), expected.getErrors().toString());
+        assertEquals(4207.8, expected.getBest().getDistance(), .1);
+
+        // the first request falls back to the flexible mode and starts the customization
+        req.putHint(CH.DISABLE, false);
+        GHResponse rsp = hopper.route(req);
+        assertFalse(rsp.hasErrors(), rsp.getErrors().toString());
+        assertEquals(expected.getBest().getDistance(), rsp.getBest().getDistance(), .1);
+        long flexVisitedNodes = rsp.getHints().getLong("visited_nodes.sum", 0);
+        for (int i = 0; i < 100 && hopper.getCustomizableCH().getOrCustomize(hopper.getProfile("profile"), customModel) == null; i++)
+            Thread.sleep(100);
+        assertNotNull(hopper.getCustomizableCH().getOrCustomize(hopper.getProfile("profile"), customModel));
+
+        // now the customized CH is used
+        rsp = hopper.route(req);
+        assertFalse(rsp.hasErrors(), rsp.getErrors().toString());
+        assertEquals(expected.getBest().getDistance(), rsp.getBest().getDistance(), .1);
+        assertEquals(expected.getBest().getTime(), rsp.getBest().getTime(), 10);
+        assertTrue(rsp.getHints().getLong("visited_nodes.sum", 0) < flexVisitedNodes / 2, rsp.getHints().toString());
+
+        // without a custom model the ordinary CH is used
+        req.setCustomModel(null);
+        rsp = hopper.route(req);
+        assertFalse(rsp.hasErrors(), rsp.getErrors().toString());
+        assertEquals(3587.6, rsp.getBest().getDistance(), .1);
+        hopper.close();
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    public void testMonacoRouteBatch(boolean withCH) {
+        GraphHopper hopper = new GraphHopper().
+                setGraphHopperLocation(GH_LOCATION).
+                setOSMFile(MONACO).
+                setEncodedValuesString("car_access, car_average_speed").
+                setProfiles(TestProfiles.accessAndSpeed("profile", "car")).
+                setStoreOnFlush(true);
+        hopper.getCHPreparationHandler().setCHProfiles(new CHProfile("profile"));
+        hopper.getRouterConfig().setBatchThreads(2);
+        hopper.importOrLoad();
+
+        Random rnd = new Random(123);
+        BBox bounds = hopper.getBaseGraph().getBounds();
+        List<GHRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            GHRequest req = new GHRequest(
+                    bounds.minLat + rnd.nextDouble() * (bounds.maxLat - bounds.minLat), bounds.minLon + rnd.nextDouble() * (bounds.maxLon - bounds.minLon),
+                    bounds.minLat + rnd.nextDouble() * (bounds.maxLat - bounds.minLat), bounds.minLon + rnd.nextDouble() * (bounds.maxLon - bounds.minLon)).
+                    setProfile("profile");
+            req.putHint(CH.DISABLE, !withCH);
+            requests.add(req);
+        }
+        // a via-route is calculated on its own
+        requests.add(new GHRequest().setProfile("profile").putHint(CH.DISABLE, !withCH).
+                addPoint(new GHPoint(43.727687, 7.418737)).addPoint(new GHPoint(43.74958, 7.436566)).addPoint(new GHPoint(43.730729, 7.42135)));
+        // errors are reported per request
+        requests.add(new GHRequest(43.727687, 7.418737, 50, 10).setProfile("profile").putHint(CH.DISABLE, !withCH));
+        requests.add(new GHRequest(43.727687, 7.418737, 43.74958, 7.436566).setProfile("unknown"));
+
+        List<GHResponse> responses = hopper.routeBatch(requests);
+        assertEquals(requests.size(), responses.size());
+        for (int i = 0; i < requests.size() - 2; i++) {
+            GHResponse expected = hopper.route(requests.get(i));
+            assertFalse(responses.get(i).hasErrors(), responses.get(i).getErrors().toString());
+            // the query graph also contains the snaps of the other requests, which can lead to small rounding differences
+            assertEquals(expected.getBest().getDistance(), responses.get(i).getBest().getDistance(), 0.1);
+            assertEquals(expected.getBest().getTime(), responses.get(i).getBest().getTime(), 10);
+            assertEquals(expected.getBest().getRouteWeight(), responses.get(i).getBest().getRouteWeight(), 0.1);
+        }
+        GHResponse outOfBounds = responses.get(requests.size() - 2);
+        assertTrue(outOfBounds.getErrors().get(0) instanceof PointOutOfBoundsException, outOfBounds.getErrors().toString());
+        GHResponse unknownProfile = responses.get(requests.size() - 1);
+        assertTrue(unknownProfile.getErrors().get(0).getMessage().contains("The requested profile 'unknown' does not exist"), unknownProfile.getErrors().toString());
+        hopper.close();
+    }
+
     @Test
     public void testMonacoWithInstructions() {
         final String profile = "profile";
@@ -410,6 +616,50 @@ public class GraphHopperTest {
         testImportCloseAndLoad(false, false);
     }
 
+    @Test
+    public void testSharedReadOnlyMMap() {
+        GraphHopper hopper = new GraphHopper();
+        hopper.init(new GraphHopperConfig().
+                setProfiles(List.of(TestProfiles.accessAndSpeed("profile", "car"))).
+                putObject("graph.location", GH_LOCATION).
+                putObject("datareader.file", MONACO).
+                putObject("graph.encoded_values", "car_access, car_average_speed").
+                putObject("graph.dataaccess.default_type", "MMAP").
+                putObject("import.osm.ignored_highways", "").
+                putObject("graph.calc_checksums", true));
+        hopper.getCHPreparationHandler().setCHProfiles(new CHProfile("profile"));
+        hopper.importAndClose();
+
+        // several instances serve the same files at the same time, like separate processes would do
+        List<GraphHopper> hoppers = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            GraphHopper readOnlyHopper = new GraphHopper();
+            readOnlyHopper.init(new GraphHopperConfig().
+                    setProfiles(List.of(TestProfiles.accessAndSpeed("profile", "car"))).
+                    putObject("graph.location", GH_LOCATION).
+                    putObject("graph.encoded_values", "car_access, car_average_speed").
+                    putObject("graph.dataaccess.default_type", "MMAP").
+                    putObject("graph.dataaccess.type.location_index", "RAM_STORE").
+                    putObject("graph.dataaccess.mmap.preload..*", 100).
+                    putObject("import.osm.ignored_highways", "").
+                    putObject("graph.allow_writes", false).
+                    putObject("graph.calc_checksums", true));
+            readOnlyHopper.getCHPreparationHandler().setCHProfiles(new CHProfile("profile"));
+            assertTrue(readOnlyHopper.load());
+            hoppers.add(readOnlyHopper);
+        }
+        for (GraphHopper readOnlyHopper : hoppers) {
+            for (DataAccess da : readOnlyHopper.getBaseGraph().getDirectory().getDAs().values())
+                if (da.getType().isStoring())
+                    assertEquals(DAType.MMAP_RO, da.getType(), da.getName());
+            GHResponse rsp = readOnlyHopper.route(new GHRequest(43.727687, 7.418737, 43.74958, 7.436566).setProfile("profile"));
+            assertFalse(rsp.hasErrors(), rsp.getErrors().toString());
+            assertEquals(3587.6, rsp.getBest().getDistance(), .1);
+            assertThrows(IllegalStateException.class, () -> readOnlyHopper.getBaseGraph().getDirectory().remove("nodes"));
+        }
+        hoppers.forEach(GraphHopper::close);
+    }
+
     @Test
     public void testAlternativeRoutes() {
         final String profile = "profile";
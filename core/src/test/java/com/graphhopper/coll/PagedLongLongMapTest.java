@@ -0,0 +1,119 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import com.carrotsearch.hppc.LongLongHashMap;
+import com.carrotsearch.hppc.cursors.LongLongCursor;
+import com.graphhopper.storage.RAMDirectory;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PagedLongLongMapTest {
+
+    @Test
+    public void putAndGet() {
+        PagedLongLongMap map = new PagedLongLongMap(new RAMDirectory(), "test", 4, 5, -1);
+        assertEquals(-1, map.get(123));
+        assertEquals(-1, map.put(123, 0));
+        assertEquals(-1, map.put(124, -7));
+        assertEquals(-1, map.put(-Long.MAX_VALUE, 3));
+        assertEquals(-1, map.put(Long.MAX_VALUE, map.getMaxValue()));
+        assertEquals(0, map.put(123, 42));
+        assertEquals(42, map.get(123));
+        assertEquals(-7, map.get(124));
+        assertEquals(3, map.get(-Long.MAX_VALUE));
+        assertEquals(map.getMaxValue(), map.get(Long.MAX_VALUE));
+        assertEquals(-1, map.get(125));
+        assertEquals(4, map.getSize());
+
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () -> map.put(1, -1));
+        assertTrue(ex.getMessage().contains("Value cannot be the 'empty value' -1"));
+        assertThrows(IllegalArgumentException.class, () -> map.put(1, map.getMaxValue() + 1));
+
+        map.clear();
+        assertEquals(0, map.getSize());
+        assertEquals(-1, map.get(123));
+        map.put(123, 5);
+        assertEquals(5, map.get(123));
+    }
+
+    @Test
+    public void random() {
+        Random rand = new Random(123);
+        for (int bytesPerValue = 4; bytesPerValue <= 8; bytesPerValue++) {
+            PagedLongLongMap map = new PagedLongLongMap(new RAMDirectory(), "test", 6, bytesPerValue, -1);
+            LongLongHashMap expected = new LongLongHashMap();
+            long maxValue = map.getMaxValue();
+            for (int i = 0; i < 20_000; i++) {
+                // mostly dense keys like OSM node IDs, but some are far away
+                long key = rand.nextInt(10) == 0 ? rand.nextLong() : rand.nextInt(100_000);
+                long value = rand.nextLong() % maxValue;
+                if (value == -1)
+                    continue;
+                long old = expected.containsKey(key) ? expected.get(key) : -1;
+                assertEquals(old, map.put(key, value));
+                expected.put(key, value);
+            }
+            assertEquals(expected.size(), map.getSize());
+            for (LongLongCursor c : expected)
+                assertEquals(c.value, map.get(c.key));
+            for (int i = 0; i < 1000; i++) {
+                long key = 100_000 + rand.nextInt(100_000);
+                assertEquals(expected.containsKey(key) ? expected.get(key) : -1, map.get(key));
+            }
+        }
+    }
+
+    @Test
+    public void concurrentGet() throws Exception {
+        PagedLongLongMap map = new PagedLongLongMap(new RAMDirectory(), "test", 2, 5, -1);
+        // with 4 keys per page every block of the page table covers only 4096 keys, so the threads
+        // permanently switch between the blocks
+        for (long key = 0; key < 200_000; key++)
+            map.put(key, key * 3);
+
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                final Random rand = new Random(t);
+                futures.add(executorService.submit(() -> {
+                    int errors = 0;
+                    for (int i = 0; i < 1_000_000; i++) {
+                        long key = rand.nextInt(250_000);
+                        if (map.get(key) != (key < 200_000 ? key * 3 : -1))
+                            errors++;
+                    }
+                    return errors;
+                }));
+            }
+            for (Future<Integer> future : futures)
+                assertEquals(0, (int) future.get());
+        } finally {
+            executorService.shutdown();
+        }
+    }
+}
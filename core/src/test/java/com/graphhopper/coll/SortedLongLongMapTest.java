@@ -0,0 +1,95 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import com.carrotsearch.hppc.LongLongHashMap;
+import com.carrotsearch.hppc.cursors.LongLongCursor;
+import com.graphhopper.storage.RAMDirectory;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SortedLongLongMapTest {
+
+    @Test
+    public void putAndGet() {
+        SortedLongLongMap map = new SortedLongLongMap(new RAMDirectory(), "test", 4, -1);
+        assertEquals(-1, map.get(10));
+        assertEquals(-1, map.put(10, 1));
+        assertEquals(-1, map.put(20, 2));
+        assertEquals(-1, map.put(30, -3));
+        // out of order
+        assertEquals(-1, map.put(15, 4));
+        assertEquals(-1, map.put(-5, 5));
+        // update
+        assertEquals(2, map.put(20, 6));
+        assertEquals(4, map.put(15, 7));
+
+        assertEquals(1, map.get(10));
+        assertEquals(6, map.get(20));
+        assertEquals(-3, map.get(30));
+        assertEquals(7, map.get(15));
+        assertEquals(5, map.get(-5));
+        assertEquals(-1, map.get(25));
+        assertEquals(-1, map.get(35));
+        assertEquals(5, map.getSize());
+
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () -> map.put(1, -1));
+        assertTrue(ex.getMessage().contains("Value cannot be the 'empty value' -1"));
+
+        map.clear();
+        assertEquals(0, map.getSize());
+        assertEquals(-1, map.get(10));
+        map.put(10, 8);
+        assertEquals(8, map.get(10));
+    }
+
+    @Test
+    public void random() {
+        Random rand = new Random(123);
+        for (int bytesPerValue : new int[]{4, 5, 8}) {
+            SortedLongLongMap map = new SortedLongLongMap(new RAMDirectory(), "test", bytesPerValue, -1);
+            LongLongHashMap expected = new LongLongHashMap();
+            long key = -1000;
+            for (int i = 0; i < 20_000; i++) {
+                long k;
+                if (rand.nextInt(20) == 0) {
+                    k = rand.nextInt(1_000_000) - 1000;
+                } else {
+                    key += 1 + rand.nextInt(30);
+                    k = key;
+                }
+                long value = rand.nextLong() % map.getMaxValue();
+                if (value == -1)
+                    continue;
+                long old = expected.containsKey(k) ? expected.get(k) : -1;
+                assertEquals(old, map.put(k, value));
+                expected.put(k, value);
+            }
+            assertEquals(expected.size(), map.getSize());
+            for (LongLongCursor c : expected)
+                assertEquals(c.value, map.get(c.key));
+            for (int i = 0; i < 1000; i++) {
+                long k = rand.nextInt(1_000_000);
+                assertEquals(expected.containsKey(k) ? expected.get(k) : -1, map.get(k));
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.isochrone.algorithm;
+
+import com.graphhopper.routing.SearchStatePool;
+import com.graphhopper.routing.ch.PrepareContractionHierarchies;
+import com.graphhopper.routing.ev.DecimalEncodedValue;
+import com.graphhopper.routing.ev.DecimalEncodedValueImpl;
+import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.SpeedWeighting;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.CHConfig;
+import com.graphhopper.storage.RoutingCHGraph;
+import com.graphhopper.storage.RoutingCHGraphImpl;
+import com.graphhopper.storage.index.LocationIndexTree;
+import com.graphhopper.storage.index.Snap;
+import com.graphhopper.util.GHUtility;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CHShortestPathTreeTest {
+    private final DecimalEncodedValue speedEnc = new DecimalEncodedValueImpl("speed", 5, 5, true);
+    private final BaseGraph graph = new BaseGraph.Builder(EncodingManager.start().add(speedEnc).build()).create();
+
+    @Test
+    public void randomGraph() {
+        long seed = System.nanoTime();
+        Random rnd = new Random(seed);
+        GHUtility.buildRandomGraph(graph, rnd, 500, 2.2, true, speedEnc, null, 0.8, 0);
+        LocationIndexTree locationIndex = new LocationIndexTree(graph, graph.getDirectory());
+        locationIndex.prepareIndex();
+        graph.freeze();
+        CHConfig chConfig = CHConfig.nodeBased("p", new SpeedWeighting(speedEnc));
+        PrepareContractionHierarchies.Result res = PrepareContractionHierarchies.fromGraph(graph, chConfig).doWork();
+        RoutingCHGraph chGraph = RoutingCHGraphImpl.fromGraph(graph, res.getCHStorage(), res.getCHConfig());
+        // the states are reused for the different queries, just like on the server
+        SearchStatePool pool = new SearchStatePool();
+
+        for (int i = 0; i < 20; i++) {
+            boolean reverseFlow = rnd.nextBoolean();
+            Snap snap = GHUtility.createRandomSnaps(graph.getBounds(), locationIndex, rnd, 1, true, EdgeFilter.ALL_EDGES).get(0);
+            QueryGraph queryGraph = QueryGraph.create(graph, snap);
+            double timeLimit = 1000 * rnd.nextInt(2000);
+            String msg = "seed: " + seed + ", from: " + snap.getClosestNode() + ", reverse: " + reverseFlow + ", limit: " + timeLimit;
+
+            ShortestPathTree dijkstra = new ShortestPathTree(queryGraph, queryGraph.wrapWeighting(chConfig.getWeighting()), reverseFlow, TraversalMode.NODE_BASED);
+            dijkstra.setTimeLimit(timeLimit);
+            Map<Integer, ShortestPathTree.IsoLabel> expected = new HashMap<>();
+            dijkstra.search(snap.getClosestNode(), l -> expected.put(l.node, l));
+
+            CHShortestPathTree ch = new CHShortestPathTree(queryGraph, chGraph, reverseFlow).setSearchStatePool(pool);
+            ch.setTimeLimit(timeLimit);
+            Map<Integer, ShortestPathTree.IsoLabel> actual = new HashMap<>();
+            ch.search(snap.getClosestNode(), l -> {
+                assertFalse(actual.containsKey(l.node), msg);
+                actual.put(l.node, l);
+                if (l.parent != null)
+                    assertEquals(l.parent.node, queryGraph.getEdgeIteratorState(l.edge, l.node).getBaseNode(), msg);
+            });
+
+            assertEquals(expected.keySet(), actual.keySet(), msg);
+            for (ShortestPathTree.IsoLabel label : expected.values()) {
+                ShortestPathTree.IsoLabel chLabel = actual.get(label.node);
+                assertEquals(label.weight, chLabel.weight, 1.e-6, msg + ", node: " + label.node);
+                assertEquals(label.time, chLabel.time, 0.01 * label.time + 10, msg + ", node: " + label.node);
+                assertEquals(label.distance, chLabel.distance, 0.01 * label.distance + 1, msg + ", node: " + label.node);
+            }
+            // the labels above the limit depend on the search order, but the ones below are the same
+            assertEquals(nodes(dijkstra.getIsochroneEdges(timeLimit / 2)), nodes(ch.getIsochroneEdges(timeLimit / 2)), msg);
+        }
+    }
+
+    private static Set<Integer> nodes(Collection<ShortestPathTree.IsoLabel> labels) {
+        Set<Integer> result = new HashSet<>();
+        labels.forEach(l -> result.add(l.node));
+        return result;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.isochrone.algorithm;
+
+import com.graphhopper.util.PointList;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.*;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RasterIsochroneBuilderTest {
+    private final GeometryFactory geometryFactory = new GeometryFactory();
+
+    @Test
+    public void interpolateAlongLine() {
+        RasterIsochroneBuilder builder = new RasterIsochroneBuilder(0, 10);
+        // ~1.1km from west to east
+        builder.add(line(0, 0, 0, 0.01), 0, 100);
+        List<MultiPolygon> isolines = builder.computeIsolines(25, 50, 75);
+        assertEquals(3, isolines.size());
+        for (MultiPolygon isoline : isolines) {
+            assertEquals(1, isoline.getNumGeometries());
+            assertTrue(isoline.contains(point(0, 0.001)));
+        }
+        // the cells of the line are extended by one cell in every direction
+        assertEquals(0.005, isolines.get(1).getEnvelopeInternal().getMaxX(), 0.0002);
+        assertEquals(0, isolines.get(1).getEnvelopeInternal().getMinY(), 0.0002);
+        assertFalse(isolines.get(0).contains(point(0, 0.004)));
+        assertTrue(isolines.get(1).contains(point(0, 0.004)));
+        assertFalse(isolines.get(1).contains(point(0, 0.006)));
+        assertTrue(isolines.get(2).contains(point(0, 0.007)));
+        assertTrue(isolines.get(0).getArea() < isolines.get(1).getArea());
+        assertTrue(isolines.get(1).getArea() < isolines.get(2).getArea());
+    }
+
+    @Test
+    public void enclosedArea() {
+        RasterIsochroneBuilder builder = new RasterIsochroneBuilder(50, 10);
+        // a square of roads around an area without roads
+        builder.add(line(50, 10, 50, 10.01), 0, 10);
+        builder.add(line(50, 10.01, 50.01, 10.01), 10, 20);
+        builder.add(line(50.01, 10.01, 50.01, 10), 20, 30);
+        builder.add(line(50.01, 10, 50, 10), 30, 40);
+        MultiPolygon isoline = builder.computeIsolines(100).get(0);
+        assertEquals(1, isoline.getNumGeometries());
+        Polygon polygon = (Polygon) isoline.getGeometryN(0);
+        assertEquals(1, polygon.getNumInteriorRing());
+        assertFalse(polygon.contains(point(50.005, 10.005)));
+        assertTrue(geometryFactory.createPolygon(polygon.getExteriorRing().getCoordinates()).contains(point(50.005, 10.005)));
+
+        // half of the square is reached, so there is no hole
+        isoline = builder.computeIsolines(15).get(0);
+        assertEquals(0, ((Polygon) isoline.getGeometryN(0)).getNumInteriorRing());
+        assertTrue(isoline.contains(point(50.005, 10.01)));
+        assertFalse(isoline.contains(point(50.01, 10.005)));
+    }
+
+    @Test
+    public void separateAreas() {
+        RasterIsochroneBuilder builder = new RasterIsochroneBuilder(0, 10);
+        builder.add(line(0, 0, 0, 0.01), 0, 100);
+        builder.add(line(0.01, 0, 0.01, 0.01), 0, 100);
+        MultiPolygon isoline = builder.computeIsolines(50).get(0);
+        assertEquals(2, isoline.getNumGeometries());
+    }
+
+    @Test
+    public void tooManyCells() {
+        RasterIsochroneBuilder builder = new RasterIsochroneBuilder(0, 10).setMaxCells(1000);
+        assertThrows(IllegalArgumentException.class, () -> builder.add(line(0, 0, 0.1, 0.1), 0, 100));
+        // the bounding box is too large, even though there are not too many cells
+        RasterIsochroneBuilder other = new RasterIsochroneBuilder(0, 10).setMaxCells(1000);
+        other.add(0, 0, 0);
+        other.add(0.1, 0.1, 0);
+        assertThrows(IllegalArgumentException.class, () -> other.computeIsolines(1));
+    }
+
+    private PointList line(double lat1, double lon1, double lat2, double lon2) {
+        PointList pointList = new PointList();
+        pointList.add(lat1, lon1);
+        pointList.add(lat2, lon2);
+        return pointList;
+    }
+
+    private Point point(double lat, double lon) {
+        return geometryFactory.createPoint(new Coordinate(lon, lat));
+    }
+}
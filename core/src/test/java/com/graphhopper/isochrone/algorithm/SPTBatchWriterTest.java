@@ -0,0 +1,120 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.isochrone.algorithm;
+
+import com.graphhopper.storage.BaseGraph;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SPTBatchWriterTest {
+
+    @Test
+    public void writeBatches() throws IOException {
+        BaseGraph graph = new BaseGraph.Builder(4).create();
+        graph.getNodeAccess().setNode(0, 50.1, 10.1);
+        graph.getNodeAccess().setNode(1, 50.2, 10.2);
+        graph.getNodeAccess().setNode(2, 50.3, 10.3);
+        ShortestPathTree.IsoLabel start = new ShortestPathTree.IsoLabel(0, -1, 0, 0, 0, null);
+        ShortestPathTree.IsoLabel second = new ShortestPathTree.IsoLabel(1, 4, 10, 1000, 100.4, start);
+        ShortestPathTree.IsoLabel third = new ShortestPathTree.IsoLabel(2, 5, 20, 2000, 200.6, second);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // the batch is full after two labels, so the second batch only contains the third label
+        SPTBatchWriter writer = new SPTBatchWriter(graph.getNodeAccess(), List.of("node_id", "prev_node_id", "prev_edge_id", "distance", "latitude"), 2);
+        writer.start(out);
+        writer.accept(start);
+        writer.accept(second);
+        assertEquals(2, writer.getTotalRows());
+        writer.accept(third);
+        writer.finish();
+        assertEquals(3, writer.getTotalRows());
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals("GHSP", new String(in.readNBytes(4)));
+        assertEquals(SPTBatchWriter.VERSION, in.readInt());
+        List<String> columns = new ArrayList<>();
+        for (int i = in.readShort(); i > 0; i--)
+            columns.add(in.readUTF());
+        assertEquals(List.of("node_id", "prev_node_id", "prev_edge_id", "distance", "latitude"), columns);
+
+        assertEquals(List.of(List.of(0, 1), List.of(-1, 0), List.of(-1, -1), List.of(0, 100), List.of(501_000_000, 502_000_000)), readBatch(in, columns.size()));
+        assertEquals(List.of(List.of(2), List.of(1), List.of(4), List.of(201), List.of(503_000_000)), readBatch(in, columns.size()));
+        assertEquals(0, in.readInt());
+        assertEquals(-1, in.read());
+        graph.close();
+    }
+
+    @Test
+    public void oneWritePerBatch() throws IOException {
+        BaseGraph graph = new BaseGraph.Builder(4).create();
+        graph.getNodeAccess().setNode(0, 50.1, 10.1);
+        List<Integer> writes = new ArrayList<>();
+        OutputStream out = new OutputStream() {
+            @Override
+            public void write(int b) {
+                writes.add(1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                writes.add(len);
+            }
+        };
+        SPTBatchWriter writer = new SPTBatchWriter(graph.getNodeAccess(), List.of("node_id", "latitude"), 3);
+        writer.start(out);
+        writes.clear();
+        for (int i = 0; i < 4; i++)
+            writer.accept(new ShortestPathTree.IsoLabel(0, -1, 0, 0, 0, null));
+        // the full batch: rows + 3 * 2 values
+        assertEquals(List.of(4 + 24), writes);
+        writer.finish();
+        // the last batch and the end of the stream
+        assertEquals(List.of(4 + 24, 4 + 8 + 4), writes);
+        graph.close();
+    }
+
+    @Test
+    public void unknownColumn() {
+        BaseGraph graph = new BaseGraph.Builder(4).create();
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> new SPTBatchWriter(graph.getNodeAccess(), List.of("node_id", "street_name"), 10));
+        assertTrue(ex.getMessage().contains("street_name"), ex.getMessage());
+        graph.close();
+    }
+
+    private static List<List<Integer>> readBatch(DataInputStream in, int columnCount) throws IOException {
+        int rows = in.readInt();
+        List<List<Integer>> result = new ArrayList<>();
+        for (int column = 0; column < columnCount; column++) {
+            List<Integer> values = new ArrayList<>();
+            for (int row = 0; row < rows; row++)
+                values.add(in.readInt());
+            result.add(values);
+        }
+        return result;
+    }
+}
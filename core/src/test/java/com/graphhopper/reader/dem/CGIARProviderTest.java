@@ -22,6 +22,7 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -111,6 +112,24 @@ public class CGIARProviderTest {
         zipFile.delete();
     }
 
+    @Test
+    public void testReloadSeaLevelTile(@TempDir File cacheDir) {
+        instance = new CGIARProvider(cacheDir.getAbsolutePath());
+        // every tile closes the previous one
+        instance.setCacheMaxBytes(1);
+        instance.setDownloader(new Downloader("test GH") {
+            @Override
+            public void downloadFile(String url, String toFile) throws IOException {
+                throw new FileNotFoundException("xyz");
+            }
+        });
+        assertEquals(0, instance.getEle(46, -20), 1);
+        assertEquals(0, instance.getEle(16, -20), 1);
+        // the first tile is loaded from its file again and must not be read like a full tile
+        assertEquals(0, instance.getEle(46, -20), 1);
+        assertEquals(0, instance.getEle(46.5, -19.5), 1);
+    }
+
     @Disabled
     @Test
     public void testGetEle() {
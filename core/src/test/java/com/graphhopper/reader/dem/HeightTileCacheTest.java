@@ -0,0 +1,71 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader.dem;
+
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.util.Helper;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HeightTileCacheTest {
+
+    @Test
+    public void testEvictLeastRecentlyUsed() {
+        SRTMProvider provider = new SRTMProvider("./target/tmp/height-tile-cache");
+        provider.setDAType(DAType.RAM);
+        provider.setCacheMaxBytes(2 * Helper.MB);
+        HeightTileCache<Integer> cache = new HeightTileCache<>(provider);
+        cache.put(1, createTile(provider, "tile1"));
+        cache.put(2, createTile(provider, "tile2"));
+        assertEquals(0, cache.getEvictions());
+
+        // touch tile1 so that tile2 is the least recently used one
+        assertNotNull(cache.get(1));
+        cache.put(3, createTile(provider, "tile3"));
+        assertEquals(1, cache.getEvictions());
+        assertNull(cache.get(2));
+        assertNotNull(cache.get(1));
+        assertNotNull(cache.get(3));
+        // the evicted tile was closed and can be created again
+        assertNotNull(provider.getDirectory().create("tile2"));
+        provider.release();
+    }
+
+    @Test
+    public void testKeepNewTile() {
+        SRTMProvider provider = new SRTMProvider("./target/tmp/height-tile-cache");
+        provider.setDAType(DAType.RAM);
+        provider.setCacheMaxBytes(1);
+        HeightTileCache<Integer> cache = new HeightTileCache<>(provider);
+        cache.put(1, createTile(provider, "tile1"));
+        cache.put(2, createTile(provider, "tile2"));
+        assertEquals(1, cache.getEvictions());
+        assertNotNull(cache.get(2));
+        provider.release();
+    }
+
+    private static HeightTile createTile(TileBasedElevationProvider provider, String name) {
+        DataAccess heights = provider.getDirectory().create(name);
+        heights.create(1000);
+        HeightTile tile = new HeightTile(0, 0, 10, 10, 1e-6, 1, 1);
+        tile.setHeights(heights);
+        return tile;
+    }
+}
@@ -17,12 +17,17 @@
  */
 package com.graphhopper.reader.dem;
 
+import com.graphhopper.util.Downloader;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.file.Files;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -99,6 +104,25 @@ public class SRTMProviderTest {
         assertEquals(161, instance.getEle(55.8943144, -3), 1e-1);
     }
 
+    @Test
+    public void testReloadSeaLevelTile(@TempDir File cacheDir) throws IOException {
+        Files.copy(new File("./files/N49E011.hgt.zip").toPath(), new File(cacheDir, "N49E011.hgt.zip").toPath());
+        instance = new SRTMProvider(cacheDir.getAbsolutePath());
+        // every tile closes the previous one
+        instance.setCacheMaxBytes(1);
+        instance.setDownloader(new Downloader("test GH") {
+            @Override
+            public void downloadFile(String url, String toFile) throws IOException {
+                throw new FileNotFoundException("xyz");
+            }
+        });
+        assertEquals(0, instance.getEle(50.05, 11.9), 1e-1);
+        assertEquals(466, instance.getEle(49.968651, 11.574869), 1e-1);
+        // the tile that was not found is loaded from its file again and must not be read like a full tile
+        assertEquals(0, instance.getEle(50.05, 11.9), 1e-1);
+        assertEquals(466, instance.getEle(49.968651, 11.574869), 1e-1);
+    }
+
     @Disabled
     @Test
     public void testGetEle() {
@@ -31,9 +31,13 @@ import com.graphhopper.routing.TestProfiles;
 import com.graphhopper.routing.ev.*;
 import com.graphhopper.routing.util.*;
 import com.graphhopper.routing.util.countryrules.CountryRuleFactory;
+import com.graphhopper.routing.util.parsers.CarAccessParser;
+import com.graphhopper.routing.util.parsers.CarAverageSpeedParser;
 import com.graphhopper.routing.util.parsers.CountryParser;
 import com.graphhopper.routing.util.parsers.OSMBikeNetworkTagParser;
 import com.graphhopper.routing.util.parsers.OSMRoadAccessParser;
+import com.graphhopper.routing.util.parsers.OSMRoadClassParser;
+import com.graphhopper.routing.util.parsers.OSMTemporalAccessParser;
 import com.graphhopper.storage.*;
 import com.graphhopper.storage.index.LocationIndex;
 import com.graphhopper.storage.index.Snap;
@@ -45,6 +49,8 @@ import org.junit.jupiter.api.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
@@ -983,6 +989,122 @@ public class OSMReaderTest {
         assertEquals(Country.BGR, iter.get(countryEnc));
     }
 
+    @Test
+    public void testWayThreads() {
+        assertSameGraph(readAndorra(new OSMReaderConfig()), readAndorra(new OSMReaderConfig().setWayThreads(3)));
+    }
+
+    @Test
+    public void testWayThreadsConditionalAccess() throws IOException {
+        // the access parsers parse the dates of conditional restrictions, which must work when they run concurrently
+        String[] conditions = {"Mar 15-Oct 31", "2020 Mar 15-2021 Oct 31", "01.05-30.09", "Jul", "Mo-Fr", "Nov-Feb",
+                "2024 Jun", "Foo 3-Bar 4", "Sa-Su; PH", "08:00-18:00"};
+        File file = new File(dir, "conditional-access.osm.xml");
+        try (PrintWriter writer = new PrintWriter(file)) {
+            writer.println("<?xml version='1.0' encoding='UTF-8'?>");
+            writer.println("<osm version=\"0.6\">");
+            int ways = 5_000;
+            for (int i = 0; i <= ways; i++)
+                writer.println("<node id=\"" + (i + 1) + "\" lat=\"" + (50 + i * 0.0001) + "\" lon=\"10\"/>");
+            for (int i = 0; i < ways; i++) {
+                writer.println("<way id=\"" + (i + 1) + "\"><nd ref=\"" + (i + 1) + "\"/><nd ref=\"" + (i + 2) + "\"/>");
+                writer.println("<tag k=\"highway\" v=\"" + (i % 3 == 0 ? "pedestrian" : "residential") + "\"/>");
+                writer.println("<tag k=\"access\" v=\"no\"/>");
+                writer.println("<tag k=\"access:conditional\" v=\"" + (i % 2 == 0 ? "yes" : "no") + " @ (" + conditions[i % conditions.length] + ")\"/>");
+                writer.println("</way>");
+            }
+            writer.println("</osm>");
+        }
+
+        BooleanEncodedValue accessEnc = VehicleAccess.create("car");
+        EnumEncodedValue<CarTemporalAccess> temporalAccessEnc = CarTemporalAccess.create();
+        EncodingManager em = EncodingManager.start().add(accessEnc).add(Roundabout.create()).add(temporalAccessEnc).build();
+        BaseGraph expected = readConditionalAccess(em, file, new OSMReaderConfig());
+        BaseGraph graph = readConditionalAccess(em, file, new OSMReaderConfig().setWayThreads(4));
+        assertSameGraph(expected, graph);
+        int accessible = 0, temporalNo = 0;
+        AllEdgesIterator iter = graph.getAllEdges();
+        while (iter.next()) {
+            if (iter.get(accessEnc))
+                accessible++;
+            if (iter.get(temporalAccessEnc) == CarTemporalAccess.NO)
+                temporalNo++;
+        }
+        // make sure the dates were actually parsed, otherwise all edges would be inaccessible or the same
+        assertTrue(accessible > 0 && accessible < graph.getEdges(), "accessible: " + accessible);
+        assertTrue(temporalNo > 0 && temporalNo < graph.getEdges(), "temporal access no: " + temporalNo);
+    }
+
+    private BaseGraph readConditionalAccess(EncodingManager em, File file, OSMReaderConfig config) {
+        EnumEncodedValue<CarTemporalAccess> temporalAccessEnc = em.getEnumEncodedValue(CarTemporalAccess.KEY, CarTemporalAccess.class);
+        OSMParsers osmParsers = new OSMParsers()
+                .addWayTagParser(new CarAccessParser(em, new PMap()))
+                .addWayTagParser(new OSMTemporalAccessParser(CarTemporalAccess.CONDITIONALS,
+                        (edgeId, edgeIntAccess, b) -> temporalAccessEnc.setEnum(false, edgeId, edgeIntAccess, b ? CarTemporalAccess.YES : CarTemporalAccess.NO),
+                        "2024-06-01"));
+        BaseGraph graph = new BaseGraph.Builder(em).create();
+        OSMReader reader = new OSMReader(graph, osmParsers, config);
+        reader.setFile(file);
+        try {
+            reader.readGraph();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return graph;
+    }
+
+    @Test
+    public void testOffHeapNodeIndex() {
+        assertSameGraph(readAndorra(new OSMReaderConfig()), readAndorra(new OSMReaderConfig().setOffHeapNodeIndex(true)));
+    }
+
+    private void assertSameGraph(BaseGraph expected, BaseGraph graph) {
+        assertEquals(expected.getNodes(), graph.getNodes());
+        assertEquals(expected.getEdges(), graph.getEdges());
+        for (int node = 0; node < graph.getNodes(); node++) {
+            assertEquals(expected.getNodeAccess().getLat(node), graph.getNodeAccess().getLat(node));
+            assertEquals(expected.getNodeAccess().getLon(node), graph.getNodeAccess().getLon(node));
+        }
+        for (int edge = 0; edge < graph.getEdges(); edge++) {
+            EdgeIteratorState expectedEdge = expected.getEdgeIteratorState(edge, Integer.MIN_VALUE);
+            EdgeIteratorState edgeState = graph.getEdgeIteratorState(edge, Integer.MIN_VALUE);
+            assertEquals(expectedEdge.getBaseNode(), edgeState.getBaseNode());
+            assertEquals(expectedEdge.getAdjNode(), edgeState.getAdjNode());
+            assertEquals(expectedEdge.getDistance(), edgeState.getDistance());
+            assertEquals(expectedEdge.getFlags(), edgeState.getFlags());
+            assertEquals(expectedEdge.getKeyValues(), edgeState.getKeyValues());
+            assertEquals(expectedEdge.fetchWayGeometry(FetchMode.ALL), edgeState.fetchWayGeometry(FetchMode.ALL));
+        }
+    }
+
+    private BaseGraph readAndorra(OSMReaderConfig config) {
+        EnumEncodedValue<Country> countryEnc = Country.create();
+        EnumEncodedValue<RoadClass> roadClassEnc = RoadClass.create();
+        EnumEncodedValue<RouteNetwork> bikeNetworkEnc = RouteNetwork.create(BikeNetwork.KEY);
+        EncodingManager em = EncodingManager.start()
+                .add(VehicleSpeed.create("car", 5, 5, true)).add(VehicleAccess.create("car"))
+                .add(Roundabout.create()).add(FerrySpeed.create())
+                .add(countryEnc).add(roadClassEnc).add(bikeNetworkEnc)
+                .build();
+        OSMParsers osmParsers = new OSMParsers()
+                .addWayTagParser(new CountryParser(countryEnc))
+                .addWayTagParser(new OSMRoadClassParser(roadClassEnc))
+                .addWayTagParser(new CarAccessParser(em, new PMap()))
+                .addWayTagParser(new CarAverageSpeedParser(em))
+                .addRelationTagParser(relConf -> new OSMBikeNetworkTagParser(bikeNetworkEnc, relConf, "bicycle"));
+        BaseGraph graph = new BaseGraph.Builder(em).create();
+        OSMReader reader = new OSMReader(graph, osmParsers, config);
+        reader.setCountryRuleFactory(new CountryRuleFactory());
+        reader.setAreaIndex(createCountryIndex());
+        reader.setFile(new File("../core/files/andorra.osm.pbf"));
+        try {
+            reader.readGraph();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return graph;
+    }
+
     @Test
     public void testFixWayName() {
         assertEquals("B8, B12", OSMReader.fixWayName("B8;B12"));
@@ -77,6 +77,9 @@ public class RandomizedRoutingTest {
                     FixtureSupplier.create(Algo.CH_DIJKSTRA, true, false, NODE_BASED),
                     FixtureSupplier.create(Algo.LM_UNIDIR, false, true, NODE_BASED),
                     FixtureSupplier.create(Algo.LM_BIDIR, false, true, NODE_BASED),
+                    FixtureSupplier.create(Algo.DIJKSTRA_POOLED, false, false, NODE_BASED),
+                    FixtureSupplier.create(Algo.ASTAR_BIDIR_POOLED, false, false, NODE_BASED),
+                    FixtureSupplier.create(Algo.LM_BIDIR_POOLED, false, true, NODE_BASED),
                     FixtureSupplier.create(Algo.DIJKSTRA, false, false, EDGE_BASED),
                     FixtureSupplier.create(Algo.ASTAR_UNIDIR, false, false, EDGE_BASED),
                     FixtureSupplier.create(Algo.ASTAR_BIDIR, false, false, EDGE_BASED),
@@ -84,6 +87,9 @@ public class RandomizedRoutingTest {
                     FixtureSupplier.create(Algo.CH_DIJKSTRA, true, false, EDGE_BASED),
                     FixtureSupplier.create(Algo.LM_UNIDIR, false, true, EDGE_BASED),
                     FixtureSupplier.create(Algo.LM_BIDIR, false, true, EDGE_BASED),
+                    FixtureSupplier.create(Algo.DIJKSTRA_POOLED, false, false, EDGE_BASED),
+                    FixtureSupplier.create(Algo.ASTAR_BIDIR_POOLED, false, false, EDGE_BASED),
+                    FixtureSupplier.create(Algo.LM_BIDIR_POOLED, false, true, EDGE_BASED),
                     FixtureSupplier.create(Algo.PERFECT_ASTAR, false, false, NODE_BASED)
             ).map(Arguments::of);
         }
@@ -121,6 +127,8 @@ public class RandomizedRoutingTest {
         private final int maxTurnCosts;
         private Weighting weighting;
         private final EncodingManager encodingManager;
+        // shared by all queries such that the search state is actually reused
+        private final SearchStatePool searchStatePool = new SearchStatePool();
         private RoutingCHGraph routingCHGraph;
         private LandmarkStorage lm;
 
@@ -177,6 +185,11 @@ public class RandomizedRoutingTest {
                     return new AStar(graph, graph.wrapWeighting(weighting), traversalMode);
                 case ASTAR_BIDIR:
                     return new AStarBidirection(graph, graph.wrapWeighting(weighting), traversalMode);
+                case DIJKSTRA_POOLED:
+                    return new DijkstraPooled(graph, graph.wrapWeighting(weighting), traversalMode, searchStatePool);
+                case ASTAR_BIDIR_POOLED:
+                    return new RoutingAlgorithmFactorySimple().setSearchStatePool(searchStatePool)
+                            .createAlgo(graph, weighting, new AlgorithmOptions().setAlgorithm(ASTAR_BI).setTraversalMode(traversalMode));
                 case CH_DIJKSTRA: {
                     CHRoutingAlgorithmFactory algoFactory = graph instanceof QueryGraph
                             ? new CHRoutingAlgorithmFactory(new QueryRoutingCHGraph(routingCHGraph, (QueryGraph) graph))
@@ -191,6 +204,9 @@ public class RandomizedRoutingTest {
                 }
                 case LM_BIDIR:
                     return new LMRoutingAlgorithmFactory(lm).createAlgo(graph, weighting, new AlgorithmOptions().setAlgorithm(ASTAR_BI).setTraversalMode(traversalMode));
+                case LM_BIDIR_POOLED:
+                    return new LMRoutingAlgorithmFactory(lm).setSearchStatePool(searchStatePool)
+                            .createAlgo(graph, weighting, new AlgorithmOptions().setAlgorithm(ASTAR_BI).setTraversalMode(traversalMode));
                 case LM_UNIDIR:
                     return new LMRoutingAlgorithmFactory(lm).createAlgo(graph, weighting, new AlgorithmOptions().setAlgorithm(ASTAR).setTraversalMode(traversalMode));
                 case PERFECT_ASTAR: {
@@ -213,7 +229,10 @@ public class RandomizedRoutingTest {
         CH_DIJKSTRA,
         LM_BIDIR,
         LM_UNIDIR,
-        PERFECT_ASTAR
+        PERFECT_ASTAR,
+        DIJKSTRA_POOLED,
+        ASTAR_BIDIR_POOLED,
+        LM_BIDIR_POOLED
     }
 
     private static class RepeatedFixtureProvider implements ArgumentsProvider {
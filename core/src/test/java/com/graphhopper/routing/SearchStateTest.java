@@ -0,0 +1,110 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SearchStateTest {
+
+    @Test
+    public void pushPollUpdate() {
+        SearchState state = new SearchState(10);
+        for (int i = 0; i < 5; i++) {
+            state.set(i, i, i, 10 - i, SearchState.NO_PARENT);
+            state.push(i, 10 - i);
+        }
+        assertEquals(5, state.getHeapSize());
+        assertEquals(4, state.peekId());
+        state.push(2, 1);
+        assertEquals(2, state.poll());
+        assertEquals(4, state.poll());
+        state.push(0, 5.5);
+        assertEquals(0, state.poll());
+        assertEquals(3, state.poll());
+        assertEquals(1, state.poll());
+        assertTrue(state.isHeapEmpty());
+        // the entries are kept after polling
+        assertTrue(state.contains(0));
+        assertEquals(10, state.getWeight(0));
+        assertFalse(state.contains(7));
+    }
+
+    @Test
+    public void resetInvalidatesEntries() {
+        SearchState state = new SearchState(4);
+        state.set(3, 1, 2, 1.5, 0);
+        state.push(3, 1.5);
+        state.reset(4);
+        assertFalse(state.contains(3));
+        assertTrue(state.isHeapEmpty());
+        // pushing the same id again must work because the old heap position was invalidated as well
+        state.set(3, 1, 2, 0.5, SearchState.NO_PARENT);
+        state.push(3, 0.5);
+        assertEquals(1, state.getHeapSize());
+        assertEquals(3, state.poll());
+
+        state.reset(20);
+        assertTrue(state.getCapacity() >= 20);
+        state.set(19, 1, 2, 0.5, SearchState.NO_PARENT);
+        assertTrue(state.contains(19));
+        assertFalse(state.contains(3));
+    }
+
+    @Test
+    public void randomPolls() {
+        Random rnd = new Random(123);
+        SearchState state = new SearchState(100);
+        for (int round = 0; round < 10; round++) {
+            state.reset(100);
+            double[] keys = new double[100];
+            for (int i = 0; i < 100; i++) {
+                keys[i] = rnd.nextDouble();
+                state.set(i, i, i, keys[i], SearchState.NO_PARENT);
+                state.push(i, keys[i]);
+            }
+            for (int i = 0; i < 30; i++) {
+                int id = rnd.nextInt(100);
+                keys[id] = rnd.nextDouble();
+                state.push(id, keys[id]);
+            }
+            double prev = Double.NEGATIVE_INFINITY;
+            while (!state.isHeapEmpty()) {
+                double key = state.peekKey();
+                assertEquals(keys[state.poll()], key);
+                assertTrue(key >= prev);
+                prev = key;
+            }
+        }
+    }
+
+    @Test
+    public void poolReusesStates() {
+        SearchStatePool pool = new SearchStatePool();
+        SearchState state = pool.acquire(10);
+        state.set(5, 1, 2, 3, SearchState.NO_PARENT);
+        pool.release(state);
+        SearchState other = pool.acquire(10);
+        assertSame(state, other);
+        assertFalse(other.contains(5));
+        assertNotSame(other, pool.acquire(10));
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.config.Profile;
+import com.graphhopper.routing.Dijkstra;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.WeightingFactory;
+import com.graphhopper.routing.ev.DecimalEncodedValue;
+import com.graphhopper.routing.ev.DecimalEncodedValueImpl;
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.SpeedWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.CCHStorage;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.storage.RoutingCHGraph;
+import com.graphhopper.util.CustomModel;
+import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.PMap;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CustomizableCHTest {
+
+    @Test
+    public void sameRoutesAsDijkstra() {
+        DecimalEncodedValue speedEnc = new DecimalEncodedValueImpl("speed", 7, 1, true);
+        DecimalEncodedValue otherSpeedEnc = new DecimalEncodedValueImpl("other_speed", 7, 1, true);
+        EncodingManager em = EncodingManager.start().add(speedEnc).add(otherSpeedEnc).build();
+        BaseGraph graph = new BaseGraph.Builder(em).create();
+        Random rnd = new Random(42);
+        GHUtility.buildRandomGraph(graph, rnd, 500, 2.5, true, speedEnc, null, 0.8, 0.8);
+        AllEdgesIterator iter = graph.getAllEdges();
+        while (iter.next())
+            iter.set(otherSpeedEnc, rnd.nextInt(100), rnd.nextInt(100));
+        graph.freeze();
+
+        CCHStorage storage = new CCHStorage(new RAMDirectory(), -1);
+        new PrepareCustomizableCH(graph, storage).setLeafSize(4).doWork();
+        assertEquals(500, storage.getNodes());
+        CustomizableCH cch = new CustomizableCH(graph, storage, List.of("profile"), null, 1).setThreads(2);
+        // the same topology works for different weightings
+        for (Weighting weighting : List.of(new SpeedWeighting(speedEnc), new SpeedWeighting(otherSpeedEnc))) {
+            RoutingCHGraph chGraph = cch.customize(weighting);
+            for (int i = 0; i < 200; i++) {
+                int from = rnd.nextInt(graph.getNodes());
+                int to = rnd.nextInt(graph.getNodes());
+                Path expected = new Dijkstra(graph, weighting, TraversalMode.NODE_BASED).calcPath(from, to);
+                Path path = new CHRoutingAlgorithmFactory(chGraph).createAlgo(new PMap()).calcPath(from, to);
+                assertEquals(expected.isFound(), path.isFound(), from + "->" + to);
+                if (!expected.isFound())
+                    continue;
+                // the shortcut weights are rounded
+                assertEquals(expected.getWeight(), path.getWeight(), 1.e-2, from + "->" + to);
+                assertEquals(expected.getDistance(), path.getDistance(), 1, from + "->" + to);
+            }
+        }
+    }
+
+    @Test
+    public void customizationQueueIsBounded() throws InterruptedException {
+        DecimalEncodedValue speedEnc = new DecimalEncodedValueImpl("speed", 7, 1, true);
+        BaseGraph graph = new BaseGraph.Builder(EncodingManager.start().add(speedEnc).build()).create();
+        GHUtility.buildRandomGraph(graph, new Random(42), 100, 2.5, true, speedEnc, null, 0.8, 0.8);
+        graph.freeze();
+        CCHStorage storage = new CCHStorage(new RAMDirectory(), -1);
+        new PrepareCustomizableCH(graph, storage).setLeafSize(4).doWork();
+
+        CountDownLatch blocked = new CountDownLatch(1);
+        AtomicInteger customizations = new AtomicInteger();
+        WeightingFactory weightingFactory = (profile, hints, disableTurnCosts) -> {
+            customizations.incrementAndGet();
+            try {
+                blocked.await();
+            } catch (InterruptedException ex) {
+                throw new RuntimeException(ex);
+            }
+            return new SpeedWeighting(speedEnc);
+        };
+        CustomizableCH cch = new CustomizableCH(graph, storage, List.of("profile"), weightingFactory, 1);
+        Profile profile = new Profile("profile");
+        CustomModel first = new CustomModel().setDistanceInfluence(1d);
+        CustomModel second = new CustomModel().setDistanceInfluence(2d);
+        CustomModel third = new CustomModel().setDistanceInfluence(3d);
+        assertNull(cch.getOrCustomize(profile, first));
+        for (int i = 0; i < 100 && customizations.get() == 0; i++)
+            Thread.sleep(10);
+        // the first customization is running and there is room for a single waiting one, so the third is dropped
+        assertNull(cch.getOrCustomize(profile, second));
+        assertNull(cch.getOrCustomize(profile, third));
+        blocked.countDown();
+        for (int i = 0; i < 100 && cch.getOrCustomize(profile, second) == null; i++)
+            Thread.sleep(10);
+        assertNotNull(cch.getOrCustomize(profile, second));
+        assertEquals(2, customizations.get());
+        // it can be requested again later
+        assertNull(cch.getOrCustomize(profile, third));
+        for (int i = 0; i < 100 && cch.getOrCustomize(profile, third) == null; i++)
+            Thread.sleep(10);
+        assertNotNull(cch.getOrCustomize(profile, third));
+        cch.close();
+    }
+}
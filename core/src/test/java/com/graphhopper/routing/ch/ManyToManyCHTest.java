@@ -0,0 +1,146 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.routing.Dijkstra;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.SearchStatePool;
+import com.graphhopper.routing.ev.DecimalEncodedValue;
+import com.graphhopper.routing.ev.DecimalEncodedValueImpl;
+import com.graphhopper.routing.ev.TurnCost;
+import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.querygraph.QueryRoutingCHGraph;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.SpeedWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.CHConfig;
+import com.graphhopper.storage.RoutingCHGraph;
+import com.graphhopper.storage.RoutingCHGraphImpl;
+import com.graphhopper.storage.index.LocationIndexTree;
+import com.graphhopper.storage.index.Snap;
+import com.graphhopper.util.GHUtility;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ManyToManyCHTest {
+    private final DecimalEncodedValue speedEnc = new DecimalEncodedValueImpl("speed", 5, 5, true);
+    private final DecimalEncodedValue turnCostEnc = TurnCost.create("car", 10);
+    private final EncodingManager encodingManager = EncodingManager.start().add(speedEnc).addTurnCostEncodedValue(turnCostEnc).build();
+    private final BaseGraph graph = new BaseGraph.Builder(encodingManager).withTurnCosts(true).create();
+
+    @Test
+    public void simpleMatrix() {
+        // 0-1-2
+        //   |
+        //   3
+        graph.edge(0, 1).setDistance(100).set(speedEnc, 10, 10);
+        graph.edge(1, 2).setDistance(200).set(speedEnc, 10, 10);
+        graph.edge(1, 3).setDistance(300).set(speedEnc, 10, 0);
+        // node 4 is not connected
+        graph.getNodeAccess().setNode(4, 1, 1);
+        graph.freeze();
+        CHConfig chConfig = CHConfig.nodeBased("p", new SpeedWeighting(speedEnc));
+        PrepareContractionHierarchies.Result res = PrepareContractionHierarchies.fromGraph(graph, chConfig).doWork();
+        RoutingCHGraph chGraph = RoutingCHGraphImpl.fromGraph(graph, res.getCHStorage(), res.getCHConfig());
+
+        ManyToManyCH.Matrix matrix = new ManyToManyCH(chGraph).calcMatrix(new int[]{0, 3, 2}, new int[]{2, 3, 4, 0});
+        assertEquals(30, matrix.getWeight(0, 0), 1.e-6);
+        assertEquals(300, matrix.getDistance(0, 0), 1.e-6);
+        assertEquals(30_000, matrix.getTime(0, 0));
+        assertEquals(40, matrix.getWeight(0, 1), 1.e-6);
+        assertEquals(400, matrix.getDistance(0, 1), 1.e-6);
+        assertEquals(0, matrix.getWeight(2, 0), 1.e-6);
+        assertEquals(0, matrix.getTime(2, 0));
+        assertEquals(30, matrix.getWeight(2, 3), 1.e-6);
+        // the edge 1-3 is a one-way
+        assertFalse(matrix.isConnected(1, 0));
+        assertEquals(Long.MAX_VALUE, matrix.getTime(1, 0));
+        assertTrue(Double.isInfinite(matrix.getDistance(1, 3)));
+        for (int source = 0; source < 3; source++)
+            assertFalse(matrix.isConnected(source, 2));
+    }
+
+    @Test
+    public void randomNodeBased() {
+        runRandomTest(TraversalMode.NODE_BASED, Double.POSITIVE_INFINITY);
+    }
+
+    @Test
+    public void randomEdgeBased() {
+        runRandomTest(TraversalMode.EDGE_BASED, 40);
+    }
+
+    @Test
+    public void randomEdgeBasedNoUTurns() {
+        runRandomTest(TraversalMode.EDGE_BASED, Double.POSITIVE_INFINITY);
+    }
+
+    private void runRandomTest(TraversalMode traversalMode, double uTurnCosts) {
+        long seed = System.nanoTime();
+        Random rnd = new Random(seed);
+        // no offset, because the query graph would change the paths otherwise, see RandomCHRoutingTest
+        GHUtility.buildRandomGraph(graph, rnd, 100, 2.5, true, speedEnc, null, 0.9, 0);
+        if (traversalMode.isEdgeBased())
+            GHUtility.addRandomTurnCosts(graph, seed, null, turnCostEnc, 10, graph.getTurnCostStorage());
+        LocationIndexTree locationIndex = new LocationIndexTree(graph, graph.getDirectory());
+        locationIndex.prepareIndex();
+        graph.freeze();
+        CHConfig chConfig = traversalMode.isEdgeBased()
+                ? CHConfig.edgeBased("p", new SpeedWeighting(speedEnc, turnCostEnc, graph.getTurnCostStorage(), uTurnCosts))
+                : CHConfig.nodeBased("p", new SpeedWeighting(speedEnc));
+        PrepareContractionHierarchies.Result res = PrepareContractionHierarchies.fromGraph(graph, chConfig).doWork();
+        RoutingCHGraph chGraph = RoutingCHGraphImpl.fromGraph(graph, res.getCHStorage(), res.getCHConfig());
+
+        // the search state is reused for all rounds, even though the query graphs differ
+        SearchStatePool pool = new SearchStatePool();
+        for (int round = 0; round < 5; round++) {
+            List<Snap> snaps = GHUtility.createRandomSnaps(graph.getBounds(), locationIndex, rnd, 10, false, EdgeFilter.ALL_EDGES);
+            QueryGraph queryGraph = QueryGraph.create(graph, snaps);
+            Weighting weighting = queryGraph.wrapWeighting(chConfig.getWeighting());
+            int[] sources = new int[15];
+            int[] targets = new int[12];
+            for (int i = 0; i < sources.length; i++)
+                sources[i] = rnd.nextInt(queryGraph.getNodes());
+            for (int i = 0; i < targets.length; i++)
+                targets[i] = rnd.nextInt(queryGraph.getNodes());
+
+            ManyToManyCH.Matrix matrix = new ManyToManyCH(new QueryRoutingCHGraph(chGraph, queryGraph))
+                    .setSearchStatePool(pool).calcMatrix(sources, targets);
+            for (int s = 0; s < sources.length; s++) {
+                for (int t = 0; t < targets.length; t++) {
+                    Path refPath = new Dijkstra(queryGraph, weighting, traversalMode).calcPath(sources[s], targets[t]);
+                    String msg = "seed: " + seed + ", " + sources[s] + "->" + targets[t];
+                    assertEquals(refPath.isFound(), matrix.isConnected(s, t), msg);
+                    if (!refPath.isFound())
+                        continue;
+                    assertEquals(refPath.getWeight(), matrix.getWeight(s, t), 1.e-2, msg);
+                    // there might be several paths with the same weight, so we only check the time and distance roughly
+                    assertEquals(refPath.getTime(), matrix.getTime(s, t), 0.1 * refPath.getTime() + 10, msg);
+                    assertEquals(refPath.getDistance(), matrix.getDistance(s, t), 0.1 * refPath.getDistance() + 1, msg);
+                }
+            }
+        }
+    }
+}
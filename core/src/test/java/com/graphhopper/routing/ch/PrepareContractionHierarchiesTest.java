@@ -576,6 +576,38 @@ public class PrepareContractionHierarchiesTest {
         }
     }
 
+    @Test
+    public void testParallelContraction() {
+        int numNodes = 5_000;
+        long seed = System.nanoTime();
+        Random rnd = new Random(seed);
+        GHUtility.buildRandomGraph(g, rnd, numNodes, 1.3, true, speedEnc, null, 0.7, 0.8);
+        g.freeze();
+
+        PrepareContractionHierarchies.Result resTwoThreads = PrepareContractionHierarchies.fromGraph(g, CHConfig.nodeBased("c2", weighting))
+                .setParams(new PMap().putObject(CHParameters.CONTRACTION_THREADS, 2).putObject(CHParameters.INDEPENDENT_SET_SIZE, 100))
+                .doWork();
+        PrepareContractionHierarchies.Result resFourThreads = PrepareContractionHierarchies.fromGraph(g, CHConfig.nodeBased("c4", weighting))
+                .setParams(new PMap().putObject(CHParameters.CONTRACTION_THREADS, 4).putObject(CHParameters.INDEPENDENT_SET_SIZE, 100))
+                .doWork();
+        // the result does not depend on the number of threads
+        assertEquals(resTwoThreads.getShortcuts(), resFourThreads.getShortcuts(), "seed: " + seed);
+        for (int node = 0; node < numNodes; node++) {
+            CHStorage s2 = resTwoThreads.getCHStorage();
+            CHStorage s4 = resFourThreads.getCHStorage();
+            assertEquals(s2.getLevel(s2.toNodePointer(node)), s4.getLevel(s4.toNodePointer(node)), "seed: " + seed);
+        }
+
+        RoutingCHGraph chGraph = RoutingCHGraphImpl.fromGraph(g, resFourThreads.getCHStorage(), resFourThreads.getCHConfig());
+        for (int i = 0; i < 200; ++i) {
+            int from = rnd.nextInt(numNodes);
+            int to = rnd.nextInt(numNodes);
+            double dijkstraWeight = new Dijkstra(g, weighting, TraversalMode.NODE_BASED).calcPath(from, to).getWeight();
+            double chWeight = new CHRoutingAlgorithmFactory(chGraph).createAlgo(new PMap()).calcPath(from, to).getWeight();
+            assertEquals(dijkstraWeight, chWeight, 1.e-1, "seed: " + seed + ", from: " + from + ", to: " + to);
+        }
+    }
+
     private void checkPath(BaseGraph g, CHConfig c, int expShortcuts, double expDistance, IntIndexedContainer expNodes, int[] nodeOrdering) {
         PrepareContractionHierarchies prepare = createPrepareContractionHierarchies(g, c);
         useNodeOrdering(prepare, nodeOrdering);
@@ -30,6 +30,7 @@ import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.BaseGraph;
 import com.graphhopper.storage.Directory;
 import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.util.GHUtility;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -37,6 +38,7 @@ import org.junit.jupiter.api.Test;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 
 import static java.util.Collections.emptyList;
 import static org.junit.jupiter.api.Assertions.*;
@@ -240,4 +242,30 @@ public class LandmarkStorageTest {
         storage.createLandmarks();
         assertEquals(3, storage.getSubnetworksWithLandmarks());
     }
+
+    @Test
+    public void testMultipleThreadsGiveSameResult() {
+        GHUtility.buildRandomGraph(graph, new Random(42), 300, 2.2, true, speedEnc, null, 0.8, 0.8);
+        Weighting weighting = new SpeedWeighting(speedEnc);
+        subnetworkRemoval(weighting, 5);
+
+        LandmarkStorage single = new LandmarkStorage(graph, encodingManager, new RAMDirectory(), new LMConfig("car", weighting), 8);
+        single.setMinimumNodes(2);
+        single.createLandmarks();
+
+        LandmarkStorage multi = new LandmarkStorage(graph, encodingManager, new RAMDirectory(), new LMConfig("car", weighting), 8);
+        multi.setMinimumNodes(2);
+        multi.setPreparationThreads(4);
+        multi.createLandmarks();
+
+        assertEquals(single.getSubnetworksWithLandmarks(), multi.getSubnetworksWithLandmarks());
+        for (int sn = 1; sn < single.getSubnetworksWithLandmarks(); sn++)
+            assertEquals(Arrays.toString(single.getLandmarks(sn)), Arrays.toString(multi.getLandmarks(sn)));
+        for (int node = 0; node < graph.getNodes(); node++) {
+            for (int lm = 0; lm < 8; lm++) {
+                assertEquals(single.getFromWeight(lm, node), multi.getFromWeight(lm, node));
+                assertEquals(single.getToWeight(lm, node), multi.getToWeight(lm, node));
+            }
+        }
+    }
 }
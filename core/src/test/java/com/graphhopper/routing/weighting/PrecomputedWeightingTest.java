@@ -0,0 +1,123 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.weighting;
+
+import com.graphhopper.routing.ev.*;
+import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.weighting.custom.CustomModelParser;
+import com.graphhopper.routing.weighting.custom.CustomWeighting;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.EdgeWeightStorage;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.storage.index.Snap;
+import com.graphhopper.util.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static com.graphhopper.json.Statement.Else;
+import static com.graphhopper.json.Statement.If;
+import static com.graphhopper.json.Statement.Op.LIMIT;
+import static com.graphhopper.json.Statement.Op.MULTIPLY;
+import static com.graphhopper.routing.weighting.TurnCostProvider.NO_TURN_COST_PROVIDER;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrecomputedWeightingTest {
+
+    @Test
+    public void sameWeights() {
+        BooleanEncodedValue accessEnc = VehicleAccess.create("car");
+        DecimalEncodedValue speedEnc = VehicleSpeed.create("car", 5, 5, true);
+        EnumEncodedValue<RoadClass> roadClassEnc = RoadClass.create();
+        EncodingManager em = EncodingManager.start().add(accessEnc).add(speedEnc).add(roadClassEnc).build();
+        BaseGraph graph = new BaseGraph.Builder(em).create();
+        NodeAccess na = graph.getNodeAccess();
+        na.setNode(0, 50.00, 10.00);
+        na.setNode(1, 50.00, 10.01);
+        na.setNode(2, 50.01, 10.01);
+        na.setNode(3, 50.01, 10.02);
+        graph.edge(0, 1).setDistance(716).set(accessEnc, true, true).set(speedEnc, 50, 100);
+        graph.edge(2, 1).setDistance(1112).set(accessEnc, true, false).set(speedEnc, 30, 30).set(roadClassEnc, RoadClass.PRIMARY);
+        graph.edge(3, 0).setDistance(1500).set(accessEnc, true, true).set(speedEnc, 10, 20);
+        graph.edge(2, 3).setDistance(716).set(accessEnc, false, true).set(speedEnc, 60, 45).set(roadClassEnc, RoadClass.RESIDENTIAL);
+
+        CustomModel customModel = new CustomModel().setDistanceInfluence(70d);
+        customModel.addToPriority(If("!car_access", MULTIPLY, "0"));
+        customModel.addToPriority(If("road_class == PRIMARY", MULTIPLY, "0.5"));
+        customModel.addToSpeed(If("true", LIMIT, "car_average_speed"));
+        Weighting weighting = CustomModelParser.createWeighting(em, NO_TURN_COST_PROVIDER, customModel);
+
+        EdgeWeightStorage storage = new EdgeWeightStorage(new RAMDirectory(), "car", -1);
+        PrecomputedWeighting.calcWeights(graph, weighting, storage);
+        PrecomputedWeighting precomputed = new PrecomputedWeighting(weighting, storage);
+        assertEquals(4, storage.getEdges());
+        assertSameWeights(graph, weighting, precomputed);
+
+        // the virtual edges are not precomputed, but their weights are still calculated
+        Snap snap = new Snap(50.001, 10.005);
+        snap.setClosestEdge(graph.getEdgeIteratorState(0, 1));
+        snap.setWayIndex(0);
+        snap.setSnappedPosition(Snap.Position.EDGE);
+        snap.calcSnappedPoint(DistanceCalcEarth.DIST_EARTH);
+        QueryGraph queryGraph = QueryGraph.create(graph, snap);
+        assertSameWeights(queryGraph, weighting, precomputed);
+
+        // a query model that only multiplies priority and speed is applied on top of the precomputed weights
+        CustomModel queryModel = new CustomModel().setDistanceInfluence(20d);
+        queryModel.addToPriority(If("road_class == RESIDENTIAL", MULTIPLY, "0.8"));
+        queryModel.addToSpeed(If("road_class == PRIMARY", MULTIPLY, "0.5"));
+        queryModel.addToSpeed(Else(MULTIPLY, "0.9"));
+        Weighting merged = CustomModelParser.createWeighting(em, NO_TURN_COST_PROVIDER, CustomModel.merge(customModel, queryModel));
+        CustomWeighting.Parameters deltaParameters = CustomModelParser.createDeltaParameters(customModel, queryModel, em);
+        assertNotNull(deltaParameters);
+        Weighting delta = new PrecomputedDeltaWeighting(merged, storage, 70, deltaParameters);
+        assertSameWeights(graph, merged, delta);
+        assertSameWeights(queryGraph, merged, delta);
+
+        queryModel = new CustomModel();
+        queryModel.addToPriority(If("road_class == RESIDENTIAL", MULTIPLY, "0"));
+        merged = CustomModelParser.createWeighting(em, NO_TURN_COST_PROVIDER, CustomModel.merge(customModel, queryModel));
+        delta = new PrecomputedDeltaWeighting(merged, storage, 70, CustomModelParser.createDeltaParameters(customModel, queryModel, em));
+        assertSameWeights(graph, merged, delta);
+
+        // limits or blocks do not commute with the statements of the base model
+        queryModel = new CustomModel();
+        queryModel.addToSpeed(If("true", LIMIT, "20"));
+        assertNull(CustomModelParser.createDeltaParameters(customModel, queryModel, em));
+        queryModel = new CustomModel();
+        queryModel.addToPriority(If("road_class == PRIMARY", List.of(If("car_average_speed > 20", MULTIPLY, "0.5"))));
+        assertNull(CustomModelParser.createDeltaParameters(customModel, queryModel, em));
+    }
+
+    private static void assertSameWeights(Graph graph, Weighting expected, Weighting weighting) {
+        EdgeExplorer explorer = graph.createEdgeExplorer();
+        for (int node = 0; node < graph.getNodes(); node++) {
+            EdgeIterator iter = explorer.setBaseNode(node);
+            while (iter.next()) {
+                for (boolean reverse : new boolean[]{false, true}) {
+                    double weight = expected.calcEdgeWeight(iter, reverse);
+                    // the weights are stored as floats
+                    assertEquals(weight, weighting.calcEdgeWeight(iter, reverse), weight * 1.e-6, iter + ", reverse: " + reverse);
+                }
+            }
+        }
+    }
+}
@@ -4,7 +4,7 @@ import org.junit.jupiter.api.Test;
 
 import java.util.LinkedHashMap;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 
 class GHDirectoryTest {
 
@@ -33,4 +33,19 @@ class GHDirectoryTest {
         assertEquals(DAType.MMAP, dir.getDefaultType("nodes_ch_car", false));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testReadOnly() {
+        GHDirectory dir = new GHDirectory("", DAType.MMAP_RO).setReadOnly(true);
+        LinkedHashMap<String, String> map = new LinkedHashMap<>();
+        map.put("nodes", "RAM_STORE");
+        dir.configure(map);
+        assertEquals(DAType.MMAP_RO, dir.create("nodes").getType());
+        assertEquals(DAType.MMAP_RO, dir.create("edges", DAType.RAM_INT_STORE).getType());
+        // temporary data that is never stored is not affected
+        assertEquals(DAType.RAM, dir.create("tmp", DAType.RAM).getType());
+        assertThrows(IllegalStateException.class, () -> dir.remove("nodes"));
+        assertThrows(IllegalStateException.class, dir::clear);
+        dir.close();
+    }
+
+}
@@ -59,4 +59,37 @@ public class MMapDataAccessTest extends DataAccessTest {
         assertEquals(123, da.getInt(7 * 4));
         da.close();
     }
+
+    @Test
+    public void testAccessAfterClose() {
+        DataAccess da = createDataAccess(name);
+        da.create(100);
+        da.setInt(7 * 4, 123);
+        assertEquals(da.getSegments() * (long) da.getSegmentSize(), da.getCapacity());
+        da.close();
+        // the buffers are unmapped, so this must not touch them anymore
+        assertThrows(ArrayIndexOutOfBoundsException.class, () -> da.getInt(7 * 4));
+        assertEquals(0, da.getCapacity());
+    }
+
+    @Test
+    public void testReadOnly() {
+        DataAccess da = createDataAccess(name);
+        da.create(100);
+        da.setInt(7 * 4, 123);
+        da.flush();
+        da.close();
+
+        MMapDataAccess ro = new MMapDataAccess(name, directory, false, 128);
+        assertTrue(ro.loadExisting());
+        ro.load(100);
+        assertEquals(123, ro.getInt(7 * 4));
+        assertThrows(IllegalStateException.class, ro::flush);
+        assertThrows(java.nio.ReadOnlyBufferException.class, () -> ro.setInt(7 * 4, 321));
+        ro.close();
+
+        DataAccess other = new MMapDataAccess(name + "_new", directory, false, 128);
+        assertThrows(IllegalStateException.class, () -> other.create(100));
+        other.close();
+    }
 }
@@ -0,0 +1,124 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.routing.ev.BooleanEncodedValue;
+import com.graphhopper.routing.ev.EnumEncodedValue;
+import com.graphhopper.routing.ev.RoadClass;
+import com.graphhopper.routing.ev.VehicleAccess;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.PointList;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrepareGeometryLevelsTest {
+
+    @Test
+    public void mergeAndSimplify() {
+        EnumEncodedValue<RoadClass> roadClassEnc = RoadClass.create();
+        EncodingManager em = EncodingManager.start().add(roadClassEnc).build();
+        BaseGraph graph = new BaseGraph.Builder(em).create();
+        NodeAccess na = graph.getNodeAccess();
+        // 0-1-2-3-4-6 runs from west to east, 1 is a bit off the straight line. 5 is a side road of 3 and 7-8-9 is a ring
+        na.setNode(0, 50.0, 10.000);
+        na.setNode(1, 50.00001, 10.001);
+        na.setNode(2, 50.0, 10.002);
+        na.setNode(3, 50.0, 10.003);
+        na.setNode(4, 50.0, 10.004);
+        na.setNode(5, 50.001, 10.003);
+        na.setNode(6, 50.0, 10.005);
+        na.setNode(7, 50.01, 10.0);
+        na.setNode(8, 50.01, 10.001);
+        na.setNode(9, 50.011, 10.0);
+        graph.edge(1, 0).setDistance(70).set(roadClassEnc, RoadClass.PRIMARY);
+        graph.edge(1, 2).setDistance(70).set(roadClassEnc, RoadClass.PRIMARY);
+        graph.edge(2, 3).setDistance(70).set(roadClassEnc, RoadClass.PRIMARY);
+        graph.edge(3, 4).setDistance(70).set(roadClassEnc, RoadClass.PRIMARY);
+        graph.edge(3, 5).setDistance(110).set(roadClassEnc, RoadClass.RESIDENTIAL);
+        graph.edge(4, 6).setDistance(70).set(roadClassEnc, RoadClass.RESIDENTIAL);
+        graph.edge(7, 8).setDistance(70).set(roadClassEnc, RoadClass.RESIDENTIAL);
+        graph.edge(8, 9).setDistance(130).set(roadClassEnc, RoadClass.RESIDENTIAL);
+        graph.edge(9, 7).setDistance(110).set(roadClassEnc, RoadClass.RESIDENTIAL);
+        graph.freeze();
+
+        GeometryLevelStorage storage = new GeometryLevelStorage(new RAMDirectory(), 2, -1);
+        new PrepareGeometryLevels(graph, roadClassEnc, storage, new double[]{0.5, 10}).doWork();
+        assertEquals(9, storage.getEdges());
+        // 3-2-1-0 | 3-4 | 3-5 | 4-6 | 8-9-7-8. the chain 3-4-6 is split at 4, because the road class changes there
+        assertEquals(5, storage.getChains());
+        int chain = storage.getChain(0);
+        assertEquals(chain, storage.getChain(1));
+        assertEquals(chain, storage.getChain(2));
+        // the chain starts at node 3, i.e. against the stored direction of edge 2
+        assertEquals(2 * 2 + 1, storage.getFirstEdgeKey(chain));
+        PointList points = new PointList();
+        storage.fetchPoints(chain, 0, points);
+        assertEquals(4, points.size());
+        assertEquals(10.003, points.getLon(0), 1.e-6);
+        assertEquals(50.00001, points.getLat(2), 1.e-6);
+        assertEquals(10.000, points.getLon(3), 1.e-6);
+        // node 1 is only ~1m off the line between 3 and 0
+        storage.fetchPoints(chain, 1, points);
+        assertEquals(2, points.size());
+        assertEquals(10.003, points.getLon(0), 1.e-6);
+        assertEquals(10.000, points.getLon(1), 1.e-6);
+
+        for (int edge = 3; edge < 6; edge++)
+            assertEquals(2 * edge, storage.getFirstEdgeKey(storage.getChain(edge)));
+
+        // the ring becomes a single chain that starts and ends at the same node
+        chain = storage.getChain(6);
+        assertEquals(chain, storage.getChain(7));
+        assertEquals(chain, storage.getChain(8));
+        storage.fetchPoints(chain, 0, points);
+        assertEquals(4, points.size());
+        assertEquals(points.getLat(0), points.getLat(3), 1.e-6);
+        assertEquals(points.getLon(0), points.getLon(3), 1.e-6);
+    }
+
+    @Test
+    public void firstEdgeInDirectionOfPoints() {
+        BooleanEncodedValue accessEnc = VehicleAccess.create("car");
+        EncodingManager em = EncodingManager.start().add(accessEnc).build();
+        BaseGraph graph = new BaseGraph.Builder(em).create();
+        NodeAccess na = graph.getNodeAccess();
+        // a oneway road 2->1->0 whose edges are stored in opposite directions
+        na.setNode(0, 50.0, 10.000);
+        na.setNode(1, 50.0, 10.001);
+        na.setNode(2, 50.0, 10.002);
+        graph.edge(1, 0).setDistance(70).set(accessEnc, true, false);
+        graph.edge(1, 2).setDistance(70).set(accessEnc, false, true);
+        graph.freeze();
+
+        GeometryLevelStorage storage = new GeometryLevelStorage(new RAMDirectory(), 1, -1);
+        new PrepareGeometryLevels(graph, null, storage, new double[]{10}).doWork();
+        assertEquals(1, storage.getChains());
+        PointList points = new PointList();
+        storage.fetchPoints(0, 0, points);
+        assertEquals(10.002, points.getLon(0), 1.e-6);
+        assertEquals(10.000, points.getLon(points.size() - 1), 1.e-6);
+        // the first edge goes from 2 to 1, just like the points, so it is open in the forward direction
+        EdgeIteratorState first = graph.getEdgeIteratorStateForKey(storage.getFirstEdgeKey(0));
+        assertEquals(2, first.getBaseNode());
+        assertEquals(1, first.getAdjNode());
+        assertTrue(first.get(accessEnc));
+        assertFalse(first.getReverse(accessEnc));
+    }
+}
@@ -24,10 +24,7 @@ import com.graphhopper.util.GHUtility;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 import java.util.stream.IntStream;
 
 import static com.graphhopper.util.GHUtility.getEdge;
@@ -175,6 +172,55 @@ public class TurnCostStorageTest {
         assertEquals(0, turnCostStorage.get(carEnc, edge32, 2, edge20));
     }
 
+    @Test
+    public void testSortedLookup() {
+        BaseGraph g = new BaseGraph.Builder(manager).withTurnCosts(true).create();
+        // a junction with many turn costs at node 0
+        for (int i = 1; i <= 20; i++)
+            g.edge(0, i).setDistance(10);
+        TurnCostStorage turnCostStorage = g.getTurnCostStorage();
+        Random rnd = new Random(123);
+        Map<List<Integer>, Double> expected = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            int from = rnd.nextInt(20);
+            int to = rnd.nextInt(20);
+            double cost = rnd.nextInt(3);
+            turnCostStorage.set(carTurnCostEnc, from, 0, to, cost);
+            expected.put(Arrays.asList(from, to), cost);
+        }
+        int count = turnCostStorage.getTurnCostsCount();
+        turnCostStorage.sortNodes();
+        assertEquals(count, turnCostStorage.getTurnCostsCount());
+        assertEquals(count, turnCostStorage.getTurnCostsCount(0));
+        assertEquals(0, turnCostStorage.getTurnCostsCount(1));
+        checkTurnCosts(turnCostStorage, expected);
+
+        // adding entries after sorting still works and sorting again afterwards as well
+        turnCostStorage.set(carTurnCostEnc, 3, 1, 5, 1);
+        turnCostStorage.set(carTurnCostEnc, 19, 0, 19, 2);
+        expected.put(Arrays.asList(19, 19), 2.0);
+        assertEquals(1, turnCostStorage.get(carTurnCostEnc, 3, 1, 5));
+        checkTurnCosts(turnCostStorage, expected);
+        turnCostStorage.flush();
+        assertEquals(1, turnCostStorage.get(carTurnCostEnc, 3, 1, 5));
+        checkTurnCosts(turnCostStorage, expected);
+
+        int iterated = 0;
+        TurnCostStorage.Iterator iterator = turnCostStorage.getAllTurnCosts();
+        while (iterator.next()) {
+            if (iterator.getViaNode() == 0)
+                assertEquals(expected.get(Arrays.asList(iterator.getFromEdge(), iterator.getToEdge())), iterator.getCost(carTurnCostEnc), 0);
+            iterated++;
+        }
+        assertEquals(turnCostStorage.getTurnCostsCount(), iterated);
+    }
+
+    private void checkTurnCosts(TurnCostStorage turnCostStorage, Map<List<Integer>, Double> expected) {
+        for (int from = 0; from < 20; from++)
+            for (int to = 0; to < 20; to++)
+                assertEquals(expected.getOrDefault(Arrays.asList(from, to), 0.0), turnCostStorage.get(carTurnCostEnc, from, 0, to), from + "->" + to);
+    }
+
     @Test
     public void testIterateEmptyStore() {
         BaseGraph g = new BaseGraph.Builder(manager).withTurnCosts(true).create();
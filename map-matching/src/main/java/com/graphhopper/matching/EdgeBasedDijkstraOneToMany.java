@@ -0,0 +1,195 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.matching;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntObjectMap;
+import com.graphhopper.coll.GHIntObjectHashMap;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.PathExtractor;
+import com.graphhopper.routing.SPTEntry;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.GHUtility;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import static com.graphhopper.util.EdgeIterator.ANY_EDGE;
+import static com.graphhopper.util.EdgeIterator.NO_EDGE;
+
+/**
+ * An edge-based Dijkstra that calculates the paths from one source to many targets in a single search, which is
+ * what the transitions between two time steps of the map matching need. The search stops as soon as all targets are
+ * settled. Just like for the bidirectional algorithms the source and the targets can be restricted to a certain
+ * outgoing and incoming edge. Targets whose incoming edge cannot be traversed are skipped, and the search can be
+ * limited to paths up to a certain distance, so that it does not explore the whole graph for targets that cannot be
+ * reached.
+ * <p>
+ * The data structures are reused for every call of {@link #calcPaths}, so use one instance for all transitions of
+ * a map matching. This class is not thread-safe.
+ */
+public class EdgeBasedDijkstraOneToMany {
+    private final Graph graph;
+    private final Weighting weighting;
+    private final EdgeExplorer explorer;
+    private final IntObjectMap<Entry> bestWeightMap = new GHIntObjectHashMap<>(50);
+    private final IntObjectMap<IntArrayList> targetsByNode = new GHIntObjectHashMap<>(16);
+    private final PriorityQueue<Entry> heap = new PriorityQueue<>(50);
+    private int maxVisitedNodes = Integer.MAX_VALUE;
+    private long visitedNodes;
+
+    public EdgeBasedDijkstraOneToMany(Graph graph, Weighting weighting) {
+        this.graph = graph;
+        this.weighting = weighting;
+        this.explorer = graph.createEdgeExplorer();
+    }
+
+    /**
+     * Limits the number of nodes a single call of {@link #calcPaths} may visit. Targets that were not settled until
+     * then are not found.
+     */
+    public EdgeBasedDijkstraOneToMany setMaxVisitedNodes(int maxVisitedNodes) {
+        this.maxVisitedNodes = maxVisitedNodes;
+        return this;
+    }
+
+    public Graph getGraph() {
+        return graph;
+    }
+
+    /**
+     * @see #calcPaths(int, int, int[], int[], double)
+     */
+    public List<Path> calcPaths(int from, int fromOutEdge, int[] toNodes, int[] toInEdges) {
+        return calcPaths(from, fromOutEdge, toNodes, toInEdges, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * @param fromOutEdge the edge the paths have to start with or {@link EdgeIterator#ANY_EDGE}
+     * @param toInEdges   the edges the paths to the targets have to end with or {@link EdgeIterator#ANY_EDGE}
+     * @param maxDistance paths that are longer than this distance in meters are not explored
+     * @return the paths to all targets, in the same order as the targets. Not found paths are included as well.
+     */
+    public List<Path> calcPaths(int from, int fromOutEdge, int[] toNodes, int[] toInEdges, double maxDistance) {
+        if (toNodes.length != toInEdges.length)
+            throw new IllegalArgumentException("toNodes and toInEdges must have the same length, " + toNodes.length + " vs. " + toInEdges.length);
+        bestWeightMap.clear();
+        targetsByNode.clear();
+        heap.clear();
+        Entry root = new Entry(from);
+        Path[] paths = new Path[toNodes.length];
+        int remaining = 0;
+        for (int i = 0; i < toNodes.length; i++) {
+            if (toNodes[i] == from && fromOutEdge == ANY_EDGE && toInEdges[i] == ANY_EDGE) {
+                // if no directions are restricted the path to the source itself is empty
+                paths[i] = PathExtractor.extractPath(graph, weighting, root);
+                continue;
+            }
+            if (toInEdges[i] == NO_EDGE || toInEdges[i] != ANY_EDGE
+                    && Double.isInfinite(weighting.calcEdgeWeight(graph.getEdgeIteratorState(toInEdges[i], toNodes[i]), false)))
+                // the target cannot be reached, e.g. the candidate for the wrong direction of a oneway. searching for
+                // it would explore the whole graph
+                continue;
+            IntArrayList targets = targetsByNode.get(toNodes[i]);
+            if (targets == null) {
+                targets = new IntArrayList(2);
+                targetsByNode.put(toNodes[i], targets);
+            }
+            targets.add(i);
+            remaining++;
+        }
+
+        heap.add(root);
+        int visited = 0;
+        while (remaining > 0 && !heap.isEmpty()) {
+            Entry curr = heap.poll();
+            if (curr.isDeleted())
+                continue;
+            visited++;
+            if (visited > maxVisitedNodes)
+                break;
+            if (curr.edge != NO_EDGE) {
+                IntArrayList targets = targetsByNode.get(curr.adjNode);
+                if (targets != null) {
+                    for (int j = 0; j < targets.size(); j++) {
+                        int target = targets.get(j);
+                        if (paths[target] == null && (toInEdges[target] == ANY_EDGE || toInEdges[target] == curr.edge)) {
+                            paths[target] = PathExtractor.extractPath(graph, weighting, curr);
+                            remaining--;
+                        }
+                    }
+                    if (remaining == 0)
+                        break;
+                }
+            }
+
+            EdgeIterator iter = explorer.setBaseNode(curr.adjNode);
+            while (iter.next()) {
+                if (curr.edge == NO_EDGE && fromOutEdge != ANY_EDGE && iter.getEdge() != fromOutEdge)
+                    continue;
+                double distance = curr.distance + iter.getDistance();
+                if (distance > maxDistance)
+                    continue;
+                double weight = GHUtility.calcWeightWithTurnWeight(weighting, iter, false, curr.edge) + curr.weight;
+                if (Double.isInfinite(weight))
+                    continue;
+                int traversalId = iter.getEdgeKey();
+                Entry entry = bestWeightMap.get(traversalId);
+                if (entry != null) {
+                    if (entry.weight <= weight)
+                        continue;
+                    entry.setDeleted();
+                }
+                entry = new Entry(iter.getEdge(), iter.getAdjNode(), weight, distance, curr);
+                bestWeightMap.put(traversalId, entry);
+                heap.add(entry);
+            }
+        }
+        visitedNodes += visited;
+
+        List<Path> result = new ArrayList<>(paths.length);
+        for (Path path : paths)
+            result.add(path == null ? new Path(graph) : path);
+        return result;
+    }
+
+    /**
+     * @return the number of nodes visited by all calls of {@link #calcPaths} so far
+     */
+    public long getVisitedNodes() {
+        return visitedNodes;
+    }
+
+    private static class Entry extends SPTEntry {
+        final double distance;
+
+        Entry(int node) {
+            super(node, 0);
+            this.distance = 0;
+        }
+
+        Entry(int edge, int adjNode, double weight, double distance, Entry parent) {
+            super(edge, adjNode, weight, parent);
+            this.distance = distance;
+        }
+    }
+}
@@ -20,18 +20,13 @@ package com.graphhopper.matching;
 import com.carrotsearch.hppc.IntHashSet;
 import com.graphhopper.GraphHopper;
 import com.graphhopper.config.Profile;
-import com.graphhopper.routing.AStarBidirection;
-import com.graphhopper.routing.DijkstraBidirectionRef;
 import com.graphhopper.routing.Path;
 import com.graphhopper.routing.ev.BooleanEncodedValue;
 import com.graphhopper.routing.ev.Subnetwork;
-import com.graphhopper.routing.lm.LMApproximator;
-import com.graphhopper.routing.lm.LandmarkStorage;
 import com.graphhopper.routing.querygraph.QueryGraph;
 import com.graphhopper.routing.querygraph.VirtualEdgeIteratorState;
 import com.graphhopper.routing.util.DefaultSnapFilter;
 import com.graphhopper.routing.util.EdgeFilter;
-import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.BaseGraph;
 import com.graphhopper.storage.Graph;
@@ -39,9 +34,11 @@ import com.graphhopper.storage.index.LocationIndexTree;
 import com.graphhopper.storage.index.Snap;
 import com.graphhopper.util.*;
 import com.graphhopper.util.shapes.BBox;
+import com.graphhopper.util.shapes.GHPoint;
 import org.locationtech.jts.geom.Envelope;
 
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -66,11 +63,19 @@ import static com.graphhopper.util.DistancePlaneProjection.DIST_PLANE;
  * @author kodonnell
  */
 public class MapMatching {
+    /**
+     * Transitions whose metric is more than this many times the transition probability beta are so unlikely
+     * (log probability below -MAX_TRANSITION_METRIC_IN_BETAS) that the routes for them are not searched.
+     */
+    private static final double MAX_TRANSITION_METRIC_IN_BETAS = 1000;
     private final BaseGraph graph;
     private final Router router;
     private final LocationIndexTree locationIndex;
     private double measurementErrorSigma = 10.0;
     private double transitionProbabilityBeta = 2.0;
+    private int snapThreads = 1;
+    private int windowSize = 500;
+    private int lookBack = 50;
     private final DistanceCalc distanceCalc = new DistancePlaneProjection();
     private QueryGraph queryGraph;
 
@@ -104,26 +109,17 @@ public class MapMatching {
             throw new IllegalArgumentException("Could not find profile '" + profileStr + "', choose one of: " + profileNames);
         }
 
-        boolean disableLM = hints.getBool(Parameters.Landmark.DISABLE, false);
-        boolean disableCH = hints.getBool(Parameters.CH.DISABLE, false);
-
-        // see map-matching/#177: both ch.disable and lm.disable can be used to force Dijkstra which is the better
-        // (=faster) choice when the observations are close to each other
-        boolean useDijkstra = disableLM || disableCH;
-
-        LandmarkStorage landmarks;
-        if (!useDijkstra && graphHopper.getLandmarks().get(profile.getName()) != null) {
-            // using LM because u-turn prevention does not work properly with (node-based) CH
-            landmarks = graphHopper.getLandmarks().get(profile.getName());
-        } else {
-            landmarks = null;
-        }
         Weighting weighting = graphHopper.createWeighting(profile, hints);
         BooleanEncodedValue inSubnetworkEnc = graphHopper.getEncodingManager().getBooleanEncodedValue(Subnetwork.key(profileStr));
         DefaultSnapFilter snapFilter = new DefaultSnapFilter(weighting, inSubnetworkEnc);
         int maxVisitedNodes = hints.getInt(Parameters.Routing.MAX_VISITED_NODES, Integer.MAX_VALUE);
 
+        // The transitions from one candidate to all candidates of the next time step are calculated with a single
+        // one-to-many search instead of one bidirectional search per candidate pair. Consecutive observations are
+        // close to each other, so a Dijkstra is the faster choice here (see map-matching/#177) and we do not use LM.
         Router router = new Router() {
+            private EdgeBasedDijkstraOneToMany algo;
+
             @Override
             public EdgeFilter getSnapFilter() {
                 return snapFilter;
@@ -131,44 +127,28 @@ public class MapMatching {
 
             @Override
             public List<Path> calcPaths(QueryGraph queryGraph, int fromNode, int fromOutEdge, int[] toNodes, int[] toInEdges) {
-                assert (toNodes.length == toInEdges.length);
-                List<Path> result = new ArrayList<>();
-                for (int i = 0; i < toNodes.length; i++) {
-                    result.add(calcOnePath(queryGraph, fromNode, toNodes[i], fromOutEdge, toInEdges[i]));
-                }
-                return result;
+                return calcPaths(queryGraph, fromNode, fromOutEdge, toNodes, toInEdges, Double.POSITIVE_INFINITY);
             }
 
-            private Path calcOnePath(QueryGraph queryGraph, int fromNode, int toNode, int fromOutEdge, int toInEdge) {
-                Weighting queryGraphWeighting = queryGraph.wrapWeighting(weighting);
-                if (landmarks != null) {
-                    AStarBidirection aStarBidirection = new AStarBidirection(queryGraph, queryGraphWeighting, TraversalMode.EDGE_BASED) {
-                        @Override
-                        protected void initCollections(int size) {
-                            super.initCollections(50);
-                        }
-                    };
-                    int activeLM = Math.min(8, landmarks.getLandmarkCount());
-                    LMApproximator lmApproximator = LMApproximator.forLandmarks(queryGraph, queryGraphWeighting, landmarks, activeLM);
-                    aStarBidirection.setApproximation(lmApproximator);
-                    aStarBidirection.setMaxVisitedNodes(maxVisitedNodes);
-                    return aStarBidirection.calcPath(fromNode, toNode, fromOutEdge, toInEdge);
-                } else {
-                    DijkstraBidirectionRef dijkstraBidirectionRef = new DijkstraBidirectionRef(queryGraph, queryGraphWeighting, TraversalMode.EDGE_BASED) {
-                        @Override
-                        protected void initCollections(int size) {
-                            super.initCollections(50);
-                        }
-                    };
-                    dijkstraBidirectionRef.setMaxVisitedNodes(maxVisitedNodes);
-                    return dijkstraBidirectionRef.calcPath(fromNode, toNode, fromOutEdge, toInEdge);
-                }
+            @Override
+            public List<Path> calcPaths(QueryGraph queryGraph, int fromNode, int fromOutEdge, int[] toNodes, int[] toInEdges, double maxDistance) {
+                assert (toNodes.length == toInEdges.length);
+                // the search state can be reused as long as we are matching on the same query graph
+                if (algo == null || algo.getGraph() != queryGraph)
+                    algo = new EdgeBasedDijkstraOneToMany(queryGraph, queryGraph.wrapWeighting(weighting)).setMaxVisitedNodes(maxVisitedNodes);
+                return algo.calcPaths(fromNode, fromOutEdge, toNodes, toInEdges, maxDistance);
             }
 
             @Override
             public Weighting getWeighting() {
                 return weighting;
             }
+
+            @Override
+            public long getVisitedNodes() {
+                // the visited nodes of the current query graph, i.e. of the current match
+                return algo == null ? 0 : algo.getVisitedNodes();
+            }
         };
         return router;
     }
@@ -195,14 +175,33 @@ public class MapMatching {
         this.measurementErrorSigma = measurementErrorSigma;
     }
 
+    /**
+     * Number of threads used to find the candidate snaps of the observations. The default is 1.
+     */
+    public void setSnapThreads(int snapThreads) {
+        if (snapThreads < 1)
+            throw new IllegalArgumentException("snapThreads must be at least 1 but was " + snapThreads);
+        this.snapThreads = snapThreads;
+    }
+
+    /**
+     * Sets the number of filtered observations that {@link #matchStreaming} matches at once and the number of
+     * observations at the end of every window that are matched again as part of the next window.
+     */
+    public void setWindowSize(int windowSize, int lookBack) {
+        if (lookBack < 0 || windowSize < lookBack + 2)
+            throw new IllegalArgumentException("windowSize must be at least lookBack + 2 and lookBack must not be negative, "
+                    + "windowSize: " + windowSize + ", lookBack: " + lookBack);
+        this.windowSize = windowSize;
+        this.lookBack = lookBack;
+    }
+
     public MatchResult match(List<Observation> observations) {
         List<Observation> filteredObservations = filterObservations(observations);
         statistics.put("filteredObservations", filteredObservations.size());
 
         // Snap observations to links. Generates multiple candidate snaps per observation.
-        List<List<Snap>> snapsPerObservation = filteredObservations.stream()
-                .map(o -> findCandidateSnaps(o.getPoint().lat, o.getPoint().lon))
-                .collect(Collectors.toList());
+        List<List<Snap>> snapsPerObservation = findCandidateSnaps(filteredObservations);
         statistics.put("snapsPerObservation", snapsPerObservation.stream().mapToInt(Collection::size).toArray());
 
         // Create the query graph, containing split edges so that all the places where an observation might have happened
@@ -214,7 +213,7 @@ public class MapMatching {
         List<ObservationWithCandidateStates> timeSteps = createTimeSteps(filteredObservations, snapsPerObservation);
 
         // Compute the most likely sequence of map matching candidates:
-        List<SequenceState<State, Observation, Path>> seq = computeViterbiSequence(timeSteps);
+        List<SequenceState<State, Observation, Path>> seq = computeViterbiSequence(timeSteps, 0);
         statistics.put("transitionDistances", seq.stream().filter(s -> s.transitionDescriptor != null).mapToLong(s -> Math.round(s.transitionDescriptor.getDistance())).toArray());
         statistics.put("visitedNodes", router.getVisitedNodes());
         statistics.put("snapDistanceRanks", IntStream.range(0, seq.size()).map(i -> snapsPerObservation.get(i).indexOf(seq.get(i).state.getSnap())).toArray());
@@ -234,6 +233,107 @@ public class MapMatching {
         return result;
     }
 
+    /**
+     * Like {@link #match} but for long traces: the filtered observations are matched in windows of the size set via
+     * {@link #setWindowSize} and only the query graph and the Viterbi state of the current window are kept in memory.
+     * The matched states of a window are final except for the last lookBack observations, which are matched again
+     * together with the next window, starting from the last final state. The final edge matches of every window are
+     * passed to edgeMatchConsumer right away, in the same order as {@link MatchResult#getEdgeMatches()}.
+     * <p>
+     * The result can differ from the one of {@link #match} if the most likely sequence changes more than lookBack
+     * observations before the end of a window.
+     *
+     * @return the lengths and times of the whole match. It contains no edge matches and no merged path, because
+     * these were passed to the consumer.
+     */
+    public MatchResult matchStreaming(List<Observation> observations, Consumer<List<EdgeMatch>> edgeMatchConsumer) {
+        List<Observation> filteredObservations = filterObservations(observations);
+        statistics.put("filteredObservations", filteredObservations.size());
+
+        double matchLength = 0;
+        long matchMillis = 0;
+        long visitedNodes = 0;
+        int windows = 0;
+        // the last edge match of a window is held back, because the next window might continue on the same edge
+        EdgeMatch pendingEdgeMatch = null;
+        // the last final state of the previous window, which is where the next window starts
+        State startState = null;
+        for (int start = 0; start < filteredObservations.size(); ) {
+            int end = Math.min(start + windowSize, filteredObservations.size());
+            boolean lastWindow = end == filteredObservations.size();
+            List<Observation> windowObservations = filteredObservations.subList(start, end);
+            // the snaps of an observation do not depend on the other observations, so the start state can be found
+            // among the snaps of its observation again
+            List<List<Snap>> snapsPerObservation = findCandidateSnaps(windowObservations);
+            queryGraph = QueryGraph.create(graph, snapsPerObservation.stream().flatMap(Collection::stream).collect(Collectors.toList()));
+            List<ObservationWithCandidateStates> timeSteps = createTimeSteps(windowObservations, snapsPerObservation);
+            if (startState != null) {
+                ObservationWithCandidateStates first = timeSteps.get(0);
+                timeSteps.set(0, new ObservationWithCandidateStates(first.observation, Collections.singletonList(findSameCandidate(startState, first.candidates))));
+            }
+            List<SequenceState<State, Observation, Path>> seq = computeViterbiSequence(timeSteps, start);
+            visitedNodes += router.getVisitedNodes();
+            windows++;
+
+            int lastFinal = lastWindow ? seq.size() - 1 : seq.size() - 1 - lookBack;
+            List<SequenceState<State, Observation, Path>> finalSeq = seq.subList(0, lastFinal + 1);
+            matchLength += finalSeq.stream().filter(s -> s.transitionDescriptor != null).mapToDouble(s -> s.transitionDescriptor.getDistance()).sum();
+            matchMillis += finalSeq.stream().filter(s -> s.transitionDescriptor != null).mapToLong(s -> s.transitionDescriptor.getTime()).sum();
+
+            List<EdgeMatch> edgeMatches = prepareEdgeMatches(finalSeq);
+            // the start state was already passed to the consumer as part of the previous window
+            if (startState != null && !edgeMatches.isEmpty())
+                edgeMatches.get(0).getStates().remove(0);
+            if (pendingEdgeMatch != null) {
+                if (!edgeMatches.isEmpty() && equalEdges(pendingEdgeMatch.getEdgeState(), edgeMatches.get(0).getEdgeState())) {
+                    List<State> states = new ArrayList<>(pendingEdgeMatch.getStates());
+                    states.addAll(edgeMatches.get(0).getStates());
+                    edgeMatches.set(0, new EdgeMatch(pendingEdgeMatch.getEdgeState(), states));
+                } else {
+                    edgeMatches.add(0, pendingEdgeMatch);
+                }
+            }
+            pendingEdgeMatch = !lastWindow && !edgeMatches.isEmpty() ? edgeMatches.remove(edgeMatches.size() - 1) : null;
+            if (!edgeMatches.isEmpty())
+                edgeMatchConsumer.accept(edgeMatches);
+
+            if (lastWindow)
+                break;
+            startState = finalSeq.get(lastFinal).state;
+            start += lastFinal;
+        }
+        statistics.put("visitedNodes", visitedNodes);
+        statistics.put("windows", windows);
+
+        MatchResult result = new MatchResult(Collections.emptyList());
+        result.setMatchMillis(matchMillis);
+        result.setMatchLength(matchLength);
+        result.setGPXEntriesLength(gpxLength(observations));
+        result.setWeighting(router.getWeighting());
+        return result;
+    }
+
+    /**
+     * Finds the candidate state among the given candidates that has the same snap and direction as the given state,
+     * which belongs to a different query graph.
+     */
+    private static State findSameCandidate(State state, List<State> candidates) {
+        Snap snap = state.getSnap();
+        for (State candidate : candidates) {
+            Snap other = candidate.getSnap();
+            if (other.getClosestEdge().getEdge() != snap.getClosestEdge().getEdge()
+                    || other.getWayIndex() != snap.getWayIndex()
+                    || other.getSnappedPosition() != snap.getSnappedPosition()
+                    || !other.getSnappedPoint().equals(snap.getSnappedPoint())
+                    || candidate.isOnDirectedEdge() != state.isOnDirectedEdge())
+                continue;
+            if (!state.isOnDirectedEdge() || ((VirtualEdgeIteratorState) candidate.getOutgoingVirtualEdge()).getOriginalEdgeKey()
+                    == ((VirtualEdgeIteratorState) state.getOutgoingVirtualEdge()).getOriginalEdgeKey())
+                return candidate;
+        }
+        throw new IllegalStateException("Could not find the candidate " + state + " again");
+    }
+
     /**
      * Filters observations to only those which will be used for map matching (i.e. those which
      * are separated by at least 2 * measurementErrorSigman
@@ -275,6 +375,20 @@ public class MapMatching {
         return filtered;
     }
 
+    private List<List<Snap>> findCandidateSnaps(List<Observation> observations) {
+        if (snapThreads == 1)
+            return observations.stream()
+                    .map(o -> findCandidateSnaps(o.getPoint().lat, o.getPoint().lon))
+                    .collect(Collectors.toList());
+        // the location index and the snap filter are read-only, so we can snap the observations concurrently
+        List<List<Snap>> snapsPerObservation = new ArrayList<>(Collections.nCopies(observations.size(), null));
+        GHUtility.runConcurrently(IntStream.range(0, observations.size()).mapToObj(i -> () -> {
+            GHPoint point = observations.get(i).getPoint();
+            snapsPerObservation.set(i, findCandidateSnaps(point.lat, point.lon));
+        }), snapThreads);
+        return snapsPerObservation;
+    }
+
     public List<Snap> findCandidateSnaps(final double queryLat, final double queryLon) {
         double rLon = (measurementErrorSigma * 360.0 / DistanceCalcEarth.DIST_EARTH.calcCircumference(queryLat));
         double rLat = measurementErrorSigma / DistanceCalcEarth.METERS_PER_DEGREE;
@@ -379,7 +493,10 @@ public class MapMatching {
         double minusLogProbability;
     }
 
-    private List<SequenceState<State, Observation, Path>> computeViterbiSequence(List<ObservationWithCandidateStates> timeSteps) {
+    /**
+     * @param timeStepOffset the index of the first time step in the whole trace, only used for error messages
+     */
+    private List<SequenceState<State, Observation, Path>> computeViterbiSequence(List<ObservationWithCandidateStates> timeSteps, int timeStepOffset) {
         if (timeSteps.isEmpty()) {
             return Collections.emptyList();
         }
@@ -415,7 +532,11 @@ public class MapMatching {
             int fromOutEdge = from.isOnDirectedEdge() ? from.getOutgoingVirtualEdge().getEdge() : EdgeIterator.ANY_EDGE;
             int[] toNodes = nextTimeStep.candidates.stream().mapToInt(c -> c.getSnap().getClosestNode()).toArray();
             int[] toInEdges = nextTimeStep.candidates.stream().mapToInt(to -> to.isOnDirectedEdge() ? to.getIncomingVirtualEdge().getEdge() : EdgeIterator.ANY_EDGE).toArray();
-            List<Path> paths = router.calcPaths(queryGraph, fromNode, fromOutEdge, toNodes, toInEdges);
+            // the linear distance between the candidates is at most this
+            double candidatesLinearDistance = linearDistance + from.getSnap().getQueryDistance()
+                    + nextTimeStep.candidates.stream().mapToDouble(to -> to.getSnap().getQueryDistance()).max().orElse(0);
+            double maxDistance = candidatesLinearDistance + MAX_TRANSITION_METRIC_IN_BETAS * transitionProbabilityBeta;
+            List<Path> paths = router.calcPaths(queryGraph, fromNode, fromOutEdge, toNodes, toInEdges, maxDistance);
             for (int i = 0; i < nextTimeStep.candidates.size(); i++) {
                 State to = nextTimeStep.candidates.get(i);
                 Path path = paths.get(i);
@@ -443,7 +564,7 @@ public class MapMatching {
         }
         if (qe.timeStep != timeSteps.size() - 1) {
             throw new IllegalArgumentException("Sequence is broken for submitted track at time step "
-                    + qe.timeStep + ". observation:" + qe.state.getEntry());
+                    + (timeStepOffset + qe.timeStep) + ". observation:" + qe.state.getEntry());
         }
         ArrayList<SequenceState<State, Observation, Path>> result = new ArrayList<>();
         while (qe != null) {
@@ -569,6 +690,14 @@ public class MapMatching {
 
         List<Path> calcPaths(QueryGraph queryGraph, int fromNode, int fromOutEdge, int[] toNodes, int[] toInEdges);
 
+        /**
+         * Like {@link #calcPaths(QueryGraph, int, int, int[], int[])}, but paths longer than maxDistance are not
+         * needed and the search for them can be stopped.
+         */
+        default List<Path> calcPaths(QueryGraph queryGraph, int fromNode, int fromOutEdge, int[] toNodes, int[] toInEdges, double maxDistance) {
+            return calcPaths(queryGraph, fromNode, fromOutEdge, toNodes, toInEdges);
+        }
+
         Weighting getWeighting();
 
         default long getVisitedNodes() {
@@ -0,0 +1,197 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.matching;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.graphhopper.routing.Dijkstra;
+import com.graphhopper.routing.DijkstraBidirectionRef;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.ev.DecimalEncodedValue;
+import com.graphhopper.routing.ev.DecimalEncodedValueImpl;
+import com.graphhopper.routing.ev.TurnCost;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.SpeedWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.GHUtility;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static com.graphhopper.util.EdgeIterator.ANY_EDGE;
+import static com.graphhopper.util.EdgeIterator.NO_EDGE;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the paths of {@link EdgeBasedDijkstraOneToMany} with those of the edge-based {@link Dijkstra} and
+ * {@link DijkstraBidirectionRef}, which can restrict the source and target edges.
+ */
+public class EdgeBasedDijkstraOneToManyTest {
+    private static final int MAX_TURN_COSTS = 10;
+    private final DecimalEncodedValue speedEnc = new DecimalEncodedValueImpl("speed", 5, 5, true);
+    private final DecimalEncodedValue turnCostEnc = TurnCost.create("car", MAX_TURN_COSTS);
+    private final BaseGraph graph = new BaseGraph.Builder(EncodingManager.start().add(speedEnc).addTurnCostEncodedValue(turnCostEnc).build())
+            .withTurnCosts(true).create();
+
+    private Weighting createWeighting(double uTurnCosts) {
+        return new SpeedWeighting(speedEnc, turnCostEnc, graph.getTurnCostStorage(), uTurnCosts);
+    }
+
+    @Test
+    public void uTurn() {
+        // 0-1-2
+        graph.edge(0, 1).setDistance(100).set(speedEnc, 10, 10);
+        graph.edge(1, 2).setDistance(100).set(speedEnc, 10, 10);
+        graph.freeze();
+
+        // arriving at node 1 via edge 1-2 requires a u-turn at node 2
+        int[] toNodes = {1, 1, 2};
+        int[] toInEdges = {1, ANY_EDGE, ANY_EDGE};
+        List<Path> paths = new EdgeBasedDijkstraOneToMany(graph, createWeighting(40)).calcPaths(0, ANY_EDGE, toNodes, toInEdges);
+        assertEquals(IntArrayList.from(0, 1, 2, 1), paths.get(0).calcNodes());
+        assertEquals(70, paths.get(0).getWeight(), 1.e-6);
+        assertEquals(IntArrayList.from(0, 1), paths.get(1).calcNodes());
+        assertEquals(IntArrayList.from(0, 1, 2), paths.get(2).calcNodes());
+
+        paths = new EdgeBasedDijkstraOneToMany(graph, createWeighting(Double.POSITIVE_INFINITY)).calcPaths(0, ANY_EDGE, toNodes, toInEdges);
+        assertFalse(paths.get(0).isFound());
+        assertTrue(paths.get(1).isFound());
+        assertTrue(paths.get(2).isFound());
+    }
+
+    @Test
+    public void sourceIsTarget() {
+        // 0-1
+        graph.edge(0, 1).setDistance(100).set(speedEnc, 10, 10);
+        graph.freeze();
+        List<Path> paths = new EdgeBasedDijkstraOneToMany(graph, createWeighting(40)).calcPaths(0, ANY_EDGE, new int[]{0, 0}, new int[]{ANY_EDGE, 0});
+        assertTrue(paths.get(0).isFound());
+        assertEquals(IntArrayList.from(0), paths.get(0).calcNodes());
+        assertEquals(0, paths.get(0).getWeight(), 1.e-6);
+        // returning to the source on a given edge requires a u-turn
+        assertEquals(IntArrayList.from(0, 1, 0), paths.get(1).calcNodes());
+        assertEquals(60, paths.get(1).getWeight(), 1.e-6);
+    }
+
+    @Test
+    public void untraversableTargetInEdge() {
+        // 0-1-2-...-49, 0->50 is a oneway
+        for (int i = 0; i < 49; i++)
+            graph.edge(i, i + 1).setDistance(100).set(speedEnc, 10, 10);
+        int oneway = graph.edge(0, 50).setDistance(100).set(speedEnc, 10, 0).getEdge();
+        graph.freeze();
+        // node 0 can only be reached via the oneway in the wrong direction, we should not search the whole graph
+        // for it
+        EdgeBasedDijkstraOneToMany oneToMany = new EdgeBasedDijkstraOneToMany(graph, createWeighting(40));
+        List<Path> paths = oneToMany.calcPaths(1, ANY_EDGE, new int[]{0, 2}, new int[]{oneway, ANY_EDGE});
+        assertFalse(paths.get(0).isFound());
+        assertTrue(paths.get(1).isFound());
+        assertTrue(oneToMany.getVisitedNodes() < 5, "visited nodes: " + oneToMany.getVisitedNodes());
+    }
+
+    @Test
+    public void maxDistance() {
+        // 0-1-2-...-49
+        for (int i = 0; i < 49; i++)
+            graph.edge(i, i + 1).setDistance(100).set(speedEnc, 10, 10);
+        graph.freeze();
+        EdgeBasedDijkstraOneToMany oneToMany = new EdgeBasedDijkstraOneToMany(graph, createWeighting(40));
+        List<Path> paths = oneToMany.calcPaths(0, ANY_EDGE, new int[]{3, 49}, new int[]{ANY_EDGE, ANY_EDGE}, 350);
+        assertTrue(paths.get(0).isFound());
+        assertEquals(300, paths.get(0).getDistance(), 1.e-6);
+        assertFalse(paths.get(1).isFound());
+        assertTrue(oneToMany.getVisitedNodes() < 10, "visited nodes: " + oneToMany.getVisitedNodes());
+
+        paths = oneToMany.calcPaths(0, ANY_EDGE, new int[]{3, 49}, new int[]{ANY_EDGE, ANY_EDGE});
+        assertTrue(paths.get(0).isFound());
+        assertTrue(paths.get(1).isFound());
+        assertEquals(4900, paths.get(1).getDistance(), 1.e-6);
+    }
+
+    @Test
+    public void randomGraph() {
+        compareWithDijkstra(Double.POSITIVE_INFINITY);
+    }
+
+    @Test
+    public void randomGraph_withUTurns() {
+        compareWithDijkstra(40);
+    }
+
+    private void compareWithDijkstra(double uTurnCosts) {
+        final long seed = System.nanoTime();
+        final int numQueries = 50;
+        final int numTargets = 5;
+        Random rnd = new Random(seed);
+        GHUtility.buildRandomGraph(graph, rnd, 100, 2.2, true, speedEnc, null, 0.8, 0.8);
+        GHUtility.addRandomTurnCosts(graph, seed, null, turnCostEnc, MAX_TURN_COSTS, graph.getTurnCostStorage());
+        graph.freeze();
+        Weighting weighting = createWeighting(uTurnCosts);
+        // the same instance is used for all queries, just like for the transitions of a map matching
+        EdgeBasedDijkstraOneToMany oneToMany = new EdgeBasedDijkstraOneToMany(graph, weighting);
+        List<String> strictViolations = new ArrayList<>();
+        for (int i = 0; i < numQueries; i++) {
+            int source = rnd.nextInt(graph.getNodes());
+            int sourceOutEdge = getAdjEdge(rnd, source);
+            int[] targets = new int[numTargets];
+            int[] targetInEdges = new int[numTargets];
+            for (int j = 0; j < numTargets; j++) {
+                targets[j] = rnd.nextInt(graph.getNodes());
+                targetInEdges[j] = getAdjEdge(rnd, targets[j]);
+            }
+            List<Path> paths = oneToMany.calcPaths(source, sourceOutEdge, targets, targetInEdges);
+            assertEquals(numTargets, paths.size());
+            for (int j = 0; j < numTargets; j++) {
+                Path refPath = sourceOutEdge == ANY_EDGE && targetInEdges[j] == ANY_EDGE
+                        ? new Dijkstra(graph, weighting, TraversalMode.EDGE_BASED).calcPath(source, targets[j])
+                        : new DijkstraBidirectionRef(graph, weighting, TraversalMode.EDGE_BASED).calcPath(source, targets[j], sourceOutEdge, targetInEdges[j]);
+                Path path = paths.get(j);
+                assertEquals(refPath.isFound(), path.isFound(), "found " + source + "->" + targets[j] + ", seed: " + seed);
+                if (!path.isFound())
+                    continue;
+                strictViolations.addAll(GHUtility.comparePaths(refPath, path, source, targets[j], true, seed));
+                IntArrayList edges = path.getEdges();
+                if (sourceOutEdge != ANY_EDGE && !edges.isEmpty())
+                    assertEquals(sourceOutEdge, edges.get(0), "seed: " + seed);
+                if (targetInEdges[j] != ANY_EDGE)
+                    assertEquals(targetInEdges[j], edges.get(edges.size() - 1), "seed: " + seed);
+            }
+        }
+        // sometimes there are multiple best paths with different distance/time/nodes, if this happens too often
+        // something is wrong and we fail
+        if (strictViolations.size() > Math.max(1, 0.05 * numQueries * numTargets))
+            fail("Too many strict violations, with seed: " + seed + " - " + strictViolations.size() + " / " + numQueries * numTargets);
+    }
+
+    private int getAdjEdge(Random rnd, int node) {
+        // mostly do not restrict anything, like for the observations of a map matching without heading
+        if (rnd.nextDouble() < 0.5)
+            return ANY_EDGE;
+        if (rnd.nextDouble() < 0.05)
+            return NO_EDGE;
+        List<Integer> edgeIds = new ArrayList<>();
+        EdgeIterator iter = graph.createEdgeExplorer().setBaseNode(node);
+        while (iter.next())
+            edgeIds.add(iter.getEdge());
+        return edgeIds.isEmpty() ? ANY_EDGE : edgeIds.get(rnd.nextInt(edgeIds.size()));
+    }
+}
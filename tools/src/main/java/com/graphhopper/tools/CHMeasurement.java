@@ -56,6 +56,9 @@ public class CHMeasurement {
     private static void testPerformanceAutomaticNodeOrdering(String[] args) {
         // example args:
         // map=berlin.pbf stats_file=stats.dat period_updates=0 lazy_updates=100 neighbor_updates=50 max_neighbor_updatse=3 contract_nodes=100 log_messages=20 edge_quotient_weight=100.0 orig_edge_quotient_weight=100.0 hierarchy_depth_weight=20.0 landmarks=0 cleanup=true turncosts=true threshold=0.1 seed=456 comp_iterations=10 perf_iterations=100 quick=false
+        // to compare the parallel node contraction with the sequential one run e.g. with turncosts=false contraction_threads=1
+        // and then with contraction_threads=4 (and maybe different independent_set_size values) and compare _prepare_time
+        // and the query times in the stats file
         long start = nanoTime();
         PMap map = PMap.read(args);
         GraphHopperConfig ghConfig = new GraphHopperConfig(map);
@@ -74,6 +77,8 @@ public class CHMeasurement {
         final float hierarchyDepthWeight = ghConfig.getFloat("hierarchy_depth_weight", 20.0f);
         final int pollFactorHeuristic = ghConfig.getInt("poll_factor_heur", 5);
         final int pollFactorContraction = ghConfig.getInt("poll_factor_contr", 200);
+        final int contractionThreads = ghConfig.getInt("contraction_threads", 1);
+        final int independentSetSize = ghConfig.getInt("independent_set_size", 1000);
         final int landmarks = ghConfig.getInt("landmarks", 0);
         final boolean cleanup = ghConfig.getBool("cleanup", true);
         final boolean withTurnCosts = ghConfig.getBool("turncosts", true);
@@ -103,6 +108,9 @@ public class CHMeasurement {
             ghConfig.setProfiles(Collections.singletonList(
                     TestProfiles.accessAndSpeed(profile, "car")
             ));
+            ghConfig.setCHProfiles(Collections.singletonList(
+                    new CHProfile(profile)
+            ));
         }
 
         ghConfig.putObject(PERIODIC_UPDATES, periodicUpdates);
@@ -120,6 +128,8 @@ public class CHMeasurement {
         } else {
             ghConfig.putObject(MAX_POLL_FACTOR_HEURISTIC_NODE, pollFactorHeuristic);
             ghConfig.putObject(MAX_POLL_FACTOR_CONTRACTION_NODE, pollFactorContraction);
+            ghConfig.putObject(CONTRACTION_THREADS, contractionThreads);
+            ghConfig.putObject(INDEPENDENT_SET_SIZE, independentSetSize);
         }
 
         LOGGER.info("Initializing graph hopper with args: {}", ghConfig);
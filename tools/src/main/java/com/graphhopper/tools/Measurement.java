@@ -25,23 +25,28 @@ import com.graphhopper.coll.GHBitSetImpl;
 import com.graphhopper.config.CHProfile;
 import com.graphhopper.config.LMProfile;
 import com.graphhopper.config.Profile;
+import com.graphhopper.isochrone.algorithm.*;
 import com.graphhopper.jackson.Jackson;
+import com.graphhopper.routing.RouterConfig;
 import com.graphhopper.routing.TestProfiles;
 import com.graphhopper.routing.ch.PrepareContractionHierarchies;
 import com.graphhopper.routing.ev.*;
 import com.graphhopper.routing.lm.LMConfig;
 import com.graphhopper.routing.lm.PrepareLandmarks;
+import com.graphhopper.routing.querygraph.QueryGraph;
 import com.graphhopper.routing.util.*;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.routing.weighting.custom.CustomWeighting;
 import com.graphhopper.storage.*;
 import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.storage.index.Snap;
 import com.graphhopper.util.*;
 import com.graphhopper.util.Parameters.Algorithms;
 import com.graphhopper.util.Parameters.CH;
 import com.graphhopper.util.Parameters.Landmark;
 import com.graphhopper.util.shapes.BBox;
 import com.graphhopper.util.shapes.GHPoint;
+import org.locationtech.jts.geom.MultiPolygon;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -113,6 +118,8 @@ public class Measurement {
         int count = args.getInt("measurement.count", 5000);
         put("measurement.name", args.getString("measurement.name", "no_name"));
         put("measurement.map", args.getString("datareader.file", "unknown"));
+        // the node order has a big influence on the query times, so we record it to compare runs with different orders
+        put("graph.sort_order", args.getBool("graph.sort", true) ? args.getString("graph.sort_order", "hilbert") : "none");
         final boolean useMeasurementTimeAsRefTime = args.getBool("measurement.use_measurement_time_as_ref_time", false);
         if (useMeasurementTimeAsRefTime && !useJson) {
             throw new IllegalArgumentException("Using measurement time as reference time only works with json files");
@@ -184,6 +191,8 @@ public class Measurement {
             printGraphDetails(g, vehicle);
             measureGraphTraversal(g, accessEnc, count * 100);
             measureLocationIndex(g, hopper.getLocationIndex(), count);
+            if (withTurnCosts)
+                measureTurnCostLookup(g, encodingManager.getTurnBooleanEncodedValue(TurnRestriction.key("profile_tc")), count * 10);
 
             if (runSlow) {
                 boolean isCH = false;
@@ -265,6 +274,8 @@ public class Measurement {
                 }
             }
             measureCountryAreaIndex(count);
+            if (runSlow)
+                measureIsochrones(hopper, count / 50);
 
         } catch (Exception ex) {
             logger.error("Problem while measuring " + graphLocation, ex);
@@ -456,6 +467,41 @@ public class Measurement {
         print("unit_tests.get_edge_state", miniPerf);
     }
 
+    private void measureTurnCostLookup(final BaseGraph graph, BooleanEncodedValue turnRestrictionEnc, int count) {
+        TurnCostStorage turnCostStorage = graph.getTurnCostStorage();
+        IntArrayList turnCostNodes = new IntArrayList();
+        int maxTurnCostsPerNode = 0;
+        for (int node = 0; node < graph.getNodes(); node++) {
+            int turnCosts = turnCostStorage.getTurnCostsCount(node);
+            if (turnCosts > 0)
+                turnCostNodes.add(node);
+            maxTurnCostsPerNode = Math.max(maxTurnCostsPerNode, turnCosts);
+        }
+        put("graph.turn_costs", turnCostStorage.getTurnCostsCount());
+        put("graph.turn_costs_max_per_node", maxTurnCostsPerNode);
+        if (turnCostNodes.isEmpty())
+            return;
+
+        // like during edge-based routing we look up all turns at a junction, most of them have no entry
+        final Random rand = new Random(seed);
+        final EdgeExplorer inExplorer = graph.createEdgeExplorer();
+        final EdgeExplorer outExplorer = graph.createEdgeExplorer();
+        MiniPerfTest miniPerf = new MiniPerfTest().setIterations(count).start((warmup, run) -> {
+            int node = turnCostNodes.get(rand.nextInt(turnCostNodes.size()));
+            int restricted = 0;
+            EdgeIterator inIter = inExplorer.setBaseNode(node);
+            while (inIter.next()) {
+                EdgeIterator outIter = outExplorer.setBaseNode(node);
+                while (outIter.next()) {
+                    if (turnCostStorage.get(turnRestrictionEnc, inIter.getEdge(), node, outIter.getEdge()))
+                        restricted++;
+                }
+            }
+            return restricted;
+        });
+        print("unit_tests.turn_cost_lookup", miniPerf);
+    }
+
     private void measureGraphTraversalCH(final RoutingCHGraph lg, int count) {
         final Random rand = new Random(seed);
         final int maxEdgesId = lg.getEdges();
@@ -516,6 +562,49 @@ public class Measurement {
         print("area_index.query", lookupPerfTest);
     }
 
+    private void measureIsochrones(final GraphHopper hopper, int count) {
+        final BaseGraph g = hopper.getBaseGraph();
+        final Weighting weighting = hopper.createWeighting(hopper.getProfile("profile_no_tc"), new PMap());
+        final EdgeFilter snapFilter = new DefaultSnapFilter(weighting, hopper.getEncodingManager().getBooleanEncodedValue(Subnetwork.key("profile_no_tc")));
+        final NodeAccess na = g.getNodeAccess();
+        final RouterConfig routerConfig = new RouterConfig();
+        routerConfig.setMaxVisitedNodes(Integer.MAX_VALUE);
+        // 10 minutes in three buckets
+        final double[] zs = {200_000, 400_000, 600_000};
+        for (boolean raster : new boolean[]{false, true}) {
+            final Random rand = new Random(seed);
+            final AtomicLong pointSum = new AtomicLong(0);
+            MiniPerfTest miniPerf = new MiniPerfTest().setIterations(count).start((warmup, run) -> {
+                Snap snap;
+                do {
+                    int node = rand.nextInt(maxNode);
+                    snap = hopper.getLocationIndex().findClosest(na.getLat(node), na.getLon(node), snapFilter);
+                } while (!snap.isValid());
+                QueryGraph queryGraph = QueryGraph.create(g, snap);
+                ShortestPathTree spt = new ShortestPathTree(queryGraph, queryGraph.wrapWeighting(weighting), false, TraversalMode.NODE_BASED);
+                spt.setTimeLimit(zs[zs.length - 1] + Math.max(zs[zs.length - 1] * 0.14, 200_000));
+                int points = 0;
+                if (raster) {
+                    RasterIsochroneBuilder builder = new RasterIsochroneBuilder(snap.getSnappedPoint().lat, 50);
+                    builder.add(snap, queryGraph, spt, l -> l.time);
+                    for (MultiPolygon isoline : builder.computeIsolines(zs))
+                        points += isoline.getNumPoints();
+                } else {
+                    Triangulator.Result result = new JTSTriangulator(routerConfig).triangulate(snap, queryGraph, spt, l -> l.time, 0);
+                    ContourBuilder contourBuilder = new ContourBuilder(result.triangulation);
+                    for (double z : zs)
+                        points += contourBuilder.computeIsoline(z, result.seedEdges).getNumPoints();
+                }
+                if (!warmup)
+                    pointSum.addAndGet(points);
+                return points;
+            });
+            String prefix = raster ? "isochrone_raster" : "isochrone_jts";
+            print(prefix, miniPerf);
+            put(prefix + ".points_mean", (float) pointSum.get() / count);
+        }
+    }
+
     private void measureRouting(final GraphHopper hopper, final QuerySettings querySettings) {
         final Graph g = hopper.getBaseGraph();
         final AtomicLong maxDistance = new AtomicLong(0);
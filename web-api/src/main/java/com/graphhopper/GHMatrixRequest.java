@@ -0,0 +1,178 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper;
+
+import com.fasterxml.jackson.annotation.JsonAnySetter;
+import com.graphhopper.util.PMap;
+import com.graphhopper.util.shapes.GHPoint;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Request object to calculate the weights, times and distances between many locations with GraphHopper. Either set
+ * the points to get a symmetric matrix between all of them or set the from and to points separately.
+ */
+public class GHMatrixRequest {
+    private List<GHPoint> points = new ArrayList<>();
+    private List<GHPoint> fromPoints = new ArrayList<>();
+    private List<GHPoint> toPoints = new ArrayList<>();
+    private List<String> pointHints = new ArrayList<>();
+    private List<String> fromPointHints = new ArrayList<>();
+    private List<String> toPointHints = new ArrayList<>();
+    private List<String> snapPreventions;
+    private List<String> outArrays = new ArrayList<>();
+    private boolean failFast = true;
+    private String profile = "";
+    private final PMap hints = new PMap();
+
+    /**
+     * Sets the points for a symmetric matrix, i.e. every point is used as origin and as destination. Use this instead
+     * of {@link #setFromPoints} and {@link #setToPoints}.
+     */
+    public GHMatrixRequest setPoints(List<GHPoint> points) {
+        this.points = points;
+        return this;
+    }
+
+    public List<GHPoint> getPoints() {
+        return points;
+    }
+
+    public GHMatrixRequest setFromPoints(List<GHPoint> fromPoints) {
+        this.fromPoints = fromPoints;
+        return this;
+    }
+
+    /**
+     * @return the origins of the matrix, which are the same as {@link #getPoints()} for a symmetric request
+     */
+    public List<GHPoint> getFromPoints() {
+        return isSymmetric() ? points : fromPoints;
+    }
+
+    public GHMatrixRequest setToPoints(List<GHPoint> toPoints) {
+        this.toPoints = toPoints;
+        return this;
+    }
+
+    /**
+     * @return the destinations of the matrix, which are the same as {@link #getPoints()} for a symmetric request
+     */
+    public List<GHPoint> getToPoints() {
+        return isSymmetric() ? points : toPoints;
+    }
+
+    public boolean isSymmetric() {
+        return !points.isEmpty();
+    }
+
+    public GHMatrixRequest setPointHints(List<String> pointHints) {
+        this.pointHints = pointHints;
+        return this;
+    }
+
+    public List<String> getPointHints() {
+        return pointHints;
+    }
+
+    public GHMatrixRequest setFromPointHints(List<String> fromPointHints) {
+        this.fromPointHints = fromPointHints;
+        return this;
+    }
+
+    public List<String> getFromPointHints() {
+        return isSymmetric() ? pointHints : fromPointHints;
+    }
+
+    public GHMatrixRequest setToPointHints(List<String> toPointHints) {
+        this.toPointHints = toPointHints;
+        return this;
+    }
+
+    public List<String> getToPointHints() {
+        return isSymmetric() ? pointHints : toPointHints;
+    }
+
+    public boolean hasSnapPreventions() {
+        return snapPreventions != null;
+    }
+
+    public GHMatrixRequest setSnapPreventions(List<String> snapPreventions) {
+        this.snapPreventions = snapPreventions;
+        return this;
+    }
+
+    public List<String> getSnapPreventions() {
+        if (snapPreventions == null) return Collections.emptyList();
+        return snapPreventions;
+    }
+
+    /**
+     * Specifies which of the "weights", "times" and "distances" arrays shall be included in the response.
+     */
+    public GHMatrixRequest setOutArrays(List<String> outArrays) {
+        this.outArrays = outArrays;
+        return this;
+    }
+
+    public List<String> getOutArrays() {
+        return outArrays;
+    }
+
+    /**
+     * If true (default) the request fails if one of the connections cannot be found. Otherwise the missing
+     * connections are marked in the response.
+     */
+    public GHMatrixRequest setFailFast(boolean failFast) {
+        this.failFast = failFast;
+        return this;
+    }
+
+    public boolean getFailFast() {
+        return failFast;
+    }
+
+    public String getProfile() {
+        return profile;
+    }
+
+    public GHMatrixRequest setProfile(String profile) {
+        this.profile = profile;
+        return this;
+    }
+
+    public PMap getHints() {
+        return hints;
+    }
+
+    @JsonAnySetter
+    public GHMatrixRequest putHint(String fieldName, Object value) {
+        this.hints.putObject(fieldName, value);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        String res = isSymmetric() ? "points: " + points.size() : "from_points: " + fromPoints.size() + ", to_points: " + toPoints.size();
+        if (!hints.isEmpty())
+            res += " (Hints:" + hints + ")";
+        return res;
+    }
+}
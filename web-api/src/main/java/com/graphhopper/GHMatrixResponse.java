@@ -0,0 +1,99 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wrapper containing the result of a {@link GHMatrixRequest}. The arrays are indexed by the origin first and the
+ * destination second. A destination that cannot be reached from an origin has the weight and the distance
+ * {@link Double#POSITIVE_INFINITY} and the time {@link Long#MAX_VALUE}.
+ */
+public class GHMatrixResponse {
+    private final List<Throwable> errors = new ArrayList<>(4);
+    private double[][] weights = new double[0][0];
+    private long[][] times = new long[0][0];
+    private double[][] distances = new double[0][0];
+    private String debugInfo = "";
+
+    public GHMatrixResponse() {
+    }
+
+    public GHMatrixResponse(double[][] weights, long[][] times, double[][] distances) {
+        this.weights = weights;
+        this.times = times;
+        this.distances = distances;
+    }
+
+    public double[][] getWeights() {
+        return weights;
+    }
+
+    /**
+     * @return the times in milliseconds
+     */
+    public long[][] getTimes() {
+        return times;
+    }
+
+    /**
+     * @return the distances in meters
+     */
+    public double[][] getDistances() {
+        return distances;
+    }
+
+    public boolean isConnected(int from, int to) {
+        return Double.isFinite(weights[from][to]);
+    }
+
+    public void addDebugInfo(String debugInfo) {
+        if (debugInfo == null)
+            throw new IllegalStateException("Debug information has to be none null");
+
+        if (!this.debugInfo.isEmpty())
+            this.debugInfo += "; ";
+
+        this.debugInfo += debugInfo;
+    }
+
+    public String getDebugInfo() {
+        return debugInfo;
+    }
+
+    public boolean hasErrors() {
+        return !errors.isEmpty();
+    }
+
+    public List<Throwable> getErrors() {
+        return errors;
+    }
+
+    public GHMatrixResponse addError(Throwable error) {
+        errors.add(error);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        if (hasErrors())
+            return "errors:" + errors;
+        return weights.length + "x" + (weights.length == 0 ? 0 : weights[0].length) + " matrix, " + debugInfo;
+    }
+}
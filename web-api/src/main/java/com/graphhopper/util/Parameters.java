@@ -99,6 +99,18 @@ public class Parameters {
         public static final String INIT_MAX_VISITED_NODES = ROUTING_INIT_PREFIX + "max_visited_nodes";
         public static final String TIMEOUT_MS = "timeout_ms";
         public static final String INIT_TIMEOUT_MS = ROUTING_INIT_PREFIX + "timeout_ms";
+        /**
+         * if true the search data structures are reused per thread instead of being allocated for every query
+         */
+        public static final String INIT_POOLED_SEARCH = ROUTING_INIT_PREFIX + "pooled_search";
+        /**
+         * the number of threads that calculate the routes of a batch request
+         */
+        public static final String INIT_BATCH_THREADS = ROUTING_INIT_PREFIX + "batch.threads";
+        /**
+         * the maximum number of cells of the raster of an isochrone with raster_resolution
+         */
+        public static final String INIT_ISOCHRONE_MAX_RASTER_CELLS = ROUTING_INIT_PREFIX + "isochrone.max_raster_cells";
         /**
          * if true the response will contain turn instructions
          */
@@ -29,6 +29,7 @@ import com.graphhopper.isochrone.algorithm.JTSTriangulator;
 import com.graphhopper.isochrone.algorithm.Triangulator;
 import com.graphhopper.jackson.Jackson;
 import com.graphhopper.matching.MapMatching;
+import com.graphhopper.mvt.MVTTileProvider;
 import com.graphhopper.resources.*;
 import com.graphhopper.routing.util.EncodingManager;
 import com.graphhopper.storage.BaseGraph;
@@ -44,9 +45,30 @@ import jakarta.inject.Singleton;
 import org.apache.hc.client5.http.classic.HttpClient;
 import org.glassfish.hk2.api.Factory;
 import org.glassfish.hk2.utilities.binding.AbstractBinder;
+import org.glassfish.jersey.process.internal.RequestScoped;
 
 public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConfiguration> {
 
+    /**
+     * Provides the current GraphHopper instance for the duration of a request. This way a request keeps using the
+     * same instance even if the graph is reloaded in the meantime and the old instance is closed only afterwards.
+     */
+    static class GraphHopperFactory implements Factory<GraphHopper> {
+
+        @Inject
+        GraphHopperManaged graphHopperManaged;
+
+        @Override
+        public GraphHopper provide() {
+            return graphHopperManaged.acquire();
+        }
+
+        @Override
+        public void dispose(GraphHopper instance) {
+            graphHopperManaged.release(instance);
+        }
+    }
+
     static class TranslationMapFactory implements Factory<TranslationMap> {
 
         @Inject
@@ -279,9 +301,15 @@ public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConf
             @Override
             protected void configure() {
                 bind(configuration.getGraphHopperConfiguration()).to(GraphHopperConfig.class);
-                bind(graphHopper).to(GraphHopper.class);
+                bind(graphHopperManaged).to(GraphHopperManaged.class);
+                if (graphHopper instanceof GraphHopperGtfs)
+                    // the public transit resources keep their GraphHopper instance, so reloading is not supported
+                    bind(graphHopper).to(GraphHopper.class);
+                else
+                    bindFactory(GraphHopperFactory.class).to(GraphHopper.class).in(RequestScoped.class);
 
                 bind(new JTSTriangulator(graphHopper.getRouterConfig())).to(Triangulator.class);
+                bind(new MVTTileProvider(configuration.getGraphHopperConfiguration().getLong("mvt.cache_size_mb", 64) * 1024 * 1024)).to(MVTTileProvider.class);
                 bindFactory(MapMatchingRouterFactoryFactory.class).to(MapMatchingResource.MapMatchingRouterFactory.class);
                 bindFactory(PathDetailsBuilderFactoryFactory.class).to(PathDetailsBuilderFactory.class);
                 bindFactory(ProfileResolverFactory.class).to(ProfileResolver.class);
@@ -298,6 +326,7 @@ public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConf
         environment.jersey().register(MVTResource.class);
         environment.jersey().register(NearestResource.class);
         environment.jersey().register(RouteResource.class);
+        environment.jersey().register(MatrixResource.class);
         environment.jersey().register(IsochroneResource.class);
         environment.jersey().register(MapMatchingResource.class);
 
@@ -328,7 +357,8 @@ public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConf
         environment.jersey().register(SPTResource.class);
         environment.jersey().register(I18NResource.class);
         environment.jersey().register(InfoResource.class);
-        environment.healthChecks().register("graphhopper", new GraphHopperHealthCheck(graphHopper));
+        environment.healthChecks().register("graphhopper", new GraphHopperHealthCheck(graphHopperManaged));
+        environment.admin().addTask(new GraphReloadTask(graphHopperManaged));
         environment.jersey().register(environment.healthChecks());
         environment.jersey().register(HealthCheckResource.class);
 
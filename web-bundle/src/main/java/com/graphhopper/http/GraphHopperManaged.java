@@ -18,30 +18,62 @@
 
 package com.graphhopper.http;
 
+import com.graphhopper.GHRequest;
 import com.graphhopper.GraphHopper;
 import com.graphhopper.GraphHopperConfig;
+import com.graphhopper.config.Profile;
 import com.graphhopper.gtfs.GraphHopperGtfs;
+import com.graphhopper.util.PMap;
+import com.graphhopper.util.StopWatch;
+import com.graphhopper.util.shapes.BBox;
 import io.dropwizard.lifecycle.Managed;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Manages the GraphHopper instance of the server. The instance can be replaced by a graph loaded from another folder
+ * while the server keeps running, see {@link #reload(String)}. Requests obtain the current instance via
+ * {@link #acquire()} and give it back via {@link #release(GraphHopper)}, so that a replaced instance is only closed
+ * after all requests that use it are finished.
+ */
 public class GraphHopperManaged implements Managed {
 
     private final static Logger logger = LoggerFactory.getLogger(GraphHopperManaged.class);
-    private final GraphHopper graphHopper;
+    private final GraphHopperConfig configuration;
+    private final int warmUpQueries;
+    private final Map<GraphHopper, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+    private volatile GraphHopper graphHopper;
 
     public GraphHopperManaged(GraphHopperConfig configuration) {
+        this.configuration = configuration;
+        this.warmUpQueries = configuration.getInt("graph.reload.warmup_queries", 100);
+        graphHopper = create(configuration);
+        inFlight.put(graphHopper, new AtomicInteger());
+    }
+
+    private static GraphHopper create(GraphHopperConfig configuration) {
+        GraphHopper graphHopper;
         if (configuration.has("gtfs.file")) {
             graphHopper = new GraphHopperGtfs(configuration);
         } else {
             graphHopper = new GraphHopper();
         }
         graphHopper.init(configuration);
+        return graphHopper;
     }
 
     @Override
     public void start() {
         graphHopper.importOrLoad();
+        logLoaded(graphHopper);
+    }
+
+    private static void logLoaded(GraphHopper graphHopper) {
         logger.info("loaded graph at:{}, data_reader_file:{}, encoded values:{}, {} bytes for edge flags, {}",
                 graphHopper.getGraphHopperLocation(), graphHopper.getOSMFile(),
                 graphHopper.getEncodingManager().toEncodedValuesAsString(),
@@ -49,14 +81,110 @@ public class GraphHopperManaged implements Managed {
                 graphHopper.getBaseGraph().toDetailsString());
     }
 
+    /**
+     * @return the current GraphHopper instance. Use {@link #acquire()} instead if the instance is used while a
+     * reload might happen.
+     */
     public GraphHopper getGraphHopper() {
         return graphHopper;
     }
 
+    /**
+     * Returns the current GraphHopper instance, which won't be closed until {@link #release(GraphHopper)} is called.
+     */
+    public GraphHopper acquire() {
+        while (true) {
+            GraphHopper current = graphHopper;
+            AtomicInteger counter = inFlight.get(current);
+            if (counter != null) {
+                counter.incrementAndGet();
+                // if the instance was replaced in the meantime it might be closed already
+                if (current == graphHopper)
+                    return current;
+                counter.decrementAndGet();
+            }
+        }
+    }
+
+    public void release(GraphHopper hopper) {
+        AtomicInteger counter = inFlight.get(hopper);
+        if (counter == null)
+            throw new IllegalStateException("GraphHopper instance was not acquired");
+        counter.decrementAndGet();
+    }
+
+    /**
+     * Loads the graph from the specified folder using the configuration of the server, warms it up and then replaces
+     * the current instance. The old instance is closed as soon as all requests that use it are finished. The new graph
+     * has to be imported already, e.g. with the import command, and must be stored in a different folder. Use the
+     * graph.dataaccess.mmap.preload settings to load memory mapped files into memory before the instance is replaced.
+     */
+    public synchronized void reload(String graphLocation) {
+        if (graphHopper instanceof GraphHopperGtfs)
+            throw new IllegalStateException("Reloading the graph is not supported for public transit");
+        if (graphHopper.getGraphHopperLocation().equals(graphLocation))
+            throw new IllegalArgumentException("The graph is already loaded from " + graphLocation);
+
+        StopWatch sw = StopWatch.started();
+        GraphHopper newGraphHopper = create(new GraphHopperConfig(configuration).putObject("graph.location", graphLocation));
+        if (!newGraphHopper.load())
+            throw new IllegalArgumentException("Could not load graph from " + graphLocation);
+        logLoaded(newGraphHopper);
+        try {
+            warmUp(newGraphHopper);
+        } catch (RuntimeException ex) {
+            newGraphHopper.close();
+            throw ex;
+        }
+
+        GraphHopper old = graphHopper;
+        inFlight.put(newGraphHopper, new AtomicInteger());
+        graphHopper = newGraphHopper;
+        logger.info("replaced graph {} with {}, took: {}", old.getGraphHopperLocation(), graphLocation, sw.stop().getTimeString());
+
+        AtomicInteger oldCounter = inFlight.get(old);
+        try {
+            while (oldCounter.get() > 0)
+                Thread.sleep(50);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the requests of " + old.getGraphHopperLocation(), ex);
+        }
+        inFlight.remove(old);
+        old.close();
+        logger.info("closed graph {}", old.getGraphHopperLocation());
+    }
+
+    /**
+     * Creates the weightings of all profiles, which compiles their custom models, and then runs a few queries between
+     * random points so that the hot parts of the code and data are ready before the first request arrives.
+     */
+    private void warmUp(GraphHopper hopper) {
+        StopWatch sw = StopWatch.started();
+        for (Profile profile : hopper.getProfiles())
+            hopper.createWeighting(profile, new PMap());
+
+        BBox bounds = hopper.getBaseGraph().getBounds();
+        Random random = new Random(0);
+        for (int i = 0; i < warmUpQueries; i++) {
+            for (Profile profile : hopper.getProfiles()) {
+                GHRequest request = new GHRequest(
+                        bounds.minLat + random.nextDouble() * (bounds.maxLat - bounds.minLat),
+                        bounds.minLon + random.nextDouble() * (bounds.maxLon - bounds.minLon),
+                        bounds.minLat + random.nextDouble() * (bounds.maxLat - bounds.minLat),
+                        bounds.minLon + random.nextDouble() * (bounds.maxLon - bounds.minLon)).
+                        setProfile(profile.getName());
+                // errors like points that cannot be snapped are expected here
+                hopper.route(request);
+            }
+        }
+        logger.info("warmed up graph {} with {} queries per profile, took: {}", hopper.getGraphHopperLocation(),
+                warmUpQueries, sw.stop().getTimeString());
+    }
+
     @Override
     public void stop() {
         graphHopper.close();
     }
 
-
 }
@@ -0,0 +1,339 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.mvt;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.LongIntHashMap;
+import com.graphhopper.routing.ev.*;
+import com.graphhopper.search.KVStorage;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.PointList;
+import vector_tile.VectorTile;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes edges into the "roads" layer of a vector tile. In contrast to the generic VectorTileEncoder the coordinates
+ * are projected straight into the integer space of the tile and clipped there, without JTS geometries. The attributes
+ * are written with their type and the keys and values are interned while adding the edges, so no attribute map is
+ * necessary per edge. Encoded values that store two directions use the key with the suffix "_reverse" for the
+ * reverse direction.
+ */
+class MVTEdgeEncoder {
+    static final String LAYER = "roads";
+    static final int EXTENT = 4096;
+    // clip a bit outside the tile to avoid gaps at the borders, 8 pixels of 256
+    private static final int CLIP_BUFFER = EXTENT / 32;
+    private static final int MOVE_TO = 1;
+    private static final int LINE_TO = 2;
+
+    private final List<EncodedValue> encodedValues;
+    private final double minLon, maxLat, scaleX, scaleY;
+    private final VectorTile.Tile.Layer.Builder layer = VectorTile.Tile.Layer.newBuilder();
+    private final Map<String, Integer> keys = new HashMap<>();
+    private final int edgeIdKey, edgeKeyKey, baseNodeKey, adjNodeKey, distanceKey;
+    private final int[] evKeys, evReverseKeys;
+    private final int[][] enumValues;
+    private final int[] boolValues = {-1, -1};
+    private final Map<String, Integer> stringValues = new HashMap<>();
+    private final LongIntHashMap sintValues = new LongIntHashMap();
+    private final LongIntHashMap doubleValues = new LongIntHashMap();
+    private int valueCount;
+    private int featureCount;
+
+    // reused for every edge
+    private final IntArrayList tags = new IntArrayList();
+    private final IntArrayList commands = new IntArrayList();
+    private final IntArrayList partX = new IntArrayList();
+    private final IntArrayList partY = new IntArrayList();
+    private int cursorX, cursorY;
+    private double tEnter, tLeave;
+
+    /**
+     * @param minLon the longitude of the left border of the tile
+     * @param maxLon the longitude of the right border of the tile
+     * @param minLat the latitude of the bottom border of the tile
+     * @param maxLat the latitude of the top border of the tile
+     */
+    MVTEdgeEncoder(List<EncodedValue> encodedValues, double minLon, double maxLon, double minLat, double maxLat) {
+        this.encodedValues = encodedValues;
+        this.minLon = minLon;
+        this.maxLat = maxLat;
+        // within a tile the latitude is mapped linearly, which is precise enough for the zoom levels we render
+        this.scaleX = EXTENT / (maxLon - minLon);
+        this.scaleY = EXTENT / (maxLat - minLat);
+        layer.setVersion(2).setName(LAYER).setExtent(EXTENT);
+
+        edgeIdKey = key("edge_id");
+        edgeKeyKey = key("edge_key");
+        baseNodeKey = key("base_node");
+        adjNodeKey = key("adj_node");
+        distanceKey = key("distance");
+        evKeys = new int[encodedValues.size()];
+        evReverseKeys = new int[encodedValues.size()];
+        enumValues = new int[encodedValues.size()][];
+        for (int i = 0; i < encodedValues.size(); i++) {
+            EncodedValue ev = encodedValues.get(i);
+            evKeys[i] = key(ev.getName());
+            evReverseKeys[i] = ev.isStoreTwoDirections() ? key(ev.getName() + "_reverse") : -1;
+            if (ev instanceof EnumEncodedValue) {
+                enumValues[i] = new int[((EnumEncodedValue<?>) ev).getValues().length];
+                Arrays.fill(enumValues[i], -1);
+            }
+        }
+    }
+
+    /**
+     * Adds the edge with the specified geometry, unless the geometry is outside of the tile or too short to be visible.
+     *
+     * @return true if the edge was added
+     */
+    boolean addEdge(EdgeIteratorState edge, PointList points) {
+        if (!addGeometry(points))
+            return false;
+
+        tags.clear();
+        for (Map.Entry<String, KVStorage.KValue> e : edge.getKeyValues().entrySet()) {
+            tags.add(key(e.getKey()));
+            tags.add(stringValue(e.getValue().toString()));
+        }
+        tags.add(edgeIdKey, sintValue(edge.getEdge()));
+        tags.add(edgeKeyKey, sintValue(edge.getEdgeKey()));
+        tags.add(baseNodeKey, sintValue(edge.getBaseNode()));
+        tags.add(adjNodeKey, sintValue(edge.getAdjNode()));
+        tags.add(distanceKey, doubleValue(edge.getDistance()));
+        for (int i = 0; i < encodedValues.size(); i++) {
+            EncodedValue ev = encodedValues.get(i);
+            addTag(edge, i, ev, false);
+            if (ev.isStoreTwoDirections())
+                addTag(edge, i, ev, true);
+        }
+
+        VectorTile.Tile.Feature.Builder feature = VectorTile.Tile.Feature.newBuilder().
+                setId(edge.getEdge()).
+                setType(VectorTile.Tile.GeomType.LINESTRING);
+        for (int i = 0; i < tags.size(); i++)
+            feature.addTags(tags.get(i));
+        for (int i = 0; i < commands.size(); i++)
+            feature.addGeometry(commands.get(i));
+        layer.addFeatures(feature);
+        featureCount++;
+        return true;
+    }
+
+    private void addTag(EdgeIteratorState edge, int evIndex, EncodedValue ev, boolean reverse) {
+        int value;
+        if (ev instanceof EnumEncodedValue) {
+            Enum<?> e = reverse ? edge.getReverse((EnumEncodedValue<?>) ev) : edge.get((EnumEncodedValue<?>) ev);
+            value = enumValues[evIndex][e.ordinal()];
+            if (value < 0)
+                value = enumValues[evIndex][e.ordinal()] = stringValue(e.toString());
+        } else if (ev instanceof DecimalEncodedValue) {
+            value = doubleValue(reverse ? edge.getReverse((DecimalEncodedValue) ev) : edge.get((DecimalEncodedValue) ev));
+        } else if (ev instanceof BooleanEncodedValue) {
+            value = boolValue(reverse ? edge.getReverse((BooleanEncodedValue) ev) : edge.get((BooleanEncodedValue) ev));
+        } else if (ev instanceof StringEncodedValue) {
+            String s = reverse ? edge.getReverse((StringEncodedValue) ev) : edge.get((StringEncodedValue) ev);
+            if (s == null)
+                return;
+            value = stringValue(s);
+        } else if (ev instanceof IntEncodedValue) {
+            value = sintValue(reverse ? edge.getReverse((IntEncodedValue) ev) : edge.get((IntEncodedValue) ev));
+        } else {
+            return;
+        }
+        tags.add(reverse ? evReverseKeys[evIndex] : evKeys[evIndex], value);
+    }
+
+    /**
+     * Projects the points into the tile, clips the line at the buffered tile borders and creates the commands, which
+     * are relative to the previous position and zigzag encoded.
+     */
+    private boolean addGeometry(PointList points) {
+        commands.clear();
+        cursorX = 0;
+        cursorY = 0;
+        double length = 0;
+        double prevX = projectX(points.getLon(0)), prevY = projectY(points.getLat(0));
+        for (int i = 1; i < points.size(); i++) {
+            double x = projectX(points.getLon(i)), y = projectY(points.getLat(i));
+            length += Math.hypot(x - prevX, y - prevY);
+            prevX = x;
+            prevY = y;
+        }
+        // skip lines that are shorter than a single unit
+        if (length < 1)
+            return false;
+
+        partX.clear();
+        partY.clear();
+        prevX = projectX(points.getLon(0));
+        prevY = projectY(points.getLat(0));
+        for (int i = 1; i < points.size(); i++) {
+            double x = projectX(points.getLon(i)), y = projectY(points.getLat(i));
+            clipSegment(prevX, prevY, x, y);
+            prevX = x;
+            prevY = y;
+        }
+        finishPart();
+        return !commands.isEmpty();
+    }
+
+    /**
+     * Liang-Barsky clipping of the segment from (x0, y0) to (x1, y1) against the buffered tile
+     */
+    private void clipSegment(double x0, double y0, double x1, double y1) {
+        double dx = x1 - x0, dy = y1 - y0;
+        tEnter = 0;
+        tLeave = 1;
+        int min = -CLIP_BUFFER, max = EXTENT + CLIP_BUFFER;
+        if (!clipT(-dx, x0 - min) || !clipT(dx, max - x0) || !clipT(-dy, y0 - min) || !clipT(dy, max - y0)) {
+            finishPart();
+            return;
+        }
+        if (tEnter > 0)
+            // the segment enters the tile, so a new part begins
+            finishPart();
+        if (partX.isEmpty())
+            addPoint(x0 + tEnter * dx, y0 + tEnter * dy);
+        addPoint(x0 + tLeave * dx, y0 + tLeave * dy);
+        if (tLeave < 1)
+            // the segment leaves the tile
+            finishPart();
+    }
+
+    private boolean clipT(double p, double q) {
+        if (p == 0)
+            return q >= 0;
+        double r = q / p;
+        if (p < 0) {
+            if (r > tLeave) return false;
+            if (r > tEnter) tEnter = r;
+        } else {
+            if (r < tEnter) return false;
+            if (r < tLeave) tLeave = r;
+        }
+        return true;
+    }
+
+    private void addPoint(double x, double y) {
+        int ix = (int) Math.round(x), iy = (int) Math.round(y);
+        // skip points that are equal to the previous one after rounding
+        if (!partX.isEmpty() && partX.get(partX.size() - 1) == ix && partY.get(partY.size() - 1) == iy)
+            return;
+        partX.add(ix);
+        partY.add(iy);
+    }
+
+    private void finishPart() {
+        // a line needs at least two different points
+        if (partX.size() >= 2) {
+            commands.add(commandAndLength(MOVE_TO, 1));
+            addDelta(partX.get(0), partY.get(0));
+            commands.add(commandAndLength(LINE_TO, partX.size() - 1));
+            for (int i = 1; i < partX.size(); i++)
+                addDelta(partX.get(i), partY.get(i));
+        }
+        partX.clear();
+        partY.clear();
+    }
+
+    private void addDelta(int x, int y) {
+        commands.add(zigZagEncode(x - cursorX));
+        commands.add(zigZagEncode(y - cursorY));
+        cursorX = x;
+        cursorY = y;
+    }
+
+    private double projectX(double lon) {
+        return (lon - minLon) * scaleX;
+    }
+
+    private double projectY(double lat) {
+        return (maxLat - lat) * scaleY;
+    }
+
+    private static int commandAndLength(int command, int repeat) {
+        return repeat << 3 | command;
+    }
+
+    private static int zigZagEncode(int n) {
+        return (n << 1) ^ (n >> 31);
+    }
+
+    private int key(String key) {
+        Integer index = keys.get(key);
+        if (index == null) {
+            index = keys.size();
+            keys.put(key, index);
+            layer.addKeys(key);
+        }
+        return index;
+    }
+
+    private int stringValue(String value) {
+        Integer index = stringValues.get(value);
+        if (index == null) {
+            index = addValue(VectorTile.Tile.Value.newBuilder().setStringValue(value));
+            stringValues.put(value, index);
+        }
+        return index;
+    }
+
+    private int sintValue(long value) {
+        int index = sintValues.getOrDefault(value, -1);
+        if (index < 0) {
+            index = addValue(VectorTile.Tile.Value.newBuilder().setSintValue(value));
+            sintValues.put(value, index);
+        }
+        return index;
+    }
+
+    private int doubleValue(double value) {
+        long bits = Double.doubleToLongBits(value);
+        int index = doubleValues.getOrDefault(bits, -1);
+        if (index < 0) {
+            index = addValue(VectorTile.Tile.Value.newBuilder().setDoubleValue(value));
+            doubleValues.put(bits, index);
+        }
+        return index;
+    }
+
+    private int boolValue(boolean value) {
+        int i = value ? 1 : 0;
+        if (boolValues[i] < 0)
+            boolValues[i] = addValue(VectorTile.Tile.Value.newBuilder().setBoolValue(value));
+        return boolValues[i];
+    }
+
+    private int addValue(VectorTile.Tile.Value.Builder value) {
+        layer.addValues(value);
+        return valueCount++;
+    }
+
+    int getFeatureCount() {
+        return featureCount;
+    }
+
+    byte[] encode() {
+        return VectorTile.Tile.newBuilder().addLayers(layer).build().toByteArray();
+    }
+}
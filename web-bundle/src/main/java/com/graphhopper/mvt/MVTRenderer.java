@@ -0,0 +1,169 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.mvt;
+
+import com.carrotsearch.hppc.IntHashSet;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.routing.ev.*;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.GeometryLevelStorage;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.storage.index.LocationIndexTree;
+import com.graphhopper.util.DistanceCalcEarth;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.FetchMode;
+import com.graphhopper.util.PointList;
+import com.graphhopper.util.shapes.BBox;
+import org.locationtech.jts.geom.Coordinate;
+
+/**
+ * Renders the edges of the graph into Mapbox vector tiles, used for the /mvt endpoint and to pre-render tiles into a
+ * {@link MVTTileFile}.
+ */
+public class MVTRenderer {
+    /**
+     * Increase this when the content of the tiles changes, so that the ETags of the tiles change as well.
+     */
+    public static final int VERSION = 2;
+    private static final byte[] EMPTY_TILE = new byte[0];
+
+    private final BaseGraph baseGraph;
+    private final LocationIndexTree locationIndex;
+    private final EncodingManager encodingManager;
+    private final EnumEncodedValue<RoadClass> roadClassEnc;
+    private final GeometryLevelStorage geometryLevels;
+    private final double[] geometryLevelTolerances;
+
+    public MVTRenderer(GraphHopper graphHopper) {
+        this.baseGraph = graphHopper.getBaseGraph();
+        this.locationIndex = (LocationIndexTree) graphHopper.getLocationIndex();
+        this.encodingManager = graphHopper.getEncodingManager();
+        this.roadClassEnc = encodingManager.hasEncodedValue(RoadClass.KEY)
+                ? encodingManager.getEnumEncodedValue(RoadClass.KEY, RoadClass.class) : null;
+        this.geometryLevels = graphHopper.getGeometryLevels();
+        this.geometryLevelTolerances = graphHopper.getGeometryLevelTolerances();
+    }
+
+    public static byte[] getEmptyTile() {
+        return EMPTY_TILE;
+    }
+
+    /**
+     * @return the encoded tile or null if the tile does not contain any edge
+     */
+    public byte[] render(int zInfo, int xInfo, int yInfo, boolean renderAll) {
+        if (zInfo <= 9)
+            return null;
+        if (roadClassEnc == null)
+            throw new IllegalStateException("You need to configure GraphHopper to store road_class, e.g. graph.encoded_values: road_class,max_speed,... ");
+
+        Coordinate nw = num2deg(xInfo, yInfo, zInfo);
+        Coordinate se = num2deg(xInfo + 1, yInfo + 1, zInfo);
+        final NodeAccess na = baseGraph.getNodeAccess();
+        BBox bbox = new BBox(nw.x, se.x, se.y, nw.y);
+        if (!bbox.isValid())
+            throw new IllegalStateException("Invalid bbox " + bbox);
+
+        final MVTEdgeEncoder encoder = new MVTEdgeEncoder(encodingManager.getEncodedValues(), nw.x, se.x, se.y, nw.y);
+        int level = renderAll || zInfo >= 14 ? -1 : findGeometryLevel(zInfo, (nw.y + se.y) / 2);
+        if (level >= 0) {
+            // the simplified chains are rendered once, even if several of their edges are in the tile
+            final IntHashSet chains = new IntHashSet();
+            final PointList points = new PointList(100, false);
+            locationIndex.query(bbox, edgeId -> {
+                int chain = geometryLevels.getChain(edgeId);
+                if (!chains.add(chain))
+                    return;
+                // the attributes of the chain are those of its first edge, in the direction of the points
+                EdgeIteratorState edge = baseGraph.getEdgeIteratorStateForKey(geometryLevels.getFirstEdgeKey(chain));
+                if (!isVisible(edge.get(roadClassEnc), zInfo))
+                    return;
+                geometryLevels.fetchPoints(chain, level, points);
+                encoder.addEdge(edge, points);
+            });
+            return encoder.getFeatureCount() == 0 ? null : encoder.encode();
+        }
+
+        // fetching the way geometry is only necessary from zoom 14, for lower zoom levels the tower nodes are enough
+        final PointList towerPoints = new PointList(2, false);
+        locationIndex.query(bbox, edgeId -> {
+            EdgeIteratorState edge = baseGraph.getEdgeIteratorStateForKey(edgeId * 2);
+            PointList pl;
+            if (renderAll || zInfo >= 14) {
+                pl = edge.fetchWayGeometry(FetchMode.ALL);
+            } else {
+                if (isVisible(edge.get(roadClassEnc), zInfo)) {
+                    towerPoints.clear();
+                    towerPoints.add(na.getLat(edge.getBaseNode()), na.getLon(edge.getBaseNode()));
+                    towerPoints.add(na.getLat(edge.getAdjNode()), na.getLon(edge.getAdjNode()));
+                    pl = towerPoints;
+                } else {
+                    // skip edge for certain zoom
+                    return;
+                }
+            }
+            encoder.addEdge(edge, pl);
+        });
+
+        return encoder.getFeatureCount() == 0 ? null : encoder.encode();
+    }
+
+    private static boolean isVisible(RoadClass rc, int zoom) {
+        return rc == RoadClass.MOTORWAY
+                || zoom > 10 && (rc == RoadClass.PRIMARY || rc == RoadClass.TRUNK)
+                || zoom > 11 && (rc == RoadClass.SECONDARY)
+                || zoom > 12;
+    }
+
+    /**
+     * @return the geometry level with the largest tolerance that is still smaller than a pixel of a 256 pixel tile at
+     * the given zoom and latitude, or -1 if there is none
+     */
+    private int findGeometryLevel(int zoom, double lat) {
+        if (geometryLevels == null)
+            return -1;
+        double metersPerPixel = DistanceCalcEarth.C * Math.cos(Math.toRadians(lat)) / (256.0 * (1 << zoom));
+        int level = -1;
+        for (int i = 0; i < geometryLevelTolerances.length; i++)
+            if (geometryLevelTolerances[i] <= metersPerPixel)
+                level = i;
+        return level;
+    }
+
+    public static Coordinate num2deg(int xInfo, int yInfo, int zoom) {
+        // inverse web mercator projection
+        double n = Math.pow(2, zoom);
+        double lonDeg = xInfo / n * 360.0 - 180.0;
+        // unfortunately latitude numbers goes from north to south
+        double latRad = Math.atan(Math.sinh(Math.PI * (1 - 2 * yInfo / n)));
+        double latDeg = Math.toDegrees(latRad);
+        return new Coordinate(lonDeg, latDeg);
+    }
+
+    /**
+     * @return the x and y number of the tile that contains the specified point
+     */
+    public static int[] deg2num(double lat, double lon, int zoom) {
+        int n = 1 << zoom;
+        double latRad = Math.toRadians(lat);
+        int x = (int) Math.floor((lon + 180.0) / 360.0 * n);
+        int y = (int) Math.floor((1 - Math.log(Math.tan(latRad) + 1 / Math.cos(latRad)) / Math.PI) / 2 * n);
+        return new int[]{Math.max(0, Math.min(n - 1, x)), Math.max(0, Math.min(n - 1, y))};
+    }
+}
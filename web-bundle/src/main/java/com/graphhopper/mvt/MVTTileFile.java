@@ -0,0 +1,181 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.mvt;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.LongArrayList;
+import com.graphhopper.util.shapes.BBox;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A single file with the pre-rendered vector tiles of a zoom range. It starts with a header, followed by the tile
+ * data and the index of the tiles sorted by tile id. The file is memory mapped for reading, so the tiles are served
+ * from the page cache without rendering them and without keeping them on the heap. Tiles without edges are not stored.
+ */
+public class MVTTileFile {
+    public static final String NAME = "mvt_tiles";
+    private static final int MAGIC = 0x47484D56;
+    private static final int VERSION = 1;
+    // magic, version, renderer version, min zoom, max zoom, tile count, index offset
+    private static final int HEADER_BYTES = 6 * 4 + 8;
+    // tile id, data offset, length
+    private static final int ENTRY_BYTES = 8 + 8 + 4;
+    // tiles never cross the segment boundaries of the data, so that every tile is a slice of a single mapping
+    private static final long SEGMENT_BYTES = 1 << 30;
+
+    private final int minZoom;
+    private final int maxZoom;
+    private final int tileCount;
+    private final MappedByteBuffer index;
+    private final MappedByteBuffer[] segments;
+
+    private MVTTileFile(File file) throws IOException {
+        // the mappings stay valid after the file is closed
+        try (RandomAccessFile raFile = new RandomAccessFile(file, "r")) {
+            FileChannel channel = raFile.getChannel();
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            if (header.getInt() != MAGIC)
+                throw new IllegalStateException("Not a vector tile file: " + file);
+            int version = header.getInt();
+            if (version != VERSION)
+                throw new IllegalStateException("Vector tile file " + file + " has version " + version + " but " + VERSION
+                        + " is required. Render the tiles again.");
+            int rendererVersion = header.getInt();
+            if (rendererVersion != MVTRenderer.VERSION)
+                throw new IllegalStateException("The tiles in " + file + " were rendered with version " + rendererVersion
+                        + " but the current version is " + MVTRenderer.VERSION + ". Render the tiles again.");
+            minZoom = header.getInt();
+            maxZoom = header.getInt();
+            tileCount = header.getInt();
+            long indexOffset = header.getLong();
+            index = channel.map(FileChannel.MapMode.READ_ONLY, indexOffset, (long) tileCount * ENTRY_BYTES);
+            long dataBytes = indexOffset - HEADER_BYTES;
+            segments = new MappedByteBuffer[(int) ((dataBytes + SEGMENT_BYTES - 1) / SEGMENT_BYTES)];
+            for (int i = 0; i < segments.length; i++) {
+                long offset = i * SEGMENT_BYTES;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + offset, Math.min(SEGMENT_BYTES, dataBytes - offset));
+            }
+        }
+    }
+
+    /**
+     * @return the tile file or null if the file does not exist
+     */
+    public static MVTTileFile open(File file) {
+        if (!file.exists())
+            return null;
+        try {
+            return new MVTTileFile(file);
+        } catch (IOException ex) {
+            throw new RuntimeException("Could not open vector tile file " + file, ex);
+        }
+    }
+
+    /**
+     * Renders all tiles of the zoom range within the specified bounds and writes them into the specified file.
+     *
+     * @return the number of stored tiles
+     */
+    public static int write(File file, MVTRenderer renderer, BBox bounds, int minZoom, int maxZoom) throws IOException {
+        if (minZoom < 0 || maxZoom > 24 || minZoom > maxZoom)
+            throw new IllegalArgumentException("Invalid zoom range " + minZoom + "-" + maxZoom);
+        LongArrayList tileIds = new LongArrayList();
+        LongArrayList offsets = new LongArrayList();
+        IntArrayList lengths = new IntArrayList();
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.setLength(0);
+            out.seek(HEADER_BYTES);
+            long offset = 0;
+            for (int z = minZoom; z <= maxZoom; z++) {
+                int[] min = MVTRenderer.deg2num(bounds.maxLat, bounds.minLon, z);
+                int[] max = MVTRenderer.deg2num(bounds.minLat, bounds.maxLon, z);
+                for (int x = min[0]; x <= max[0]; x++) {
+                    for (int y = min[1]; y <= max[1]; y++) {
+                        byte[] tile = renderer.render(z, x, y, false);
+                        if (tile == null)
+                            continue;
+                        if (offset / SEGMENT_BYTES != (offset + tile.length - 1) / SEGMENT_BYTES) {
+                            offset = (offset / SEGMENT_BYTES + 1) * SEGMENT_BYTES;
+                            out.seek(HEADER_BYTES + offset);
+                        }
+                        out.write(tile);
+                        tileIds.add(tileId(z, x, y));
+                        offsets.add(offset);
+                        lengths.add(tile.length);
+                        offset += tile.length;
+                    }
+                }
+            }
+            // the tiles were rendered in the order of the tile ids, so the index is sorted already
+            ByteBuffer entry = ByteBuffer.allocate(ENTRY_BYTES);
+            for (int i = 0; i < tileIds.size(); i++) {
+                entry.clear();
+                entry.putLong(tileIds.get(i)).putLong(offsets.get(i)).putInt(lengths.get(i));
+                out.write(entry.array());
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putInt(MVTRenderer.VERSION).putInt(minZoom).putInt(maxZoom).putInt(tileIds.size()).putLong(HEADER_BYTES + offset);
+            out.seek(0);
+            out.write(header.array());
+        }
+        return tileIds.size();
+    }
+
+    private static long tileId(int z, int x, int y) {
+        return ((long) z << 58) | ((long) x << 29) | y;
+    }
+
+    /**
+     * @return true if the tiles of the specified zoom level were pre-rendered, i.e. a tile that is not contained is empty
+     */
+    public boolean containsZoom(int z) {
+        return z >= minZoom && z <= maxZoom;
+    }
+
+    /**
+     * @return a read only view of the tile or null if the tile is not contained
+     */
+    public ByteBuffer get(int z, int x, int y) {
+        long tileId = tileId(z, x, y);
+        int low = 0, high = tileCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midId = index.getLong(mid * ENTRY_BYTES);
+            if (midId < tileId) {
+                low = mid + 1;
+            } else if (midId > tileId) {
+                high = mid - 1;
+            } else {
+                long offset = index.getLong(mid * ENTRY_BYTES + 8);
+                int length = index.getInt(mid * ENTRY_BYTES + 16);
+                return segments[(int) (offset / SEGMENT_BYTES)].slice((int) (offset % SEGMENT_BYTES), length).asReadOnlyBuffer();
+            }
+        }
+        return null;
+    }
+
+    public int getTileCount() {
+        return tileCount;
+    }
+}
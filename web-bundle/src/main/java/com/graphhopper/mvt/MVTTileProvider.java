@@ -0,0 +1,133 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.mvt;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.storage.StorableProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+
+/**
+ * Provides the vector tiles of the graph. Tiles are taken from the pre-rendered {@link MVTTileFile} in the graph
+ * folder if there is one. Otherwise they are rendered and kept in an LRU cache with a limited number of bytes. When the
+ * graph is reloaded the cache is cleared and the tile file of the new graph is used. Requests that still use the
+ * replaced graph are rendered without the cache and do not switch back to it.
+ */
+public class MVTTileProvider {
+    private static final Logger logger = LoggerFactory.getLogger(MVTTileProvider.class);
+    private final long maxCacheBytes;
+    // access order => the first entry is the least recently used one
+    private final LinkedHashMap<String, byte[]> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long cacheBytes;
+    private GraphHopper graphHopper;
+    private MVTTileFile tileFile;
+    private String graphVersion;
+    // the versions of the instances that were replaced by a reload
+    private final Map<GraphHopper, String> retiredVersions = new WeakHashMap<>();
+
+    public MVTTileProvider(long maxCacheBytes) {
+        this.maxCacheBytes = maxCacheBytes;
+    }
+
+    /**
+     * @return a version of the tiles that changes whenever the graph or the rendering changes, usable as ETag
+     */
+    public String getVersion(GraphHopper graphHopper, int z, int x, int y, boolean renderAll) {
+        return getGraphVersion(graphHopper) + "-" + z + "-" + x + "-" + y + (renderAll ? "-all" : "");
+    }
+
+    private synchronized String getGraphVersion(GraphHopper graphHopper) {
+        return init(graphHopper) ? graphVersion : retiredVersions.get(graphHopper);
+    }
+
+    public ByteBuffer getTile(GraphHopper graphHopper, int z, int x, int y, boolean renderAll) {
+        String key = z + "/" + x + "/" + y + (renderAll ? "/all" : "");
+        synchronized (this) {
+            if (init(graphHopper)) {
+                if (!renderAll && tileFile != null && tileFile.containsZoom(z)) {
+                    ByteBuffer tile = tileFile.get(z, x, y);
+                    return tile == null ? ByteBuffer.wrap(MVTRenderer.getEmptyTile()) : tile;
+                }
+                byte[] tile = cache.get(key);
+                if (tile != null)
+                    return ByteBuffer.wrap(tile);
+            }
+        }
+
+        byte[] tile = new MVTRenderer(graphHopper).render(z, x, y, renderAll);
+        if (tile == null)
+            tile = MVTRenderer.getEmptyTile();
+        synchronized (this) {
+            // the graph might have been reloaded while rendering, and tiles of a replaced graph are never cached
+            if (graphHopper == this.graphHopper)
+                put(key, tile);
+        }
+        return ByteBuffer.wrap(tile);
+    }
+
+    private void put(String key, byte[] tile) {
+        if (tile.length > maxCacheBytes)
+            return;
+        byte[] old = cache.put(key, tile);
+        cacheBytes += tile.length - (old == null ? 0 : old.length);
+        Iterator<byte[]> iter = cache.values().iterator();
+        while (cacheBytes > maxCacheBytes) {
+            cacheBytes -= iter.next().length;
+            iter.remove();
+        }
+    }
+
+    /**
+     * Switches to the given instance, unless it was replaced already: while the requests of a replaced instance are
+     * finishing the requests of the new instance start, and the old ones must not clear the cache or switch back.
+     *
+     * @return false if the given instance was replaced by a newer one
+     */
+    private boolean init(GraphHopper graphHopper) {
+        if (this.graphHopper == graphHopper)
+            return true;
+        if (retiredVersions.containsKey(graphHopper))
+            return false;
+        if (this.graphHopper != null)
+            retiredVersions.put(this.graphHopper, graphVersion);
+        cache.clear();
+        cacheBytes = 0;
+        this.graphHopper = graphHopper;
+        try {
+            tileFile = MVTTileFile.open(new File(graphHopper.getGraphHopperLocation(), MVTTileFile.NAME));
+        } catch (IllegalStateException ex) {
+            logger.warn("ignoring pre-rendered vector tiles: " + ex.getMessage());
+            tileFile = null;
+        }
+        if (tileFile != null)
+            logger.info("using {} pre-rendered vector tiles of {}", tileFile.getTileCount(), graphHopper.getGraphHopperLocation());
+        StorableProperties properties = graphHopper.getProperties();
+        graphVersion = Integer.toHexString(Objects.hash(MVTRenderer.VERSION, graphHopper.getGraphHopperLocation(),
+                properties.get("datareader.import.date"), properties.get("datareader.data.date"), properties.get("graph.geometry_levels"),
+                tileFile == null ? 0 : tileFile.getTileCount()));
+        return true;
+    }
+}
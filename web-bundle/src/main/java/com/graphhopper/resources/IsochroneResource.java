@@ -7,7 +7,9 @@ import com.graphhopper.GraphHopperConfig;
 import com.graphhopper.config.Profile;
 import com.graphhopper.http.GHPointParam;
 import com.graphhopper.http.ProfileResolver;
+import com.graphhopper.isochrone.algorithm.CHShortestPathTree;
 import com.graphhopper.isochrone.algorithm.ContourBuilder;
+import com.graphhopper.isochrone.algorithm.RasterIsochroneBuilder;
 import com.graphhopper.isochrone.algorithm.ShortestPathTree;
 import com.graphhopper.isochrone.algorithm.Triangulator;
 import com.graphhopper.routing.ev.BooleanEncodedValue;
@@ -17,6 +19,7 @@ import com.graphhopper.routing.util.DefaultSnapFilter;
 import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.RoutingCHGraph;
 import com.graphhopper.storage.index.LocationIndex;
 import com.graphhopper.storage.index.Snap;
 import com.graphhopper.util.*;
@@ -34,6 +37,7 @@ import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.UriInfo;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.OptionalInt;
 import java.util.OptionalLong;
 import java.util.function.ToDoubleFunction;
@@ -47,6 +51,7 @@ import static com.graphhopper.routing.util.TraversalMode.NODE_BASED;
 public class IsochroneResource {
 
     private static final Logger logger = LoggerFactory.getLogger(IsochroneResource.class);
+    private static final double MIN_RASTER_RESOLUTION = 10;
 
     private final GraphHopperConfig config;
     private final GraphHopper graphHopper;
@@ -78,10 +83,15 @@ public class IsochroneResource {
             @QueryParam("weight_limit") @DefaultValue("-1") OptionalLong weightLimit,
             @QueryParam("type") @DefaultValue("json") ResponseType respType,
             @QueryParam("tolerance") @DefaultValue("0") double toleranceInMeter,
-            @QueryParam("full_geometry") @DefaultValue("false") boolean fullGeometry) {
+            @QueryParam("full_geometry") @DefaultValue("false") boolean fullGeometry,
+            @QueryParam("raster_resolution") @DefaultValue("0") double rasterResolutionInMeter) {
         StopWatch sw = new StopWatch().start();
+        if (rasterResolutionInMeter != 0 && rasterResolutionInMeter < MIN_RASTER_RESOLUTION)
+            throw new IllegalArgumentException("query param raster_resolution must be at least " + MIN_RASTER_RESOLUTION + " meters but was " + rasterResolutionInMeter);
         PMap hintsMap = new PMap();
         RouteResource.initHints(hintsMap, uriInfo.getQueryParameters());
+        // the CH-based shortest path tree is only used if it was requested explicitly
+        boolean useCH = !hintsMap.getBool(Parameters.CH.DISABLE, true);
         hintsMap.putObject(Parameters.CH.DISABLE, true);
         hintsMap.putObject(Parameters.Landmark.DISABLE, true);
 
@@ -95,14 +105,22 @@ public class IsochroneResource {
             throw new IllegalArgumentException("The requested profile '" + profileName + "' does not exist");
         LocationIndex locationIndex = graphHopper.getLocationIndex();
         BaseGraph graph = graphHopper.getBaseGraph();
-        Weighting weighting = graphHopper.createWeighting(profile, hintsMap);
+        RoutingCHGraph chGraph = null;
+        if (useCH) {
+            chGraph = graphHopper.getCHGraphs().get(profileName);
+            if (chGraph == null || chGraph.isEdgeBased())
+                throw new IllegalArgumentException("ch.disable=false requires a node-based CH preparation for the profile '" + profileName + "'");
+        }
+        Weighting weighting = chGraph == null ? graphHopper.createWeighting(profile, hintsMap) : chGraph.getWeighting();
         BooleanEncodedValue inSubnetworkEnc = graphHopper.getEncodingManager().getBooleanEncodedValue(Subnetwork.key(profileName));
         Snap snap = locationIndex.findClosest(point.get().lat, point.get().lon, new DefaultSnapFilter(weighting, inSubnetworkEnc));
         if (!snap.isValid())
             throw new IllegalArgumentException("Point not found:" + point);
         QueryGraph queryGraph = QueryGraph.create(graph, snap);
         TraversalMode traversalMode = profile.hasTurnCosts() ? EDGE_BASED : NODE_BASED;
-        ShortestPathTree shortestPathTree = new ShortestPathTree(queryGraph, queryGraph.wrapWeighting(weighting), reverseFlow, traversalMode);
+        ShortestPathTree shortestPathTree = chGraph == null
+                ? new ShortestPathTree(queryGraph, queryGraph.wrapWeighting(weighting), reverseFlow, traversalMode)
+                : new CHShortestPathTree(queryGraph, chGraph, reverseFlow).setSearchStatePool(graphHopper.getRouterConfig().getSearchStatePool());
 
         double limit;
         ToDoubleFunction<ShortestPathTree.IsoLabel> fz;
@@ -119,19 +137,32 @@ public class IsochroneResource {
             shortestPathTree.setTimeLimit(limit + Math.max(limit * 0.14, 200_000));
             fz = l -> l.time;
         }
-        ArrayList<Double> zs = new ArrayList<>();
-        double delta = limit / nBuckets.orElseThrow(() -> new IllegalArgumentException("query param buckets is not a number."));
-        for (int i = 0; i < nBuckets.getAsInt(); i++) {
-            zs.add((i + 1) * delta);
+        double[] zs = new double[nBuckets.orElseThrow(() -> new IllegalArgumentException("query param buckets is not a number."))];
+        double delta = limit / zs.length;
+        for (int i = 0; i < zs.length; i++) {
+            zs[i] = (i + 1) * delta;
         }
 
-        Triangulator.Result result = triangulator.triangulate(snap, queryGraph, shortestPathTree, fz, degreesFromMeters(toleranceInMeter));
-
-        ContourBuilder contourBuilder = new ContourBuilder(result.triangulation);
+        List<MultiPolygon> isolines;
+        if (rasterResolutionInMeter > 0) {
+            // the raster does not need all visited nodes at once, so it also works for large limits. instead the memory is
+            // limited by the number of cells
+            RasterIsochroneBuilder rasterBuilder = new RasterIsochroneBuilder(point.get().lat, rasterResolutionInMeter)
+                    .setMaxCells(graphHopper.getRouterConfig().getIsochroneMaxRasterCells());
+            rasterBuilder.add(snap, queryGraph, shortestPathTree, fz);
+            logger.info("Building contours from {} raster cells", rasterBuilder.getCells());
+            isolines = rasterBuilder.computeIsolines(zs);
+        } else {
+            Triangulator.Result result = triangulator.triangulate(snap, queryGraph, shortestPathTree, fz, degreesFromMeters(toleranceInMeter));
+            ContourBuilder contourBuilder = new ContourBuilder(result.triangulation);
+            isolines = new ArrayList<>(zs.length);
+            for (double z : zs) {
+                logger.info("Building contour z={}", z);
+                isolines.add(contourBuilder.computeIsoline(z, result.seedEdges));
+            }
+        }
         ArrayList<Geometry> isochrones = new ArrayList<>();
-        for (Double z : zs) {
-            logger.info("Building contour z={}", z);
-            MultiPolygon isochrone = contourBuilder.computeIsoline(z, result.seedEdges);
+        for (MultiPolygon isochrone : isolines) {
             if (fullGeometry) {
                 isochrones.add(isochrone);
             } else {
@@ -17,6 +17,7 @@
  */
 package com.graphhopper.resources;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
@@ -43,7 +44,10 @@ import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
 import jakarta.ws.rs.core.UriInfo;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
 
 import static com.graphhopper.resources.RouteResource.removeLegacyParameters;
@@ -71,6 +75,7 @@ public class MapMatchingResource {
     private final MapMatchingRouterFactory mapMatchingRouterFactory;
     private final ObjectMapper objectMapper = Jackson.newObjectMapper();
     private final String osmDate;
+    private final int snapThreads;
 
     @Inject
     public MapMatchingResource(GraphHopperConfig config, GraphHopper graphHopper, ProfileResolver profileResolver, TranslationMap trMap, MapMatchingRouterFactory mapMatchingRouterFactory) {
@@ -80,6 +85,7 @@ public class MapMatchingResource {
         this.trMap = trMap;
         this.mapMatchingRouterFactory = mapMatchingRouterFactory;
         this.osmDate = graphHopper.getProperties().getAll().get("datareader.data.date");
+        this.snapThreads = config.getInt("map_matching.snap_threads", 1);
     }
 
     @POST
@@ -101,7 +107,8 @@ public class MapMatchingResource {
             @QueryParam("gpx.route") @DefaultValue("true") boolean withRoute,
             @QueryParam("gpx.track") @DefaultValue("true") boolean withTrack,
             @QueryParam("traversal_keys") @DefaultValue("false") boolean enableTraversalKeys,
-            @QueryParam("gps_accuracy") @DefaultValue("10") double gpsAccuracy) {
+            @QueryParam("gps_accuracy") @DefaultValue("10") double gpsAccuracy,
+            @QueryParam("stream") @DefaultValue("false") boolean stream) {
         boolean writeGPX = "gpx".equalsIgnoreCase(outType);
         if (gpx.trk.isEmpty()) {
             throw new IllegalArgumentException("No tracks found in GPX document. Are you using waypoints or routes instead?");
@@ -128,8 +135,15 @@ public class MapMatchingResource {
 
         MapMatching matching = new MapMatching(graphHopper.getBaseGraph(), (LocationIndexTree) graphHopper.getLocationIndex(), mapMatchingRouterFactory.createMapMatchingRouter(hints));
         matching.setMeasurementErrorSigma(gpsAccuracy);
+        matching.setSnapThreads(snapThreads);
 
         List<Observation> measurements = GpxConversions.getEntries(gpx.trk.get(0));
+        if (stream) {
+            if (!"extended_json".equals(outType))
+                throw new IllegalArgumentException("stream=true is only supported for type=extended_json");
+            return Response.ok(streamExtendedJson(matching, measurements, profile, enableElevation, pointsEncoded, pointsEncodedMultiplier), MediaType.APPLICATION_JSON).
+                    build();
+        }
         MatchResult matchResult = matching.match(measurements);
 
         sw.stop();
@@ -193,6 +207,91 @@ public class MapMatchingResource {
         }
     }
 
+    /**
+     * Writes the same JSON as {@link #convertToTree} while the trace is matched window by window, so that the edge
+     * matches of long traces do not have to be kept in memory. The match statistics are appended at the end.
+     * <p>
+     * Nothing is written before the first window was matched, so errors in the first window lead to the usual error
+     * response. If a later window fails the status was already sent. In this case the JSON is completed with the
+     * message and hints of the error instead of the match statistics.
+     */
+    private StreamingOutput streamExtendedJson(MapMatching matching, List<Observation> measurements, String profile,
+                                               boolean elevation, boolean pointsEncoded, double pointsEncodedMultiplier) {
+        return output -> {
+            StopWatch sw = new StopWatch().start();
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(output);
+            boolean[] started = {false};
+            int[] emIndex = {0};
+            MatchResult matchResult;
+            try {
+                matchResult = matching.matchStreaming(measurements, edgeMatches -> {
+                    try {
+                        if (!started[0]) {
+                            writeStreamStart(generator);
+                            started[0] = true;
+                        }
+                        for (EdgeMatch edgeMatch : edgeMatches) {
+                            generator.writeTree(createLink(edgeMatch, emIndex[0] == 0, elevation, pointsEncoded, pointsEncodedMultiplier));
+                            emIndex[0]++;
+                        }
+                        generator.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                // before the first write the exception can still be mapped to an error response
+                if (!started[0])
+                    throw e;
+                logger.warn("map matching failed after " + emIndex[0] + " edge matches were streamed", e);
+                writeStreamEnd(generator);
+                generator.writeStringField("message", e.getMessage());
+                generator.writeArrayFieldStart("hints");
+                generator.writeStartObject();
+                generator.writeStringField("message", e.getMessage());
+                generator.writeEndObject();
+                generator.writeEndArray();
+                generator.writeEndObject();
+                generator.close();
+                return;
+            }
+            if (!started[0])
+                writeStreamStart(generator);
+            writeStreamEnd(generator);
+            Map<String, Object> matchStatistics = new HashMap<>();
+            matchStatistics.put("distance", matchResult.getMatchLength());
+            matchStatistics.put("time", matchResult.getMatchMillis());
+            matchStatistics.put("original_distance", matchResult.getGpxEntriesLength());
+            generator.writeObjectField("map_matching", matchStatistics);
+            generator.writeEndObject();
+            generator.close();
+            sw.stop();
+            logger.info(objectMapper.createObjectNode()
+                    .put("duration", sw.getNanos())
+                    .put("profile", profile)
+                    .put("observations", measurements.size())
+                    .put("stream", true)
+                    .putPOJO("mapmatching", matching.getStatistics()).toString());
+        };
+    }
+
+    private static void writeStreamStart(JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeObjectFieldStart("diary");
+        generator.writeArrayFieldStart("entries");
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("links");
+    }
+
+    private static void writeStreamEnd(JsonGenerator generator) throws IOException {
+        generator.writeEndArray();
+        generator.writeEndObject();
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+
     public static JsonNode convertToTree(MatchResult result, boolean elevation, boolean pointsEncoded, double pointsEncodedMultiplier) {
         ObjectNode root = JsonNodeFactory.instance.objectNode();
         ObjectNode diary = root.putObject("diary");
@@ -200,26 +299,30 @@ public class MapMatchingResource {
         ObjectNode route = entries.addObject();
         ArrayNode links = route.putArray("links");
         for (int emIndex = 0; emIndex < result.getEdgeMatches().size(); emIndex++) {
-            ObjectNode link = links.addObject();
-            EdgeMatch edgeMatch = result.getEdgeMatches().get(emIndex);
-            PointList pointList = edgeMatch.getEdgeState().fetchWayGeometry(emIndex == 0 ? FetchMode.ALL : FetchMode.PILLAR_AND_ADJ);
-            final ObjectNode geometry = link.putObject("geometry");
-            if (pointList.size() < 2) {
-                geometry.putPOJO("coordinates", pointsEncoded ? ResponsePathSerializer.encodePolyline(pointList, elevation, pointsEncodedMultiplier) : pointList.toLineString(elevation));
-                geometry.put("type", "Point");
-            } else {
-                geometry.putPOJO("coordinates", pointsEncoded ? ResponsePathSerializer.encodePolyline(pointList, elevation, pointsEncodedMultiplier) : pointList.toLineString(elevation));
-                geometry.put("type", "LineString");
-            }
-            link.put("id", edgeMatch.getEdgeState().getEdge());
-            ArrayNode wpts = link.putArray("wpts");
-            for (State extension : edgeMatch.getStates()) {
-                ObjectNode wpt = wpts.addObject();
-                wpt.put("x", extension.getSnap().getSnappedPoint().lon);
-                wpt.put("y", extension.getSnap().getSnappedPoint().lat);
-            }
+            links.add(createLink(result.getEdgeMatches().get(emIndex), emIndex == 0, elevation, pointsEncoded, pointsEncodedMultiplier));
         }
         return root;
     }
 
+    private static ObjectNode createLink(EdgeMatch edgeMatch, boolean first, boolean elevation, boolean pointsEncoded, double pointsEncodedMultiplier) {
+        ObjectNode link = JsonNodeFactory.instance.objectNode();
+        PointList pointList = edgeMatch.getEdgeState().fetchWayGeometry(first ? FetchMode.ALL : FetchMode.PILLAR_AND_ADJ);
+        final ObjectNode geometry = link.putObject("geometry");
+        if (pointList.size() < 2) {
+            geometry.putPOJO("coordinates", pointsEncoded ? ResponsePathSerializer.encodePolyline(pointList, elevation, pointsEncodedMultiplier) : pointList.toLineString(elevation));
+            geometry.put("type", "Point");
+        } else {
+            geometry.putPOJO("coordinates", pointsEncoded ? ResponsePathSerializer.encodePolyline(pointList, elevation, pointsEncodedMultiplier) : pointList.toLineString(elevation));
+            geometry.put("type", "LineString");
+        }
+        link.put("id", edgeMatch.getEdgeState().getEdge());
+        ArrayNode wpts = link.putArray("wpts");
+        for (State extension : edgeMatch.getStates()) {
+            ObjectNode wpt = wpts.addObject();
+            wpt.put("x", extension.getSnap().getSnappedPoint().lon);
+            wpt.put("y", extension.getSnap().getSnappedPoint().lat);
+        }
+        return link;
+    }
+
 }
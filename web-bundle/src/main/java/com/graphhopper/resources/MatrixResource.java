@@ -0,0 +1,132 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.resources;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.graphhopper.GHMatrixRequest;
+import com.graphhopper.GHMatrixResponse;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.GraphHopperConfig;
+import com.graphhopper.http.ProfileResolver;
+import com.graphhopper.jackson.MultiException;
+import com.graphhopper.jackson.ResponsePathSerializer;
+import com.graphhopper.util.PMap;
+import com.graphhopper.util.StopWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.inject.Inject;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.constraints.NotNull;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.graphhopper.resources.RouteResource.removeLegacyParameters;
+
+/**
+ * Calculates the weights, times and distances between many points, see {@link GraphHopper#calcMatrix}. The result
+ * uses the same format as the GraphHopper Matrix API: the times are given in seconds, the distances in meters and
+ * connections that were not found are null (if fail_fast=false).
+ */
+@Path("matrix")
+public class MatrixResource {
+
+    private static final Logger logger = LoggerFactory.getLogger(MatrixResource.class);
+
+    private final GraphHopperConfig config;
+    private final GraphHopper graphHopper;
+    private final ProfileResolver profileResolver;
+    private final String osmDate;
+    private final List<String> snapPreventionsDefault;
+    private final int maxLocations;
+
+    @Inject
+    public MatrixResource(GraphHopperConfig config, GraphHopper graphHopper, ProfileResolver profileResolver) {
+        this.config = config;
+        this.graphHopper = graphHopper;
+        this.profileResolver = profileResolver;
+        this.osmDate = graphHopper.getProperties().getAll().get("datareader.data.date");
+        this.snapPreventionsDefault = Arrays.stream(config.getString("routing.snap_preventions_default", "")
+                .split(",")).map(String::trim).filter(s -> !s.isEmpty()).toList();
+        this.maxLocations = config.getInt("routing.matrix.max_locations", 10_000);
+    }
+
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response doPost(@NotNull GHMatrixRequest request, @Context HttpServletRequest httpReq) {
+        StopWatch sw = new StopWatch().start();
+        if (!request.hasSnapPreventions())
+            request.setSnapPreventions(snapPreventionsDefault);
+        if ((long) request.getFromPoints().size() * request.getToPoints().size() > maxLocations)
+            throw new IllegalArgumentException("Too many locations, the maximum matrix size (from_points x to_points) is " + maxLocations);
+
+        PMap profileResolverHints = new PMap(request.getHints());
+        profileResolverHints.putObject("profile", request.getProfile());
+        request.setProfile(profileResolver.resolveProfile(profileResolverHints));
+        removeLegacyParameters(request.getHints());
+
+        GHMatrixResponse matrixResponse = graphHopper.calcMatrix(request);
+        double took = sw.stop().getMillisDouble();
+        String logStr = httpReq.getRemoteAddr() + " " + httpReq.getLocale() + " " + httpReq.getHeader("User-Agent")
+                + " " + request + ", took: " + String.format("%.1f", took) + " ms, profile: " + request.getProfile();
+        if (matrixResponse.hasErrors()) {
+            logger.info(logStr + " " + matrixResponse);
+            throw new MultiException(matrixResponse.getErrors());
+        }
+        logger.info(logStr + ", debugInfo: " + matrixResponse.getDebugInfo());
+
+        List<String> outArrays = request.getOutArrays().isEmpty() ? List.of("weights") : request.getOutArrays();
+        ObjectNode json = JsonNodeFactory.instance.objectNode();
+        for (String outArray : outArrays) {
+            if (!List.of("weights", "times", "distances").contains(outArray))
+                throw new IllegalArgumentException("Unknown out_array '" + outArray + "', use weights, times or distances");
+            json.set(outArray, toJson(matrixResponse, outArray));
+        }
+        json.putPOJO("info", new ResponsePathSerializer.Info(config.getCopyrights(), Math.round(took), osmDate));
+        return Response.ok(json).
+                header("X-GH-Took", "" + Math.round(took)).
+                type(MediaType.APPLICATION_JSON).
+                build();
+    }
+
+    private static JsonNode toJson(GHMatrixResponse rsp, String outArray) {
+        ArrayNode rows = JsonNodeFactory.instance.arrayNode();
+        for (int from = 0; from < rsp.getWeights().length; from++) {
+            ArrayNode row = rows.addArray();
+            for (int to = 0; to < rsp.getWeights()[from].length; to++) {
+                if (!rsp.isConnected(from, to))
+                    row.addNull();
+                else if (outArray.equals("weights"))
+                    row.add(Math.round(rsp.getWeights()[from][to] * 1000) / 1000.0);
+                else if (outArray.equals("times"))
+                    row.add(Math.round(rsp.getTimes()[from][to] / 1000.0));
+                else
+                    row.add(Math.round(rsp.getDistances()[from][to]));
+            }
+        }
+        return rows;
+    }
+}
@@ -17,6 +17,9 @@
  */
 package com.graphhopper.resources;
 
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.graphhopper.GHRequest;
 import com.graphhopper.GHResponse;
 import com.graphhopper.GraphHopper;
@@ -39,6 +42,7 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.constraints.NotNull;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.*;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -66,6 +70,7 @@ public class RouteResource {
     private final Boolean hasElevation;
     private final String osmDate;
     private final List<String> snapPreventionsDefault;
+    private final int maxBatchRequests;
 
     @Inject
     public RouteResource(GraphHopperConfig config, GraphHopper graphHopper, ProfileResolver profileResolver, GHRequestTransformer ghRequestTransformer, @Named("hasElevation") Boolean hasElevation) {
@@ -77,6 +82,7 @@ public class RouteResource {
         this.osmDate = graphHopper.getProperties().getAll().get("datareader.data.date");
         this.snapPreventionsDefault = Arrays.stream(config.getString("routing.snap_preventions_default", "")
                 .split(",")).map(String::trim).filter(s -> !s.isEmpty()).toList();
+        this.maxBatchRequests = config.getInt("routing.batch.max_requests", 1_000);
     }
 
     @GET
@@ -230,6 +236,71 @@ public class RouteResource {
         }
     }
 
+    /**
+     * Calculates the routes of many independent requests at once, see {@link GraphHopper#routeBatch}. The body is a
+     * JSON array of requests in the format of the POST /route endpoint. The response contains one entry per request:
+     * either the route or the error message and hints of this request, including requests with an unknown profile.
+     */
+    @POST
+    @Path("batch")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response doPostBatch(@NotNull List<GHRequest> requests, @Context HttpServletRequest httpReq) {
+        StopWatch sw = new StopWatch().start();
+        if (requests.size() > maxBatchRequests)
+            throw new IllegalArgumentException("Too many requests, the maximum batch size is " + maxBatchRequests);
+        // the requests whose profile cannot be resolved are not routed, but get their error like the others
+        List<GHRequest> resolved = new ArrayList<>(requests.size());
+        GHResponse[] ghResponses = new GHResponse[requests.size()];
+        for (int i = 0; i < requests.size(); i++) {
+            GHRequest request = requests.get(i);
+            try {
+                if (!request.hasSnapPreventions())
+                    request.setSnapPreventions(snapPreventionsDefault);
+                request = ghRequestTransformer.transformRequest(request);
+                if (Helper.isEmpty(request.getProfile()) && request.getCustomModel() != null)
+                    throw new IllegalArgumentException("The 'profile' parameter is required when you use the `custom_model` parameter");
+                PMap profileResolverHints = new PMap(request.getHints());
+                profileResolverHints.putObject("profile", request.getProfile());
+                profileResolverHints.putObject("has_curbsides", !request.getCurbsides().isEmpty());
+                request.setProfile(profileResolver.resolveProfile(profileResolverHints));
+                removeLegacyParameters(request.getHints());
+                resolved.add(request);
+            } catch (IllegalArgumentException ex) {
+                ghResponses[i] = new GHResponse().addError(ex);
+            }
+            requests.set(i, request);
+        }
+
+        List<GHResponse> resolvedResponses = graphHopper.routeBatch(resolved);
+        for (int i = 0, j = 0; i < ghResponses.length; i++)
+            if (ghResponses[i] == null)
+                ghResponses[i] = resolvedResponses.get(j++);
+        double took = sw.stop().getMillisDouble();
+        ObjectNode json = JsonNodeFactory.instance.objectNode();
+        ArrayNode responses = json.putArray("responses");
+        int errors = 0;
+        for (int i = 0; i < requests.size(); i++) {
+            GHRequest request = requests.get(i);
+            GHResponse ghResponse = ghResponses[i];
+            if (ghResponse.hasErrors()) {
+                errors++;
+                responses.addPOJO(new MultiException(ghResponse.getErrors()));
+            } else {
+                responses.add(ResponsePathSerializer.jsonObject(ghResponse, new ResponsePathSerializer.Info(config.getCopyrights(), Math.round(took), osmDate),
+                        request.getHints().getBool(INSTRUCTIONS, true), request.getHints().getBool(CALC_POINTS, true),
+                        request.getHints().getBool("elevation", false), request.getHints().getBool("points_encoded", true),
+                        request.getHints().getDouble("points_encoded_multiplier", 1e5)));
+            }
+        }
+        logger.info(httpReq.getRemoteAddr() + " " + httpReq.getLocale() + " " + httpReq.getHeader("User-Agent")
+                + " batch of " + requests.size() + " requests, took: " + String.format("%.1f", took) + " ms, errors: " + errors);
+        return Response.ok(json).
+                header("X-GH-Took", "" + Math.round(took)).
+                type(MediaType.APPLICATION_JSON).
+                build();
+    }
+
     public static void removeLegacyParameters(PMap hints) {
         // these parameters should only be used to resolve the profile, but should not be passed to GraphHopper
         hints.remove("weighting");
@@ -4,6 +4,8 @@ import com.graphhopper.GraphHopper;
 import com.graphhopper.config.Profile;
 import com.graphhopper.http.GHPointParam;
 import com.graphhopper.http.ProfileResolver;
+import com.graphhopper.isochrone.algorithm.CHShortestPathTree;
+import com.graphhopper.isochrone.algorithm.SPTBatchWriter;
 import com.graphhopper.isochrone.algorithm.ShortestPathTree;
 import com.graphhopper.routing.ev.*;
 import com.graphhopper.routing.querygraph.QueryGraph;
@@ -13,6 +15,7 @@ import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.BaseGraph;
 import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.storage.RoutingCHGraph;
 import com.graphhopper.storage.index.LocationIndex;
 import com.graphhopper.storage.index.Snap;
 import com.graphhopper.util.*;
@@ -39,12 +42,14 @@ import static com.graphhopper.routing.util.TraversalMode.NODE_BASED;
 import static com.graphhopper.util.Parameters.Details.STREET_NAME;
 
 /**
- * This resource provides the entire shortest path tree as response. In a simple CSV format discussed at #1577.
+ * This resource provides the entire shortest path tree as response. In a simple CSV format discussed at #1577 or, with
+ * type=binary, in the columnar format of SPTBatchWriter that is streamed in batches while the search is running.
  */
 @Path("spt")
 public class SPTResource {
 
     private static final Logger logger = LoggerFactory.getLogger(SPTResource.class);
+    private static final int BINARY_BATCH_SIZE = 4096;
 
     public static class IsoLabelWithCoordinates {
         public int nodeId = -1;
@@ -68,18 +73,21 @@ public class SPTResource {
     // Annotating this as application/json because errors come out as json, and
     // IllegalArgumentExceptions are not mapped to a fixed mediatype, because in RouteResource, it could be GPX.
     @GET
-    @Produces({"text/csv", "application/json"})
+    @Produces({"text/csv", "application/octet-stream", "application/json"})
     public Response doGet(
             @Context UriInfo uriInfo,
             @QueryParam("profile") String profileName,
             @QueryParam("reverse_flow") @DefaultValue("false") boolean reverseFlow,
             @QueryParam("point") @NotNull GHPointParam point,
             @QueryParam("columns") String columnsParam,
+            @QueryParam("type") @DefaultValue("csv") String type,
             @QueryParam("time_limit") @DefaultValue("600") OptionalLong timeLimitInSeconds,
             @QueryParam("distance_limit") @DefaultValue("-1") OptionalLong distanceInMeter) {
         StopWatch sw = new StopWatch().start();
         PMap hintsMap = new PMap();
         RouteResource.initHints(hintsMap, uriInfo.getQueryParameters());
+        // the CH-based shortest path tree is only used if it was requested explicitly
+        boolean useCH = !hintsMap.getBool(Parameters.CH.DISABLE, true);
         hintsMap.putObject(Parameters.CH.DISABLE, true);
         hintsMap.putObject(Parameters.Landmark.DISABLE, true);
 
@@ -93,7 +101,13 @@ public class SPTResource {
             throw new IllegalArgumentException("The requested profile '" + profileName + "' does not exist");
         LocationIndex locationIndex = graphHopper.getLocationIndex();
         BaseGraph graph = graphHopper.getBaseGraph();
-        Weighting weighting = graphHopper.createWeighting(profile, hintsMap);
+        RoutingCHGraph chGraph = null;
+        if (useCH) {
+            chGraph = graphHopper.getCHGraphs().get(profileName);
+            if (chGraph == null || chGraph.isEdgeBased())
+                throw new IllegalArgumentException("ch.disable=false requires a node-based CH preparation for the profile '" + profileName + "'");
+        }
+        Weighting weighting = chGraph == null ? graphHopper.createWeighting(profile, hintsMap) : chGraph.getWeighting();
         BooleanEncodedValue inSubnetworkEnc = graphHopper.getEncodingManager().getBooleanEncodedValue(Subnetwork.key(profileName));
         Snap snap = locationIndex.findClosest(point.get().lat, point.get().lon, new DefaultSnapFilter(weighting, inSubnetworkEnc));
         if (!snap.isValid())
@@ -101,7 +115,9 @@ public class SPTResource {
         QueryGraph queryGraph = QueryGraph.create(graph, snap);
         NodeAccess nodeAccess = queryGraph.getNodeAccess();
         TraversalMode traversalMode = profile.hasTurnCosts() ? EDGE_BASED : NODE_BASED;
-        ShortestPathTree shortestPathTree = new ShortestPathTree(queryGraph, queryGraph.wrapWeighting(weighting), reverseFlow, traversalMode);
+        ShortestPathTree shortestPathTree = chGraph == null
+                ? new ShortestPathTree(queryGraph, queryGraph.wrapWeighting(weighting), reverseFlow, traversalMode)
+                : new CHShortestPathTree(queryGraph, chGraph, reverseFlow).setSearchStatePool(graphHopper.getRouterConfig().getSearchStatePool());
 
         if (distanceInMeter.orElseThrow(() -> new IllegalArgumentException("query param distance_limit is not a number.")) > 0) {
             shortestPathTree.setDistanceLimit(distanceInMeter.getAsLong());
@@ -110,6 +126,21 @@ public class SPTResource {
             shortestPathTree.setTimeLimit(limit);
         }
 
+        if (type.equals("binary")) {
+            List<String> binaryColumns = Helper.isEmpty(columnsParam) ? SPTBatchWriter.COLUMNS : Arrays.asList(columnsParam.split(","));
+            SPTBatchWriter writer = new SPTBatchWriter(nodeAccess, binaryColumns, BINARY_BATCH_SIZE);
+            StreamingOutput out = output -> {
+                writer.start(output);
+                shortestPathTree.search(snap.getClosestNode(), writer);
+                writer.finish();
+                logger.info("took: " + sw.stop().getSeconds() + ", visited nodes:" + shortestPathTree.getVisitedNodes()
+                        + ", rows: " + writer.getTotalRows() + ", " + uriInfo.getQueryParameters());
+            };
+            return Response.ok(out).type("application/octet-stream").build();
+        } else if (!type.equals("csv")) {
+            throw new IllegalArgumentException("Unsupported type " + type + ", use csv or binary");
+        }
+
         final String COL_SEP = ",", LINE_SEP = "\n";
         List<String> columns;
         if (!Helper.isEmpty(columnsParam))
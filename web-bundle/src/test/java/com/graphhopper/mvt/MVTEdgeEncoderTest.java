@@ -0,0 +1,138 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.mvt;
+
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.PointList;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import vector_tile.VectorTile;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MVTEdgeEncoderTest {
+    // the tile covers one degree in both directions, so 0.25 degrees are 1024 units, and the lines are clipped
+    // 128 units outside the tile
+    private MVTEdgeEncoder encoder;
+    private EdgeIteratorState edge;
+
+    @BeforeEach
+    public void setUp() {
+        encoder = new MVTEdgeEncoder(List.of(), 0, 1, 0, 1);
+        BaseGraph graph = new BaseGraph.Builder(4).create();
+        edge = graph.edge(0, 1).setDistance(100);
+    }
+
+    @Test
+    public void lineInsideTile() throws IOException {
+        assertTrue(encoder.addEdge(edge, line(0.5, 0.25, 0.5, 0.75, 0.25, 0.75)));
+        assertEquals(List.of(List.of(p(1024, 2048), p(3072, 2048), p(3072, 3072))), decodeLines(encoder.encode()));
+    }
+
+    @Test
+    public void lineCrossingTileBorder() throws IOException {
+        assertTrue(encoder.addEdge(edge, line(0.5, 0.5, 0.5, 1.5)));
+        assertEquals(List.of(List.of(p(2048, 2048), p(4224, 2048))), decodeLines(encoder.encode()));
+    }
+
+    @Test
+    public void lineLeavingAndReenteringTile() throws IOException {
+        // the second segment is completely outside of the tile and the third one enters it again
+        assertTrue(encoder.addEdge(edge, line(0.5, 0.5, 0.5, 1.5, 0.25, 1.5, 0.25, 0.5)));
+        assertEquals(List.of(
+                List.of(p(2048, 2048), p(4224, 2048)),
+                List.of(p(4224, 3072), p(2048, 3072))), decodeLines(encoder.encode()));
+    }
+
+    @Test
+    public void lineOutsideTile() throws IOException {
+        assertFalse(encoder.addEdge(edge, line(0.5, 1.5, 0.5, 2.5)));
+        // the bounding box of the segment overlaps the tile, but the segment itself does not
+        assertFalse(encoder.addEdge(edge, line(0.75, 1.5, 1.5, 0.75)));
+        assertEquals(0, encoder.getFeatureCount());
+        assertEquals(List.of(), decodeLines(encoder.encode()));
+    }
+
+    @Test
+    public void lineShorterThanOneUnit() throws IOException {
+        double halfUnit = 0.5 / MVTEdgeEncoder.EXTENT;
+        assertFalse(encoder.addEdge(edge, line(0.5, 0.5, 0.5, 0.5 + halfUnit)));
+        // a line that is longer than one unit in total, but whose points round to the same position at the border
+        assertFalse(encoder.addEdge(edge, line(0.5, 1.5, 0.5, 1 + (128 - 0.4) / MVTEdgeEncoder.EXTENT)));
+        assertEquals(0, encoder.getFeatureCount());
+
+        assertTrue(encoder.addEdge(edge, line(0.5, 0.5, 0.5, 0.5 + 1.2 / MVTEdgeEncoder.EXTENT)));
+        assertEquals(List.of(List.of(p(2048, 2048), p(2049, 2048))), decodeLines(encoder.encode()));
+    }
+
+    private static PointList line(double... latLons) {
+        PointList points = new PointList(latLons.length / 2, false);
+        for (int i = 0; i < latLons.length; i += 2)
+            points.add(latLons[i], latLons[i + 1]);
+        return points;
+    }
+
+    private static List<Integer> p(int x, int y) {
+        return List.of(x, y);
+    }
+
+    /**
+     * @return the parts of the line strings of all features with the points in tile coordinates
+     */
+    private static List<List<List<Integer>>> decodeLines(byte[] bytes) throws IOException {
+        VectorTile.Tile tile = VectorTile.Tile.parseFrom(bytes);
+        assertEquals(1, tile.getLayersCount());
+        VectorTile.Tile.Layer layer = tile.getLayers(0);
+        assertEquals(MVTEdgeEncoder.LAYER, layer.getName());
+        assertEquals(MVTEdgeEncoder.EXTENT, layer.getExtent());
+        List<List<List<Integer>>> parts = new ArrayList<>();
+        for (VectorTile.Tile.Feature feature : layer.getFeaturesList()) {
+            assertEquals(VectorTile.Tile.GeomType.LINESTRING, feature.getType());
+            List<Integer> geometry = feature.getGeometryList();
+            int x = 0, y = 0;
+            List<List<Integer>> part = null;
+            for (int i = 0; i < geometry.size(); ) {
+                int command = geometry.get(i) & 7, count = geometry.get(i) >>> 3;
+                i++;
+                if (command == 1) {
+                    assertEquals(1, count);
+                    part = new ArrayList<>();
+                    parts.add(part);
+                } else {
+                    assertEquals(2, command);
+                    assertNotNull(part);
+                }
+                for (int j = 0; j < count; j++, i += 2) {
+                    x += zigZagDecode(geometry.get(i));
+                    y += zigZagDecode(geometry.get(i + 1));
+                    part.add(p(x, y));
+                }
+            }
+        }
+        return parts;
+    }
+
+    private static int zigZagDecode(int n) {
+        return (n >>> 1) ^ -(n & 1);
+    }
+}
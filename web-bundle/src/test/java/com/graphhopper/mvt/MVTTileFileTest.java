@@ -0,0 +1,113 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.mvt;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.GraphHopperConfig;
+import com.graphhopper.routing.TestProfiles;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.shapes.BBox;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MVTTileFileTest {
+    private static final String DIR = "./target/mvt-tile-file-gh/";
+    private static GraphHopper hopper;
+
+    @BeforeAll
+    public static void setUp() {
+        Helper.removeDir(new File(DIR));
+        hopper = new GraphHopper();
+        hopper.init(new GraphHopperConfig().
+                putObject("datareader.file", "../core/files/andorra.osm.pbf").
+                putObject("graph.location", DIR).
+                putObject("import.osm.ignored_highways", "").
+                putObject("graph.encoded_values", "road_class").
+                setProfiles(List.of(TestProfiles.constantSpeed("car"))));
+        hopper.importOrLoad();
+    }
+
+    @AfterAll
+    public static void cleanUp() {
+        hopper.close();
+        Helper.removeDir(new File(DIR));
+    }
+
+    @Test
+    public void writeAndGet(@TempDir File dir) throws IOException {
+        File file = new File(dir, MVTTileFile.NAME);
+        assertNull(MVTTileFile.open(file));
+
+        MVTRenderer renderer = new MVTRenderer(hopper);
+        // Andorra la Vella
+        BBox bounds = new BBox(1.51, 1.53, 42.50, 42.51);
+        int count = MVTTileFile.write(file, renderer, bounds, 14, 15);
+        MVTTileFile tileFile = MVTTileFile.open(file);
+        assertNotNull(tileFile);
+        assertEquals(count, tileFile.getTileCount());
+        assertFalse(tileFile.containsZoom(13));
+        assertTrue(tileFile.containsZoom(14));
+        assertTrue(tileFile.containsZoom(15));
+        assertFalse(tileFile.containsZoom(16));
+
+        int stored = 0;
+        for (int z = 14; z <= 15; z++) {
+            int[] min = MVTRenderer.deg2num(bounds.maxLat, bounds.minLon, z);
+            int[] max = MVTRenderer.deg2num(bounds.minLat, bounds.maxLon, z);
+            for (int x = min[0]; x <= max[0]; x++) {
+                for (int y = min[1]; y <= max[1]; y++) {
+                    byte[] expected = renderer.render(z, x, y, false);
+                    ByteBuffer tile = tileFile.get(z, x, y);
+                    if (expected == null) {
+                        assertNull(tile);
+                        continue;
+                    }
+                    stored++;
+                    assertTrue(tile.isReadOnly());
+                    byte[] bytes = new byte[tile.remaining()];
+                    tile.get(bytes);
+                    assertArrayEquals(expected, bytes, z + "/" + x + "/" + y);
+                }
+            }
+        }
+        assertEquals(count, stored);
+        assertTrue(stored > 2, "only " + stored + " tiles");
+
+        // tiles outside of the bounds or of the zoom range are not contained
+        int[] outside = MVTRenderer.deg2num(42.6, 1.7, 15);
+        assertNull(tileFile.get(15, outside[0], outside[1]));
+        int[] tile16 = MVTRenderer.deg2num(42.505, 1.52, 16);
+        assertNull(tileFile.get(16, tile16[0], tile16[1]));
+    }
+
+    @Test
+    public void invalidZoomRange(@TempDir File dir) {
+        File file = new File(dir, MVTTileFile.NAME);
+        BBox bounds = new BBox(1.51, 1.53, 42.50, 42.51);
+        assertThrows(IllegalArgumentException.class, () -> MVTTileFile.write(file, new MVTRenderer(hopper), bounds, 15, 14));
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.mvt;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.GraphHopperConfig;
+import com.graphhopper.routing.TestProfiles;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.shapes.BBox;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MVTTileProviderTest {
+    private static final String DIR = "./target/mvt-tile-provider-gh/";
+    // Andorra la Vella
+    private static final BBox BOUNDS = new BBox(1.51, 1.53, 42.50, 42.51);
+    private static final int Z = 15;
+
+    @BeforeAll
+    public static void setUp() {
+        Helper.removeDir(new File(DIR));
+        createHopper().close();
+    }
+
+    @AfterEach
+    public void removeTileFile() {
+        new File(DIR, MVTTileFile.NAME).delete();
+    }
+
+    @AfterAll
+    public static void cleanUp() {
+        Helper.removeDir(new File(DIR));
+    }
+
+    /**
+     * Imports the graph or loads it if it was imported already
+     */
+    private static GraphHopper createHopper() {
+        GraphHopper hopper = new GraphHopper();
+        hopper.init(new GraphHopperConfig().
+                putObject("datareader.file", "../core/files/andorra.osm.pbf").
+                putObject("graph.location", DIR).
+                putObject("import.osm.ignored_highways", "").
+                putObject("graph.encoded_values", "road_class").
+                setProfiles(List.of(TestProfiles.constantSpeed("car"))));
+        hopper.importOrLoad();
+        return hopper;
+    }
+
+    /**
+     * @return the x and y of the first non-empty tiles within the bounds
+     */
+    private static List<int[]> findTiles(GraphHopper hopper, int count) {
+        MVTRenderer renderer = new MVTRenderer(hopper);
+        int[] min = MVTRenderer.deg2num(BOUNDS.maxLat, BOUNDS.minLon, Z);
+        int[] max = MVTRenderer.deg2num(BOUNDS.minLat, BOUNDS.maxLon, Z);
+        List<int[]> tiles = new ArrayList<>();
+        for (int x = min[0]; x <= max[0] && tiles.size() < count; x++) {
+            for (int y = min[1]; y <= max[1] && tiles.size() < count; y++) {
+                if (renderer.render(Z, x, y, false) != null)
+                    tiles.add(new int[]{x, y});
+            }
+        }
+        assertEquals(count, tiles.size());
+        return tiles;
+    }
+
+    private static byte[] get(MVTTileProvider provider, GraphHopper hopper, int[] tile) {
+        ByteBuffer buffer = provider.getTile(hopper, Z, tile[0], tile[1], false);
+        assertTrue(buffer.hasArray());
+        return buffer.array();
+    }
+
+    @Test
+    public void cacheIsLimitedByBytes() {
+        GraphHopper hopper = createHopper();
+        List<int[]> tiles = findTiles(hopper, 3);
+        MVTRenderer renderer = new MVTRenderer(hopper);
+        int[] lengths = new int[tiles.size()];
+        for (int i = 0; i < tiles.size(); i++)
+            lengths[i] = renderer.render(Z, tiles.get(i)[0], tiles.get(i)[1], false).length;
+
+        // there is room for the first tile and one of the others
+        MVTTileProvider provider = new MVTTileProvider(lengths[0] + Math.max(lengths[1], lengths[2]));
+        byte[] first = get(provider, hopper, tiles.get(0));
+        byte[] second = get(provider, hopper, tiles.get(1));
+        // this makes the second tile the least recently used one
+        assertSame(first, get(provider, hopper, tiles.get(0)));
+        byte[] third = get(provider, hopper, tiles.get(2));
+        assertSame(first, get(provider, hopper, tiles.get(0)));
+        assertSame(third, get(provider, hopper, tiles.get(2)));
+        byte[] secondAgain = get(provider, hopper, tiles.get(1));
+        assertNotSame(second, secondAgain);
+        assertArrayEquals(second, secondAgain);
+        hopper.close();
+    }
+
+    @Test
+    public void tileLargerThanCacheIsNotCached() {
+        GraphHopper hopper = createHopper();
+        int[] tile = findTiles(hopper, 1).get(0);
+        byte[] first = get(new MVTTileProvider(0), hopper, tile);
+        MVTTileProvider provider = new MVTTileProvider(first.length - 1);
+        assertNotSame(get(provider, hopper, tile), get(provider, hopper, tile));
+        hopper.close();
+    }
+
+    @Test
+    public void reloadClearsCacheAndUsesTileFile() throws IOException {
+        MVTTileProvider provider = new MVTTileProvider(1 << 20);
+        GraphHopper hopper = createHopper();
+        int[] tile = findTiles(hopper, 1).get(0);
+        byte[] rendered = get(provider, hopper, tile);
+        assertSame(rendered, get(provider, hopper, tile));
+        String version = provider.getVersion(hopper, Z, tile[0], tile[1], false);
+        int count = MVTTileFile.write(new File(DIR, MVTTileFile.NAME), new MVTRenderer(hopper), BOUNDS, Z, Z);
+        assertTrue(count > 0);
+        // the tile file is only opened for a new graph
+        assertSame(rendered, get(provider, hopper, tile));
+        hopper.close();
+
+        hopper = createHopper();
+        assertNotEquals(version, provider.getVersion(hopper, Z, tile[0], tile[1], false));
+        ByteBuffer buffer = provider.getTile(hopper, Z, tile[0], tile[1], false);
+        assertFalse(buffer.hasArray());
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        assertArrayEquals(rendered, bytes);
+
+        // tiles of the pre-rendered zoom level that are not stored are empty
+        int[] outside = MVTRenderer.deg2num(42.6, 1.7, Z);
+        assertEquals(0, provider.getTile(hopper, Z, outside[0], outside[1], false).remaining());
+        // other zoom levels and requests for all edges are still rendered
+        assertTrue(provider.getTile(hopper, Z, tile[0], tile[1], true).hasArray());
+        int[] tile16 = MVTRenderer.deg2num(BOUNDS.minLat, BOUNDS.minLon, Z + 1);
+        assertTrue(provider.getTile(hopper, Z + 1, tile16[0], tile16[1], false).hasArray());
+        hopper.close();
+    }
+
+    @Test
+    public void requestsOfReplacedGraphDoNotSwitchBack() {
+        MVTTileProvider provider = new MVTTileProvider(1 << 20);
+        GraphHopper oldHopper = createHopper();
+        int[] tile = findTiles(oldHopper, 1).get(0);
+        byte[] oldTile = get(provider, oldHopper, tile);
+        String oldVersion = provider.getVersion(oldHopper, Z, tile[0], tile[1], false);
+
+        // the graph is reloaded, but some requests for the old graph are still running
+        GraphHopper newHopper = createHopper();
+        byte[] newTile = get(provider, newHopper, tile);
+        String newVersion = provider.getVersion(newHopper, Z, tile[0], tile[1], false);
+        byte[] oldTileAgain = get(provider, oldHopper, tile);
+        assertNotSame(oldTile, oldTileAgain);
+        assertArrayEquals(oldTile, oldTileAgain);
+        assertEquals(oldVersion, provider.getVersion(oldHopper, Z, tile[0], tile[1], false));
+        // the cache of the new graph was not touched
+        assertSame(newTile, get(provider, newHopper, tile));
+        assertEquals(newVersion, provider.getVersion(newHopper, Z, tile[0], tile[1], false));
+        oldHopper.close();
+        newHopper.close();
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.application.cli;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.application.GraphHopperServerConfiguration;
+import com.graphhopper.mvt.MVTRenderer;
+import com.graphhopper.mvt.MVTTileFile;
+import com.graphhopper.util.StopWatch;
+import io.dropwizard.core.cli.ConfiguredCommand;
+import io.dropwizard.core.setup.Bootstrap;
+import net.sourceforge.argparse4j.inf.Namespace;
+import net.sourceforge.argparse4j.inf.Subparser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+
+public class PrerenderTilesCommand extends ConfiguredCommand<GraphHopperServerConfiguration> {
+
+    private static final Logger logger = LoggerFactory.getLogger(PrerenderTilesCommand.class);
+
+    public PrerenderTilesCommand() {
+        super("prerender-tiles", "renders the vector tiles of a zoom range into the graph folder, the server then serves them from this file");
+    }
+
+    @Override
+    public void configure(Subparser subparser) {
+        super.configure(subparser);
+        subparser.addArgument("--min_zoom")
+                .type(Integer.class)
+                .required(false)
+                .setDefault(10);
+        subparser.addArgument("--max_zoom")
+                .type(Integer.class)
+                .required(false)
+                .setDefault(14);
+    }
+
+    @Override
+    protected void run(Bootstrap<GraphHopperServerConfiguration> bootstrap, Namespace args, GraphHopperServerConfiguration configuration) throws IOException {
+        GraphHopper hopper = new GraphHopper().init(configuration.getGraphHopperConfiguration());
+        hopper.importOrLoad();
+        try {
+            StopWatch sw = StopWatch.started();
+            File file = new File(hopper.getGraphHopperLocation(), MVTTileFile.NAME);
+            int tiles = MVTTileFile.write(file, new MVTRenderer(hopper), hopper.getBaseGraph().getBounds(),
+                    args.getInt("min_zoom"), args.getInt("max_zoom"));
+            logger.info("rendered {} tiles into {}, took: {}", tiles, file, sw.stop().getTimeString());
+        } finally {
+            hopper.close();
+        }
+    }
+}
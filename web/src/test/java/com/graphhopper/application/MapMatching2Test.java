@@ -36,7 +36,9 @@ import org.junit.jupiter.api.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import static com.graphhopper.application.MapMatchingTest.fetchStreets;
 import static org.junit.jupiter.api.Assertions.*;
@@ -80,6 +82,40 @@ public class MapMatching2Test {
         assertEquals(28790, mr.getMatchMillis(), 50);
     }
 
+    @Test
+    public void testIssue13Streaming() throws IOException {
+        GraphHopper hopper = new GraphHopper();
+        hopper.setOSMFile("../map-matching/files/map-issue13.osm.gz");
+        hopper.setGraphHopperLocation(GH_LOCATION);
+        hopper.setEncodedValuesString("car_access, car_average_speed");
+        hopper.setProfiles(TestProfiles.accessAndSpeed("my_profile", "car"));
+        hopper.importOrLoad();
+
+        Gpx gpx = xmlMapper.readValue(getClass().getResourceAsStream("/issue-13.gpx"), Gpx.class);
+        MatchResult mr = MapMatching.fromGraphHopper(hopper, new PMap().putObject("profile", "my_profile"))
+                .match(GpxConversions.getEntries(gpx.trk.get(0)));
+
+        // use small windows so the track is matched in several parts
+        MapMatching mapMatching = MapMatching.fromGraphHopper(hopper, new PMap().putObject("profile", "my_profile"));
+        mapMatching.setWindowSize(4, 1);
+        mapMatching.setSnapThreads(2);
+        List<EdgeMatch> streamedEdgeMatches = new ArrayList<>();
+        MatchResult streamedMr = mapMatching.matchStreaming(GpxConversions.getEntries(gpx.trk.get(0)), streamedEdgeMatches::addAll);
+        assertTrue((int) mapMatching.getStatistics().get("windows") > 1);
+
+        assertEquals(mr.getEdgeMatches().size(), streamedEdgeMatches.size());
+        for (int i = 0; i < streamedEdgeMatches.size(); i++) {
+            EdgeMatch expected = mr.getEdgeMatches().get(i);
+            EdgeMatch edgeMatch = streamedEdgeMatches.get(i);
+            assertEquals(expected.getEdgeState().getEdgeKey(), edgeMatch.getEdgeState().getEdgeKey());
+            assertEquals(expected.getStates().size(), edgeMatch.getStates().size());
+            validateEdgeMatch(edgeMatch);
+        }
+        assertEquals(mr.getMatchLength(), streamedMr.getMatchLength(), 1.e-3);
+        assertEquals(mr.getMatchMillis(), streamedMr.getMatchMillis());
+        assertEquals(mr.getGpxEntriesLength(), streamedMr.getGpxEntriesLength(), 1.e-3);
+    }
+
     @Test
     public void testIssue70() throws IOException {
         GraphHopper hopper = new GraphHopper();
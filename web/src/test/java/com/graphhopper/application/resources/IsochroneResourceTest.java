@@ -96,6 +96,30 @@ public class IsochroneResourceTest {
         assertFalse(polygon1.contains(geometryFactory.createPoint(new Coordinate(1.635246, 42.53841))));
     }
 
+    @Test
+    public void requestByTimeLimitRaster() {
+        JsonFeatureCollection featureCollection = clientTarget(app, "/isochrone")
+                .queryParam("profile", "fast_car")
+                .queryParam("point", "42.531073,1.573792")
+                .queryParam("time_limit", 5 * 60)
+                .queryParam("buckets", 2)
+                .queryParam("raster_resolution", 50)
+                .queryParam("type", "geojson")
+                .request().get(JsonFeatureCollection.class);
+
+        assertEquals(2, featureCollection.getFeatures().size());
+        Geometry polygon0 = featureCollection.getFeatures().get(0).getGeometry();
+        Geometry polygon1 = featureCollection.getFeatures().get(1).getGeometry();
+
+        assertTrue(polygon0.contains(geometryFactory.createPoint(new Coordinate(1.587224, 42.5386))));
+        assertFalse(polygon0.contains(geometryFactory.createPoint(new Coordinate(1.589756, 42.558012))));
+
+        assertTrue(polygon1.contains(geometryFactory.createPoint(new Coordinate(1.589756, 42.558012))));
+        assertFalse(polygon1.contains(geometryFactory.createPoint(new Coordinate(1.635246, 42.53841))));
+        // the raster isochrone follows the roads and hence is much smaller than the triangulated one
+        assertTrue(polygon1.getArea() < 0.001, "area: " + polygon1.getArea());
+    }
+
     @Test
     public void requestByTimeLimitNoTurnRestrictions() {
         JsonFeatureCollection featureCollection = clientTarget(app, "/isochrone")
@@ -208,6 +232,11 @@ public class IsochroneResourceTest {
         assertTrue(json.get("message").toString().contains("query param point must not be null"), json.toString());
     }
 
+    @Test
+    public void rasterResolutionTooSmall() {
+        assertNotAllowed("&profile=fast_car&raster_resolution=0.01", "query param raster_resolution must be at least 10");
+    }
+
     private void assertNotAllowed(String hint, String error) {
         BodyAndStatus rsp = getWithStatus(clientTarget(app, "/isochrone?point=42.531073,1.573792" + hint));
         assertEquals(400, rsp.getStatus());
@@ -31,6 +31,9 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.locationtech.jts.geom.Geometry;
 
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.Response;
+
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
@@ -42,7 +45,7 @@ import java.util.Map;
 
 import static com.graphhopper.application.util.TestUtils.clientTarget;
 import static com.graphhopper.util.Parameters.Details.STREET_NAME;
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * @author Peter Karich
@@ -92,10 +95,27 @@ public class MVTResourceTest {
                 .filter(f -> "Avinguda de Tarragona".equals(f.getAttributes().get(STREET_NAME)))
                 .findFirst().get();
         assertEquals("road", feature.getAttributes().get("road_environment"));
-        assertEquals("50.0 | 50.0", feature.getAttributes().get("max_speed"));
+        assertEquals(50.0, feature.getAttributes().get("max_speed"));
+        assertEquals(50.0, feature.getAttributes().get("max_speed_reverse"));
         assertEquals("primary", feature.getAttributes().get("road_class"));
     }
 
+    @Test
+    public void testETag() {
+        Response response = clientTarget(app, "/mvt/15/16528/12099.mvt").request().get();
+        assertEquals(200, response.getStatus());
+        EntityTag eTag = response.getEntityTag();
+        assertNotNull(eTag);
+
+        response = clientTarget(app, "/mvt/15/16528/12099.mvt").request().header("If-None-Match", eTag.toString()).get();
+        assertEquals(304, response.getStatus());
+
+        // other tiles have other tags
+        response = clientTarget(app, "/mvt/15/16522/12102.mvt").request().header("If-None-Match", eTag.toString()).get();
+        assertEquals(200, response.getStatus());
+        assertNotEquals(eTag, response.getEntityTag());
+    }
+
     private static byte[] readInputStream(InputStream is) throws IOException {
         ByteArrayOutputStream buffer = new ByteArrayOutputStream();
         int nRead;
@@ -100,6 +100,19 @@ public class MapMatchingResourceTest {
         assertEquals(162, path.get("time").asLong() / 1000f, 1);
     }
 
+    @Test
+    public void testStream() {
+        JsonNode expected = clientTarget(app, "/match?profile=fast_car&type=extended_json")
+                .request()
+                .post(Entity.xml(getClass().getResourceAsStream("/tour2-with-loop.gpx")), JsonNode.class);
+        JsonNode json = clientTarget(app, "/match?profile=fast_car&type=extended_json&stream=true")
+                .request()
+                .post(Entity.xml(getClass().getResourceAsStream("/tour2-with-loop.gpx")), JsonNode.class);
+        assertEquals(expected.get("diary"), json.get("diary"));
+        assertEquals(812, json.get("map_matching").get("distance").asDouble(), 1);
+        assertEquals(101, json.get("map_matching").get("time").asLong() / 1000f, 1);
+    }
+
     @Test
     public void testGPX10() {
         JsonNode json = clientTarget(app, "/match?profile=fast_car")
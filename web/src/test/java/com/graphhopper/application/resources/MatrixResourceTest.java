@@ -0,0 +1,129 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.application.resources;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.graphhopper.application.GraphHopperApplication;
+import com.graphhopper.application.GraphHopperServerConfiguration;
+import com.graphhopper.application.util.GraphHopperServerTestConfiguration;
+import com.graphhopper.config.CHProfile;
+import com.graphhopper.routing.TestProfiles;
+import com.graphhopper.util.BodyAndStatus;
+import com.graphhopper.util.Helper;
+import io.dropwizard.testing.junit5.DropwizardAppExtension;
+import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
+import jakarta.ws.rs.client.Entity;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.io.File;
+import java.util.List;
+
+import static com.graphhopper.application.resources.Util.postWithStatus;
+import static com.graphhopper.application.util.TestUtils.clientTarget;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(DropwizardExtensionsSupport.class)
+public class MatrixResourceTest {
+    private static final String DIR = "./target/andorra-matrix-gh/";
+    private static final DropwizardAppExtension<GraphHopperServerConfiguration> app = new DropwizardAppExtension<>(GraphHopperApplication.class, createConfig());
+
+    private static GraphHopperServerConfiguration createConfig() {
+        GraphHopperServerConfiguration config = new GraphHopperServerTestConfiguration();
+        config.getGraphHopperConfiguration().
+                putObject("prepare.min_network_size", 0).
+                putObject("datareader.file", "../core/files/andorra.osm.pbf").
+                putObject("import.osm.ignored_highways", "").
+                putObject("graph.location", DIR).
+                putObject("graph.encoded_values", "car_access, car_average_speed, foot_access, foot_priority, foot_average_speed").
+                setProfiles(List.of(TestProfiles.accessAndSpeed("my_car", "car"),
+                        TestProfiles.accessSpeedAndPriority("foot"))).
+                setCHProfiles(List.of(new CHProfile("my_car")));
+        return config;
+    }
+
+    @BeforeAll
+    @AfterAll
+    public static void cleanUp() {
+        Helper.removeDir(new File(DIR));
+    }
+
+    @Test
+    public void symmetricMatrix() {
+        String jsonStr = "{ \"profile\": \"my_car\", \"out_arrays\": [\"weights\", \"times\", \"distances\"], " +
+                "\"points\": [[1.536198,42.554851], [1.548128,42.510071], [1.5218,42.5361]] }";
+        JsonNode json = clientTarget(app, "/matrix").request().post(Entity.json(jsonStr), JsonNode.class);
+        assertEquals("GraphHopper", json.at("/info/copyrights/0").asText());
+        for (String outArray : List.of("weights", "times", "distances")) {
+            JsonNode rows = json.get(outArray);
+            assertEquals(3, rows.size());
+            for (int i = 0; i < 3; i++) {
+                assertEquals(3, rows.get(i).size());
+                assertEquals(0, rows.get(i).get(i).asDouble(), 1.e-6);
+            }
+        }
+
+        // the matrix entries must match the corresponding routes
+        for (int from = 0; from < 3; from++) {
+            for (int to = 0; to < 3; to++) {
+                if (from == to)
+                    continue;
+                JsonNode route = clientTarget(app, "/route").request().post(Entity.json("{ \"profile\": \"my_car\", " +
+                        "\"points\": [" + getPoint(from) + ", " + getPoint(to) + "] }"), JsonNode.class).get("paths").get(0);
+                assertEquals(route.get("distance").asDouble(), json.get("distances").get(from).get(to).asDouble(), 1);
+                assertEquals(route.get("time").asLong() / 1000.0, json.get("times").get(from).get(to).asDouble(), 1);
+            }
+        }
+    }
+
+    private static String getPoint(int index) {
+        return List.of("[1.536198,42.554851]", "[1.548128,42.510071]", "[1.5218,42.5361]").get(index);
+    }
+
+    @Test
+    public void fromAndToPoints() {
+        String jsonStr = "{ \"profile\": \"my_car\", \"from_points\": [[1.536198,42.554851]], " +
+                "\"to_points\": [[1.548128,42.510071], [1.5218,42.5361]] }";
+        JsonNode json = clientTarget(app, "/matrix").request().post(Entity.json(jsonStr), JsonNode.class);
+        // only the weights are returned by default
+        assertFalse(json.has("times"));
+        assertFalse(json.has("distances"));
+        assertEquals(1, json.get("weights").size());
+        assertEquals(2, json.get("weights").get(0).size());
+        assertTrue(json.get("weights").get(0).get(0).asDouble() > 0);
+    }
+
+    @Test
+    public void errors() {
+        BodyAndStatus response = postWithStatus(clientTarget(app, "/matrix"), "{ \"profile\": \"foot\", " +
+                "\"points\": [[1.536198,42.554851], [1.548128,42.510071]] }");
+        assertEquals(400, response.getStatus());
+        assertTrue(response.getBody().get("message").asText().contains("requires a CH preparation"), response.getBody().toString());
+
+        response = postWithStatus(clientTarget(app, "/matrix"), "{ \"profile\": \"my_car\", \"out_arrays\": [\"speeds\"], " +
+                "\"points\": [[1.536198,42.554851], [1.548128,42.510071]] }");
+        assertEquals(400, response.getStatus());
+        assertTrue(response.getBody().get("message").asText().contains("Unknown out_array 'speeds'"), response.getBody().toString());
+
+        response = postWithStatus(clientTarget(app, "/matrix"), "{ \"profile\": \"my_car\", \"points\": [[1.536198,42.554851], [-1.5,12.5]] }");
+        assertEquals(400, response.getStatus());
+        assertTrue(response.getBody().get("message").asText().contains("Point 1 is out of bounds"), response.getBody().toString());
+    }
+}
@@ -148,6 +148,43 @@ public class RouteResourceTest {
         assertFalse(json.get("info").has("errors"));
     }
 
+    @Test
+    public void testBatchPostQuery() {
+        String jsonStr = "[{ \"profile\": \"my_car\", \"points\": [[1.536198,42.554851], [1.548128, 42.510071]] }," +
+                "{ \"profile\": \"foot\", \"points\": [[1.536198,42.554851], [1.548128, 42.510071]], \"instructions\": false }," +
+                "{ \"profile\": \"my_car\", \"points\": [[1.536198,42.554851], [1.5218,42.5361], [1.548128, 42.510071]] }," +
+                "{ \"profile\": \"my_car\", \"points\": [[1.536198,42.554851], [-1.5,12.5]] }]";
+        JsonNode json = clientTarget(app, "/route/batch").request().post(Entity.json(jsonStr), JsonNode.class);
+        JsonNode responses = json.get("responses");
+        assertEquals(4, responses.size());
+        for (int i = 0; i < 3; i++) {
+            assertFalse(responses.get(i).has("message"), responses.get(i).toString());
+            assertTrue(responses.get(i).get("paths").get(0).get("distance").asDouble() > 9000, responses.get(i).toString());
+        }
+        // the results are the same as for single requests
+        JsonNode single = clientTarget(app, "/route").request().post(Entity.json("{ \"profile\": \"my_car\", " +
+                "\"points\": [[1.536198,42.554851], [1.548128, 42.510071]] }"), JsonNode.class);
+        assertEquals(single.get("paths").get(0).get("distance").asDouble(), responses.get(0).get("paths").get(0).get("distance").asDouble(), 0.1);
+        assertTrue(responses.get(0).get("paths").get(0).has("instructions"));
+        assertFalse(responses.get(1).get("paths").get(0).has("instructions"));
+        assertTrue(responses.get(3).get("message").asText().contains("Point 1 is out of bounds"), responses.get(3).toString());
+    }
+
+    @Test
+    public void testBatchPostQueryWithUnresolvableProfile() {
+        String jsonStr = "[{ \"profile\": \"unknown\", \"points\": [[1.536198,42.554851], [1.548128, 42.510071]] }," +
+                "{ \"profile\": \"my_car\", \"points\": [[1.536198,42.554851], [1.548128, 42.510071]] }," +
+                "{ \"custom_model\": {}, \"points\": [[1.536198,42.554851], [1.548128, 42.510071]] }]";
+        // the requests that cannot be resolved do not fail the whole batch
+        JsonNode json = clientTarget(app, "/route/batch").request().post(Entity.json(jsonStr), JsonNode.class);
+        JsonNode responses = json.get("responses");
+        assertEquals(3, responses.size());
+        assertTrue(responses.get(0).get("message").asText().contains("The requested profile 'unknown' does not exist"), responses.get(0).toString());
+        assertFalse(responses.get(1).has("message"), responses.get(1).toString());
+        assertTrue(responses.get(1).get("paths").get(0).get("distance").asDouble() > 9000, responses.get(1).toString());
+        assertTrue(responses.get(2).get("message").asText().contains("The 'profile' parameter is required"), responses.get(2).toString());
+    }
+
     @Test
     public void testBasicNavigationQuery() {
         JsonNode json = clientTarget(app, "/navigate/directions/v5/gh/driving/1.537174,42.507145;1.539116,42.511368?" +
@@ -33,7 +33,11 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -101,6 +105,48 @@ public class SPTResourceTest {
         assertEquals("2385,2821,1234,13121,262", lines[3]);
     }
 
+    @Test
+    public void requestSPTBinary() throws IOException {
+        String columns = "prev_node_id,edge_id,node_id,time,distance";
+        String rspCsvString = clientTarget(app, "/spt?profile=car_with_turncosts&point=42.531073,1.573792&time_limit=300&columns=" + columns).request().get(String.class);
+        String[] lines = rspCsvString.split("\n");
+
+        byte[] bytes = clientTarget(app, "/spt?profile=car_with_turncosts&point=42.531073,1.573792&time_limit=300&type=binary&columns=" + columns).request().get(byte[].class);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        assertEquals("GHSP", new String(in.readNBytes(4)));
+        assertEquals(1, in.readInt());
+        List<String> header = new ArrayList<>();
+        for (int i = in.readShort(); i > 0; i--)
+            header.add(in.readUTF());
+        assertEquals(columns, String.join(",", header));
+
+        // the rows of the binary output are the same as the lines of the CSV output, just in columns and batches
+        int line = 1;
+        for (int rows = in.readInt(); rows > 0; rows = in.readInt()) {
+            int[][] values = new int[header.size()][rows];
+            for (int[] column : values) {
+                for (int row = 0; row < rows; row++)
+                    column[row] = in.readInt();
+            }
+            for (int row = 0; row < rows; row++, line++) {
+                StringBuilder sb = new StringBuilder();
+                for (int[] column : values)
+                    sb.append(sb.length() > 0 ? "," : "").append(column[row]);
+                assertEquals(lines[line], sb.toString());
+            }
+        }
+        assertEquals(lines.length, line);
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    public void requestBinaryUnknownColumn() {
+        BodyAndStatus rsp = getWithStatus(clientTarget(app, "/spt?profile=car_without_turncosts&point=42.531073,1.573792&type=binary&columns=street_name"));
+        assertEquals(400, rsp.getStatus());
+        JsonNode json = rsp.getBody();
+        assertTrue(json.get("message").toString().contains("Unknown column street_name"), json.toString());
+    }
+
     @Test
     public void requestDetails() {
         String rspCsvString = clientTarget(app, "/spt?profile=car_without_turncosts&point=42.531073,1.573792&time_limit=300&columns=street_name,road_class,max_speed").request().get(String.class);